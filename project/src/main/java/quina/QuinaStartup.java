@@ -143,6 +143,13 @@ final class QuinaStartup {
 			LogFactory.getInstance().get().error(
 				"## error stop service: httpServerService", e);
 		}
+		// Etagのディレクトリ監視を停止.
+		try {
+			quinaMembers.router.getEtagManager().stopWatch();
+		} catch(Exception e) {
+			LogFactory.getInstance().get().error(
+				"## error stop etag watcher", e);
+		}
 		// IpV4パーミッションアクセスコントロールサービスを停止.
 		try {
 			ipPermissionAccessControllService.stopService();
@@ -6,8 +6,11 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 
 import quina.exception.CoreException;
@@ -15,6 +18,7 @@ import quina.exception.QuinaException;
 import quina.http.HttpStatus;
 import quina.http.Request;
 import quina.http.Response;
+import quina.logger.LogFactory;
 import quina.util.Base64;
 import quina.util.CRC64;
 import quina.util.FileUtil;
@@ -58,6 +62,37 @@ public final class EtagManager {
 	 */
 	private NamedLock sync;
 
+	/**
+	 * ディレクトリ監視が有効かチェック.
+	 */
+	private boolean doneWatchFlag;
+
+	/**
+	 * メタファイルを利用するかチェック.
+	 */
+	private boolean doneMetaFileFlag = true;
+
+	/**
+	 * 監視対象のディレクトリ.
+	 */
+	private final Set<String> watchDirs = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * ディレクトリ監視.
+	 */
+	private EtagWatcher watcher;
+
+	/**
+	 * 静的ファイルのメモリキャッシュ.
+	 */
+	private StaticFileCache fileCache;
+
+	/**
+	 * 監視による破棄のバージョン.
+	 * Etag作成中に破棄が発生したかの判別に利用します.
+	 */
+	private final AtomicLong watchVersion = new AtomicLong(0L);
+
 	/**
 	 * コンストラクタ
 	 */
@@ -111,6 +146,130 @@ public final class EtagManager {
 		doneUseEtagFlag = info.isInForce();
 		doneMaxFileSize = info.getMaxFileSize();
 		sync = new NamedLock(info.getPathLockSize());
+		doneMetaFileFlag = info.isMetaFile();
+		// 静的ファイルのメモリキャッシュを生成.
+		if(info.getCacheSize() > 0L) {
+			fileCache = new StaticFileCache(this, info.getCacheSize(),
+				info.getCacheFileSize());
+		}
+		// ディレクトリ監視を開始.
+		if(doneUseEtagFlag && info.isWatch()) {
+			try {
+				final EtagWatcher w = new EtagWatcher(
+					this, info.getWarmupThreads());
+				watcher = w;
+				doneWatchFlag = true;
+				final Iterator<String> it = watchDirs.iterator();
+				while(it.hasNext()) {
+					w.register(it.next(), true);
+				}
+				w.start();
+			} catch(Exception e) {
+				// 監視が開始できない場合は更新時間チェックで処理する.
+				watcher = null;
+				doneWatchFlag = false;
+				LogFactory.getInstance().get().warn(
+					"Failed to start the etag directory watcher.", e);
+			}
+		}
+	}
+
+	/**
+	 * 静的ファイルのメモリキャッシュを取得.
+	 * @return StaticFileCache 静的ファイルのメモリキャッシュが返却されます.
+	 *                         nullの場合は無効です.
+	 */
+	public StaticFileCache getFileCache() {
+		return fileCache;
+	}
+
+	/**
+	 * ディレクトリ監視対象を登録.
+	 * ディレクトリ監視が有効な場合、このディレクトリ配下の
+	 * ファイルは更新時間チェックを行わずにEtagを返却します.
+	 * @param dir 対象のディレクトリを設定します.
+	 */
+	public void watch(String dir) {
+		if(dir == null || dir.isEmpty()) {
+			return;
+		}
+		if(!dir.endsWith("/")) {
+			dir += "/";
+		}
+		if(watchDirs.add(dir) && doneWatchFlag) {
+			watcher.register(dir, true);
+		}
+	}
+
+	/**
+	 * ディレクトリ監視を停止.
+	 */
+	public void stopWatch() {
+		final EtagWatcher w = watcher;
+		doneWatchFlag = false;
+		watcher = null;
+		if(w != null) {
+			w.stopThread();
+			invalidateAll();
+		}
+	}
+
+	/**
+	 * 指定パス名のEtagを破棄.
+	 * @param path 対象のパス名を設定します.
+	 */
+	protected void invalidate(String path) {
+		watchVersion.incrementAndGet();
+		if(fileCache != null) {
+			fileCache.invalidate(path);
+		}
+		if(manager.remove(path) == null) {
+			// ディレクトリの場合は配下のEtagを破棄.
+			final String dir = path + "/";
+			final Iterator<String> it = manager.keySet().iterator();
+			while(it.hasNext()) {
+				if(it.next().startsWith(dir)) {
+					it.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 全てのEtagを破棄.
+	 */
+	protected void invalidateAll() {
+		watchVersion.incrementAndGet();
+		manager.clear();
+		if(fileCache != null) {
+			fileCache.clear();
+		}
+	}
+
+	/**
+	 * 監視による破棄のバージョンを取得.
+	 * @return long 監視による破棄のバージョンが返却されます.
+	 */
+	protected long getWatchVersion() {
+		return watchVersion.get();
+	}
+
+	/**
+	 * 指定パスが監視対象かチェック.
+	 * @param path 対象のパスを設定します.
+	 * @return boolean trueの場合ディレクトリ監視中です.
+	 */
+	protected boolean isWatchTarget(String path) {
+		if(!doneWatchFlag) {
+			return false;
+		}
+		final Iterator<String> it = watchDirs.iterator();
+		while(it.hasNext()) {
+			if(path.startsWith(it.next())) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -133,7 +292,22 @@ public final class EtagManager {
 		}
 
 		// このローカルパスのEtagを取得.
-		final String etag = get(path);
+		return setResponseByEtag(get(path), req, res);
+	}
+
+	/**
+	 * 取得済みのEtagに対するレスポンス設定.
+	 * @param etag 対象のEtagを設定します.
+	 * @param req 対象のリクエストを設定します.
+	 * @param res 対象のレスポンスを設定します.
+	 * @return boolean trueの場合、この情報は接続元のキャッシュと同様です.
+	 */
+	protected boolean setResponseByEtag(String etag, Request req,
+		Response<?> res) {
+		// res.isCacheMode() == false の場合は処理しない.
+		if(!res.isCacheMode()) {
+			return false;
+		}
 		// Etagが取得できた場合.
 		if(etag != null) {
 			// リクエストにキャッシュされたEtag情報が設定されている場合.
@@ -166,15 +340,22 @@ public final class EtagManager {
 		// マネージャに登録されているEtag要素を取得.
 		EtagElement e = manager.get(path);
 		// マネージャに存在しない場合.
-		// もしくは取得したmetaファイルの情報とコンテンツ
-		// ファイルタイムが一致しない場合.
-		if(e == null || e.getLastTime() != mtime(path)) {
+		// もしくは監視対象外で、取得したmetaファイルの情報と
+		// コンテンツファイルタイムが一致しない場合.
+		if(e == null || (!e.isWatched() && e.getLastTime() != mtime(path))) {
+			final long version = watchVersion.get();
 			// 存在しない場合は生成.
 			if((e = createEtag(path)) == null) {
 				return null;
 			}
 			// 存在する場合はマネージャ登録.
 			manager.put(path, e);
+			// 登録までに監視による破棄が発生した場合は、破棄で
+			// 削除されずに残る可能性があるので監視対象外にする.
+			if(e.isWatched() && version != watchVersion.get()) {
+				manager.replace(path, e,
+					new EtagElement(e.getEtag(), e.getLastTime(), false));
+			}
 		}
 		// 対象のetagを返却.
 		return e.getEtag();
@@ -182,8 +363,12 @@ public final class EtagManager {
 
 	// 指定ファイルからEtagを作成.
 	private final EtagElement createEtag(String path) {
+		// 監視対象の場合は作成中に破棄が発生していないか確認する.
+		final boolean watched = isWatchTarget(path);
+		final long version = watchVersion.get();
 		// メタファイル名を取得.
-		final String meta = createEtagMetaFileName(path);
+		final String meta = doneMetaFileFlag ?
+			createEtagMetaFileName(path) : null;
 		// コンテンツのファイルサイズ.
 		final long fileLength;
 		// ロックオブジェクト.
@@ -195,7 +380,7 @@ public final class EtagManager {
 			// 最大ファイルサイズ以上の場合はEtagで処理しない.
 			if(fileLength == -1L || fileLength >= doneMaxFileSize) {
 				// ファイルが存在しない場合はメタファイルも削除する.
-				if(FileUtil.isFile(meta)) {
+				if(meta != null && FileUtil.isFile(meta)) {
 					// パス名単位でロックする.
 					(lock = sync.get(path)).lock();
 					try {
@@ -216,21 +401,31 @@ public final class EtagManager {
 		// パス名単位でロックする.
 		(lock = sync.get(path)).lock();
 		try {
-			EtagElement em = null;
-			// メタファイルからEtagElementを取得.
-			if((em = loadEtagElement(path, meta)) != null) {
-				return em;
+			String etag = null;
+			long lastTime = -1L;
+			// メタファイルからEtagを取得.
+			final byte[] b = meta == null ? null : loadEtagElement(path, meta);
+			if(b != null) {
+				lastTime = binaryByLong(0, b);
+				etag = convertEtag(b, 8);
+			} else {
+				// メタファイルが存在しないか古い場合は新たにEtagを作成する.
+				// コンテンツのの更新時間を取得.
+				lastTime = FileUtil.mtime(path);
+				// コンテンツからCRCコードを取得.
+				final long code = getContentByCrc64(path, fileLength);
+				// Etagを生成.
+				final byte[] etagBin = createEtagCode(fileLength, code);
+				// メタファイルを利用する場合は保存.
+				if(meta != null) {
+					saveEtagElement(meta, lastTime, etagBin);
+				}
+				etag = convertEtag(etagBin, 0);
 			}
-			// メタファイルが存在しないか古い場合は新たにメタファイルを再作成する.
-			// コンテンツのの更新時間を取得.
-			final long lastTime = FileUtil.mtime(path);
-			// コンテンツからCRCコードを取得.
-			final long code = getContentByCrc64(path, fileLength);
-			// Etagを生成して保存.
-			final byte[] etagBin = createEtagCode(fileLength, code);
-			saveEtagElement(meta, lastTime, etagBin);
 			// EtagElementを生成.
-			return new EtagElement(convertEtag(etagBin, 0), lastTime);
+			// 作成中に監視による破棄が発生した場合は更新時間チェックを行う.
+			return new EtagElement(etag, lastTime,
+				watched && version == watchVersion.get());
 		} catch(Exception ex) {
 			if(ex instanceof CoreException) {
 				throw (CoreException)ex;
@@ -343,7 +538,7 @@ public final class EtagManager {
 	}
 
 	// metaファイルからEtag要素をロード.
-	private static final EtagElement loadEtagElement(String path, String meta)
+	private static final byte[] loadEtagElement(String path, String meta)
 		throws Exception {
 		// 最初にメタファイルが存在するかチェック.
 		if(FileUtil.isFile(meta)) {
@@ -363,7 +558,7 @@ public final class EtagManager {
 					// 現在のコンテンツ情報とメタファイル内に登録されているコンテンツ時間を比較.
 					if(FileUtil.mtime(path) == lastTime) {
 						// 同じ場合はEtag要素を返却
-						return new EtagElement(convertEtag(b, 8), lastTime);
+						return b;
 					}
 				}
 			} finally {
@@ -417,15 +612,19 @@ public final class EtagManager {
 		private final String etag;
 		// コンテンツのファイルタイム.
 		private final long lastTime;
+		// ディレクトリ監視中.
+		private final boolean watched;
 
 		/**
 		 * コンストラクタ.
 		 * @param etag
 		 * @param lastTime
+		 * @param watched
 		 */
-		public EtagElement(String etag, long lastTime) {
+		public EtagElement(String etag, long lastTime, boolean watched) {
 			this.etag = etag;
 			this.lastTime = lastTime;
+			this.watched = watched;
 		}
 
 		/**
@@ -443,5 +642,13 @@ public final class EtagManager {
 		public long getLastTime() {
 			return lastTime;
 		}
+
+		/**
+		 * ディレクトリ監視中かチェック.
+		 * @return
+		 */
+		public boolean isWatched() {
+			return watched;
+		}
 	}
 }
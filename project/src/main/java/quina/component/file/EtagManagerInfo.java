@@ -4,6 +4,7 @@ import java.util.Map;
 
 import quina.exception.QuinaException;
 import quina.util.AtomicNumber;
+import quina.util.AtomicNumber64;
 import quina.util.BooleanUtil;
 import quina.util.Flag;
 import quina.util.NumberUtil;
@@ -18,6 +19,18 @@ public class EtagManagerInfo {
 	 */
 	private static final int DEFAULT_MAX_FILE_SIZE = 0x00100000 * 5;
 
+	/**
+	 * 静的ファイルのメモリキャッシュのデフォルトの最大サイズ.
+	 * (16MByte).
+	 */
+	private static final long DEFAULT_CACHE_SIZE = 0x00100000L * 16L;
+
+	/**
+	 * 静的ファイルのメモリキャッシュ対象のデフォルトの最大ファイルサイズ.
+	 * (128KByte).
+	 */
+	private static final long DEFAULT_CACHE_FILE_SIZE = 0x00020000L;
+
 	/**
 	 * ETAGマネージャの設定が完了したかチェック.
 	 */
@@ -38,6 +51,33 @@ public class EtagManagerInfo {
 	 */
 	private final AtomicNumber pathLockSize = new AtomicNumber(-1);
 
+	/**
+	 * ディレクトリ監視でEtagを破棄するかチェック.
+	 */
+	private final Flag watch = new Flag(false);
+
+	/**
+	 * メタファイルを利用するかチェック.
+	 */
+	private final Flag metaFile = new Flag(true);
+
+	/**
+	 * ディレクトリ監視開始時にEtagを事前作成するスレッド数.
+	 */
+	private final AtomicNumber warmupThreads = new AtomicNumber(2);
+
+	/**
+	 * 静的ファイルのメモリキャッシュの最大サイズ.
+	 */
+	private final AtomicNumber64 cacheSize =
+		new AtomicNumber64(DEFAULT_CACHE_SIZE);
+
+	/**
+	 * 静的ファイルのメモリキャッシュ対象の最大ファイルサイズ.
+	 */
+	private final AtomicNumber64 cacheFileSize =
+		new AtomicNumber64(DEFAULT_CACHE_FILE_SIZE);
+
 	/**
 	 * Etagマネージャ.
 	 */
@@ -126,6 +166,94 @@ public class EtagManagerInfo {
 		pathLockSize.put(size);
 	}
 
+	/**
+	 * ディレクトリ監視モードを取得.
+	 * @return boolean [true]の場合、FileComponentのディレクトリを
+	 *                 監視して変更時にEtagを破棄します.
+	 */
+	public boolean isWatch() {
+		return watch.get();
+	}
+
+	/**
+	 * ディレクトリ監視モードを設定.
+	 * @param flg [true]の場合、FileComponentのディレクトリを
+	 *            監視して変更時にEtagを破棄します.
+	 */
+	public void setWatch(boolean flg) {
+		check();
+		watch.set(flg);
+	}
+
+	/**
+	 * メタファイルを利用するか取得.
+	 * @return boolean [true]の場合、コンテンツと同じディレクトリに
+	 *                 Etagのメタファイルを作成します.
+	 */
+	public boolean isMetaFile() {
+		return metaFile.get();
+	}
+
+	/**
+	 * メタファイルを利用するか設定.
+	 * @param flg [false]の場合、Etagはメモリ上のみで管理します.
+	 */
+	public void setMetaFile(boolean flg) {
+		check();
+		metaFile.set(flg);
+	}
+
+	/**
+	 * Etagを事前作成するスレッド数を取得.
+	 * @return int Etagを事前作成するスレッド数が返却されます.
+	 */
+	public int getWarmupThreads() {
+		return warmupThreads.get();
+	}
+
+	/**
+	 * Etagを事前作成するスレッド数を設定.
+	 * @param size Etagを事前作成するスレッド数を設定します.
+	 */
+	public void setWarmupThreads(int size) {
+		check();
+		warmupThreads.set(size);
+	}
+
+	/**
+	 * 静的ファイルのメモリキャッシュの最大サイズを取得.
+	 * @return long 静的ファイルのメモリキャッシュの最大サイズが返却されます.
+	 */
+	public long getCacheSize() {
+		return cacheSize.get();
+	}
+
+	/**
+	 * 静的ファイルのメモリキャッシュの最大サイズを設定.
+	 * @param size 0以下の場合はメモリキャッシュを行いません.
+	 */
+	public void setCacheSize(long size) {
+		check();
+		cacheSize.set(size);
+	}
+
+	/**
+	 * 静的ファイルのメモリキャッシュ対象の最大ファイルサイズを取得.
+	 * @return long メモリキャッシュ対象の最大ファイルサイズが返却されます.
+	 */
+	public long getCacheFileSize() {
+		return cacheFileSize.get();
+	}
+
+	/**
+	 * 静的ファイルのメモリキャッシュ対象の最大ファイルサイズを設定.
+	 * @param size メモリキャッシュ対象の最大ファイルサイズを設定します.
+	 */
+	public void setCacheFileSize(long size) {
+		check();
+		cacheFileSize.set(size);
+	}
+
 	/**
 	 * コンフィグ定義を設定して、定義を設定.
 	 * @param json json情報を設定します.
@@ -148,6 +276,31 @@ public class EtagManagerInfo {
 			NumberUtil.isNumeric(o)) {
 			setPathLockSize(NumberUtil.parseInt(o));
 		}
+		// ディレクトリ監視モードを取得.
+		if((o = json.get("watch")) != null &&
+			BooleanUtil.isBool(o)) {
+			setWatch(BooleanUtil.parseBoolean(o));
+		}
+		// メタファイル利用を取得.
+		if((o = json.get("metaFile")) != null &&
+			BooleanUtil.isBool(o)) {
+			setMetaFile(BooleanUtil.parseBoolean(o));
+		}
+		// Etagを事前作成するスレッド数を取得.
+		if((o = json.get("warmupThreads")) != null &&
+			NumberUtil.isNumeric(o)) {
+			setWarmupThreads(NumberUtil.parseInt(o));
+		}
+		// 静的ファイルのメモリキャッシュの最大サイズを取得.
+		if((o = json.get("cacheSize")) != null &&
+			NumberUtil.isCapacityString(o.toString())) {
+			setCacheSize(NumberUtil.parseCapacityByLong(o.toString()));
+		}
+		// メモリキャッシュ対象の最大ファイルサイズを取得.
+		if((o = json.get("cacheFileSize")) != null &&
+			NumberUtil.isCapacityString(o.toString())) {
+			setCacheFileSize(NumberUtil.parseCapacityByLong(o.toString()));
+		}
 	}
 
 	/**
@@ -0,0 +1,188 @@
+package quina.component.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import quina.logger.LogFactory;
+
+/**
+ * FileComponentのディレクトリ監視.
+ *
+ * WatchServiceで監視対象ディレクトリ配下の変更を検知して
+ * EtagManagerの該当Etagを破棄します.
+ *
+ * 監視中のファイルはリクエスト毎の更新時間チェックを行わずに
+ * Etagを返却できるので、静的ファイル送信時のstatが不要になります.
+ * また開始時に監視対象のファイルのEtagをスレッドプールで事前に
+ * 作成します.
+ */
+final class EtagWatcher extends Thread {
+
+	// 事前作成スレッドが処理待ちで終了するまでの時間(ミリ秒).
+	private static final long KEEP_ALIVE = 5000L;
+
+	// 監視ディレクトリ毎のWatchKey.
+	private final Map<WatchKey, String> keys =
+		new ConcurrentHashMap<WatchKey, String>();
+
+	// 対象のEtagManager.
+	private final EtagManager manager;
+
+	// WatchService.
+	private final WatchService service;
+
+	// 事前作成を行うスレッド数.
+	private final int warmupThreads;
+
+	// 事前作成用スレッドプール.
+	private ThreadPoolExecutor warmup = null;
+
+	/**
+	 * コンストラクタ.
+	 * @param manager 対象のEtagManagerを設定します.
+	 * @param warmupThreads 事前作成を行うスレッド数を設定します.
+	 * @throws IOException I/O例外.
+	 */
+	protected EtagWatcher(EtagManager manager, int warmupThreads)
+		throws IOException {
+		super("quina-etag-watcher");
+		this.manager = manager;
+		this.service = FileSystems.getDefault().newWatchService();
+		this.warmupThreads = warmupThreads;
+		setDaemon(true);
+	}
+
+	/**
+	 * 監視対象のディレクトリを登録.
+	 * @param dir 対象のディレクトリを設定します.
+	 * @param warm trueの場合Etagの事前作成を行います.
+	 */
+	protected void register(String dir, boolean warm) {
+		final File d = new File(dir);
+		if(!d.isDirectory()) {
+			return;
+		}
+		final String name;
+		try {
+			name = d.getCanonicalPath().replace('\\', '/') + "/";
+			final WatchKey key = Paths.get(name).register(service,
+				StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_DELETE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+			keys.put(key, name);
+		} catch(Exception e) {
+			LogFactory.getInstance().get().warn(
+				"Failed to watch the directory: " + dir, e);
+			return;
+		}
+		// サブディレクトリを登録.
+		final File[] list = d.listFiles();
+		final int len = list == null ? 0 : list.length;
+		for(int i = 0; i < len; i ++) {
+			if(list[i].isDirectory()) {
+				register(name + list[i].getName(), warm);
+			} else if(warm) {
+				warmup(name + list[i].getName());
+			}
+		}
+	}
+
+	// Etagの事前作成を登録.
+	private final void warmup(final String path) {
+		if(path.substring(path.lastIndexOf("/") + 1).startsWith(".")) {
+			return;
+		}
+		synchronized(this) {
+			if(warmup == null) {
+				// 処理が無くなったスレッドは終了させる.
+				final int n = warmupThreads <= 0 ? 1 : warmupThreads;
+				final ThreadPoolExecutor e = new ThreadPoolExecutor(
+					n, n, KEEP_ALIVE, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							final Thread t = new Thread(r,
+								"quina-etag-warmup");
+							t.setDaemon(true);
+							return t;
+						}
+					});
+				e.allowCoreThreadTimeOut(true);
+				warmup = e;
+			}
+		}
+		warmup.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					manager.get(path);
+				} catch(Exception e) {}
+			}
+		});
+	}
+
+	/**
+	 * 監視処理を停止.
+	 */
+	protected void stopThread() {
+		try {
+			service.close();
+		} catch(Exception e) {}
+	}
+
+	@Override
+	public void run() {
+		WatchKey key;
+		String dir;
+		Path name;
+		while(true) {
+			try {
+				if((key = service.poll(1000L, TimeUnit.MILLISECONDS)) == null) {
+					continue;
+				}
+			} catch(ClosedWatchServiceException ce) {
+				break;
+			} catch(InterruptedException ie) {
+				break;
+			}
+			if((dir = keys.get(key)) == null) {
+				key.cancel();
+				continue;
+			}
+			for(WatchEvent<?> event : key.pollEvents()) {
+				// イベントが溢れた場合は監視中のEtagを全て破棄.
+				if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					manager.invalidateAll();
+					continue;
+				}
+				name = (Path)event.context();
+				final String path = dir + name.toString();
+				manager.invalidate(path);
+				// 新しいディレクトリは監視対象に追加.
+				if(event.kind() == StandardWatchEventKinds.ENTRY_CREATE &&
+					new File(path).isDirectory()) {
+					register(path, false);
+				}
+			}
+			// 削除されたディレクトリは監視から除外.
+			if(!key.reset()) {
+				keys.remove(key);
+			}
+		}
+	}
+}
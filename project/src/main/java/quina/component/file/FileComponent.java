@@ -1,7 +1,13 @@
 package quina.component.file;
 
+import java.io.File;
+import java.nio.ByteBuffer;
+
 import quina.exception.QuinaException;
 import quina.http.HttpException;
+import quina.http.HttpRange;
+import quina.http.HttpStatus;
+import quina.http.Method;
 import quina.http.MimeTypes;
 import quina.http.Request;
 import quina.http.Response;
@@ -114,6 +120,10 @@ public class FileComponent implements FileAttributeComponent {
 	@Override
 	public void setEtagManager(EtagManager etagManager) {
 		this.etagManager = etagManager;
+		// ターゲットディレクトリを監視対象に登録.
+		if(etagManager != null) {
+			etagManager.watch(targetDir);
+		}
 	}
 
 	@Override
@@ -133,6 +143,14 @@ public class FileComponent implements FileAttributeComponent {
 		if(mimeType != null) {
 			res.setContentType(mimeType);
 		}
+		// メモリキャッシュが有効な場合.
+		final StaticFileCache fileCache = etagManager.getFileCache();
+		final StaticFileCache.Element ce;
+		if(fileCache != null && (ce = fileCache.get(path)) != null) {
+			// メモリキャッシュから送信.
+			sendCache(ce, req, res);
+			return;
+		}
 		// 拡張子がgzのファイルが存在しない場合.
 		if(!FileUtil.isFile(path + ".gz")) {
 			// 対象のファイルが存在しない場合.
@@ -157,14 +175,123 @@ public class FileComponent implements FileAttributeComponent {
 			// レスポンスのキャッシュモードに設定.
 			res.setCacheMode(cacheMode);
 		}
+		// Etagはキャッシュモードか、If-Range付きのRangeリクエストの
+		// 場合のみ取得する.
+		final String etag;
+		if(res.isCacheMode() || (req.getMethod() == Method.GET &&
+			req.getHeader().getString("Range") != null &&
+			req.getHeader().getString("If-Range") != null)) {
+			etag = etagManager.get(path);
+		} else {
+			etag = null;
+		}
+		// 条件付きリクエスト・Rangeリクエストを処理して送信.
+		final File f = new File(path);
+		send(req, res, etag, f.lastModified(), f.length(),
+			path, null, null);
+	}
+
+	/**
+	 * メモリキャッシュの内容を送信.
+	 * @param ce 対象のキャッシュ要素を設定します.
+	 * @param req 対象のリクエストを設定します.
+	 * @param res 対象のレスポンスを設定します.
+	 */
+	protected void sendCache(StaticFileCache.Element ce, Request req,
+		Response<?> res) {
+		StaticFileCache.Data data = ce.getPlain();
+		// gzipのデータが存在しない場合.
+		if(ce.getGzip() == null) {
+			// GzipモードはOff.
+			res.setGzip(false);
+		// gzipのデータが存在する場合.
+		} else {
+			// GzipモードはOn.
+			res.setGzip(true);
+			// gzipモードを正しく設定できた場合.
+			if(res.isGzip()) {
+				data = ce.getGzip();
+			}
+		}
+		// 対象のデータが存在しない場合.
+		if(data == null) {
+			// 404エラーを返却.
+			throw new HttpException(404);
+		}
+		// キャッシュモードが設定されてる場合.
+		if(cacheMode != null) {
+			// レスポンスのキャッシュモードに設定.
+			res.setCacheMode(cacheMode);
+		}
+		// 条件付きリクエスト・Rangeリクエストを処理して送信.
+		send(req, res, data.getEtag(), data.getLastModified(),
+			data.getBuffer().remaining(), null, data.getBuffer(),
+			ce.getMimeType());
+	}
+
+	/**
+	 * 条件付きリクエスト・Rangeリクエストを処理して送信.
+	 * @param req 対象のリクエストを設定します.
+	 * @param res 対象のレスポンスを設定します.
+	 * @param etag 対象のEtagを設定します.
+	 * @param lastModified 対象の最終更新時間を設定します.
+	 * @param length 対象のデータ長を設定します.
+	 * @param path 送信対象のファイル名を設定します.
+	 *             nullの場合はbufの内容を送信します.
+	 * @param buf 送信対象のキャッシュデータを設定します.
+	 * @param mimeType キャッシュデータのMimeTypeを設定します.
+	 */
+	protected void send(Request req, Response<?> res, String etag,
+		long lastModified, long length, String path, ByteBuffer buf,
+		String mimeType) {
+		final AbstractResponse<?> ares = (AbstractResponse<?>)res;
 		// キャッシュがONの場合、Etag定義の確認.
-		if(etagManager.setResponse(path, req, res)) {
+		if(etagManager.setResponseByEtag(etag, req, res)) {
 			// 接続元と一致の場合はキャッシュ処理として0byteBody返却.
-			ResponseUtil.send((AbstractResponse<?>)res);
-		// キャッシュがOffかEtagが存在しない場合.
+			ResponseUtil.send(ares);
+			return;
+		}
+		// キャッシュがONの場合、最終更新日の確認.
+		if(res.isCacheMode() && lastModified > 0L) {
+			res.getHeader().put("Last-Modified",
+				HttpRange.lastModified(lastModified));
+			// If-None-Matchが存在しない場合のみIf-Modified-Sinceを確認.
+			if(req.getHeader().getString("If-None-Match") == null &&
+				HttpRange.isNotModified(
+					req.getHeader().getString("If-Modified-Since"),
+					lastModified)) {
+				// 更新されていない場合は0byteBody返却.
+				res.setStatus(HttpStatus.NotModified);
+				ResponseUtil.send(ares);
+				return;
+			}
+		}
+		// Rangeリクエストを受け付ける.
+		res.getHeader().put("Accept-Ranges", HttpRange.BYTES);
+		long[] ranges = null;
+		if(req.getMethod() == Method.GET) {
+			final String range = req.getHeader().getString("Range");
+			// If-Rangeが一致しない場合は全体を送信.
+			if(range != null && HttpRange.isIfRange(
+				req.getHeader().getString("If-Range"), etag, lastModified)) {
+				ranges = HttpRange.parse(range, length);
+			}
+		}
+		// Rangeリクエストでない場合は普通に送信.
+		if(ranges == null) {
+			if(path != null) {
+				ResponseUtil.sendFile(ares, path);
+			} else {
+				ResponseUtil.sendBuffer(ares, buf, mimeType);
+			}
+		// 範囲外の場合.
+		} else if(ranges.length == 0) {
+			ResponseUtil.sendRangeNotSatisfiable(ares, length);
+		// 指定範囲を送信.
+		} else if(path != null) {
+			ResponseUtil.sendFileRange(ares, path, length, ranges);
 		} else {
-			// 普通に送信.
-			ResponseUtil.sendFile((AbstractResponse<?>)res, path);
+			ResponseUtil.sendBufferRange(ares, buf, mimeType, ranges);
 		}
 	}
 }
@@ -1,7 +1,9 @@
 package quina.component.file;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
+import quina.Quina;
 import quina.component.Component;
 import quina.component.ComponentConstants;
 import quina.component.ComponentType;
@@ -102,6 +104,15 @@ public class ResourceFileComponent implements Component {
 		if(mimeType != null) {
 			res.setContentType(mimeType);
 		}
+		// メモリキャッシュが有効な場合.
+		final StaticFileCache fileCache = Quina.get().getEtagManagerInfo()
+			.getEtagManager().getFileCache();
+		final StaticFileCache.Element ce;
+		if(fileCache != null && (ce = fileCache.getResource(path)) != null) {
+			// メモリキャッシュから送信.
+			sendCache(ce, res);
+			return;
+		}
 		// 拡張子がgzのファイルが存在しない場合.
 		if(!ResourceUtil.isFile(path + ".gz")) {
 			// 対象のファイルが存在しない場合.
@@ -136,4 +147,31 @@ public class ResourceFileComponent implements Component {
 			throw new HttpException(e);
 		}
 	}
+
+	// メモリキャッシュの内容を送信.
+	private static final void sendCache(StaticFileCache.Element ce,
+		Response<?> res) {
+		ByteBuffer data = ce.getPlain() == null ? null :
+			ce.getPlain().getBuffer();
+		// gzipのデータが存在しない場合.
+		if(ce.getGzip() == null) {
+			// GzipモードはOff.
+			res.setGzip(false);
+		// gzipのデータが存在する場合.
+		} else {
+			// GzipモードはOn.
+			res.setGzip(true);
+			// gzipモードを正しく設定できた場合.
+			if(res.isGzip()) {
+				data = ce.getGzip().getBuffer();
+			}
+		}
+		// 対象のデータが存在しない場合.
+		if(data == null) {
+			// 404エラーを返却.
+			throw new HttpException(404);
+		}
+		ResponseUtil.sendBuffer((AbstractResponse<?>)res, data,
+			ce.getMimeType());
+	}
 }
@@ -0,0 +1,450 @@
+package quina.component.file;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import quina.http.MimeTypes;
+import quina.util.ResourceUtil;
+
+/**
+ * 静的ファイルのメモリキャッシュ.
+ *
+ * FileComponent, ResourceFileComponent で送信する小さな
+ * ファイルの内容(通常とgzip)・MimeType・EtagをDirectBufferで
+ * 保持して、リクエスト毎のファイルオープンと読み込みを省略します.
+ *
+ * キャッシュ全体のサイズが最大サイズを超える場合は、最も長く
+ * 参照されていない要素から破棄します(LRU).
+ *
+ * キャッシュの有効性はファイルの更新時間で確認しますが、
+ * EtagManagerのディレクトリ監視対象のファイルは監視による
+ * 破棄で管理するので、更新時間の確認を行いません.
+ */
+public final class StaticFileCache {
+
+	// gzip拡張子.
+	private static final String GZ_EXTENSION = ".gz";
+
+	// リソースファイルのキャッシュキーの先頭.
+	private static final String RESOURCE_HEAD = "resource:";
+
+	// ファイルが存在しない場合.
+	private static final ByteBuffer NONE = ByteBuffer.allocate(0);
+
+	/**
+	 * １つのキャッシュデータ.
+	 */
+	public static final class Data {
+		// データ.
+		private final ByteBuffer buffer;
+		// ファイルの更新時間.
+		private final long mtime;
+		// Etag.
+		private String etag;
+		// ディレクトリ監視中.
+		private boolean watched;
+
+		protected Data(ByteBuffer buffer, long mtime) {
+			this.buffer = buffer;
+			this.mtime = mtime;
+		}
+
+		/**
+		 * データを取得.
+		 * 送信時はこのByteBufferをduplicateして利用します.
+		 * @return ByteBuffer 読み込み専用のByteBufferが返却されます.
+		 */
+		public ByteBuffer getBuffer() {
+			return buffer;
+		}
+
+		/**
+		 * Etagを取得.
+		 * @return String Etagが返却されます.
+		 */
+		public String getEtag() {
+			return etag;
+		}
+
+		/**
+		 * ファイルの更新時間を取得.
+		 * @return long ファイルの更新時間が返却されます.
+		 *              -1Lの場合はリソースファイルです.
+		 */
+		public long getLastModified() {
+			return mtime;
+		}
+	}
+
+	/**
+	 * １つのキャッシュ要素.
+	 */
+	public static final class Element {
+		// 通常のデータ.
+		private final Data plain;
+		// gzipのデータ.
+		private final Data gzip;
+		// MimeType.
+		private final String mimeType;
+		// データサイズ.
+		private final long size;
+		// 最終参照.
+		private volatile long access;
+
+		protected Element(Data plain, Data gzip, String mimeType) {
+			this.plain = plain;
+			this.gzip = gzip;
+			this.mimeType = mimeType;
+			this.size = (plain == null ? 0L : plain.buffer.capacity()) +
+				(gzip == null ? 0L : gzip.buffer.capacity());
+		}
+
+		/**
+		 * 通常のデータを取得.
+		 * @return Data 通常のデータが返却されます.
+		 *              nullの場合は存在しません.
+		 */
+		public Data getPlain() {
+			return plain == null || plain.buffer == NONE ? null : plain;
+		}
+
+		/**
+		 * gzipのデータを取得.
+		 * @return Data gzipのデータが返却されます.
+		 *              nullの場合は存在しません.
+		 */
+		public Data getGzip() {
+			return gzip == null || gzip.buffer == NONE ? null : gzip;
+		}
+
+		/**
+		 * MimeTypeを取得.
+		 * @return String MimeTypeが返却されます.
+		 */
+		public String getMimeType() {
+			return mimeType;
+		}
+	}
+
+	// キャッシュ.
+	private final Map<String, Element> cache =
+		new ConcurrentHashMap<String, Element>();
+
+	// キャッシュ全体のサイズ.
+	private final AtomicLong usedSize = new AtomicLong(0L);
+
+	// 参照順.
+	private final AtomicLong tick = new AtomicLong(0L);
+
+	// 破棄処理のロック.
+	private final Object evictLock = new Object();
+
+	// 対象のEtagManager.
+	private final EtagManager manager;
+
+	// キャッシュ全体の最大サイズ.
+	private final long maxSize;
+
+	// キャッシュ対象の最大ファイルサイズ.
+	private final long maxFileSize;
+
+	/**
+	 * コンストラクタ.
+	 * @param manager 対象のEtagManagerを設定します.
+	 * @param maxSize キャッシュ全体の最大サイズを設定します.
+	 * @param maxFileSize キャッシュ対象の最大ファイルサイズを設定します.
+	 */
+	protected StaticFileCache(EtagManager manager, long maxSize,
+		long maxFileSize) {
+		this.manager = manager;
+		this.maxSize = maxSize;
+		this.maxFileSize = maxFileSize;
+	}
+
+	/**
+	 * キャッシュ全体のサイズを取得.
+	 * @return long キャッシュ全体のサイズが返却されます.
+	 */
+	public long size() {
+		return usedSize.get();
+	}
+
+	/**
+	 * キャッシュを全てクリア.
+	 */
+	public void clear() {
+		final Iterator<Entry<String, Element>> it =
+			cache.entrySet().iterator();
+		while(it.hasNext()) {
+			remove(it.next());
+		}
+	}
+
+	/**
+	 * 指定パスのキャッシュを破棄.
+	 * @param path 対象のパスを設定します.
+	 */
+	protected void invalidate(String path) {
+		// gzipファイルの場合は元のファイル名のキャッシュを破棄.
+		if(path.endsWith(GZ_EXTENSION)) {
+			path = path.substring(0, path.length() - GZ_EXTENSION.length());
+		}
+		Element e = cache.get(path);
+		if(e != null) {
+			remove(path, e);
+			return;
+		}
+		// ディレクトリの場合は配下のキャッシュを破棄.
+		final String dir = path + "/";
+		final Iterator<Entry<String, Element>> it =
+			cache.entrySet().iterator();
+		Entry<String, Element> n;
+		while(it.hasNext()) {
+			if((n = it.next()).getKey().startsWith(dir)) {
+				remove(n);
+			}
+		}
+	}
+
+	/**
+	 * 指定ファイルのキャッシュを取得.
+	 * @param path 対象のファイルパスを設定します.
+	 * @return Element キャッシュ要素が返却されます.
+	 *                 nullの場合はキャッシュ対象外です.
+	 */
+	public Element get(String path) {
+		Element e = cache.get(path);
+		if(e != null) {
+			if(isValid(path, e)) {
+				e.access = tick.incrementAndGet();
+				return e;
+			}
+			remove(path, e);
+		}
+		// 新しく読み込む.
+		final boolean watched = manager.isWatchTarget(path);
+		final long version = manager.getWatchVersion();
+		final Data plain = loadFile(path);
+		final Data gzip = loadFile(path + GZ_EXTENSION);
+		if(plain == null || gzip == null ||
+			(plain.buffer == NONE && gzip.buffer == NONE)) {
+			return null;
+		}
+		// 読み込み中に監視による破棄が発生した場合は更新時間で確認する.
+		final boolean w = watched && version == manager.getWatchVersion();
+		e = new Element(
+			setData(plain, path, w),
+			setData(gzip, path + GZ_EXTENSION, w),
+			MimeTypes.getInstance().getMimeType(path));
+		put(path, e);
+		// 登録までに監視による破棄が発生した場合は、破棄で
+		// 削除されずに残る可能性があるのでキャッシュから外す.
+		if(w && version != manager.getWatchVersion()) {
+			remove(path, e);
+		}
+		return e;
+	}
+
+	/**
+	 * 指定リソースファイルのキャッシュを取得.
+	 * @param path 対象のリソースファイル名を設定します.
+	 * @return Element キャッシュ要素が返却されます.
+	 *                 nullの場合はキャッシュ対象外です.
+	 */
+	public Element getResource(String path) {
+		final String key = RESOURCE_HEAD + path;
+		Element e = cache.get(key);
+		if(e != null) {
+			e.access = tick.incrementAndGet();
+			return e;
+		}
+		// リソースファイルは変更されないので監視扱いで読み込む.
+		final Data plain = loadResource(path);
+		final Data gzip = loadResource(path + GZ_EXTENSION);
+		if(plain == null || gzip == null ||
+			(plain.buffer == NONE && gzip.buffer == NONE)) {
+			return null;
+		}
+		e = new Element(
+			plain.buffer == NONE ? null : plain,
+			gzip.buffer == NONE ? null : gzip,
+			MimeTypes.getInstance().getMimeType(path));
+		return put(key, e);
+	}
+
+	// キャッシュデータの付加情報をセット.
+	private final Data setData(Data d, String path, boolean watched) {
+		if(d.buffer == NONE) {
+			// 監視対象外の場合は存在しない事を更新時間で確認する.
+			return watched ? null : d;
+		}
+		d.watched = watched;
+		d.etag = manager.get(path);
+		return d;
+	}
+
+	// キャッシュが有効かチェック.
+	private final boolean isValid(String path, Element e) {
+		return isValid(path, e.plain) &&
+			isValid(path + GZ_EXTENSION, e.gzip);
+	}
+
+	// キャッシュデータが有効かチェック.
+	private static final boolean isValid(String path, Data d) {
+		if(d == null || d.watched) {
+			return true;
+		}
+		return mtime(path) == d.mtime;
+	}
+
+	// キャッシュに登録.
+	private final Element put(String key, Element e) {
+		if(e.size > maxSize) {
+			return e;
+		}
+		e.access = tick.incrementAndGet();
+		final Element old = cache.put(key, e);
+		if(old != null) {
+			usedSize.addAndGet(-old.size);
+		}
+		usedSize.addAndGet(e.size);
+		// 最大サイズを超える場合は古いものから破棄.
+		if(usedSize.get() > maxSize) {
+			evict();
+		}
+		return e;
+	}
+
+	// 最も長く参照されていない要素から破棄.
+	private final void evict() {
+		synchronized(evictLock) {
+			Entry<String, Element> n, min;
+			Iterator<Entry<String, Element>> it;
+			while(usedSize.get() > maxSize) {
+				min = null;
+				it = cache.entrySet().iterator();
+				while(it.hasNext()) {
+					n = it.next();
+					if(min == null || n.getValue().access <
+						min.getValue().access) {
+						min = n;
+					}
+				}
+				if(min == null) {
+					break;
+				}
+				remove(min);
+			}
+		}
+	}
+
+	// キャッシュを削除.
+	private final void remove(Entry<String, Element> n) {
+		remove(n.getKey(), n.getValue());
+	}
+
+	// キャッシュを削除.
+	private final void remove(String key, Element e) {
+		if(cache.remove(key, e)) {
+			usedSize.addAndGet(-e.size);
+		}
+	}
+
+	// ファイルを読み込む.
+	// null返却の場合はキャッシュ対象外.
+	private final Data loadFile(String path) {
+		FileChannel ch = null;
+		try {
+			final long mtime = mtime(path);
+			if(mtime == -1L) {
+				return new Data(NONE, -1L);
+			}
+			ch = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+			final long len = ch.size();
+			if(len > maxFileSize) {
+				return null;
+			}
+			final ByteBuffer b = ByteBuffer.allocateDirect((int)len);
+			while(b.hasRemaining()) {
+				if(ch.read(b) < 0) {
+					return null;
+				}
+			}
+			ch.close();
+			ch = null;
+			// 読み込み中に更新された場合はキャッシュしない.
+			if(mtime(path) != mtime) {
+				return null;
+			}
+			b.flip();
+			return new Data(b.asReadOnlyBuffer(), mtime);
+		} catch(Exception e) {
+			return null;
+		} finally {
+			if(ch != null) {
+				try {
+					ch.close();
+				} catch(Exception e) {}
+			}
+		}
+	}
+
+	// リソースファイルを読み込む.
+	// null返却の場合はキャッシュ対象外.
+	private final Data loadResource(String path) {
+		if(!ResourceUtil.isFile(path)) {
+			return new Data(NONE, -1L);
+		}
+		InputStream in = null;
+		try {
+			in = ResourceUtil.getInputStream(path);
+			int len;
+			final byte[] b = new byte[8192];
+			ByteBuffer buf = ByteBuffer.allocate(8192);
+			while((len = in.read(b)) != -1) {
+				if(buf.position() + len > maxFileSize) {
+					return null;
+				} else if(buf.remaining() < len) {
+					final ByteBuffer n = ByteBuffer.allocate(
+						Math.max(buf.capacity() << 1, buf.position() + len));
+					buf.flip();
+					n.put(buf);
+					buf = n;
+				}
+				buf.put(b, 0, len);
+			}
+			in.close();
+			in = null;
+			buf.flip();
+			final ByteBuffer ret = ByteBuffer.allocateDirect(buf.remaining());
+			ret.put(buf).flip();
+			final Data d = new Data(ret.asReadOnlyBuffer(), -1L);
+			d.watched = true;
+			return d;
+		} catch(Exception e) {
+			return null;
+		} finally {
+			if(in != null) {
+				try {
+					in.close();
+				} catch(Exception e) {}
+			}
+		}
+	}
+
+	// ファイル最終更新時間を取得.
+	// ファイルが存在しない場合は -1L を返却.
+	private static final long mtime(String path) {
+		final long ret = new File(path).lastModified();
+		return ret == 0L ? -1L : ret;
+	}
+}
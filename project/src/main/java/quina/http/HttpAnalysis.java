@@ -3,6 +3,7 @@ package quina.http;
 import java.io.IOException;
 import java.util.Map;
 
+import quina.json.BinaryJson;
 import quina.json.Json;
 import quina.net.nio.tcp.NioRecvBody;
 import quina.net.nio.tcp.NioRecvFileBody;
@@ -100,10 +101,15 @@ public class HttpAnalysis {
 			return null;
 		}
 		Object o;
-		// 文字列変換.
-		String v = req.getString();
 		// Body内容がJSON形式の場合.
 		String contentType = req.getHeader().get("Content-Type");
+		// バイナリJson変換の場合.
+		if(BinaryJson.isMimeType(contentType)) {
+			// 文字列変換せずにバイナリからデコード.
+			return returnParams(BinaryJson.decode(req.getBytes()));
+		}
+		// 文字列変換.
+		String v = req.getString();
 		// パラメータ解析のカスタム変換が存在する場合.
 		if(custom != null) {
 			o = custom.postParams(req, v, contentType);
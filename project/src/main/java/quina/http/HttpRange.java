@@ -0,0 +1,216 @@
+package quina.http;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import quina.util.DateUtil;
+
+/**
+ * Rangeリクエスト・条件付きリクエストの解析処理.
+ */
+public final class HttpRange {
+	private HttpRange() {}
+
+	/** Rangeの単位. **/
+	public static final String BYTES = "bytes";
+
+	// Rangeヘッダの先頭.
+	private static final String RANGE_HEAD = BYTES + "=";
+
+	// 受け付ける最大Range数.
+	private static final int MAX_RANGES = 16;
+
+	/**
+	 * Rangeヘッダを解析.
+	 *
+	 * 複数のRangeが指定された場合は、開始位置順に並べて
+	 * 重複・隣接するRangeをまとめます.
+	 *
+	 * @param value Rangeヘッダの内容を設定します.
+	 * @param length 対象コンテンツの長さを設定します.
+	 * @return long[] [開始位置, 終了位置] の組み合わせが返却されます.
+	 *                終了位置は送信対象に含まれます.
+	 *                nullの場合はRangeの指定が無効なので全体を送信します.
+	 *                長さ0の場合は範囲外(416)です.
+	 */
+	public static final long[] parse(String value, long length) {
+		if(value == null || length < 0L ||
+			!(value = value.trim()).regionMatches(
+				true, 0, RANGE_HEAD, 0, RANGE_HEAD.length())) {
+			return null;
+		}
+		final String[] list = value.substring(RANGE_HEAD.length()).split(",");
+		// 指定数が多すぎる場合はRange指定を無効にする.
+		if(list.length > MAX_RANGES) {
+			return null;
+		}
+		int p, len = 0;
+		long start, end;
+		String n;
+		final long[] ret = new long[list.length << 1];
+		for(int i = 0; i < list.length; i ++) {
+			n = list[i].trim();
+			if((p = n.indexOf("-")) == -1) {
+				return null;
+			// "-500" の場合は最後の500バイト.
+			} else if(p == 0) {
+				if((end = parseNumber(n.substring(1))) == -1L) {
+					return null;
+				} else if(end == 0L || length == 0L) {
+					continue;
+				}
+				start = Math.max(0L, length - end);
+				end = length - 1L;
+			} else {
+				if((start = parseNumber(n.substring(0, p))) == -1L) {
+					return null;
+				}
+				// "500-" の場合は500バイト目から最後まで.
+				if(p + 1 == n.length()) {
+					end = length - 1L;
+				} else if((end = parseNumber(n.substring(p + 1))) == -1L ||
+					end < start) {
+					return null;
+				}
+				// 開始位置が範囲外.
+				if(start >= length) {
+					continue;
+				}
+				end = Math.min(end, length - 1L);
+			}
+			ret[len ++] = start;
+			ret[len ++] = end;
+		}
+		if(len <= 2) {
+			return len == 0 ? new long[0] : new long[] {ret[0], ret[1]};
+		}
+		return merge(ret, len);
+	}
+
+	// 重複・隣接するRangeをまとめる.
+	private static final long[] merge(long[] ranges, int len) {
+		long s, e;
+		int j;
+		// 最大数が少ないので開始位置順に挿入ソート.
+		for(int i = 2; i < len; i += 2) {
+			s = ranges[i];
+			e = ranges[i + 1];
+			for(j = i - 2; j >= 0 && ranges[j] > s; j -= 2) {
+				ranges[j + 2] = ranges[j];
+				ranges[j + 3] = ranges[j + 1];
+			}
+			ranges[j + 2] = s;
+			ranges[j + 3] = e;
+		}
+		int n = 2;
+		for(int i = 2; i < len; i += 2) {
+			if(ranges[i] <= ranges[n - 1] + 1L) {
+				ranges[n - 1] = Math.max(ranges[n - 1], ranges[i + 1]);
+			} else {
+				ranges[n ++] = ranges[i];
+				ranges[n ++] = ranges[i + 1];
+			}
+		}
+		return Arrays.copyOf(ranges, n);
+	}
+
+	// 数値を取得.
+	// 数字以外が含まれる場合は -1L を返却.
+	private static final long parseNumber(String n) {
+		final int len = (n = n.trim()).length();
+		if(len == 0 || len > 18) {
+			return -1L;
+		}
+		char c;
+		long ret = 0L;
+		for(int i = 0; i < len; i ++) {
+			if((c = n.charAt(i)) < '0' || c > '9') {
+				return -1L;
+			}
+			ret = (ret * 10L) + (long)(c - '0');
+		}
+		return ret;
+	}
+
+	/**
+	 * Content-Rangeヘッダの内容を取得.
+	 * @param start 開始位置を設定します.
+	 * @param end 終了位置を設定します.
+	 * @param length 対象コンテンツの長さを設定します.
+	 * @return String Content-Rangeヘッダの内容が返却されます.
+	 */
+	public static final String contentRange(long start, long end, long length) {
+		return new StringBuilder(BYTES).append(" ")
+			.append(start).append("-").append(end).append("/").append(length)
+			.toString();
+	}
+
+	/**
+	 * 範囲外(416)のContent-Rangeヘッダの内容を取得.
+	 * @param length 対象コンテンツの長さを設定します.
+	 * @return String Content-Rangeヘッダの内容が返却されます.
+	 */
+	public static final String unsatisfiedRange(long length) {
+		return BYTES + " */" + length;
+	}
+
+	/**
+	 * If-Rangeヘッダの条件が一致するかチェック.
+	 * @param ifRange If-Rangeヘッダの内容を設定します.
+	 * @param etag 対象コンテンツのEtagを設定します.
+	 * @param lastModified 対象コンテンツの最終更新時間(ミリ秒)を設定します.
+	 * @return boolean trueの場合はRangeリクエストを処理します.
+	 */
+	public static final boolean isIfRange(String ifRange, String etag,
+		long lastModified) {
+		// If-Rangeが存在しない場合.
+		if(ifRange == null || (ifRange = ifRange.trim()).isEmpty()) {
+			return true;
+		// 弱いEtagは一致扱いにしない.
+		} else if(ifRange.startsWith("W/")) {
+			return false;
+		// Etagと一致する場合.
+		} else if(etag != null && ifRange.equals(etag)) {
+			return true;
+		// Etagの場合は日付として扱わない.
+		} else if(ifRange.startsWith("\"") || lastModified <= 0L) {
+			return false;
+		}
+		// 最終更新日と一致する場合.
+		final Date d = toDate(ifRange);
+		return d != null && d.getTime() / 1000L == lastModified / 1000L;
+	}
+
+	/**
+	 * If-Modified-Sinceヘッダの日付以降に更新されていないかチェック.
+	 * @param ifModifiedSince If-Modified-Sinceヘッダの内容を設定します.
+	 * @param lastModified 対象コンテンツの最終更新時間(ミリ秒)を設定します.
+	 * @return boolean trueの場合は更新されていません(304).
+	 */
+	public static final boolean isNotModified(String ifModifiedSince,
+		long lastModified) {
+		if(ifModifiedSince == null || lastModified <= 0L) {
+			return false;
+		}
+		final Date d = toDate(ifModifiedSince);
+		return d != null && lastModified / 1000L <= d.getTime() / 1000L;
+	}
+
+	/**
+	 * Last-Modifiedヘッダの内容を取得.
+	 * @param lastModified 対象コンテンツの最終更新時間(ミリ秒)を設定します.
+	 * @return String Last-Modifiedヘッダの内容が返却されます.
+	 */
+	public static final String lastModified(long lastModified) {
+		return DateUtil.toRfc822(false, new Date(lastModified));
+	}
+
+	// Httpタイムスタンプを日付に変換.
+	private static final Date toDate(String value) {
+		try {
+			return DateUtil.toRfc822(value);
+		} catch(Exception e) {
+			return null;
+		}
+	}
+}
@@ -17,6 +17,7 @@ public final class HttpReceiveChunked {
 	//
 	// 0
 	// ¥r¥n
+	// (trailer ¥r¥n)*
 	// ¥r¥n
 
 	// Nio受信バッファ.
@@ -25,6 +26,9 @@ public final class HttpReceiveChunked {
 	// 受信完了フラグ.
 	private boolean eof = false;
 
+	// 終端チャンク受信後のトレーラー読み込み中.
+	private boolean trailer = false;
+
 	// １つのチャンク受信長.
 	private int chunkedBodyLength = -1;
 
@@ -110,6 +114,22 @@ public final class HttpReceiveChunked {
 		// 基本的にchunked単位の情報を受信して、指定バッファにデータをセットする.
 		// 対象バッファが満タンになった場合はループを抜ける.
 		while(len > off && nioBuffer.size() != 0) {
+			// 終端チャンク受信後の場合.
+			// 接続を再利用できるように終端の空行まで読み込み、
+			// トレーラーは読み飛ばす.
+			if(trailer) {
+				p = nioBuffer.indexOf(HttpConstants.END_LINE);
+				if(p == -1) {
+					break;
+				}
+				nioBuffer.skip(p + HttpConstants.END_LINE_LENGTH);
+				// 空行の場合は終端.
+				if(p == 0) {
+					eof = true;
+					break;
+				}
+				continue;
+			}
 			// chunkedBodyLengthが取得できていない場合.
 			if(chunkedBodyLength == -1) {
 				// chunkedBodyLength + ¥r¥n を検索.
@@ -130,9 +150,9 @@ public final class HttpReceiveChunked {
 				n = toHex(lengthBuffer, 0, p);
 				// chunkedBodyLengthが0の場合はchunkedの終端.
 				if(n == 0) {
-					// 終端を検出した場合はループを抜ける.
-					eof = true;
-					break;
+					// 終端の空行とトレーラーを読み込む.
+					trailer = true;
+					continue;
 				}
 				// chunkedの開始.
 				chunkedBodyPosition = 0;
@@ -30,6 +30,8 @@ public enum MediaType {
 	,JS("text/javascript", true)
 	/** JSON. **/
 	,JSON("application/json", true)
+	/** QuinaバイナリJSON. **/
+	,QUINA_BINARY("application/x-quina-binary", false)
 	/** ZIP. **/
 	,ZIP("application/zip", false)
 	/** TAR. **/
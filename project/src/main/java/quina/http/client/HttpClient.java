@@ -1,11 +1,8 @@
 package quina.http.client;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.Socket;
 import java.nio.ByteBuffer;
 
 import quina.http.Header;
@@ -23,12 +20,26 @@ import quina.net.nio.tcp.NioRecvMemBody;
 import quina.net.nio.tcp.NioSendData;
 import quina.net.nio.tcp.NioSendFileData;
 import quina.net.nio.tcp.client.NioClientConstants;
-import quina.net.nio.tcp.client.NioClientSocket;
+import quina.promise.Promise;
 import quina.util.Alphabet;
 import quina.util.NumberUtil;
 
 /**
  * [同期]HttpClient.
+ *
+ * 接続は接続先毎にKeep-Aliveでプールされて再利用されます.
+ * 接続プールの設定は NioClientConstants で行います.
+ * また async で接続処理を専用のスレッドで実行するPromiseを
+ * 取得できます.
+ *
+ * なお接続はブロッキングソケットで行うので、同期呼び出しでは
+ * 呼び出し元のスレッドが応答を受信するまで占有されます.
+ * Quinaのワーカースレッドからは async を利用して、
+ * リクエスト処理のワーカースレッドを占有しないようにしてください.
+ * ワーカースレッドからの同期呼び出しで接続先毎の最大接続数に
+ * 達している場合は、接続の空きを待たずにエラーとなります.
+ * 大きなレスポンスや中継処理では stream でBodyを受信毎に
+ * HttpClientConsumer に渡せます.
  */
 public final class HttpClient {
 
@@ -106,6 +117,37 @@ public final class HttpClient {
 	}
 
 
+	/**
+	 * [BinaryJson]HttpClient接続.
+	 *
+	 * @param url 対象のURLを設定します.
+	 * @param value 送信するオブジェクトを設定します.
+	 * @param option 対象のオプションを設定します.
+	 * @return HttpResult 返却データが返されます.
+	 */
+	public static final HttpResult binary(
+		String url, Object value, HttpClientOption option) {
+		return binary(Method.POST, url, value, option);
+	}
+
+	/**
+	 * [BinaryJson]HttpClient接続.
+	 *
+	 * @param method メソッドを設定します.
+	 * @param url 対象のURLを設定します.
+	 * @param value 送信するオブジェクトを設定します.
+	 * @param option 対象のオプションを設定します.
+	 * @return HttpResult 返却データが返されます.
+	 */
+	public static final HttpResult binary(
+		Method method, String url, Object value,
+		HttpClientOption option) {
+		if(option == null) {
+			option = new HttpClientOption();
+		}
+		return connect(url, option.setBinary(value).setMethod(method));
+	}
+
 	/**
 	 * [DELETE]HttpClient接続.
 	 * @param url 対象のURLを設定します.
@@ -148,6 +190,72 @@ public final class HttpClient {
 		return connect(url, option.setMethod(Method.PATCH));
 	}
 
+	/**
+	 * [非同期]HttpClient接続.
+	 *
+	 * 接続処理はワーカースレッドではなく、最大スレッド数と
+	 * 最大待ち数が制限された専用のスレッドで実行されて、処理結果の
+	 * HttpResultがPromiseのthenに渡されます.
+	 * 接続自体はブロッキングソケットで行うので、専用スレッドは
+	 * 応答の受信まで占有されます.
+	 * 最大待ち数を超えた場合はPromiseのerrorに渡されます.
+	 * <例>
+	 * HttpClient.async(url, option)
+	 *   .then((action, value) -> {
+	 *     HttpResult result = (HttpResult)value;
+	 *     ...
+	 *   })
+	 *   .error((action, error) -> {
+	 *     ...
+	 *   })
+	 *   .start();
+	 *
+	 * @param url 対象のURLを設定します.
+	 * @param option 対象のオプションを設定します.
+	 * @return Promise 開始前のPromiseが返却されます.
+	 *                 start() で接続処理を開始します.
+	 */
+	public static final Promise async(
+		final String url, final HttpClientOption option) {
+		return new Promise((action) -> {
+			action.resolve(connect(url, option));
+		}, HttpClientPool.getAsyncExecutor());
+	}
+
+	/**
+	 * [逐次受信]HttpClient接続.
+	 *
+	 * レスポンスBodyをメモリや一時ファイルに保持せずに
+	 * 受信毎に consumer に渡します.
+	 * consumer の body 処理が終わるまで次の受信を行わないので
+	 * 処理先が詰まっている場合は接続先からの受信も一時停止します.
+	 * なおリダイレクトのレスポンスは consumer に渡されません.
+	 *
+	 * @param url 対象のURLを設定します.
+	 * @param option 対象のオプションを設定します.
+	 * @param consumer 受信処理を設定します.
+	 * @return HttpResult Bodyを含まない返却データが返されます.
+	 */
+	public static final HttpResult stream(
+		String url, HttpClientOption option, HttpClientConsumer consumer) {
+		if(consumer == null) {
+			throw new HttpClientException("consumer is not set.");
+		}
+		try {
+			return connect(url, option, consumer);
+		} catch(RuntimeException e) {
+			consumer.error(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * 接続プールでアイドル中の接続を全てクローズ.
+	 */
+	public static final void clearPool() {
+		HttpClientPool.clear();
+	}
+
 	// MethodがGETやDELETEの場合、URLに対してFormDataを付与.
 	private static final String appendUrlParams(
 		String url, HttpClientOption option) {
@@ -189,6 +297,12 @@ public final class HttpClient {
 	 */
 	public static final HttpResult connect(
 		String url, HttpClientOption option) {
+		return connect(url, option, null);
+	}
+
+	// HttpClient接続.
+	private static final HttpResult connect(
+		String url, HttpClientOption option, HttpClientConsumer consumer) {
 		String accessUrl;
 		HttpStatus state;
 		String location;
@@ -204,15 +318,11 @@ public final class HttpClient {
 			// MethodがGETで、FormDataが存在する場合はGETのパラメータ設定.
 			accessUrl = appendUrlParams(url, option);
 			// Httpアクセス.
-			ret = accessHttp(accessUrl, option);
+			ret = accessHttp(accessUrl, option, consumer);
 			// 処理結果のステータスを取得.
 			state = ret.getStatus();
 			// リダイレクト要求の場合.
-			if(HttpStatus.MovedPermanently == state ||
-				HttpStatus.MovedTemporarily == state ||
-				HttpStatus.SeeOther == state ||
-				HttpStatus.TemporaryRedirect == state ||
-				HttpStatus.PermanentRedirect == state) {
+			if(isRedirect(state.getState())) {
 				// リダイレクトが許可されていない場合.
 				if(RedirectMode.error == option.getRedirect()) {
 					throw new HttpClientException(
@@ -256,34 +366,51 @@ public final class HttpClient {
 		return ret;
 	}
 
+	// リダイレクト要求のステータスかチェック.
+	private static final boolean isRedirect(int status) {
+		return HttpStatus.MovedPermanently.getState() == status ||
+			HttpStatus.MovedTemporarily.getState() == status ||
+			HttpStatus.SeeOther.getState() == status ||
+			HttpStatus.TemporaryRedirect.getState() == status ||
+			HttpStatus.PermanentRedirect.getState() == status;
+	}
+
 	// 接続処理.
 	private static final HttpResult accessHttp(
-		String url, HttpClientOption option) {
-		Socket socket = null;
-		InputStream in = null;
-		OutputStream out = null;
+		String url, HttpClientOption option, HttpClientConsumer consumer) {
+		HttpClientPool.Connection conn = null;
 		try {
 			// URL解析.
 			String[] urlArray = parseUrl(url);
+			while(true) {
+				// 接続を取得.
+				conn = HttpClientPool.acquire(
+					"https".equals(urlArray[0]), urlArray[1],
+					NumberUtil.parseInt(urlArray[2]));
+				try {
+					// リクエスト送信.
+					createRequest(urlArray, conn.getOutputStream(), option,
+						conn.isPooled());
 
-			// リクエスト送信.
-			socket = createSocket(urlArray);
-			out = new BufferedOutputStream(socket.getOutputStream());
-
-			// リクエスト送信.
-			createRequest(urlArray, out, option);
-
-			// レスポンス受信.
-			in = new BufferedInputStream(socket.getInputStream());
-			HttpResult ret = receiveHttp(url, in, option);
+					// レスポンス受信.
+					HttpResult ret = receiveHttp(url, conn, option, consumer);
 
-			out.close();
-			out = null;
-			in.close();
-			in = null;
-			socket.close();
-			socket = null;
-			return ret;
+					// 接続を返却.
+					HttpClientPool.release(conn);
+					conn = null;
+					return ret;
+				} catch(Exception e) {
+					// 再利用した接続が切断されていた場合は
+					// 新しい接続で１度だけ再送する.
+					if(conn.isReused() && !conn.isReceived() &&
+						option.getBody() == null) {
+						HttpClientPool.close(conn);
+						conn = null;
+						continue;
+					}
+					throw e;
+				}
+			}
 		} catch(Exception e) {
 			// エラー発生の場合はbodyをクローズ.
 			if (option != null) {
@@ -297,23 +424,8 @@ public final class HttpClient {
 			// Internalエラー返却.
 			throw new HttpClientException(500, e);
 		} finally {
-			if (out != null) {
-				try {
-					out.close();
-				} catch (Exception ee) {
-				}
-			}
-			if (in != null) {
-				try {
-					in.close();
-				} catch (Exception ee) {
-				}
-			}
-			if (socket != null) {
-				try {
-					socket.close();
-				} catch (Exception ee) {
-				}
+			if (conn != null) {
+				HttpClientPool.close(conn);
 			}
 		}
 	}
@@ -361,15 +473,6 @@ public final class HttpClient {
 		return new String[] { protocol, domain, port, path };
 	}
 
-	// ソケット生成.
-	private static final Socket createSocket(String[] urlArray)
-		throws IOException {
-		return NioClientSocket.create(
-			"https".equals(urlArray[0]), urlArray[1],
-			NumberUtil.parseInt(urlArray[2]),
-			NioClientConstants.getTimeout());
-	}
-
 	// 文字コードを取得.
 	private static final String getOptionCharset(HttpClientOption option) {
 		String charset = option.getCharset();
@@ -381,7 +484,8 @@ public final class HttpClient {
 
 	// HTTPリクエストを作成.
 	private static final void createRequest(
-		String[] urlArray, OutputStream out, HttpClientOption option)
+		String[] urlArray, OutputStream out, HttpClientOption option,
+		boolean keepAlive)
 		throws IOException {
 		Header header = option.getHeaders();
 		Method method = option.getMethod();
@@ -414,7 +518,9 @@ public final class HttpClient {
 				.append("\r\n");
 		}
 		buf.append("Accept-Encoding:gzip,deflate\r\n");
-		buf.append("Connection:close\r\n");
+		// 接続プールを利用する場合はKeep-Alive.
+		buf.append(keepAlive ? "Connection:keep-alive\r\n" :
+			"Connection:close\r\n");
 		// ユーザ定義ヘッダを設定.
 		int hlen;
 		if (header != null && (hlen = header.size()) > 0) {
@@ -504,10 +610,13 @@ public final class HttpClient {
 	// データ受信.
 	@SuppressWarnings("resource")
 	private static final HttpResult receiveHttp(
-		String url, InputStream in, HttpClientOption option)
+		String url, HttpClientPool.Connection conn, HttpClientOption option,
+		HttpClientConsumer consumer)
 		throws IOException {
+		final InputStream in = conn.getInputStream();
 		int len, p;
 		boolean memFlg = true;
+		boolean endFlag = false;
 		final long maxBodyLength = HttpConstants
 			.getMaxRecvMemoryBodyLength();
 		final int binaryLength = NioConstants.getBufferSize();
@@ -515,13 +624,19 @@ public final class HttpClient {
 		NioBuffer recvBuf = new NioBuffer(NioConstants.getBufferSize());
 		HttpReceiveChunked recvChunked = null;
 		long contentLength = 0L;
+		long recvLength = 0L;
 		byte[] b = null;
 		int status = -1;
 		String message = "";
+		boolean http10 = false;
 		HttpResultImpl result = null;
 		NioRecvBody body = null;
+		// 逐次受信を行う場合.
+		HttpClientConsumer stream = null;
 		try {
-			while ((len = in.read(binary)) != -1) {
+			// Keep-Aliveの場合は受信完了で終了.
+			while (!endFlag && (len = in.read(binary)) != -1) {
+				conn.received();
 				// データ生成が行われていない場合.
 				if (result == null) {
 					// 受信ヘッダバッファに出力.
@@ -537,6 +652,7 @@ public final class HttpClient {
 							recvBuf.read(b, 0, p + 2);
 							String top = new String(b, 0, p + 2, "UTF8");
 							b = null;
+							http10 = top.startsWith("HTTP/1.0");
 							pp = top.indexOf(" ");
 							if(pp == -1) {
 								ppp = -1;
@@ -563,22 +679,49 @@ public final class HttpClient {
 						Header header = new HttpReceiveHeader(b);
 						b = null;
 						result = new HttpResultImpl(status, message, header);
-						// content-length.
-						String value = header.get("content-length");
-						if (NumberUtil.isNumeric(value)) {
-							contentLength = NumberUtil.parseLong(value);
+						// リダイレクト以外の場合は逐次受信.
+						if(consumer != null && !isRedirect(status)) {
+							stream = consumer;
+							memFlg = false;
+							stream.header(result);
 						}
-						// chunked.
-						else {
-							value = header.get("transfer-encoding");
-							if (Alphabet.eq("chunked", value)) {
-								contentLength = -1L;
+						// Bodyが存在しないレスポンス.
+						if(Method.HEAD == option.getMethod() ||
+							status == 204 || status == 304) {
+							contentLength = 0L;
+						} else {
+							// content-length.
+							String value = header.get("content-length");
+							if (NumberUtil.isNumeric(value)) {
+								contentLength = NumberUtil.parseLong(value);
+							}
+							// chunked.
+							else {
+								value = header.get("transfer-encoding");
+								if (Alphabet.eq("chunked", value)) {
+									contentLength = -1L;
+								// 切断までがBody.
+								} else {
+									contentLength = -2L;
+								}
 							}
 						}
+						// 接続の再利用可否を設定.
+						conn.setKeepAlive(contentLength != -2L &&
+							isKeepAlive(http10, header));
 						// ContentLengthが存在する場合.
 						if(contentLength > 0L) {
+							recvLength = recvBuf.size();
+							// 逐次受信の場合.
+							if(stream != null) {
+								body = new ConsumerRecvBody(stream);
+								// 受信Bodyに現在の残りデータを設定.
+								if(recvLength > 0L) {
+									body.write(recvBuf.toByteArray());
+								}
+								recvBuf.close();
 							// 一定以上のデータ長の場合は、一時ファイルで受け取る.
-							if(contentLength > maxBodyLength) {
+							} else if(contentLength > maxBodyLength) {
 								body = new NioRecvFileBody();
 								// 受信Bodyに現在の残りデータを設定.
 								body.write(recvBuf.toByteArray());
@@ -587,16 +730,19 @@ public final class HttpClient {
 								body = new NioRecvMemBody(recvBuf);
 							}
 							recvBuf = null;
+							endFlag = recvLength >= contentLength;
 							continue;
 						// チャンク受信の場合.
 						} else if(contentLength == -1) {
 							recvChunked = new HttpReceiveChunked(recvBuf);
-							body = new NioRecvMemBody();
+							body = stream != null ?
+								new ConsumerRecvBody(stream) : new NioRecvMemBody();
 							// 今回分のデータ読み込み.
 							while((len = recvChunked.read(binary)) > 0) {
 								body.write(binary, 0, len);
+								recvLength += len;
 								// データ長が一定以上を超えた場合.
-								if(memFlg && body.getLength() > maxBodyLength) {
+								if(memFlg && recvLength > maxBodyLength) {
 									// 一時ファイル処理に切り替える.
 									NioRecvFileBody d = new NioRecvFileBody();
 									d.write(binary, (NioRecvMemBody)body);
@@ -606,9 +752,29 @@ public final class HttpClient {
 								}
 							}
 							recvBuf = null;
+							endFlag = recvChunked.isEof();
+							continue;
+						// 切断まで受信する場合.
+						} else if(contentLength == -2L) {
+							recvLength = recvBuf.size();
+							// 逐次受信の場合.
+							if(stream != null) {
+								body = new ConsumerRecvBody(stream);
+								// 受信Bodyに現在の残りデータを設定.
+								if(recvLength > 0L) {
+									body.write(recvBuf.toByteArray());
+								}
+								recvBuf.close();
+							} else {
+								body = new NioRecvMemBody(recvBuf);
+							}
+							recvBuf = null;
 							continue;
 						}
+						// Bodyが存在しない場合は受信完了.
+						endFlag = true;
 					}
+					continue;
 				}
 				// チャンク受信の場合.
 				if(body != null) {
@@ -617,9 +783,9 @@ public final class HttpClient {
 						// 今回分のデータ読み込み.
 						while((len = recvChunked.read(binary)) > 0) {
 							body.write(binary, 0, len);
+							recvLength += len;
 							// データ長が一定以上を超えた場合.
-							if(memFlg &&
-								body.getLength() > maxBodyLength) {
+							if(memFlg && recvLength > maxBodyLength) {
 								// 一時ファイル処理に切り替える.
 								NioRecvFileBody d = new NioRecvFileBody();
 								d.write(binary, (NioRecvMemBody)body);
@@ -628,15 +794,41 @@ public final class HttpClient {
 								memFlg = false;
 							}
 						}
+						endFlag = recvChunked.isEof();
 					// 通常受信の場合.
 					} else {
 						body.write(binary, 0, len);
+						recvLength += len;
+						if(contentLength > 0L) {
+							endFlag = recvLength >= contentLength;
+						// 切断まで受信する場合でデータ長が一定以上を超えた場合.
+						} else if(memFlg && recvLength > maxBodyLength) {
+							// 一時ファイル処理に切り替える.
+							NioRecvFileBody d = new NioRecvFileBody();
+							d.write(binary, (NioRecvMemBody)body);
+							body.close();
+							body = d;
+							memFlg = false;
+						}
 					}
 				}
 			}
+			// 受信完了前に切断された場合は再利用しない.
+			if(!endFlag) {
+				conn.setKeepAlive(false);
+			}
 			// resultが取得できてない場合.
 			if(result == null) {
 				throw new HttpClientException("The connection has been lost.");
+			// 逐次受信の場合.
+			} else if(stream != null) {
+				// 切断までがBody以外で受信完了前に切断された場合.
+				if(!endFlag && contentLength != -2L) {
+					throw new HttpClientException(
+						"The connection has been lost.");
+				}
+				stream.end();
+				return result;
 			// resultが存在する場合、recvBodyをセット.
 			} else if(body == null || body.getLength() == 0L) {
 				return result;
@@ -653,6 +845,94 @@ public final class HttpClient {
 		}
 	}
 
+	// 受信Bodyを逐次受信処理に渡すNioRecvBody.
+	private static final class ConsumerRecvBody implements NioRecvBody {
+		private final HttpClientConsumer consumer;
+		private long length = 0L;
+		private boolean exitWrite = false;
+
+		private ConsumerRecvBody(HttpClientConsumer consumer) {
+			this.consumer = consumer;
+		}
+
+		@Override
+		public void close() throws IOException {
+			exitWrite = true;
+		}
+
+		@Override
+		public int write(byte[] bin) throws IOException {
+			return write(bin, 0, bin.length);
+		}
+
+		@Override
+		public int write(byte[] bin, int len) throws IOException {
+			return write(bin, 0, len);
+		}
+
+		@Override
+		public int write(byte[] bin, int off, int len) throws IOException {
+			if(len > 0) {
+				consumer.body(bin, off, len);
+				length += len;
+			}
+			return len;
+		}
+
+		@Override
+		public int write(ByteBuffer buf) throws IOException {
+			final int len = buf.remaining();
+			if(buf.hasArray()) {
+				write(buf.array(), buf.arrayOffset() + buf.position(), len);
+				buf.position(buf.limit());
+				return len;
+			}
+			final byte[] bin = new byte[len];
+			buf.get(bin);
+			return write(bin, 0, len);
+		}
+
+		@Override
+		public long remaining() {
+			return 0L;
+		}
+
+		@Override
+		public boolean hasRemaining() {
+			return false;
+		}
+
+		@Override
+		public void exitWrite() {
+			exitWrite = true;
+		}
+
+		@Override
+		public boolean isExitWrite() {
+			return exitWrite;
+		}
+
+		@Override
+		public long getLength() {
+			return length;
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			throw new IOException("Body is passed to the consumer.");
+		}
+	}
+
+	// レスポンスの接続が再利用可能かチェック.
+	private static final boolean isKeepAlive(boolean http10, Header header) {
+		final String value = header.get("connection");
+		// HTTP/1.0はKeep-Aliveが指定された場合のみ.
+		if(http10) {
+			return Alphabet.eq("keep-alive", value);
+		}
+		return !Alphabet.eq("close", value);
+	}
+
 	/*
 	public static final void main(String[] args) throws Exception {
 		//System.setProperty("javax.net.debug", "all");
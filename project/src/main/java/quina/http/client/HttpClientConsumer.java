@@ -0,0 +1,50 @@
+package quina.http.client;
+
+import java.io.IOException;
+
+/**
+ * HttpClientのレスポンスBody逐次受信処理.
+ *
+ * HttpClient.stream で利用して、受信したBodyを
+ * メモリや一時ファイルに保持せずに受信毎に処理します.
+ * chunked受信の場合はデコード後のデータが渡されます.
+ *
+ * body の処理が終わるまで次の受信は行われないので、
+ * 処理先が詰まっている場合は body で待機する事で
+ * 接続先からの受信を一時停止できます.
+ */
+public interface HttpClientConsumer {
+	/**
+	 * レスポンスヘッダ受信.
+	 * @param result Bodyを含まない受信結果が設定されます.
+	 * @exception IOException I/O例外.
+	 */
+	default void header(HttpResult result) throws IOException {
+	}
+
+	/**
+	 * レスポンスBody受信.
+	 * @param bin 受信データが設定されます.
+	 *            この処理の呼び出し後に内容が変更されるので
+	 *            保持する場合はコピーしてください.
+	 * @param off 受信データの開始位置が設定されます.
+	 * @param len 受信データ長が設定されます.
+	 * @exception IOException I/O例外.
+	 */
+	public void body(byte[] bin, int off, int len) throws IOException;
+
+	/**
+	 * レスポンスBody受信完了.
+	 * @exception IOException I/O例外.
+	 */
+	default void end() throws IOException {
+	}
+
+	/**
+	 * 受信エラー.
+	 * 受信完了前に接続エラー等が発生した場合に呼び出されます.
+	 * @param e 発生した例外が設定されます.
+	 */
+	default void error(Throwable e) {
+	}
+}
@@ -13,6 +13,7 @@ import quina.http.HttpSendChunkedData;
 import quina.http.HttpSendHeader;
 import quina.http.MediaType;
 import quina.http.Method;
+import quina.json.BinaryJson;
 import quina.json.Json;
 import quina.net.nio.tcp.NioSendData;
 import quina.net.nio.tcp.NioSendFileData;
@@ -36,6 +37,7 @@ public class HttpClientOption {
 	private String charset = null;
 	private String bodyCharset = null;
 	private boolean jsonFlag = false;
+	private boolean binaryFlag = false;
 	private boolean fixFlag = false;
 
 	/**
@@ -56,6 +58,7 @@ public class HttpClientOption {
 		mimeType= null;
 		charset = null;
 		jsonFlag = false;
+		binaryFlag = false;
 		fixFlag = false;
 	}
 
@@ -104,6 +107,13 @@ public class HttpClientOption {
 		// JSONモードでの送信の場合.
 		if(jsonFlag) {
 			mime = MediaType.JSON.getMimeType();
+		// バイナリJsonモードでの送信の場合.
+		} else if(binaryFlag) {
+			mime = MediaType.QUINA_BINARY.getMimeType();
+			// レスポンスもバイナリJsonで受け取る.
+			if(!fixHeaders.containsKey("Accept")) {
+				fixHeaders.put("Accept", mime);
+			}
 		// Formデータが存在する場合.
 		} else if(formData != null && !formData.isEmpty()) {
 			// メソッドがGETかDELETE以外の場合.
@@ -140,7 +150,8 @@ public class HttpClientOption {
 			// mimeTypeが存在する場合.
 			if(s != null && !s.isEmpty()) {
 				// charsetが設定されている場合.
-				if(mimeCharset != null) {
+				// ただしバイナリJsonの場合は付与しない.
+				if(mimeCharset != null && !binaryFlag) {
 					s += ";charset=" + charset;
 				}
 				fixHeaders.put("Content-Type", s);
@@ -390,6 +401,7 @@ public class HttpClientOption {
 		this.body = null;
 		this.formData = null;
 		this.jsonFlag = false;
+		this.binaryFlag = false;
 		this.bodyCharset = null;
 	}
 
@@ -548,6 +560,29 @@ public class HttpClientOption {
 		return this;
 	}
 
+	/**
+	 * Body情報にバイナリJson情報をセット.
+	 * @param value 送信するオブジェクトを設定します.
+	 * @return HttpClientOption オブジェクトが返却されます.
+	 */
+	public HttpClientOption setBinary(Object value) {
+		if(value == null) {
+			throw new HttpClientException("body information is not set.");
+		}
+		checkFix();
+		NioSendData ns = null;
+		try {
+			ns = new NioSendMemData(BinaryJson.encode(value));
+		} catch(Exception e) {
+			throw new HttpClientException(e);
+		}
+		value = null;
+		nowBodyByClose();
+		this.body = ns;
+		this.binaryFlag = true;
+		return this;
+	}
+
 	/**
 	 * Body情報を設定.
 	 * この処理ではチャング送信でBodyを送信します.
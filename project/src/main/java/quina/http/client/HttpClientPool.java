@@ -0,0 +1,422 @@
+package quina.http.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import quina.net.nio.tcp.client.NioClientConstants;
+import quina.net.nio.tcp.client.NioClientSocket;
+import quina.util.AtomicNumber;
+import quina.worker.QuinaWorkerService;
+
+/**
+ * HttpClientの接続プール.
+ *
+ * 接続先(プロトコル・ドメイン・ポート)毎にKeep-Aliveの接続を
+ * 保持して、HttpClientの接続毎のTCP接続・TLSハンドシェイクを
+ * 省略します.
+ *
+ * 接続先毎の接続数は NioClientConstants.getMaxConnections() までで、
+ * 超える場合は接続が返却されるまでタイムアウト値の時間待機します.
+ * ただしQuinaのワーカースレッドからの呼び出しの場合は、
+ * ワーカースレッドを占有しないように待機せずにエラーとなります.
+ * また最大アイドル時間を超えた接続は定期的にクローズします.
+ *
+ * HttpClientの非同期接続は、ワーカースレッドではなく
+ * 最大スレッド数と最大待ち数が制限された専用のExecutorで
+ * 実行します.
+ */
+final class HttpClientPool {
+	private HttpClientPool() {}
+
+	// 接続先毎の接続プール.
+	private static final Map<String, HostPool> pools =
+		new ConcurrentHashMap<String, HostPool>();
+
+	// アイドル接続の破棄スレッド.
+	private static volatile ScheduledThreadPoolExecutor evictor = null;
+
+	// 非同期接続の実行スレッド.
+	private static volatile ThreadPoolExecutor asyncExecutor = null;
+
+	/**
+	 * １つの接続.
+	 */
+	protected static final class Connection {
+		// 接続先のプール.
+		private final HostPool pool;
+		// ソケット.
+		private final Socket socket;
+		// 受信用InputStream.
+		private final InputStream in;
+		// 送信用OutputStream.
+		private final OutputStream out;
+		// 最終利用時間.
+		private long lastTime;
+		// プールから再利用された接続.
+		private boolean reused;
+		// レスポンスを受信した.
+		private boolean received;
+		// 接続を再利用可能.
+		private boolean keepAlive;
+
+		private Connection(HostPool pool, Socket socket)
+			throws IOException {
+			this.pool = pool;
+			this.socket = socket;
+			this.in = new BufferedInputStream(socket.getInputStream());
+			this.out = new BufferedOutputStream(socket.getOutputStream());
+		}
+
+		/**
+		 * 受信用InputStreamを取得.
+		 * @return InputStream InputStreamが返却されます.
+		 */
+		public InputStream getInputStream() {
+			return in;
+		}
+
+		/**
+		 * 送信用OutputStreamを取得.
+		 * @return OutputStream OutputStreamが返却されます.
+		 */
+		public OutputStream getOutputStream() {
+			return out;
+		}
+
+		/**
+		 * 接続プールで管理する接続かチェック.
+		 * @return boolean trueの場合はKeep-Aliveで接続します.
+		 */
+		public boolean isPooled() {
+			return pool != null;
+		}
+
+		/**
+		 * プールから再利用された接続かチェック.
+		 * @return boolean trueの場合は再利用された接続です.
+		 */
+		public boolean isReused() {
+			return reused;
+		}
+
+		/**
+		 * レスポンスを受信したかチェック.
+		 * @return boolean trueの場合はレスポンスを受信しています.
+		 */
+		public boolean isReceived() {
+			return received;
+		}
+
+		/**
+		 * レスポンスの受信を設定.
+		 */
+		public void received() {
+			received = true;
+		}
+
+		/**
+		 * 接続の再利用可否を設定.
+		 * @param keepAlive trueの場合は接続を再利用します.
+		 */
+		public void setKeepAlive(boolean keepAlive) {
+			this.keepAlive = keepAlive;
+		}
+
+		// 再利用可能な接続かチェック.
+		private final boolean isAlive(long now, long idleTimeout) {
+			try {
+				// 切断されているか、予期しない受信データが存在する場合.
+				return !socket.isClosed() && !socket.isInputShutdown() &&
+					now - lastTime < idleTimeout && in.available() == 0;
+			} catch(Exception e) {
+				return false;
+			}
+		}
+
+		// クローズ処理.
+		private final void close() {
+			try {
+				socket.close();
+			} catch(Exception e) {}
+		}
+	}
+
+	/**
+	 * 接続先毎の接続プール.
+	 */
+	private static final class HostPool {
+		// アイドル中の接続.
+		private final ConcurrentLinkedDeque<Connection> idle =
+			new ConcurrentLinkedDeque<Connection>();
+		// 利用中とアイドル中を合わせた接続数.
+		private int count = 0;
+
+		// 接続枠を確保.
+		// noWaitがtrueの場合は接続枠が空くまで待機しない.
+		private final synchronized boolean reserve(long timeout,
+			boolean noWait)
+			throws InterruptedException {
+			final int max = NioClientConstants.getMaxConnections();
+			final long end = timeout <= 0L ? -1L :
+				System.currentTimeMillis() + timeout;
+			long wait;
+			while(count >= max) {
+				// アイドル中の接続が返却された場合.
+				if(!idle.isEmpty()) {
+					return false;
+				} else if(noWait) {
+					throw new HttpClientException(
+						"Connection pool limit exceeded " +
+						"(a worker thread does not wait for the pool).");
+				} else if(end == -1L) {
+					wait(0L);
+				} else if((wait = end - System.currentTimeMillis()) <= 0L) {
+					throw new HttpClientException(
+						"Connection pool limit exceeded.");
+				} else {
+					wait(wait);
+				}
+			}
+			count ++;
+			return true;
+		}
+
+		// 接続枠を解放.
+		private final synchronized void release() {
+			count --;
+			notify();
+		}
+
+		// 接続の返却を通知.
+		private final synchronized void returned() {
+			notify();
+		}
+
+		// 最大アイドル時間を超えた接続をクローズ.
+		private final void evict(long now, long idleTimeout) {
+			Connection c;
+			final Iterator<Connection> it = idle.iterator();
+			while(it.hasNext()) {
+				c = it.next();
+				if(!c.isAlive(now, idleTimeout) && idle.remove(c)) {
+					c.close();
+					release();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 接続を取得.
+	 * @param ssl trueの場合はSSLで接続します.
+	 * @param domain 接続先のドメインを設定します.
+	 * @param port 接続先のポート番号を設定します.
+	 * @return Connection 接続が返却されます.
+	 */
+	protected static final Connection acquire(boolean ssl, String domain,
+		int port) {
+		final long timeout = NioClientConstants.getTimeout();
+		// 接続プールが無効な場合.
+		if(!NioClientConstants.isConnectionPool()) {
+			return create(null, ssl, domain, port, timeout);
+		}
+		final String key = new StringBuilder(ssl ? "https://" : "http://")
+			.append(domain).append(":").append(port).toString();
+		HostPool hp = pools.get(key);
+		if(hp == null) {
+			hp = new HostPool();
+			final HostPool n = pools.putIfAbsent(key, hp);
+			if(n != null) {
+				hp = n;
+			}
+		}
+		final long idleTimeout = NioClientConstants.getPoolIdleTimeout();
+		// ワーカースレッドの場合は接続枠の空きを待たない.
+		final boolean noWait = QuinaWorkerService.isWorkerThread();
+		Connection c;
+		try {
+			while(true) {
+				// アイドル中の接続を再利用.
+				while((c = hp.idle.pollFirst()) != null) {
+					if(c.isAlive(System.currentTimeMillis(), idleTimeout)) {
+						c.reused = true;
+						c.received = false;
+						c.keepAlive = false;
+						return c;
+					}
+					c.close();
+					hp.release();
+				}
+				// 新しい接続枠が確保できた場合.
+				if(hp.reserve(timeout, noWait)) {
+					break;
+				}
+			}
+		} catch(InterruptedException ie) {
+			throw new HttpClientException(ie);
+		}
+		try {
+			return create(hp, ssl, domain, port, timeout);
+		} catch(RuntimeException e) {
+			hp.release();
+			throw e;
+		}
+	}
+
+	// 新しい接続を生成.
+	private static final Connection create(HostPool hp, boolean ssl,
+		String domain, int port, long timeout) {
+		final Socket socket = NioClientSocket.create(
+			ssl, domain, port, timeout);
+		try {
+			return new Connection(hp, socket);
+		} catch(IOException e) {
+			try {
+				socket.close();
+			} catch(Exception ee) {}
+			throw new HttpClientException(e);
+		}
+	}
+
+	/**
+	 * 接続を返却.
+	 * 再利用できない接続はクローズします.
+	 * @param c 対象の接続を設定します.
+	 */
+	protected static final void release(Connection c) {
+		if(c == null) {
+			return;
+		}
+		final HostPool hp = c.pool;
+		// 接続プール対象外か、再利用できない場合.
+		if(hp == null || !c.keepAlive ||
+			!NioClientConstants.isConnectionPool()) {
+			c.close();
+			if(hp != null) {
+				hp.release();
+			}
+			return;
+		}
+		c.lastTime = System.currentTimeMillis();
+		hp.idle.offerFirst(c);
+		hp.returned();
+		startEvictor();
+	}
+
+	/**
+	 * 接続をクローズ.
+	 * 通信エラー等で再利用できない接続の場合に呼び出します.
+	 * @param c 対象の接続を設定します.
+	 */
+	protected static final void close(Connection c) {
+		if(c == null) {
+			return;
+		}
+		c.close();
+		if(c.pool != null) {
+			c.pool.release();
+		}
+	}
+
+	/**
+	 * アイドル中の接続を全てクローズ.
+	 */
+	protected static final void clear() {
+		final Iterator<HostPool> it = pools.values().iterator();
+		while(it.hasNext()) {
+			final HostPool hp = it.next();
+			Connection c;
+			while((c = hp.idle.pollFirst()) != null) {
+				c.close();
+				hp.release();
+			}
+		}
+	}
+
+	/**
+	 * 非同期接続のExecutorを取得.
+	 * 最大スレッド数を超える接続は最大待ち数まで待機し、
+	 * 最大待ち数を超える場合は実行を拒否します.
+	 * @return Executor 非同期接続のExecutorが返却されます.
+	 */
+	protected static final Executor getAsyncExecutor() {
+		ThreadPoolExecutor ret = asyncExecutor;
+		if(ret != null) {
+			return ret;
+		}
+		synchronized(pools) {
+			if((ret = asyncExecutor) != null) {
+				return ret;
+			}
+			final int threads = NioClientConstants.getAsyncThreads();
+			final AtomicNumber no = new AtomicNumber(0);
+			ret = new ThreadPoolExecutor(threads, threads,
+				60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(
+					NioClientConstants.getAsyncQueue()),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						final Thread t = new Thread(r,
+							"quina-http-client-async-" + no.inc());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+			ret.allowCoreThreadTimeOut(true);
+			asyncExecutor = ret;
+			return ret;
+		}
+	}
+
+	// アイドル接続の破棄スレッドを開始.
+	private static final void startEvictor() {
+		if(evictor != null) {
+			return;
+		}
+		synchronized(pools) {
+			if(evictor != null) {
+				return;
+			}
+			final ScheduledThreadPoolExecutor e =
+				new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						final Thread t = new Thread(r,
+							"quina-http-client-evictor");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+			final long interval = Math.max(1000L,
+				NioClientConstants.getPoolIdleTimeout() >> 1);
+			e.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					final long now = System.currentTimeMillis();
+					final long idleTimeout =
+						NioClientConstants.getPoolIdleTimeout();
+					final Iterator<HostPool> it = pools.values().iterator();
+					while(it.hasNext()) {
+						it.next().evict(now, idleTimeout);
+					}
+				}
+			}, interval, interval, TimeUnit.MILLISECONDS);
+			evictor = e;
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package quina.http.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import quina.http.Header;
+import quina.http.HttpConstants;
+import quina.http.HttpStatus;
+import quina.http.Method;
+import quina.http.Request;
+import quina.http.server.response.AbstractResponse;
+import quina.http.server.response.ResponseUtil;
+import quina.net.nio.tcp.NioAsyncBuffer;
+import quina.util.Alphabet;
+
+/**
+ * HttpClientの受信結果をサーバーのレスポンスに中継する逐次受信処理.
+ *
+ * 受信したBodyはchunkedでレスポンスに送信します.
+ * 送信待ちのデータ長が最大バッファ長を超える場合は、送信が
+ * 進むまで受信を一時停止します.
+ * またレスポンス側の接続が切断された場合は受信を中断します.
+ * <例>
+ * HttpClient.stream(url, option, new HttpClientProxy(res));
+ */
+public class HttpClientProxy implements HttpClientConsumer {
+	// デフォルトの最大バッファ長.
+	private static final int DEF_MAX_BUFFER_LENGTH = 0x00010000;
+
+	// 中継しないヘッダ.
+	private static final String[] NOT_COPY_HEADERS = new String[] {
+		"connection", "keep-alive", "proxy-authenticate",
+		"proxy-authorization", "te", "trailer", "transfer-encoding",
+		"upgrade", "content-length", "content-type"
+	};
+
+	// 中継先のレスポンス.
+	private final AbstractResponse<?> response;
+	// 最大バッファ長.
+	private final int maxBufferLength;
+	// 送信バッファ.
+	private NioAsyncBuffer buffer;
+	// 送信バッファのOutputStream.
+	private OutputStream out;
+	// Bodyを送信しないレスポンスの場合.
+	private boolean noBody = false;
+
+	/**
+	 * コンストラクタ.
+	 * @param response 中継先のレスポンスを設定します.
+	 */
+	public HttpClientProxy(AbstractResponse<?> response) {
+		this(response, DEF_MAX_BUFFER_LENGTH);
+	}
+
+	/**
+	 * コンストラクタ.
+	 * @param response 中継先のレスポンスを設定します.
+	 * @param maxBufferLength 送信待ちの最大バッファ長を設定します.
+	 */
+	public HttpClientProxy(AbstractResponse<?> response, int maxBufferLength) {
+		if(response == null) {
+			throw new HttpClientException("response is not set.");
+		}
+		if(maxBufferLength < HttpConstants.getSendChunkedBufferLength()) {
+			maxBufferLength = HttpConstants.getSendChunkedBufferLength();
+		}
+		this.response = response;
+		this.maxBufferLength = maxBufferLength;
+	}
+
+	/**
+	 * レスポンスヘッダ受信.
+	 * @param result Bodyを含まない受信結果が設定されます.
+	 * @exception IOException I/O例外.
+	 */
+	@Override
+	public void header(HttpResult result) throws IOException {
+		final HttpStatus status = result.getStatus();
+		if(status != null && status != HttpStatus.NotSupportStatus) {
+			response.setStatus(status);
+			response.setMessage(result.getMessage());
+		}
+		// 受信データはそのまま中継するのでgzip圧縮しない.
+		response.setGzip(false);
+		final String contentType = result.getContentType();
+		if(contentType != null) {
+			response.setContentType(contentType);
+		}
+		// ヘッダを中継.
+		String key;
+		final Header src = result.getHeader();
+		final Header dest = response.getHeader();
+		final int len = src.size();
+		for(int i = 0; i < len; i ++) {
+			key = src.getKey(i);
+			if(Alphabet.eqArray(key, NOT_COPY_HEADERS) == -1) {
+				dest.put(key, src.getValue(i));
+			}
+		}
+		// Bodyを持たないレスポンスの場合はヘッダのみ送信.
+		if(isNoBody(status, response.getRequest())) {
+			noBody = true;
+			ResponseUtil.send(response);
+			return;
+		}
+		// chunkedで送信開始.
+		buffer = new NioAsyncBuffer(maxBufferLength);
+		ResponseUtil.sendInputStream(response, buffer.getInputStream(), -1L);
+		out = buffer.getOutputStream(HttpConstants.getSendChunkedBufferLength());
+	}
+
+	/**
+	 * レスポンスBody受信.
+	 * @param bin 受信データが設定されます.
+	 * @param off 受信データの開始位置が設定されます.
+	 * @param len 受信データ長が設定されます.
+	 * @exception IOException I/O例外.
+	 */
+	@Override
+	public void body(byte[] bin, int off, int len) throws IOException {
+		// Bodyを送信しない場合は破棄.
+		if(noBody) {
+			return;
+		}
+		// 送信待ちが最大バッファ長を超える場合は
+		// 送信されるまでここで待機する.
+		out.write(bin, off, len);
+		out.flush();
+	}
+
+	/**
+	 * レスポンスBody受信完了.
+	 * @exception IOException I/O例外.
+	 */
+	@Override
+	public void end() throws IOException {
+		if(out != null) {
+			out.close();
+			out = null;
+		}
+	}
+
+	// Bodyを持たないレスポンスかチェック.
+	// 1xx, 204, 304 とHEADリクエストのレスポンスはBodyを持たない.
+	private static final boolean isNoBody(HttpStatus status, Request req) {
+		final int no = status == null ? -1 : status.getState();
+		if((no >= 100 && no < 200) || no == 204 || no == 304) {
+			return true;
+		}
+		return req != null && req.getMethod() == Method.HEAD;
+	}
+
+	/**
+	 * 受信エラー.
+	 * @param e 発生した例外が設定されます.
+	 */
+	@Override
+	public void error(Throwable e) {
+		// 送信開始済みの場合は送信を中断する.
+		if(buffer != null) {
+			buffer.close();
+			out = null;
+		}
+	}
+}
@@ -6,6 +6,7 @@ import java.io.InputStream;
 import quina.http.Header;
 import quina.http.HttpAnalysis;
 import quina.http.HttpStatus;
+import quina.json.BinaryJson;
 import quina.json.Json;
 import quina.net.nio.tcp.NioBuffer;
 
@@ -125,9 +126,14 @@ public interface HttpResult extends Closeable {
 
 	/**
 	 * JSONオブジェクトを取得.
+	 * レスポンスがバイナリJsonの場合はバイナリJsonとして
+	 * 変換します.
 	 * @return
 	 */
 	default Object getJson() {
+		if(BinaryJson.isMimeType(getContentType())) {
+			return BinaryJson.decode(getBody());
+		}
 		return Json.decode(getText());
 	}
 }
@@ -0,0 +1,174 @@
+package quina.http.server;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import quina.http.HttpElement;
+import quina.http.Method;
+import quina.http.Request;
+import quina.net.nio.tcp.NioSendData;
+
+/**
+ * Httpアクセスログ.
+ *
+ * リクエスト毎に method, url, status, bytes, latency, remote
+ * を固定スキーマのJSON１行で出力します.
+ *
+ * リクエストスレッドでは出力要素を登録するだけで、JSON変換と
+ * ファイル出力は専用スレッド(AccessLogWriter)でまとめて行います.
+ * またアクセスログが無効な場合はオブジェクト生成を行いません.
+ */
+public final class AccessLog {
+	private AccessLog() {}
+
+	// アクセスログ出力スレッド.
+	private static volatile AccessLogWriter writer = null;
+
+	// サンプリング率(0.0 - 1.0).
+	private static volatile double sampling = 1.0d;
+
+	// ルート毎の出力有無.
+	private static final Map<String, Boolean> routes =
+		new ConcurrentHashMap<String, Boolean>();
+
+	// ルート毎の出力有無が設定されているか.
+	private static volatile boolean routeFlag = false;
+
+	/**
+	 * アクセスログ出力を開始.
+	 * @param dir 出力先のディレクトリを設定します.
+	 * @param rate サンプリング率(0.0 - 1.0)を設定します.
+	 */
+	public static final void start(String dir, double rate) {
+		synchronized(AccessLog.class) {
+			if(writer != null) {
+				return;
+			}
+			setSampling(rate);
+			final AccessLogWriter w = new AccessLogWriter(dir);
+			w.startThread();
+			writer = w;
+		}
+	}
+
+	/**
+	 * アクセスログ出力を停止.
+	 */
+	public static final void stop() {
+		synchronized(AccessLog.class) {
+			final AccessLogWriter w = writer;
+			writer = null;
+			if(w != null) {
+				w.stopThread();
+			}
+		}
+	}
+
+	/**
+	 * アクセスログが有効かチェック.
+	 * @return boolean trueの場合有効です.
+	 */
+	public static final boolean isEnabled() {
+		return writer != null;
+	}
+
+	/**
+	 * 出力待ちの最大件数を超えて破棄したアクセスログの累計数を取得.
+	 * @return long 破棄した累計数が返却されます.
+	 *              アクセスログが無効な場合は0が返却されます.
+	 */
+	public static final long getDropCount() {
+		final AccessLogWriter w = writer;
+		return w == null ? 0L : w.getDropCount();
+	}
+
+	/**
+	 * サンプリング率を設定.
+	 * @param rate サンプリング率(0.0 - 1.0)を設定します.
+	 */
+	public static final void setSampling(double rate) {
+		sampling = rate < 0.0d ? 0.0d : (rate > 1.0d ? 1.0d : rate);
+	}
+
+	/**
+	 * サンプリング率を取得.
+	 * @return double サンプリング率が返却されます.
+	 */
+	public static final double getSampling() {
+		return sampling;
+	}
+
+	/**
+	 * ルート毎の出力有無を設定.
+	 * @param url 対象のコンポーネントURLを設定します.
+	 * @param enable falseの場合このルートは出力しません.
+	 */
+	public static final void setRoute(String url, boolean enable) {
+		routes.put(url, enable);
+		routeFlag = true;
+	}
+
+	/**
+	 * ルート毎の出力有無を削除.
+	 * @param url 対象のコンポーネントURLを設定します.
+	 */
+	public static final void removeRoute(String url) {
+		routes.remove(url);
+		routeFlag = !routes.isEmpty();
+	}
+
+	/**
+	 * アクセスログを登録.
+	 * @param em 対象のHttpElementを設定します.
+	 * @param status Httpステータスを設定します.
+	 * @param datas 送信データを設定します.
+	 */
+	public static final void write(HttpElement em, int status,
+		NioSendData... datas) {
+		final AccessLogWriter w = writer;
+		// アクセスログが無効.
+		if(w == null) {
+			return;
+		}
+		final double rate = sampling;
+		// サンプリング対象外.
+		if(rate < 1.0d &&
+			ThreadLocalRandom.current().nextDouble() >= rate) {
+			return;
+		}
+		final Request req = em.getRequest();
+		if(req == null) {
+			return;
+		}
+		final String url = req.getUrl();
+		// ルート毎の出力有無を確認.
+		if(routeFlag) {
+			final String route = req.getComponentUrl();
+			final Boolean b = routes.get(route == null ? url : route);
+			if(b != null && !b) {
+				return;
+			}
+		}
+		// 送信バイト数を取得.
+		long bytes = 0L;
+		long len;
+		final int dlen = datas == null ? 0 : datas.length;
+		for(int i = 0; i < dlen; i ++) {
+			if(datas[i] != null && (len = datas[i].length()) > 0L) {
+				bytes += len;
+			}
+		}
+		// 処理時間を取得.
+		long latency = -1L;
+		if(req instanceof HttpServerRequest) {
+			latency = System.nanoTime() -
+				((HttpServerRequest)req).getStartTime();
+		}
+		final Method method = req.getMethod();
+		final InetSocketAddress remote = em.getRemoteAddress();
+		w.push(new AccessLogWriter.Record(System.currentTimeMillis(),
+			method, url, status, bytes, latency, remote));
+	}
+}
@@ -0,0 +1,299 @@
+package quina.http.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Calendar;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import quina.http.Method;
+import quina.logger.LogFactory;
+import quina.thread.QuinaServiceThread;
+import quina.thread.QuinaWait;
+import quina.util.AtomicNumber;
+import quina.util.AtomicNumber64;
+import quina.util.FileUtil;
+
+/**
+ * アクセスログ出力スレッド.
+ *
+ * 登録されたアクセスログをJSON１行形式に変換して
+ * {dir}/access.{yyyyMMdd}.log にまとめて追記出力します.
+ */
+final class AccessLogWriter extends QuinaServiceThread<Object> {
+
+	// 出力待ちが無い場合の待機時間.
+	private static final int TIMEOUT = 500;
+
+	// １度にまとめて出力する最大件数.
+	private static final int MAX_BATCH = 2048;
+
+	// 出力待ちの最大件数.
+	// これを超える場合は登録せずに破棄します.
+	private static final int MAX_QUEUE = 65536;
+
+	// 出力ファイル名の先頭.
+	private static final String HEAD_NAME = "access.";
+
+	// 出力ファイル名の拡張子.
+	private static final String EXTENSION = ".log";
+
+	/**
+	 * アクセスログ要素.
+	 */
+	protected static final class Record {
+		protected final long time;
+		protected final Method method;
+		protected final String url;
+		protected final int status;
+		protected final long bytes;
+		protected final long latency;
+		protected final InetSocketAddress remote;
+
+		protected Record(long time, Method method, String url, int status,
+			long bytes, long latency, InetSocketAddress remote) {
+			this.time = time;
+			this.method = method;
+			this.url = url;
+			this.status = status;
+			this.bytes = bytes;
+			this.latency = latency;
+			this.remote = remote;
+		}
+	}
+
+	// 出力待ちのアクセスログ.
+	private final Queue<Record> queue =
+		new ConcurrentLinkedQueue<Record>();
+
+	// 出力待ちの件数.
+	private final AtomicNumber queueSize = new AtomicNumber(0);
+
+	// 出力待ちの最大件数を超えて破棄した累計数.
+	private final AtomicNumber64 dropCount = new AtomicNumber64(0L);
+
+	// 待機オブジェクト.
+	private final QuinaWait wait = new QuinaWait();
+
+	// 出力先ディレクトリ.
+	private final String dir;
+
+	// JSON変換用バッファ.
+	private final StringBuilder buf = new StringBuilder(8192);
+
+	// 出力先のFileChannel.
+	private FileChannel channel = null;
+
+	// 出力中ファイルの日付の終了時間.
+	private long dayEnd = 0L;
+
+	/**
+	 * コンストラクタ.
+	 * @param dir 出力先のディレクトリを設定します.
+	 */
+	protected AccessLogWriter(String dir) {
+		if(dir == null || dir.isEmpty()) {
+			dir = "./log";
+		}
+		this.dir = dir.endsWith("/") ? dir : dir + "/";
+	}
+
+	/**
+	 * アクセスログを登録.
+	 * 出力待ちの最大件数を超える場合は破棄します.
+	 * @param rec 対象のアクセスログを設定します.
+	 */
+	protected void push(Record rec) {
+		if(queueSize.inc() > MAX_QUEUE) {
+			queueSize.dec();
+			dropCount.inc();
+			return;
+		}
+		queue.offer(rec);
+		// 出力スレッドに通知.
+		wait.signal();
+	}
+
+	/**
+	 * 出力待ちの最大件数を超えて破棄した累計数を取得.
+	 * @return long 破棄した累計数が返却されます.
+	 */
+	protected long getDropCount() {
+		return dropCount.get();
+	}
+
+	/**
+	 * 新しい要素をセット.
+	 */
+	@Override
+	public void offer(Object value) {
+		wait.signal();
+	}
+
+	/**
+	 * 出力待ちが無い場合は一定時間待機.
+	 */
+	@Override
+	protected Object poll() {
+		if(queue.isEmpty()) {
+			wait.await(TIMEOUT);
+		}
+		return null;
+	}
+
+	/**
+	 * 出力処理.
+	 */
+	@Override
+	protected void executeCall(Object call)
+		throws Throwable {
+		flush();
+	}
+
+	/**
+	 * エラースレッドコール.
+	 */
+	@Override
+	protected void errorThreadCall(Object call, Throwable t) {
+		LogFactory.getInstance().get().error(
+			"Failed to write the access log.", t);
+	}
+
+	/**
+	 * 後始末実行.
+	 */
+	@Override
+	protected void cleanUpCall() {
+		try {
+			// 残りのアクセスログを全て出力.
+			while(!queue.isEmpty()) {
+				flush();
+			}
+		} catch(Exception e) {
+			LogFactory.getInstance().get().error(
+				"Failed to write the access log.", e);
+		} finally {
+			closeChannel();
+		}
+	}
+
+	// 出力待ちのアクセスログをまとめて出力.
+	private final void flush() throws IOException {
+		Record rec;
+		int cnt = 0;
+		buf.setLength(0);
+		while(cnt < MAX_BATCH && (rec = queue.peek()) != null) {
+			// 日付が変わった場合は前日分を出力してファイルを切り替える.
+			if(rec.time >= dayEnd) {
+				write();
+				open(rec.time);
+			}
+			queue.poll();
+			queueSize.dec();
+			appendJson(rec);
+			cnt ++;
+		}
+		write();
+	}
+
+	// 変換済みのJSONを出力.
+	private final void write() throws IOException {
+		if(buf.length() == 0) {
+			return;
+		}
+		final ByteBuffer b = ByteBuffer.wrap(
+			buf.toString().getBytes(StandardCharsets.UTF_8));
+		buf.setLength(0);
+		while(b.hasRemaining()) {
+			channel.write(b);
+		}
+	}
+
+	// 指定時間の日付のファイルをオープン.
+	private final void open(long time) throws IOException {
+		closeChannel();
+		final Calendar cal = Calendar.getInstance();
+		cal.setTimeInMillis(time);
+		final int y = cal.get(Calendar.YEAR);
+		final int m = cal.get(Calendar.MONTH) + 1;
+		final int d = cal.get(Calendar.DAY_OF_MONTH);
+		cal.set(y, m - 1, d, 0, 0, 0);
+		cal.set(Calendar.MILLISECOND, 0);
+		cal.add(Calendar.DAY_OF_MONTH, 1);
+		dayEnd = cal.getTimeInMillis();
+		final String name = new StringBuilder(dir).append(HEAD_NAME)
+			.append(y).append(m < 10 ? "0" : "").append(m)
+			.append(d < 10 ? "0" : "").append(d).append(EXTENSION)
+			.toString();
+		try {
+			FileUtil.mkdirs(dir);
+		} catch(IOException ie) {
+			throw ie;
+		} catch(Exception e) {
+			throw new IOException(e);
+		}
+		channel = FileChannel.open(Paths.get(new File(name).getPath()),
+			StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			StandardOpenOption.APPEND);
+	}
+
+	// FileChannelをクローズ.
+	private final void closeChannel() {
+		if(channel != null) {
+			try {
+				channel.close();
+			} catch(Exception e) {}
+			channel = null;
+		}
+	}
+
+	// アクセスログをJSON１行に変換.
+	private final void appendJson(Record rec) {
+		buf.append("{\"time\":").append(rec.time)
+			.append(",\"method\":\"")
+			.append(rec.method == null ? "" : rec.method.getName())
+			.append("\",\"url\":\"");
+		appendString(rec.url);
+		buf.append("\",\"status\":").append(rec.status)
+			.append(",\"bytes\":").append(rec.bytes)
+			.append(",\"latency\":").append(
+				rec.latency < 0L ? -1L : rec.latency / 1000L)
+			.append(",\"remote\":\"");
+		if(rec.remote != null && rec.remote.getAddress() != null) {
+			buf.append(rec.remote.getAddress().getHostAddress());
+		}
+		buf.append("\"}\n");
+	}
+
+	// JSON文字列をエスケープして追加.
+	private final void appendString(String s) {
+		if(s == null) {
+			return;
+		}
+		char c;
+		final int len = s.length();
+		for(int i = 0; i < len; i ++) {
+			c = s.charAt(i);
+			switch(c) {
+			case '\"': buf.append("\\\""); break;
+			case '\\': buf.append("\\\\"); break;
+			case '\n': buf.append("\\n"); break;
+			case '\r': buf.append("\\r"); break;
+			case '\t': buf.append("\\t"); break;
+			default:
+				if(c < 0x20) {
+					buf.append("\\u00").append(c < 0x10 ? "0" : "")
+						.append(Integer.toHexString(c));
+				} else {
+					buf.append(c);
+				}
+			}
+		}
+	}
+}
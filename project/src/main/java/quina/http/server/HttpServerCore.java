@@ -422,6 +422,10 @@ public final class HttpServerCore {
 			// optionのデータを取得.
 			final NioSendData options = CreateResponseHeader.createOptionsHeader(
 				true, false);
+			// アクセスログを登録.
+			if(AccessLog.isEnabled()) {
+				AccessLog.write(em, HttpStatus.OK.getState(), options);
+			}
 			// NioElementに送信データを登録.
 			em.setSendData(options);
 			// 送信開始.
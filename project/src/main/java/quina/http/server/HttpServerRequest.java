@@ -50,6 +50,9 @@ public class HttpServerRequest implements Request {
 
 	/** HttpBody取得フラグ. **/
 	private boolean readHttpBodyFlag = false;
+
+	/** リクエスト受付時間(System.nanoTime). **/
+	private final long startTime;
 	
 	// Read-Writeロックオブジェクト.
 	private final ReentrantReadWriteLock lock =
@@ -74,6 +77,7 @@ public class HttpServerRequest implements Request {
 		this.header = new HttpReceiveHeader(header);
 		this.element = element;
 		this.params = null;
+		this.startTime = System.nanoTime();
 	}
 
 	/**
@@ -95,6 +99,7 @@ public class HttpServerRequest implements Request {
 		this.element = src.element;
 		this.params = src.params;
 		this.readHttpBodyFlag = src.readHttpBodyFlag;
+		this.startTime = src.startTime;
 	}
 
 	@Override
@@ -166,6 +171,14 @@ public class HttpServerRequest implements Request {
 		}
 	}
 
+	/**
+	 * リクエスト受付時間を取得.
+	 * @return long リクエスト受付時間(System.nanoTime)が返却されます.
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
 	@Override
 	public int getComponentUrlSlashCount() {
 		lock.readLock().lock();
@@ -59,6 +59,12 @@ public class HttpServerService implements QuinaService {
 		,"doubtTime", TypesClass.Long, NioConstants.getDoubtTime()
 		// ４０４エラーのレスポンスタイプ.
 		,"error404RESTful", TypesClass.Boolean, HttpServerConstants.isError404RESTful()
+		// アクセスログ出力.
+		,"accessLog", TypesClass.Boolean, false
+		// アクセスログ出力先ディレクトリ.
+		,"accessLogDir", TypesClass.String, "./log"
+		// アクセスログのサンプリング率(0.0 - 1.0).
+		,"accessLogSampling", TypesClass.Double, 1.0d
 	);
 	
 	// Nioサーバコア.
@@ -182,6 +188,11 @@ public class HttpServerService implements QuinaService {
 					new HttpServerTimeoutHandler());
 				// timeoutLoopElementをQuinaLoopThreadに登録.
 				Quina.get().getQuinaLoopManager().regLoopElement(timeoutLoopElement);
+				// アクセスログ出力開始.
+				if(config.getBoolean("accessLog")) {
+					AccessLog.start(config.getString("accessLogDir"),
+						config.getDouble("accessLogSampling"));
+				}
 				// サーバスレッド開始.
 				cr.startThread();
 				// サービス開始.
@@ -247,6 +258,8 @@ public class HttpServerService implements QuinaService {
 			if(core != null) {
 				core.stopThread();
 			}
+			// アクセスログ出力停止.
+			AccessLog.stop();
 			// サービス停止.
 			startFlag.set(false);
 		} finally {
@@ -6,6 +6,8 @@ import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.zip.GZIPOutputStream;
 
 import quina.component.ExecuteComponent;
@@ -14,17 +16,22 @@ import quina.exception.QuinaException;
 import quina.http.HttpConstants;
 import quina.http.HttpElement;
 import quina.http.HttpException;
+import quina.http.HttpRange;
 import quina.http.HttpSendChunkedData;
 import quina.http.HttpStatus;
 import quina.http.MimeTypes;
 import quina.http.Request;
+import quina.http.server.AccessLog;
+import quina.json.BinaryJson;
 import quina.json.Json;
 import quina.json.JsonBuilder;
 import quina.net.nio.tcp.NioAsyncBuffer;
 import quina.net.nio.tcp.NioSendBinaryListData;
+import quina.net.nio.tcp.NioSendBufferData;
 import quina.net.nio.tcp.NioSendData;
 import quina.net.nio.tcp.NioSendFileData;
 import quina.net.nio.tcp.NioSendInputStreamData;
+import quina.net.nio.tcp.NioSendMemData;
 import quina.util.FileUtil;
 
 /**
@@ -33,6 +40,10 @@ import quina.util.FileUtil;
 public final class ResponseUtil {
 	private ResponseUtil() {}
 
+	// multipart/byteranges のContent-Type.
+	private static final String MULTIPART_BYTERANGES =
+		"multipart/byteranges; boundary=";
+
 	/**
 	 * 最終決定の文字コードを取得.
 	 * @param charset
@@ -58,6 +69,10 @@ public final class ResponseUtil {
 			return;
 		}
 		try {
+			// アクセスログを登録.
+			if(AccessLog.isEnabled()) {
+				AccessLog.write(res.element, res.getStatusNo(), datas);
+			}
 			// 送信データをセット.
 			res.element.setSendData(datas);
 			// 送信開始.
@@ -294,6 +309,178 @@ public final class ResponseUtil {
 		}
 	}
 
+	/**
+	 * Rangeリクエストの送信データ生成.
+	 */
+	private static interface RangeData {
+		/**
+		 * 指定範囲の送信データを生成.
+		 * @param offset 開始位置を設定します.
+		 * @param length データ長を設定します.
+		 * @return NioSendData 送信データが返却されます.
+		 * @exception Exception 例外.
+		 */
+		public NioSendData create(long offset, long length) throws Exception;
+	}
+
+	/**
+	 * ファイルの指定範囲の送信処理(206 Partial Content).
+	 * @param res 対象のレスポンスオブジェクトを設定します.
+	 * @param name 送信するファイル名を設定します.
+	 * @param length 対象のファイル長を設定します.
+	 * @param ranges HttpRange.parseで取得した送信範囲を設定します.
+	 */
+	public static final void sendFileRange(AbstractResponse<?> res,
+		final String name, long length, long[] ranges) {
+		sendRange(res, res.isContentType() ? null :
+			MimeTypes.getInstance().getMimeType(name), length, ranges,
+			(offset, len) -> new NioSendFileData(name, offset, len));
+	}
+
+	/**
+	 * キャッシュされたByteBufferの指定範囲の送信処理(206 Partial Content).
+	 * ByteBufferはduplicateして送信するので、内容はコピーされません.
+	 * @param res 対象のレスポンスオブジェクトを設定します.
+	 * @param buf 送信するByteBufferを設定します.
+	 * @param mimeType Content-Typeが未設定の場合のMimeTypeを設定します.
+	 * @param ranges HttpRange.parseで取得した送信範囲を設定します.
+	 */
+	public static final void sendBufferRange(AbstractResponse<?> res,
+		final ByteBuffer buf, String mimeType, long[] ranges) {
+		final int base = buf.position();
+		sendRange(res, mimeType, buf.remaining(), ranges, (offset, len) -> {
+			final ByteBuffer b = buf.duplicate();
+			b.position(base + (int)offset);
+			b.limit(base + (int)(offset + len));
+			return new NioSendBufferData(b);
+		});
+	}
+
+	/**
+	 * Rangeリクエストの範囲外の送信処理(416 Range Not Satisfiable).
+	 * @param res 対象のレスポンスオブジェクトを設定します.
+	 * @param length 対象のコンテンツ長を設定します.
+	 */
+	public static final void sendRangeNotSatisfiable(AbstractResponse<?> res,
+		long length) {
+		res.setStatus(HttpStatus.RequestedRangeNotSatisfiable);
+		res.getHeader().put("Content-Range", HttpRange.unsatisfiedRange(length));
+		send(res);
+	}
+
+	// 指定範囲の送信処理.
+	private static final void sendRange(AbstractResponse<?> res,
+		String mimeType, long length, long[] ranges, RangeData data) {
+		final String charset = getCharset(res, null);
+		NioSendData[] datas = null;
+		try {
+			// gzipが許可されている場合.
+			// レスポンスにgzip送信を付与.
+			// この場合のRangeはgzipのデータに対する範囲となる.
+			isGzip(res);
+			// Content-Typeがヘッダに設定されてない場合.
+			if(!res.isContentType() && mimeType != null) {
+				res.setContentType(mimeType);
+			}
+			res.setStatus(HttpStatus.PartialContent);
+			// 単一のRangeの場合.
+			if(ranges.length == 2) {
+				final long len = ranges[1] - ranges[0] + 1L;
+				res.getHeader().put("Content-Range",
+					HttpRange.contentRange(ranges[0], ranges[1], length));
+				datas = new NioSendData[2];
+				datas[1] = data.create(ranges[0], len);
+				datas[0] = res.createHeader(len, charset);
+				sendData(res, datas);
+				return;
+			}
+			// 複数のRangeの場合は multipart/byteranges で送信.
+			String partType = res.getContentType();
+			if(MimeTypes.getInstance().isAppendCharset(partType) &&
+				partType.indexOf("charset") == -1) {
+				partType = partType + "; charset=" + charset;
+			}
+			final String boundary = createBoundary();
+			final int cnt = ranges.length >> 1;
+			datas = new NioSendData[(cnt << 1) + 2];
+			long total = 0L;
+			long len;
+			byte[] b;
+			for(int i = 0; i < cnt; i ++) {
+				len = ranges[(i << 1) + 1] - ranges[i << 1] + 1L;
+				b = new StringBuilder("\r\n--").append(boundary)
+					.append("\r\nContent-Type: ").append(partType)
+					.append("\r\nContent-Range: ").append(HttpRange.contentRange(
+						ranges[i << 1], ranges[(i << 1) + 1], length))
+					.append("\r\n\r\n").toString().getBytes("ISO-8859-1");
+				datas[(i << 1) + 1] = new NioSendMemData(b);
+				datas[(i << 1) + 2] = data.create(ranges[i << 1], len);
+				total += b.length + len;
+			}
+			b = ("\r\n--" + boundary + "--\r\n").getBytes("ISO-8859-1");
+			datas[datas.length - 1] = new NioSendMemData(b);
+			total += b.length;
+			res.setContentType(MULTIPART_BYTERANGES + boundary);
+			datas[0] = res.createHeader(total, charset);
+			sendData(res, datas);
+		} catch(HttpException he) {
+			closeDatas(datas);
+			throw he;
+		} catch(Exception e) {
+			closeDatas(datas);
+			throw new HttpException(e);
+		}
+	}
+
+	// multipartのboundaryを生成.
+	private static final String createBoundary() {
+		final ThreadLocalRandom r = ThreadLocalRandom.current();
+		return new StringBuilder("quina_")
+			.append(Long.toHexString(r.nextLong()))
+			.append(Long.toHexString(r.nextLong()))
+			.toString();
+	}
+
+	// 送信前に失敗した送信データをクローズ.
+	private static final void closeDatas(NioSendData[] datas) {
+		final int len = datas == null ? 0 : datas.length;
+		for(int i = 0; i < len; i ++) {
+			if(datas[i] != null) {
+				try {
+					datas[i].close();
+				} catch(Exception e) {}
+			}
+		}
+	}
+
+	/**
+	 * キャッシュされたByteBufferの送信処理.
+	 * ByteBufferはduplicateして送信するので、内容はコピーされません.
+	 * @param res 対象のレスポンスオブジェクトを設定します.
+	 * @param buf 送信するByteBufferを設定します.
+	 * @param mimeType Content-Typeが未設定の場合のMimeTypeを設定します.
+	 */
+	public static final void sendBuffer(AbstractResponse<?> res, ByteBuffer buf,
+		String mimeType) {
+		final String charset = getCharset(res, null);
+		try {
+			// gzipが許可されている場合.
+			// レスポンスにgzip送信を付与.
+			isGzip(res);
+			// Content-Typeがヘッダに設定されてない場合.
+			if(!res.isContentType() && mimeType != null) {
+				res.setContentType(mimeType);
+			}
+			// データ送信.
+			sendData(res, res.createHeader(buf.remaining(), charset),
+				new NioSendBufferData(buf));
+		} catch(HttpException he) {
+			throw he;
+		} catch(Exception e) {
+			throw new HttpException(e);
+		}
+	}
+
 	/**
 	 * JSON用送信処理.
 	 * @param res 対象のレスポンスオブジェクトを設定します.
@@ -311,6 +498,11 @@ public final class ResponseUtil {
 	 */
 	public static final void sendJSON(AbstractResponse<?> res, Object value, String charset) {
 		charset = getCharset(res, charset);
+		// リクエストがバイナリJsonを受け付ける場合.
+		if(res.contentType == null && isRequestByBinaryJson(res.getRequest())) {
+			sendBinaryJSON(res, value);
+			return;
+		}
 		final String json = Json.encode(value);
 		if(res.contentType == null) {
 			res.setContentType("application/json");
@@ -318,6 +510,31 @@ public final class ResponseUtil {
 		send(res, json, charset);
 	}
 
+	/**
+	 * リクエスト側がバイナリJson対応可能な場合.
+	 * @param req 対象のRequestオブジェクトを設定します.
+	 * @return boolean trueの場合対応しています.
+	 */
+	public static final boolean isRequestByBinaryJson(Request req) {
+		if(req == null) {
+			return false;
+		}
+		return BinaryJson.isMimeType(req.getHeader().get("accept"));
+	}
+
+	/**
+	 * バイナリJson用送信処理.
+	 * @param res 対象のレスポンスオブジェクトを設定します.
+	 * @param value 送信するオブジェクトを設定します.
+	 */
+	public static final void sendBinaryJSON(AbstractResponse<?> res, Object value) {
+		final byte[] bin = BinaryJson.encode(value);
+		if(res.contentType == null) {
+			res.setContentType(BinaryJson.MIME_TYPE);
+		}
+		send(res, bin, null);
+	}
+
 	/**
 	 * OutputStreamを使った送信処理を実施します.
 	 * @param res 対象のレスポンスオブジェクトを設定します.
@@ -0,0 +1,398 @@
+package quina.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import quina.util.Base64;
+import quina.util.BinaryIO;
+import quina.util.collection.IndexMap;
+import quina.util.collection.TypesClass;
+import quina.util.collection.TypesConstants;
+import quina.util.collection.TypesList;
+
+/**
+ * バイナリJson変換処理.
+ *
+ * Jsonと同じオブジェクト構造(Map, List, 数値, 文字列,
+ * 日付, Boolean, null)をTypesClassのタイプNoと
+ * BinaryIOの書式でバイナリ変換します.
+ *
+ * 主にQuinaノード間のRESTful通信で、JSON文字列の
+ * 生成・解析コストを削減する目的で利用します.
+ */
+@SuppressWarnings("rawtypes")
+public final class BinaryJson {
+	private BinaryJson() {}
+
+	/**
+	 * バイナリJsonのMimeType.
+	 */
+	public static final String MIME_TYPE = "application/x-quina-binary";
+
+	// BigDecimalのタイプNo(文字列表現で出力).
+	private static final int TYPENO_BIG_DECIMAL = 100;
+
+	// BigIntegerのタイプNo(文字列表現で出力).
+	private static final int TYPENO_BIG_INTEGER = 101;
+
+	/**
+	 * デコード時のMap, Listの最大ネスト数.
+	 */
+	public static final int MAX_DEPTH = 256;
+
+	/**
+	 * 指定MimeTypeがバイナリJsonかチェック.
+	 * @param mime 対象のMimeType(Content-Type や Acceptヘッダ)を設定します.
+	 * @return boolean trueの場合バイナリJsonが含まれます.
+	 */
+	public static final boolean isMimeType(String mime) {
+		return mime != null && mime.indexOf(MIME_TYPE) != -1;
+	}
+
+	/**
+	 * バイナリJson変換.
+	 * @param target 対象のターゲットオブジェクトを設定します.
+	 * @return byte[] 変換されたバイナリが返却されます.
+	 */
+	public static final byte[] encode(final Object target) {
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			encode(out, target);
+			return out.toByteArray();
+		} catch(JsonException je) {
+			throw je;
+		} catch(Exception e) {
+			throw new JsonException(e);
+		}
+	}
+
+	/**
+	 * バイナリJson変換.
+	 * @param out 出力先のOutputStreamを設定します.
+	 * @param target 対象のターゲットオブジェクトを設定します.
+	 * @throws IOException I/O例外.
+	 */
+	public static final void encode(
+		final OutputStream out, final Object target)
+		throws IOException {
+		_encode(out, BinaryIO.createTmp(), target, target);
+	}
+
+	/**
+	 * バイナリJsonから、オブジェクト変換.
+	 * 文字列長や要素数はバイナリ長を超えないかチェックします.
+	 * @param bin 対象のバイナリを設定します.
+	 * @return Object 変換されたオブジェクトが返却されます.
+	 * @exception JsonException 不正なバイナリの場合に発生します.
+	 */
+	public static final Object decode(final byte[] bin) {
+		if(bin == null || bin.length == 0) {
+			return null;
+		}
+		try {
+			return decode(new ByteArrayInputStream(bin), bin.length);
+		} catch(JsonException je) {
+			throw je;
+		} catch(Exception e) {
+			throw new JsonException(e);
+		}
+	}
+
+	/**
+	 * バイナリJsonから、オブジェクト変換.
+	 * @param in 対象のInputStreamを設定します.
+	 * @return Object 変換されたオブジェクトが返却されます.
+	 * @throws IOException I/O例外.
+	 */
+	public static final Object decode(final InputStream in)
+		throws IOException {
+		return decode(in, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * バイナリJsonから、オブジェクト変換.
+	 * 外部から受け取ったバイナリの場合は、長さ情報で過大な
+	 * メモリを確保しないようにバイナリ長を設定します.
+	 * @param in 対象のInputStreamを設定します.
+	 * @param length 読み込むバイナリ長を設定します.
+	 *               文字列長や要素数はこの値を超えられません.
+	 * @return Object 変換されたオブジェクトが返却されます.
+	 * @throws IOException I/O例外.
+	 * @exception JsonException 不正なバイナリの場合に発生します.
+	 */
+	public static final Object decode(final InputStream in, int length)
+		throws IOException {
+		try {
+			return _decode(in, BinaryIO.createTmp(), length, 0);
+		} catch(JsonException je) {
+			throw je;
+		} catch(IOException | RuntimeException e) {
+			throw new JsonException(
+				"Invalid binary json: " + e.getMessage(), e);
+		}
+	}
+
+	// タイプNoを出力.
+	private static final void writeType(
+		final OutputStream out, final byte[] tmp, final int typeNo)
+		throws IOException {
+		BinaryIO.writeInt1(out, tmp, typeNo);
+	}
+
+	/** [encode]バイナリコンバート. **/
+	private static final void _encode(
+		final OutputStream out, final byte[] tmp,
+		final Object base, final Object target)
+		throws IOException {
+		if(target == null) {
+			writeType(out, tmp, TypesConstants.TYPENO_NULL);
+		} else if(target instanceof Map) {
+			encodeMap(out, tmp, base, (Map)target);
+		} else if(target instanceof List) {
+			encodeList(out, tmp, base, (List)target);
+		} else if(target instanceof String) {
+			writeType(out, tmp, TypesConstants.TYPENO_STRING);
+			BinaryIO.writeString(out, tmp, (String)target);
+		} else if(target instanceof Number) {
+			encodeNumber(out, tmp, (Number)target);
+		} else if(target instanceof Date) {
+			writeType(out, tmp, TypesConstants.TYPENO_DATE);
+			BinaryIO.writeDate(out, tmp, (Date)target);
+		} else if(target instanceof Boolean) {
+			writeType(out, tmp, TypesConstants.TYPENO_BOOLEAN);
+			BinaryIO.writeBoolean(out, tmp, (Boolean)target);
+		} else if(target instanceof Character) {
+			writeType(out, tmp, TypesConstants.TYPENO_STRING);
+			BinaryIO.writeString(out, tmp, target.toString());
+		} else if(target instanceof byte[]) {
+			// Jsonと同様にBase64の文字列で出力.
+			writeType(out, tmp, TypesConstants.TYPENO_STRING);
+			BinaryIO.writeString(out, tmp,
+				Base64.encode((byte[])target));
+		} else if(target instanceof char[]) {
+			writeType(out, tmp, TypesConstants.TYPENO_STRING);
+			BinaryIO.writeString(out, tmp,
+				new String((char[])target));
+		} else if(target.getClass().isArray()) {
+			encodeArray(out, tmp, base, target);
+		} else {
+			writeType(out, tmp, TypesConstants.TYPENO_STRING);
+			BinaryIO.writeString(out, tmp, target.toString());
+		}
+	}
+
+	/** [encode]数値コンバート. **/
+	private static final void encodeNumber(
+		final OutputStream out, final byte[] tmp, final Number n)
+		throws IOException {
+		if(n instanceof Integer) {
+			writeType(out, tmp, TypesConstants.TYPENO_INTEGER);
+			BinaryIO.writeInt4(out, tmp, n);
+		} else if(n instanceof Long) {
+			writeType(out, tmp, TypesConstants.TYPENO_LONG);
+			BinaryIO.writeLong(out, tmp, n);
+		} else if(n instanceof Double) {
+			writeType(out, tmp, TypesConstants.TYPENO_DOUBLE);
+			BinaryIO.writeDouble(out, tmp, n);
+		} else if(n instanceof Float) {
+			writeType(out, tmp, TypesConstants.TYPENO_FLOAT);
+			BinaryIO.writeFloat(out, tmp, n);
+		} else if(n instanceof Short) {
+			writeType(out, tmp, TypesConstants.TYPENO_SHORT);
+			BinaryIO.writeInt2(out, tmp, n);
+		} else if(n instanceof Byte) {
+			writeType(out, tmp, TypesConstants.TYPENO_BYTE);
+			BinaryIO.writeInt1(out, tmp, n);
+		} else if(n instanceof BigDecimal) {
+			// 精度を落とさないように文字列表現で出力.
+			writeType(out, tmp, TYPENO_BIG_DECIMAL);
+			BinaryIO.writeString(out, tmp, ((BigDecimal)n).toString());
+		} else if(n instanceof BigInteger) {
+			// 精度を落とさないように文字列表現で出力.
+			writeType(out, tmp, TYPENO_BIG_INTEGER);
+			BinaryIO.writeString(out, tmp, n.toString());
+		} else {
+			// AtomicLong等でLongで表現できる場合はLongで出力.
+			final String s = n.toString();
+			try {
+				final long v = Long.parseLong(s);
+				writeType(out, tmp, TypesConstants.TYPENO_LONG);
+				BinaryIO.writeLong(out, tmp, v);
+				return;
+			} catch(NumberFormatException nfe) {}
+			// それ以外は精度を落とさないようにBigDecimalで出力.
+			final BigDecimal d;
+			try {
+				d = new BigDecimal(s);
+			} catch(NumberFormatException nfe) {
+				throw new JsonException(
+					"Unsupported number for binary json: " + s);
+			}
+			writeType(out, tmp, TYPENO_BIG_DECIMAL);
+			BinaryIO.writeString(out, tmp, d.toString());
+		}
+	}
+
+	/** [encode]Mapコンバート. **/
+	private static final void encodeMap(
+		final OutputStream out, final byte[] tmp,
+		final Object base, final Map map)
+		throws IOException {
+		Object key, value;
+		// 自己参照の要素を除外した件数を取得.
+		int len = 0;
+		Iterator it = map.keySet().iterator();
+		while(it.hasNext()) {
+			if(map.get(it.next()) != base) {
+				len ++;
+			}
+		}
+		writeType(out, tmp, TypesConstants.TYPENO_MAP);
+		BinaryIO.writeSavingBinary(out, tmp, len);
+		it = map.keySet().iterator();
+		while(it.hasNext()) {
+			key = it.next();
+			if((value = map.get(key)) == base) {
+				continue;
+			}
+			BinaryIO.writeString(out, tmp, String.valueOf(key));
+			_encode(out, tmp, base, value);
+		}
+	}
+
+	/** [encode]Listコンバート. **/
+	private static final void encodeList(
+		final OutputStream out, final byte[] tmp,
+		final Object base, final List list)
+		throws IOException {
+		Object value;
+		final int len = list.size();
+		int cnt = 0;
+		for(int i = 0; i < len; i ++) {
+			if(list.get(i) != base) {
+				cnt ++;
+			}
+		}
+		writeType(out, tmp, TypesConstants.TYPENO_LIST);
+		BinaryIO.writeSavingBinary(out, tmp, cnt);
+		for(int i = 0; i < len; i ++) {
+			if((value = list.get(i)) == base) {
+				continue;
+			}
+			_encode(out, tmp, base, value);
+		}
+	}
+
+	/** [encode]配列コンバート. **/
+	private static final void encodeArray(
+		final OutputStream out, final byte[] tmp,
+		final Object base, final Object array)
+		throws IOException {
+		Object value;
+		final int len = Array.getLength(array);
+		int cnt = 0;
+		for(int i = 0; i < len; i ++) {
+			if(Array.get(array, i) != base) {
+				cnt ++;
+			}
+		}
+		writeType(out, tmp, TypesConstants.TYPENO_LIST);
+		BinaryIO.writeSavingBinary(out, tmp, cnt);
+		for(int i = 0; i < len; i ++) {
+			if((value = Array.get(array, i)) == base) {
+				continue;
+			}
+			_encode(out, tmp, base, value);
+		}
+	}
+
+	/** [decode]オブジェクト変換. **/
+	private static final Object _decode(
+		final InputStream in, final byte[] tmp,
+		final int limit, final int depth)
+		throws IOException {
+		final int typeNo = BinaryIO.readInt1(in, tmp);
+		// BigDecimal, BigIntegerの場合.
+		if(typeNo == TYPENO_BIG_DECIMAL) {
+			return new BigDecimal(BinaryIO.readString(in, tmp, limit));
+		} else if(typeNo == TYPENO_BIG_INTEGER) {
+			return new BigInteger(BinaryIO.readString(in, tmp, limit));
+		}
+		final TypesClass cls = TypesClass.getByTypeNo(typeNo);
+		if(cls == null) {
+			throw new JsonException(
+				"Unknown binary json type: " + typeNo);
+		}
+		int len;
+		switch(cls) {
+		case Null:
+			return null;
+		case Boolean:
+			return BinaryIO.readBoolean(in, tmp);
+		case Byte:
+			return (byte)BinaryIO.readInt1(in, tmp);
+		case Short:
+			return (short)BinaryIO.readInt2(in, tmp);
+		case Integer:
+			return BinaryIO.readInt4(in, tmp);
+		case Long:
+			return BinaryIO.readLong(in, tmp);
+		case Float:
+			return BinaryIO.readFloat(in, tmp);
+		case Double:
+			return BinaryIO.readDouble(in, tmp);
+		case String:
+			return BinaryIO.readString(in, tmp, limit);
+		case Date:
+			return BinaryIO.readDate(in, tmp);
+		case List:
+			len = readLength(in, tmp, limit, depth);
+			final List<Object> list = new TypesList<Object>();
+			for(int i = 0; i < len; i ++) {
+				list.add(_decode(in, tmp, limit, depth + 1));
+			}
+			return list;
+		case Map:
+			len = readLength(in, tmp, limit, depth);
+			final Map<String, Object> map =
+				new IndexMap<String, Object>();
+			String key;
+			for(int i = 0; i < len; i ++) {
+				key = BinaryIO.readString(in, tmp, limit);
+				map.put(key, _decode(in, tmp, limit, depth + 1));
+			}
+			return map;
+		}
+		throw new JsonException(
+			"Unknown binary json type: " + typeNo);
+	}
+
+	// Map, Listの要素数を取得.
+	// 各要素は1バイト以上なのでバイナリ長を超える要素数は不正.
+	private static final int readLength(
+		final InputStream in, final byte[] tmp,
+		final int limit, final int depth)
+		throws IOException {
+		if(depth >= MAX_DEPTH) {
+			throw new JsonException(
+				"Binary json nesting exceeds the maximum depth: " +
+				MAX_DEPTH);
+		}
+		final int ret = BinaryIO.readSavingInt(in, tmp);
+		if(ret < 0 || ret > limit) {
+			throw new JsonException(
+				"Invalid binary json element count: " + ret);
+		}
+		return ret;
+	}
+}
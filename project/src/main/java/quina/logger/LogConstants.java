@@ -32,6 +32,25 @@ public class LogConstants {
 	// デフォルトのログ文字列変換の初期バッファサイズ.
 	private static final int DEFAULT_UTF8_BUFFER_LENGTH = 4096;
 	
+	// デフォルトのログ出力バッファ数.
+	private static final int DEFAULT_RING_BUFFER_SIZE = 16384;
+	
+	// デフォルトのログ出力バッファが満杯の場合の処理方法.
+	private static final LogFullPolicy DEFAULT_FULL_POLICY =
+		LogFullPolicy.BLOCK;
+	
+	// デフォルトのローテーションしたログファイルの最大保持数(0で無制限).
+	private static final int DEFAULT_MAX_FILES = 0;
+	
+	// デフォルトのローテーションしたログファイルの最大合計サイズ(0で無制限).
+	private static final long DEFAULT_MAX_TOTAL_SIZE = 0L;
+	
+	// デフォルトのgzip圧縮レベル.
+	private static final int DEFAULT_COMPRESS_LEVEL = 6;
+	
+	// デフォルトのgzip圧縮の読み込み速度(16MByte/秒).
+	private static final long DEFAULT_COMPRESS_RATE = 0x01000000;
+	
 	/**
 	 * デフォルトのシステムログ名.
 	 */
@@ -62,6 +81,30 @@ public class LogConstants {
 	private static final AtomicInteger ut8BufferLength = new
 		AtomicInteger(DEFAULT_UTF8_BUFFER_LENGTH);
 	
+	// ログ出力バッファ数.
+	private static final AtomicInteger ringBufferSize = new
+		AtomicInteger(DEFAULT_RING_BUFFER_SIZE);
+	
+	// ログ出力バッファが満杯の場合の処理方法.
+	private static final AtomicReference<LogFullPolicy> fullPolicy =
+		new AtomicReference<LogFullPolicy>(DEFAULT_FULL_POLICY);
+	
+	// 基本設定のローテーションしたログファイルの最大保持数.
+	private static final AtomicInteger maxFiles =
+		new AtomicInteger(DEFAULT_MAX_FILES);
+	
+	// 基本設定のローテーションしたログファイルの最大合計サイズ.
+	private static final AtomicLong maxTotalSize =
+		new AtomicLong(DEFAULT_MAX_TOTAL_SIZE);
+	
+	// gzip圧縮レベル.
+	private static final AtomicInteger compressLevel =
+		new AtomicInteger(DEFAULT_COMPRESS_LEVEL);
+	
+	// gzip圧縮の読み込み速度(byte/秒).
+	private static final AtomicLong compressRate =
+		new AtomicLong(DEFAULT_COMPRESS_RATE);
+	
 	/**
 	 * 基本設定の出力可能なログレベルを取得.
 	 * @return
@@ -169,4 +212,125 @@ public class LogConstants {
 		while (!ut8BufferLength.compareAndSet(
 				ut8BufferLength.get(), size));
 	}
+	
+	/**
+	 * ログ出力バッファ数を取得.
+	 * @return
+	 */
+	public static final int getRingBufferSize() {
+		return ringBufferSize.get();
+	}
+
+	/**
+	 * ログ出力バッファ数を設定.
+	 * この値はLogFactoryの初期化前に設定する必要があります.
+	 * @param size
+	 */
+	public static final void setRingBufferSize(int size) {
+		if(size < 1024) {
+			size = 1024;
+		}
+		while (!ringBufferSize.compareAndSet(
+			ringBufferSize.get(), size));
+	}
+	
+	/**
+	 * ログ出力バッファが満杯の場合の処理方法を取得.
+	 * @return
+	 */
+	public static final LogFullPolicy getFullPolicy() {
+		return fullPolicy.get();
+	}
+
+	/**
+	 * ログ出力バッファが満杯の場合の処理方法を設定.
+	 * @param policy
+	 */
+	public static final void setFullPolicy(LogFullPolicy policy) {
+		if(policy == null) {
+			policy = DEFAULT_FULL_POLICY;
+		}
+		while (!fullPolicy.compareAndSet(fullPolicy.get(), policy));
+	}
+	
+	/**
+	 * 基本設定のローテーションしたログファイルの最大保持数を取得.
+	 * @return
+	 */
+	public static final int getMaxFiles() {
+		return maxFiles.get();
+	}
+	
+	/**
+	 * 基本設定のローテーションしたログファイルの最大保持数を設定.
+	 * 0以下の場合は無制限になります.
+	 * @param count
+	 */
+	public static final void setMaxFiles(int count) {
+		if(count < 0) {
+			count = 0;
+		}
+		while (!maxFiles.compareAndSet(maxFiles.get(), count));
+	}
+	
+	/**
+	 * 基本設定のローテーションしたログファイルの最大合計サイズを取得.
+	 * @return
+	 */
+	public static final long getMaxTotalSize() {
+		return maxTotalSize.get();
+	}
+	
+	/**
+	 * 基本設定のローテーションしたログファイルの最大合計サイズを設定.
+	 * 0以下の場合は無制限になります.
+	 * @param size
+	 */
+	public static final void setMaxTotalSize(long size) {
+		if(size < 0L) {
+			size = 0L;
+		}
+		while (!maxTotalSize.compareAndSet(maxTotalSize.get(), size));
+	}
+	
+	/**
+	 * gzip圧縮レベルを取得.
+	 * @return
+	 */
+	public static final int getCompressLevel() {
+		return compressLevel.get();
+	}
+	
+	/**
+	 * gzip圧縮レベルを設定.
+	 * @param level 1(高速) - 9(高圧縮)を設定します.
+	 */
+	public static final void setCompressLevel(int level) {
+		if(level < 1) {
+			level = 1;
+		} else if(level > 9) {
+			level = 9;
+		}
+		while (!compressLevel.compareAndSet(compressLevel.get(), level));
+	}
+	
+	/**
+	 * gzip圧縮の読み込み速度を取得.
+	 * @return
+	 */
+	public static final long getCompressRate() {
+		return compressRate.get();
+	}
+	
+	/**
+	 * gzip圧縮の読み込み速度を設定.
+	 * 0以下の場合は無制限になります.
+	 * @param rate 1秒間に圧縮するバイト数を設定します.
+	 */
+	public static final void setCompressRate(long rate) {
+		if(rate < 0L) {
+			rate = 0L;
+		}
+		while (!compressRate.compareAndSet(compressRate.get(), rate));
+	}
 }
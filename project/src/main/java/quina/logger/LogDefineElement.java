@@ -1,10 +1,13 @@
 package quina.logger;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.OutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -31,15 +34,36 @@ public class LogDefineElement {
 
 	// 出力先ログディレクトリ.
 	private String directory;
+
+	// ローテーションしたログファイルの最大保持数.
+	private Integer maxFiles;
+
+	// ローテーションしたログファイルの最大合計サイズ.
+	private Long maxTotalSize;
 	
 	// ログ定義ID.
 	private int id;
 	
-	// ログ書き込み中オブジェクト.
-	private OutputStream out;
+	// ログ書き込みバッファの出力サイズ.
+	private static final int WRITE_BUFFER_LENGTH = 65536;
+	
+	// ログ書き込み中のファイルチャネル.
+	private FileChannel channel;
+	
+	// ログ書き込みバッファ.
+	private byte[] writeBuf;
+	
+	// ログ書き込みバッファ長.
+	private int writeLen;
 	
-	// ログFlashフラグ.
-	private boolean flushOutFlag = false;
+	// 書き込み中のログファイルサイズ.
+	private long fileLength;
+	
+	// 書き込み中のログファイルの日付開始時間.
+	private long fileDayStart;
+	
+	// 書き込み中のログファイルの翌日開始時間.
+	private long fileDayEnd;
 
 	// 設定確定フラグ.
 	private final AtomicBoolean finalizedFlag = new AtomicBoolean(false);
@@ -195,6 +219,12 @@ public class LogDefineElement {
 		if(consoleOut == null) {
 			consoleOut = LogConstants.getConsoleOut();
 		}
+		if(maxFiles == null) {
+			maxFiles = LogConstants.getMaxFiles();
+		}
+		if(maxTotalSize == null) {
+			maxTotalSize = LogConstants.getMaxTotalSize();
+		}
 	}
 
 	/**
@@ -225,6 +255,8 @@ public class LogDefineElement {
 			setLogLevel(defaultInfo.getLogLevel());
 			setLogSize(defaultInfo.getLogSize());
 			setConsoleOut(defaultInfo.isConsoleOut());
+			setMaxFiles(defaultInfo.getMaxFiles());
+			setMaxTotalSize(defaultInfo.getMaxTotalSize());
 		}
 		defaultDefine();
 		return this;
@@ -272,6 +304,24 @@ public class LogDefineElement {
 				}
 			}
 		}
+		if (map.containsKey("maxFiles")) {
+			n = map.get("maxFiles");
+			if(n instanceof Number) {
+				setMaxFiles(((Number)n).intValue());
+			} else if (LogUtil.isNumeric(n)) {
+				try {
+					setMaxFiles((int)LogUtil.convertLong(n));
+				} catch(Exception e) {}
+			}
+		}
+		if (map.containsKey("maxTotalSize")) {
+			n = map.get("maxTotalSize");
+			if(n != null) {
+				try {
+					setMaxTotalSize(n);
+				} catch(Exception e) {}
+			}
+		}
 		if (map.containsKey("logDir")) {
 			dir = "" + map.get("logDir");
 		} else if (map.containsKey("logDirectory")) {
@@ -331,6 +381,13 @@ public class LogDefineElement {
 		if(!config.directory().isEmpty()) {
 			setDirectory(config.directory());
 		}
+		if(config.maxFiles() > 0) {
+			setMaxFiles(config.maxFiles());
+		}
+		if(!config.maxTotalSize().isEmpty()) {
+			setMaxTotalSize(NumberUtil.parseCapacityByLong(
+				config.maxTotalSize()));
+		}
 		setLogLevel(config.level());
 		defaultDefine();
 		return this;
@@ -443,6 +500,128 @@ public class LogDefineElement {
 		return this;
 	}
 	
+	/**
+	 * ローテーションしたログファイルの最大保持数を取得.
+	 * @return
+	 */
+	public Integer getMaxFiles() {
+		return maxFiles;
+	}
+
+	/**
+	 * ローテーションしたログファイルの最大保持数を設定.
+	 * 0の場合は無制限になります.
+	 * @param maxFiles
+	 * @return
+	 */
+	public LogDefineElement setMaxFiles(Integer maxFiles) {
+		checkFinalized();
+		if(maxFiles != null && maxFiles >= 0) {
+			this.maxFiles = maxFiles;
+		}
+		return this;
+	}
+
+	/**
+	 * ローテーションしたログファイルの最大合計サイズを取得.
+	 * @return
+	 */
+	public Long getMaxTotalSize() {
+		return maxTotalSize;
+	}
+
+	/**
+	 * ローテーションしたログファイルの最大合計サイズを設定.
+	 * 0の場合は無制限になります.
+	 * @param maxTotalSize
+	 * @return
+	 */
+	public LogDefineElement setMaxTotalSize(Object maxTotalSize) {
+		checkFinalized();
+		Long size = null;
+		if(maxTotalSize instanceof Number) {
+			size = ((Number)maxTotalSize).longValue();
+		} else if(maxTotalSize != null) {
+			size = NumberUtil.parseCapacityByLong(maxTotalSize.toString());
+		}
+		if(size != null && size >= 0L) {
+			this.maxTotalSize = size;
+		}
+		return this;
+	}
+
+	/**
+	 * ログファイルがオープンされているかチェック.
+	 * @return boolean trueの場合オープンされています.
+	 */
+	protected boolean isOpenLog() {
+		return channel != null;
+	}
+	
+	/**
+	 * ログファイルをオープン.
+	 * ファイルサイズと日付はオープン時のみファイルから取得して
+	 * 以降はメモリ上で管理します.
+	 * @param fileName ログファイルを設定します.
+	 * @throws IOException I/O例外.
+	 */
+	protected void openLog(String fileName) throws IOException {
+		closeLog();
+		// ログ出力先がない場合は作成.
+		final File dir = new File(directory);
+		if (!dir.isDirectory()) {
+			dir.mkdirs();
+		}
+		final File stat = new File(directory + fileName);
+		final long lastModified = stat.isFile() ? stat.lastModified() : 0L;
+		channel = FileChannel.open(Paths.get(directory + fileName),
+			StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			StandardOpenOption.APPEND);
+		fileLength = channel.size();
+		setFileDay(fileLength > 0L && lastModified > 0L ?
+			lastModified : System.currentTimeMillis());
+	}
+	
+	// 書き込み中のログファイルの日付範囲をセット.
+	private final void setFileDay(long time) {
+		final Calendar cal = Calendar.getInstance();
+		cal.setTimeInMillis(time);
+		cal.set(Calendar.HOUR_OF_DAY, 0);
+		cal.set(Calendar.MINUTE, 0);
+		cal.set(Calendar.SECOND, 0);
+		cal.set(Calendar.MILLISECOND, 0);
+		fileDayStart = cal.getTimeInMillis();
+		cal.add(Calendar.DATE, 1);
+		fileDayEnd = cal.getTimeInMillis();
+	}
+	
+	/**
+	 * 書き込み中のログファイルサイズを取得.
+	 * @return long 書き込み待ちを含めたファイルサイズが返却されます.
+	 */
+	protected long getFileLength() {
+		return fileLength + writeLen;
+	}
+	
+	/**
+	 * 書き込み中のログファイルの日付開始時間を取得.
+	 * @return long ログファイルの日付開始時間が返却されます.
+	 */
+	protected long getFileDate() {
+		return fileDayStart;
+	}
+	
+	/**
+	 * 指定時間が書き込み中のログファイルの翌日以降かチェック.
+	 * 日付変更前に取得した時間のログが日付変更後に書き込まれる
+	 * 場合があるため、前日の時間ではローテーションしません.
+	 * @param time 対象の時間を設定します.
+	 * @return boolean trueの場合、翌日以降の時間です.
+	 */
+	protected boolean isChangeDay(long time) {
+		return time >= fileDayEnd;
+	}
+	
 	/**
 	 * ログ書き込み.
 	 * @param fileName ログファイルを設定します.
@@ -451,14 +630,8 @@ public class LogDefineElement {
 	 */
 	protected LogDefineElement writeLog(String fileName, String message) {
 		try {
-			if(out == null) {
-				// 追加書き込み.
-				out = new BufferedOutputStream(
-					new FileOutputStream(
-						directory + fileName, true));
-			}
-			out.write(message.getBytes("UTF8"));
-			flushOutFlag = true;
+			final byte[] b = message.getBytes("UTF8");
+			writeLog(fileName, b, b.length);
 		} catch(Exception e) {
 		}
 		return this;
@@ -466,6 +639,8 @@ public class LogDefineElement {
 	
 	/**
 	 * ログ書き込み.
+	 * 書き込み内容はバッファリングされ、flushLogで
+	 * まとめてファイル出力されます.
 	 * @param fileName ログファイルを設定します.
 	 * @param utf8Buf UTF8からbinary変換されたバッファを設定します.
 	 * @param len UTF8からbinary変換されたバッファ長を設定します.
@@ -474,14 +649,23 @@ public class LogDefineElement {
 	protected LogDefineElement writeLog(
 		String fileName, byte[] utf8Buf, int len) {
 		try {
-			if(out == null) {
-				// 追加書き込み.
-				out = new BufferedOutputStream(
-					new FileOutputStream(
-						directory + fileName, true));
+			if(channel == null) {
+				openLog(fileName);
+			}
+			if(writeBuf == null) {
+				writeBuf = new byte[Math.max(WRITE_BUFFER_LENGTH, len)];
+			} else if(writeBuf.length < writeLen + len) {
+				final byte[] b = new byte[Math.max(
+					writeBuf.length << 1, writeLen + len)];
+				System.arraycopy(writeBuf, 0, b, 0, writeLen);
+				writeBuf = b;
+			}
+			System.arraycopy(utf8Buf, 0, writeBuf, writeLen, len);
+			writeLen += len;
+			// バッファサイズを超えた場合は出力.
+			if(writeLen >= WRITE_BUFFER_LENGTH) {
+				flushLog();
 			}
-			out.write(utf8Buf, 0, len);
-			flushOutFlag = true;
 		} catch(Exception e) {
 		}
 		return this;
@@ -489,18 +673,26 @@ public class LogDefineElement {
 
 	
 	/**
-	 * キャッシュ書き込みされてるログ内容を書き込む.
+	 * バッファリングされてるログ内容を書き込む.
 	 * @return
 	 */
 	protected LogDefineElement flushLog() {
-		boolean f = flushOutFlag;
-		flushOutFlag = false;
-		if(out != null && f) {
+		final int len = writeLen;
+		writeLen = 0;
+		if(channel != null && len > 0) {
 			try {
-				out.flush();
+				final ByteBuffer b = ByteBuffer.wrap(writeBuf, 0, len);
+				while(b.hasRemaining()) {
+					channel.write(b);
+				}
+				fileLength += len;
 			} catch(Exception e) {
 			}
 		}
+		// 大きく拡張されたバッファは解放.
+		if(writeBuf != null && writeBuf.length > WRITE_BUFFER_LENGTH) {
+			writeBuf = null;
+		}
 		return this;
 	}
 	
@@ -509,14 +701,15 @@ public class LogDefineElement {
 	 * @return
 	 */
 	protected LogDefineElement closeLog() {
-		flushOutFlag = false;
+		flushLog();
 		try {
-			if(out != null) {
-				out.close();
-				out = null;
+			if(channel != null) {
+				channel.close();
 			}
 		} catch(Exception e) {
 		}
+		channel = null;
+		fileLength = 0L;
 		return this;
 	}
 
@@ -529,6 +722,8 @@ public class LogDefineElement {
 		buf.append("\"logLevel\": \"").append(logLevel)
 			.append("\", \"logSize\": ").append(logSize)
 			.append("\", \"consoleOut\": ").append(consoleOut)
+			.append(", \"maxFiles\": ").append(maxFiles)
+			.append(", \"maxTotalSize\": ").append(maxTotalSize)
 			.append(", \"directory\": \"").append(directory).append("\"");
 		return buf;
 	}
@@ -5,6 +5,8 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import quina.util.NumberUtil;
+
 /**
  * Logファクトリ.
  */
@@ -82,6 +84,12 @@ public class LogFactory {
 		 *   console: コンソール出力モード(true/false).
 		 *   maxFileSize: １つのログ出力サイズ(byte).
 		 *   logDir 出力先のログディレクトリ.
+		 *   fullPolicy: ログ出力バッファが満杯の場合の処理方法
+		 *               (block/drop/dropBelowWarn).
+		 *   maxFiles: ローテーションしたログファイルの最大保持数.
+		 *   maxTotalSize: ローテーションしたログファイルの最大合計サイズ(byte).
+		 *   compressLevel: ローテーション時のgzip圧縮レベル(1-9).
+		 *   compressRate: ローテーション時のgzip圧縮速度(byte/秒).
 		 * }
 		 *
 		 * (2)もう１つはログ定義名単位で定義する方法.
@@ -116,6 +124,31 @@ public class LogFactory {
 			return false;
 		}
 
+		// ログ出力バッファが満杯の場合の処理方法.
+		final LogFullPolicy policy = LogFullPolicy.convertLogFullPolicy(
+			json.get("fullPolicy"));
+		if(policy != null) {
+			LogConstants.setFullPolicy(policy);
+		}
+		
+		// ローテーション時のgzip圧縮レベル.
+		Object c = json.get("compressLevel");
+		if(c instanceof Number) {
+			LogConstants.setCompressLevel(((Number)c).intValue());
+		} else if(LogUtil.isNumeric(c)) {
+			LogConstants.setCompressLevel(
+				(int)LogUtil.convertLong(c));
+		}
+		// ローテーション時のgzip圧縮速度.
+		c = json.get("compressRate");
+		if(c instanceof Number) {
+			LogConstants.setCompressRate(((Number)c).longValue());
+		} else if(c != null &&
+			NumberUtil.isCapacityString(c.toString())) {
+			LogConstants.setCompressRate(
+				NumberUtil.parseCapacityByLong(c.toString()));
+		}
+		
 		// 最初にdefault定義を取得.
 		Map<String, Object> v;
 		LogDefineElement em;
@@ -448,6 +481,14 @@ public class LogFactory {
 		logWriteWorker.stopThread();
 	}
 	
+	/**
+	 * ログ出力バッファが満杯で破棄したログ数を取得.
+	 * @return long 破棄したログ数が返却されます.
+	 */
+	public long getDropLogCount() {
+		return logWriteWorker.getDropCount();
+	}
+	
 	/**
 	 * ログ書き込みワーカーが終了したかチェック.
 	 * @return boolean true の場合、停止します.
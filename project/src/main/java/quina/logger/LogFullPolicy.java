@@ -0,0 +1,61 @@
+package quina.logger;
+
+/**
+ * ログ出力バッファが満杯の場合の処理方法.
+ */
+public enum LogFullPolicy {
+	// 空きができるまで待機.
+	BLOCK("block"),
+	// 出力するログを破棄.
+	DROP("drop"),
+	// WARN未満のログは破棄して、WARN以上は空きができるまで待機.
+	DROP_BELOW_WARN("dropBelowWarn");
+
+	private String name;
+
+	/**
+	 * コンストラクタ.
+	 * @param name 処理方法名を設定します.
+	 */
+	private LogFullPolicy(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * 処理方法名を取得.
+	 * @return String 処理方法名が返却されます.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * オブジェクトから処理方法に変換.
+	 * @param policy 対象のオブジェクトを設定します.
+	 * @return LogFullPolicy 処理方法が返却されます.
+	 *                       判別不可の場合はnullが返却されます.
+	 */
+	public static final LogFullPolicy convertLogFullPolicy(Object policy) {
+		if(policy == null) {
+			return null;
+		} else if(policy instanceof LogFullPolicy) {
+			return (LogFullPolicy)policy;
+		}
+		final String lowName = ("" + policy).trim().toLowerCase();
+		if("block".equals(lowName)) {
+			return LogFullPolicy.BLOCK;
+		} else if("drop".equals(lowName)) {
+			return LogFullPolicy.DROP;
+		} else if("dropbelowwarn".equals(lowName) ||
+			"drop_below_warn".equals(lowName)) {
+			return LogFullPolicy.DROP_BELOW_WARN;
+		}
+		// 判別不可の場合はnull返却.
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,260 @@
+package quina.logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * ローテーションしたログファイルの圧縮と世代管理.
+ *
+ * ローテーションしたログファイルのgzip圧縮と、LogDefineElement
+ * 毎の最大ファイル数・最大合計サイズでの古いファイル削除を
+ * １つの圧縮スレッドで順番に実行します.
+ *
+ * 処理はログファイル名単位でまとめて登録されるので、短時間に
+ * 連続してローテーションが発生しても圧縮処理は１つずつ、
+ * 指定された速度(byte/秒)以内で実行されます.
+ */
+final class LogRotationManager {
+	private LogRotationManager() {}
+
+	// 圧縮処理の待ち行列の最大数.
+	private static final int QUEUE_LENGTH = 256;
+
+	// 圧縮処理のバッファサイズ.
+	private static final int BUFFER_LENGTH = 65536;
+
+	// スレッドが処理待ちで終了するまでの時間(ミリ秒).
+	private static final long KEEP_ALIVE = 30000L;
+
+	// gzip拡張子.
+	private static final String GZ_EXTENSION = ".gz";
+
+	// 圧縮中のテンポラリ拡張子.
+	private static final String TMP_EXTENSION = ".tmp";
+
+	// 処理待ちのログファイル名.
+	private static final Set<String> pending =
+		ConcurrentHashMap.newKeySet();
+
+	// 圧縮処理スレッド.
+	private static final ThreadPoolExecutor executor;
+
+	static {
+		final ThreadPoolExecutor e = new ThreadPoolExecutor(
+			1, 1, KEEP_ALIVE, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<Runnable>(QUEUE_LENGTH),
+			new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					final Thread t = new Thread(r, "quina-log-rotation");
+					t.setDaemon(true);
+					t.setPriority(Thread.MIN_PRIORITY);
+					return t;
+				}
+			});
+		e.allowCoreThreadTimeOut(true);
+		executor = e;
+	}
+
+	// gzip圧縮レベルを指定するGZIPOutputStream.
+	private static final class LevelGZIPOutputStream
+		extends GZIPOutputStream {
+		protected LevelGZIPOutputStream(OutputStream out, int size,
+			int level) throws IOException {
+			super(out, size);
+			def.setLevel(level);
+		}
+	}
+
+	/**
+	 * ローテーションしたログファイルの後処理を登録.
+	 * @param element 対象のLogDefineElementを設定します.
+	 * @param fileName 対象のログファイル名を設定します.
+	 */
+	protected static final void rotated(
+		final LogDefineElement element, final String fileName) {
+		final String logDir = element.getDirectory();
+		final String key = logDir + fileName;
+		// 既に処理待ちの場合は登録しない.
+		if(!pending.add(key)) {
+			return;
+		}
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					// 処理中のローテーション分は再登録させる.
+					pending.remove(key);
+					execute(element, logDir, fileName);
+				}
+			});
+		} catch(RejectedExecutionException re) {
+			// 未圧縮のファイルは次回のローテーション時に処理する.
+			pending.remove(key);
+		}
+	}
+
+	// 圧縮と古いファイルの削除を実行.
+	private static final void execute(LogDefineElement element,
+		String logDir, String fileName) {
+		try {
+			final File dir = new File(logDir);
+			final String head = fileName + ".";
+			final String[] list = dir.list((f, n) -> n.startsWith(head));
+			final int len = list == null ? 0 : list.length;
+			String n;
+			// 未圧縮のファイルを圧縮.
+			for(int i = 0; i < len; i ++) {
+				n = list[i];
+				if(n.endsWith(TMP_EXTENSION)) {
+					// 中断された圧縮ファイルを削除.
+					new File(logDir + n).delete();
+				} else if(LogUtil.isNumeric(
+					n.substring(n.lastIndexOf(".") + 1))) {
+					toGzip(logDir + n);
+				}
+			}
+			// 古いファイルを削除.
+			retention(element, dir, head);
+		} catch(Exception e) {
+			// ログ出力中のエラーなので無視する.
+		}
+	}
+
+	// ファイルをgzip圧縮.
+	private static final void toGzip(String name)
+		throws IOException {
+		final File src = new File(name);
+		final File tmp = new File(name + GZ_EXTENSION + TMP_EXTENSION);
+		final long rate = LogConstants.getCompressRate();
+		final byte[] b = new byte[BUFFER_LENGTH];
+		final long startTime = System.nanoTime();
+		long total = 0L;
+		long wait;
+		int len;
+		InputStream in = null;
+		OutputStream out = null;
+		try {
+			in = new FileInputStream(src);
+			out = new LevelGZIPOutputStream(new FileOutputStream(tmp),
+				BUFFER_LENGTH, LogConstants.getCompressLevel());
+			while ((len = in.read(b)) != -1) {
+				out.write(b, 0, len);
+				// 指定速度を超える場合は待機.
+				if(rate > 0L) {
+					total += len;
+					wait = (total * 1000L / rate) -
+						((System.nanoTime() - startTime) / 1000000L);
+					if(wait > 0L) {
+						try {
+							Thread.sleep(wait);
+						} catch(InterruptedException ie) {}
+					}
+				}
+			}
+			out.close();
+			out = null;
+			in.close();
+			in = null;
+			// 圧縮完了後に元のファイルを削除.
+			final File dest = new File(name + GZ_EXTENSION);
+			dest.delete();
+			if(tmp.renameTo(dest)) {
+				src.delete();
+			}
+		} finally {
+			if(out != null) {
+				try {
+					out.close();
+				} catch(Exception e) {}
+				tmp.delete();
+			}
+			if(in != null) {
+				try {
+					in.close();
+				} catch(Exception e) {}
+			}
+		}
+	}
+
+	// 最大ファイル数・最大合計サイズを超える古いファイルを削除.
+	private static final void retention(LogDefineElement element,
+		File dir, final String head) {
+		final int maxFiles = element.getMaxFiles();
+		final long maxTotalSize = element.getMaxTotalSize();
+		if(maxFiles <= 0 && maxTotalSize <= 0L) {
+			return;
+		}
+		final File[] list = dir.listFiles((f, n) ->
+			n.startsWith(head) && !n.endsWith(TMP_EXTENSION));
+		if(list == null || list.length == 0) {
+			return;
+		}
+		final List<File> files = new ArrayList<File>(list.length);
+		long total = 0L;
+		for(int i = 0; i < list.length; i ++) {
+			if(list[i].isFile()) {
+				files.add(list[i]);
+				total += list[i].length();
+			}
+		}
+		// ローテーション順(日付, 連番)で古い順に並べる.
+		Collections.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File a, File b) {
+				final String na = rotateName(a.getName());
+				final String nb = rotateName(b.getName());
+				final int pa = na.lastIndexOf(".");
+				final int pb = nb.lastIndexOf(".");
+				final int ret = na.substring(0, pa).compareTo(
+					nb.substring(0, pb));
+				if(ret != 0) {
+					return ret;
+				}
+				return Long.compare(rotateNo(na, pa), rotateNo(nb, pb));
+			}
+		});
+		File f;
+		int count = files.size();
+		final int len = files.size();
+		for(int i = 0; i < len; i ++) {
+			if(!((maxFiles > 0 && count > maxFiles) ||
+				(maxTotalSize > 0L && total > maxTotalSize))) {
+				break;
+			}
+			f = files.get(i);
+			total -= f.length();
+			f.delete();
+			count --;
+		}
+	}
+
+	// gzip拡張子を除いたファイル名を取得.
+	private static final String rotateName(String name) {
+		return name.endsWith(GZ_EXTENSION) ?
+			name.substring(0, name.length() - GZ_EXTENSION.length()) :
+			name;
+	}
+
+	// ファイル名の連番を取得.
+	private static final long rotateNo(String name, int p) {
+		final String n = name.substring(p + 1);
+		return LogUtil.isNumeric(n) ? LogUtil.convertLong(n) : -1L;
+	}
+}
@@ -1,24 +1,14 @@
 package quina.logger;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FilenameFilter;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.Date;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * ログ書き込みを行うワーカースレッド.
@@ -26,76 +16,127 @@ import java.util.zip.GZIPOutputStream;
 final class LogWriteWorker extends Thread {
 	
 	// 1つのLogワーカー要素.
+	// リングバッファのスロットとして事前に生成して再利用します.
 	private static final class LogWorkerElement {
 		protected String name;
 		protected LogDefineElement element;
 		protected LogLevel typeNo;
 		protected Object[] args;
+		protected long time;
 		
-		protected LogWorkerElement(String name, LogDefineElement element,
-			LogLevel typeNo, Object[] args) {
-			this.name = name;
-			this.element = element;
-			this.typeNo = typeNo;
-			this.args = args;
+		// 要素をクリア.
+		protected void clear() {
+			this.name = null;
+			this.element = null;
+			this.typeNo = null;
+			this.args = null;
 		}
 	}
 	
-	// boolean Atomic 管理.
-	private static final class Bool {
-		private final AtomicInteger ato = new AtomicInteger(0);
-		public Bool(final boolean n) {
-			ato.set(n ? 1 : 0);
+	// 複数スレッドから書き込み、単一スレッドで読み込むリングバッファ.
+	private static final class RingBuffer {
+		// スロット.
+		private final LogWorkerElement[] slots;
+		// 各スロットのシーケンス.
+		private final AtomicLongArray sequences;
+		// スロット位置のマスク.
+		private final int mask;
+		// 書き込み位置.
+		private final AtomicLong tail = new AtomicLong(0L);
+		// 読み込み位置(ワーカースレッドのみ参照).
+		private long head = 0L;
+		
+		/**
+		 * コンストラクタ.
+		 * @param size バッファ数を設定します.
+		 */
+		public RingBuffer(int size) {
+			// 2の累乗に補正.
+			int len = 1;
+			while(len < size) {
+				len <<= 1;
+			}
+			slots = new LogWorkerElement[len];
+			sequences = new AtomicLongArray(len);
+			for(int i = 0; i < len; i ++) {
+				slots[i] = new LogWorkerElement();
+				sequences.set(i, i);
+			}
+			mask = len - 1;
 		}
-		public final boolean get() {
-			return ato.get() == 1;
+		
+		/**
+		 * 書き込み位置を確保.
+		 * @return long 確保されたシーケンスが返却されます.
+		 *              -1の場合はバッファが満杯です.
+		 */
+		public long claim() {
+			long t, s;
+			while(true) {
+				t = tail.get();
+				s = sequences.get((int)(t & mask));
+				if(s == t) {
+					if(tail.compareAndSet(t, t + 1L)) {
+						return t;
+					}
+				} else if(s < t) {
+					return -1L;
+				}
+			}
 		}
-		public final void set(final boolean n) {
-			while (!ato.compareAndSet(ato.get(), n ? 1 : 0));
+		
+		/**
+		 * 確保したシーケンスのスロットを取得.
+		 * @param seq シーケンスを設定します.
+		 * @return LogWorkerElement スロットが返却されます.
+		 */
+		public LogWorkerElement slot(long seq) {
+			return slots[(int)(seq & mask)];
 		}
-	}
-	
-	// waitObject.
-	private static class WaitObject {
-		// ロックオブジェクト.
-		private final Lock sync = new ReentrantLock();
-		private final Condition con = sync.newCondition();
-
+		
 		/**
-		 * コンストラクタ.
+		 * 書き込み完了.
+		 * @param seq シーケンスを設定します.
 		 */
-		public WaitObject() {
+		public void publish(long seq) {
+			sequences.set((int)(seq & mask), seq + 1L);
 		}
-
+		
 		/**
-		 * 指定時間待機.
-		 *
-		 * @param timeout
-		 *            ミリ秒での待機時間を設定します. [0]を設定した場合、無限待機となります.
-		 * @return boolean [true]が返された場合、復帰条件が設定されました.
+		 * 読み込み可能なスロットを取得.
+		 * @return LogWorkerElement スロットが返却されます.
+		 *                          nullの場合は空です.
 		 */
-		public final boolean await(long time) {
-			sync.lock();
-			try {
-				return con.await(time, TimeUnit.MILLISECONDS);
-			} catch(Exception e) {
-				return false;
-			} finally {
-				sync.unlock();
+		public LogWorkerElement peek() {
+			final int no = (int)(head & mask);
+			if(sequences.get(no) == head + 1L) {
+				return slots[no];
 			}
+			return null;
 		}
-
+		
 		/**
-		 * 待機中のスレッドを１つ起動.
+		 * 読み込み完了してスロットを開放.
 		 */
-		public final void signal() {
-			sync.lock();
-			try {
-				con.signal();
-			} catch(Exception e) {
-			} finally {
-				sync.unlock();
-			}
+		public void release() {
+			final int no = (int)(head & mask);
+			slots[no].clear();
+			sequences.set(no, head + slots.length);
+			head ++;
+		}
+	}
+	
+	// boolean Atomic 管理.
+	private static final class Bool {
+		private final AtomicInteger ato = new AtomicInteger(0);
+		public Bool(final boolean n) {
+			ato.set(n ? 1 : 0);
+		}
+		public final boolean get() {
+			return ato.get() == 1;
+		}
+		public final void set(final boolean n) {
+			while (!ato.compareAndSet(ato.get(), n ? 1 : 0));
 		}
 	}
 	
@@ -247,15 +288,24 @@ final class LogWriteWorker extends Thread {
 		
 	}
 	
-	// waitタイムアウト値.
-	private static final int TIMEOUT = 1000;
+	// waitタイムアウト値(ナノ秒).
+	private static final long TIMEOUT_NANOS = 1000000000L;
+	
+	// １回の書き込みでまとめる最大ログ数.
+	private static final int MAX_BATCH = 1024;
 
-	// waitObject.
-	private final WaitObject waitObject = new WaitObject();
+	// 満杯時の待機時間(ナノ秒).
+	private static final long FULL_WAIT_NANOS = 100000L;
+	
+	// ログ出力バッファ.
+	private final RingBuffer ring = new RingBuffer(
+		LogConstants.getRingBufferSize());
+	
+	// ワーカースレッドが待機中の場合true.
+	private volatile boolean sleeping = false;
 	
-	// Nioワーカー要素キュー.
-	private final Queue<LogWorkerElement> queue =
-		new ConcurrentLinkedQueue<LogWorkerElement>() ;
+	// 破棄したログ数.
+	private final AtomicLong dropCount = new AtomicLong(0L);
 	
 	// スレッド停止フラグ.
 	private final Bool stopFlag = new Bool(true);
@@ -276,8 +326,42 @@ final class LogWriteWorker extends Thread {
 	 */
 	public void push(final String name, final LogDefineElement element,
 			final LogLevel typeNo, final Object... args) {
-		queue.offer(new LogWorkerElement(name, element, typeNo, args));
-		waitObject.signal();
+		// ログ時間は呼び出し元で取得.
+		final long time = System.currentTimeMillis();
+		long seq;
+		while((seq = ring.claim()) == -1L) {
+			// バッファが満杯の場合.
+			final LogFullPolicy policy = LogConstants.getFullPolicy();
+			if(policy == LogFullPolicy.DROP ||
+				(policy == LogFullPolicy.DROP_BELOW_WARN &&
+					typeNo.checkMinMaxEquals(LogLevel.WARN) < 0) ||
+				endThreadFlag.get()) {
+				dropCount.incrementAndGet();
+				return;
+			}
+			// 空きができるまで待機.
+			LockSupport.unpark(this);
+			LockSupport.parkNanos(FULL_WAIT_NANOS);
+		}
+		final LogWorkerElement em = ring.slot(seq);
+		em.name = name;
+		em.element = element;
+		em.typeNo = typeNo;
+		em.args = args;
+		em.time = time;
+		ring.publish(seq);
+		// ワーカースレッドが待機中の場合のみ起動.
+		if(sleeping) {
+			LockSupport.unpark(this);
+		}
+	}
+	
+	/**
+	 * バッファが満杯で破棄したログ数を取得.
+	 * @return long 破棄したログ数が返却されます.
+	 */
+	public long getDropCount() {
+		return dropCount.get();
 	}
 
 	/**
@@ -296,6 +380,7 @@ final class LogWriteWorker extends Thread {
 	 */
 	public void stopThread() {
 		stopFlag.set(true);
+		LockSupport.unpark(this);
 	}
 
 	/**
@@ -338,7 +423,7 @@ final class LogWriteWorker extends Thread {
 	 * ワーカースレッド実行処理.
 	 */
 	protected final ThreadDeath execute() {
-		int i, len;
+		int i, len, cnt;
 		final Utf8Buffer utf8Buf = new Utf8Buffer(
 			LogConstants.getUt8BufferRevaluatio(),
 			LogConstants.getUt8BufferLength());
@@ -354,7 +439,7 @@ final class LogWriteWorker extends Thread {
 			try {
 				while (!endFlag && !stopFlag.get()) {
 					// 実行ワーカー要素を取得.
-					if ((em = queue.poll()) == null) {
+					if ((em = ring.peek()) == null) {
 						// Flush処理.
 						len = logDefineList.size();
 						for(i = 0; i < len; i ++) {
@@ -363,17 +448,35 @@ final class LogWriteWorker extends Thread {
 								logEm.flushLog();
 							}
 						}
-						waitObject.await(TIMEOUT);
+						// 待機中を設定してから再確認.
+						sleeping = true;
+						if(ring.peek() == null) {
+							LockSupport.parkNanos(TIMEOUT_NANOS);
+						}
+						sleeping = false;
 						continue;
 					}
-					try {
-						// ログ出力.
-						write(utf8Buf, em.name, em.element, em.typeNo,
-							em.args);
-						// ファイルOpenしたLogDefineElementをセット.
-						logDefineList.put(em.element);
-					} catch(Exception e) {}
-					em = null;
+					// 出力待ちのログをまとめてバッファに出力.
+					cnt = 0;
+					do {
+						try {
+							// ログ出力.
+							write(utf8Buf, em.name, em.element, em.typeNo,
+								em.time, em.args);
+							// ファイルOpenしたLogDefineElementをセット.
+							logDefineList.put(em.element);
+						} catch(Exception e) {}
+						em = null;
+						ring.release();
+					} while(++ cnt < MAX_BATCH && (em = ring.peek()) != null);
+					// バッファの内容をまとめてファイル出力.
+					len = logDefineList.size();
+					for(i = 0; i < len; i ++) {
+						logEm = logDefineList.getLogDefineElement(i);
+						if(logEm != null) {
+							logEm.flushLog();
+						}
+					}
 				}
 			} catch (Throwable to) {
 				// スレッド中止.
@@ -388,7 +491,7 @@ final class LogWriteWorker extends Thread {
 		}
 		// ワーカースレッド処理後、残ったログを出力.
 		while (true) {
-			if ((em = queue.poll()) == null) {
+			if ((em = ring.peek()) == null) {
 				// Close処理.
 				len = logDefineList.size();
 				for(i = 0; i < len; i ++) {
@@ -404,20 +507,20 @@ final class LogWriteWorker extends Thread {
 			try {
 				// ログ出力.
 				write(utf8Buf, em.name, em.element, em.typeNo,
-					em.args);
+					em.time, em.args);
 				// ファイルOpenしたLogDefineElementをセット.
 				logDefineList.put(em.element);
 			} catch(Exception e) {}
 			em = null;
+			ring.release();
 		}
 		return ret;
 	}
 	
 	// ログ出力処理.
-	@SuppressWarnings("deprecation")
 	private static final void write(Utf8Buffer utf8Buf,
 		final String name, final LogDefineElement element,
-		final LogLevel typeNo, final Object[] args) {
+		final LogLevel typeNo, final long time, final Object[] args) {
 		final LogLevel logLevel = element.getLogLevel();
 		// 指定されたログレベル以下はログ出力させない場合.
 		if (typeNo.checkMinMaxEquals(logLevel) < 0) {
@@ -425,71 +528,29 @@ final class LogWriteWorker extends Thread {
 		}
 		final boolean consoleOut = element.isConsoleOut();
 		final long fileSize = element.getLogSize();
-		final String logDir = element.getDirectory();
-		// ログ出力先がない場合は作成.
-		final File dir = new File(logDir);
-		if (!dir.isDirectory()) {
-			dir.mkdirs();
-		}
-
-		final String format = format(typeNo, args);
+		final String format = format(typeNo, time, args);
 		final String fileName = name + ".log";
-		final File stat = new File(logDir + fileName);
-		final Date date = new Date(stat.lastModified());
-		final Date now = new Date();
-
+		
+		// UTF8文字列変換.
+		final int utf8Len = utf8Buf.convert(format);
+		
+		// ログファイルが開かれていない場合はオープン.
+		// ファイルサイズと日付はオープン時のみファイルから取得する.
+		if(!element.isOpenLog()) {
+			try {
+				element.openLog(fileName);
+			} catch(Exception e) {}
+		}
+		
 		// ファイルサイズの最大値が設定されていて、その最大値が増える場合.
 		// また、現在のログファイルの日付が、現在の日付と一致しない場合.
-		if (stat.isFile() && (
-			(fileSize > 0 && stat.length() + format.length() > fileSize) ||
-			((date.getYear() & 31) | ((date.getMonth() & 31) << 9) | ((date.getDate() & 31) << 18))
-			!=
-			((now.getYear() & 31) | ((now.getMonth() & 31) << 9) | ((now.getDate() & 31) << 18))
-		)) {
+		if (element.isOpenLog() && element.getFileLength() > 0L && (
+			(fileSize > 0 && element.getFileLength() + utf8Len > fileSize) ||
+			element.isChangeDay(time))) {
 			// 現在のログファイルをリネームして、新しいログファイルに移行する.
-			int p, v;
-			String n;
-			int cnt = -1;
-			File renameToStat = null;
-			final String tname;
-			
-			// 対象のelementをclose.
-			element.closeLog();
-			
-			// リネーム名を生成.
-			final String targetName = fileName + "." + LogUtil.dateString(date) + ".";
-			// 指定フォルダ内から、targetNameの条件とマッチするものを検索.
-			String[] list = dir.list(new FilenameFilter() {
-				public boolean accept(final File file, final String str) {
-					return str.indexOf(targetName) == 0;
-				}
-			});
-			// そこの一番高いカウント値＋１の値を取得.
-			String s;
-			int len = (list == null) ? 0 : list.length;
-			for (int i = 0; i < len; i++) {
-				n = list[i];
-				p = n.lastIndexOf(".");
-				s = n.substring(p + 1);
-				if(LogUtil.isNumeric(s)) {
-					v = Integer.parseInt(s);
-					if (cnt < v) {
-						cnt = v;
-					}
-				}
-			}
-			// 今回のファイルをリネーム.
-			tname = logDir + targetName + (cnt + 1);
-			renameToStat = new File(tname);
-			stat.renameTo(renameToStat);
-			// gzip変換.
-			toGzip(tname, renameToStat);
-			renameToStat = null;
+			rotate(fileName, element);
 		}
 		
-		// UTF8文字列変換.
-		int utf8Len = utf8Buf.convert(format);
-		
 		// ログ出力.
 		if(utf8Len > 0) {
 			element.writeLog(fileName, utf8Buf.buffer(), utf8Len);
@@ -502,11 +563,72 @@ final class LogWriteWorker extends Thread {
 		return;
 	}
 	
+	// 現在のログファイルをリネームして、新しいログファイルに移行する.
+	private static final void rotate(
+		final String fileName, final LogDefineElement element) {
+		int p, v;
+		String n;
+		int cnt = -1;
+		File renameToStat = null;
+		final String tname;
+		final String logDir = element.getDirectory();
+		final File dir = new File(logDir);
+		final File stat = new File(logDir + fileName);
+		final Date date = new Date(element.getFileDate());
+		
+		// 対象のelementをclose.
+		element.closeLog();
+		
+		// リネーム名を生成.
+		final String targetName = fileName + "." + LogUtil.dateString(date) + ".";
+		// 指定フォルダ内から、targetNameの条件とマッチするものを検索.
+		String[] list = dir.list(new FilenameFilter() {
+			public boolean accept(final File file, final String str) {
+				return str.indexOf(targetName) == 0;
+			}
+		});
+		// そこの一番高いカウント値＋１の値を取得.
+		String s;
+		int len = (list == null) ? 0 : list.length;
+		for (int i = 0; i < len; i++) {
+			n = list[i];
+			// gzip圧縮済みのファイルも対象とする.
+			if(n.endsWith(".gz")) {
+				n = n.substring(0, n.length() - 3);
+			}
+			p = n.lastIndexOf(".");
+			s = n.substring(p + 1);
+			if(LogUtil.isNumeric(s)) {
+				v = Integer.parseInt(s);
+				if (cnt < v) {
+					cnt = v;
+				}
+			}
+		}
+		// 今回のファイルをリネーム.
+		tname = logDir + targetName + (cnt + 1);
+		renameToStat = new File(tname);
+		stat.renameTo(renameToStat);
+		renameToStat = null;
+		// 新しいログファイルをオープン.
+		try {
+			element.openLog(fileName);
+		} catch(Exception e) {}
+		// gzip変換と古いファイルの削除は圧縮スレッドで実行.
+		LogRotationManager.rotated(element, fileName);
+	}
+	
 	// ログフォーマット情報を作成.
-	@SuppressWarnings("deprecation")
 	protected static final String format(LogLevel type, Object[] args) {
+		return format(type, System.currentTimeMillis(), args);
+	}
+	
+	// ログフォーマット情報を作成.
+	@SuppressWarnings("deprecation")
+	protected static final String format(LogLevel type, long time,
+		Object[] args) {
 		String n;
-		Date d = new Date();
+		Date d = new Date(time);
 		StringBuilder buf = new StringBuilder();
 		buf.append("[").append(d.getYear() + 1900).append("/")
 				.append("00".substring((n = "" + (d.getMonth() + 1)).length())).append(n).append("/")
@@ -538,55 +660,6 @@ final class LogWriteWorker extends Thread {
 		return sw.toString();
 	}
 
-	// ファイルをGZIP変換.
-	private static final void toGzip(String name, File stat) {
-		final String tname = name;
-		final File tstat = stat;
-		// gzip圧縮(スレッド実行).
-		final Thread t = new Thread() {
-			public void run() {
-				InputStream in = null;
-				try {
-					int len;
-					byte[] b = new byte[4096];
-					in = new BufferedInputStream(new FileInputStream(tname));
-					OutputStream out = null;
-					try {
-						// gzipで圧縮する.
-						out = new GZIPOutputStream(new BufferedOutputStream(
-							new FileOutputStream(tname + ".gz")));
-						while ((len = in.read(b)) != -1) {
-							out.write(b, 0, len);
-						}
-						out.flush();
-						out.close();
-						out = null;
-						in.close();
-						in = null;
-						// ファイル削除.
-						tstat.delete();
-					} catch (Exception e) {
-					} finally {
-						if (out != null) {
-							try {
-								out.close();
-							} catch (Exception e) {}
-						}
-					}
-				} catch (Exception e) {
-				} finally {
-					if (in != null) {
-						try {
-							in.close();
-						} catch (Exception e) {}
-					}
-				}
-			}
-		};
-		t.setDaemon(false);
-		t.start();
-	}
-	
 	/**
 	 * UTF8文字列をバイナリ変換.
 	 * @param out 受け取るバイナリ情報を設定します.
@@ -78,4 +78,16 @@ public @interface LogConfig {
 	 * ログ出力先ディレクトリ.
 	 */
 	public String directory() default "";
+	
+	/**
+	 * ローテーションしたログファイルの最大保持数.
+	 * 0の場合は無制限です.
+	 */
+	public int maxFiles() default 0;
+	
+	/**
+	 * ローテーションしたログファイルの最大合計サイズ.
+	 * 空の場合は無制限です.
+	 */
+	public String maxTotalSize() default "";
 }
@@ -0,0 +1,407 @@
+package quina.net;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import quina.net.nio.tcp.NioConstants;
+import quina.util.AtomicNumber;
+import quina.util.AtomicNumber64;
+
+/**
+ * 名前解決(DNS)キャッシュ.
+ *
+ * HttpClientの接続先やIpPermissionのドメイン定義の名前解決結果を
+ * 共有してキャッシュします.
+ *
+ * 名前解決に成功した結果は有効時間(ttl)、失敗した結果は
+ * 失敗時の有効時間(negativeTtl)を基準に管理します.
+ * 有効時間の80%を経過した結果は、参照時に別スレッドで
+ * 再取得を行い、再取得が終わるまでは有効時間を過ぎていても
+ * 現在の結果(失敗した結果を含む)を返却します.
+ * そのため参照元のスレッドで名前解決を待つのは、キャッシュに
+ * 存在しない名前の最初の名前解決のみとなります.
+ * また同一名の名前解決は同時に１つのみ行い、同時に参照した
+ * 他のスレッドはその結果を待ちます.
+ *
+ * 保持する件数が最大数を超える場合は、最も長く参照されていない
+ * 結果から破棄します.
+ */
+public final class DnsCache {
+	private DnsCache() {}
+
+	// デフォルトの有効時間(ミリ秒).
+	private static final long DEF_TTL =
+		NioConstants.NET_DNS_CACHE_SECOND * 1000L;
+
+	// デフォルトの名前解決失敗時の有効時間(ミリ秒).
+	private static final long DEF_NEGATIVE_TTL = 10000L;
+
+	// デフォルトの最大保持件数.
+	private static final int DEF_MAX_SIZE = 4096;
+
+	// 再取得を行うスレッド数.
+	private static final int REFRESH_THREADS = 2;
+
+	// 再取得の待ち行列の最大数.
+	private static final int QUEUE_LENGTH = 256;
+
+	// スレッドが処理待ちで終了するまでの時間(ミリ秒).
+	private static final long KEEP_ALIVE = 30000L;
+
+	// 有効時間.
+	private static final AtomicNumber64 ttl = new AtomicNumber64(DEF_TTL);
+
+	// 名前解決失敗時の有効時間.
+	private static final AtomicNumber64 negativeTtl =
+		new AtomicNumber64(DEF_NEGATIVE_TTL);
+
+	// 最大保持件数.
+	private static final AtomicNumber maxSize =
+		new AtomicNumber(DEF_MAX_SIZE);
+
+	// キャッシュ.
+	private static final Map<String, Element> cache =
+		new ConcurrentHashMap<String, Element>();
+
+	// 名前解決中の名前.
+	private static final Map<String, CompletableFuture<InetAddress>>
+		inflight = new ConcurrentHashMap<String,
+			CompletableFuture<InetAddress>>();
+
+	// 破棄処理のロック.
+	private static final Object evictLock = new Object();
+
+	// 再取得スレッド.
+	private static final ThreadPoolExecutor executor;
+
+	static {
+		final ThreadPoolExecutor e = new ThreadPoolExecutor(
+			REFRESH_THREADS, REFRESH_THREADS, KEEP_ALIVE,
+			TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<Runnable>(QUEUE_LENGTH),
+			new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					final Thread t = new Thread(r, "quina-dns-refresh");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		e.allowCoreThreadTimeOut(true);
+		executor = e;
+	}
+
+	// キャッシュ要素.
+	private static final class Element {
+		// 名前解決結果(nullの場合は名前解決失敗).
+		private final InetAddress addr;
+		// 有効期限.
+		private final long expire;
+		// 再取得開始時間.
+		private final long refresh;
+		// 最終参照時間.
+		private volatile long access;
+
+		private Element(InetAddress addr, long now) {
+			final long t = addr == null ? negativeTtl.get() : ttl.get();
+			this.addr = addr;
+			this.expire = now + t;
+			this.refresh = now + (t - (t / 5L));
+			this.access = now;
+		}
+
+		private Element(InetAddress addr, long expire, long refresh,
+			long access) {
+			this.addr = addr;
+			this.expire = expire;
+			this.refresh = refresh;
+			this.access = access;
+		}
+	}
+
+	/**
+	 * 名前解決結果の有効時間を取得.
+	 * @return long 有効時間(ミリ秒)が返却されます.
+	 */
+	public static final long getTtl() {
+		return ttl.get();
+	}
+
+	/**
+	 * 名前解決結果の有効時間を設定.
+	 * @param ttl 有効時間(ミリ秒)を設定します.
+	 */
+	public static final void setTtl(long ttl) {
+		if(ttl < 1000L) {
+			ttl = 1000L;
+		}
+		DnsCache.ttl.set(ttl);
+	}
+
+	/**
+	 * 名前解決失敗時の有効時間を取得.
+	 * @return long 有効時間(ミリ秒)が返却されます.
+	 */
+	public static final long getNegativeTtl() {
+		return negativeTtl.get();
+	}
+
+	/**
+	 * 名前解決失敗時の有効時間を設定.
+	 * @param negativeTtl 有効時間(ミリ秒)を設定します.
+	 *                    0 の場合は失敗した結果を保持しません.
+	 */
+	public static final void setNegativeTtl(long negativeTtl) {
+		if(negativeTtl < 0L) {
+			negativeTtl = 0L;
+		}
+		DnsCache.negativeTtl.set(negativeTtl);
+	}
+
+	/**
+	 * 最大保持件数を取得.
+	 * @return int 最大保持件数が返却されます.
+	 */
+	public static final int getMaxSize() {
+		return maxSize.get();
+	}
+
+	/**
+	 * 最大保持件数を設定.
+	 * @param maxSize 最大保持件数を設定します.
+	 */
+	public static final void setMaxSize(int maxSize) {
+		if(maxSize <= 0) {
+			maxSize = 1;
+		}
+		DnsCache.maxSize.set(maxSize);
+	}
+
+	/**
+	 * 現在の保持件数を取得.
+	 * @return int 保持件数が返却されます.
+	 */
+	public static final int size() {
+		return cache.size();
+	}
+
+	/**
+	 * キャッシュを全てクリア.
+	 */
+	public static final void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * 指定名のキャッシュを破棄.
+	 * @param name 対象のドメイン名を設定します.
+	 */
+	public static final void remove(String name) {
+		if(name != null) {
+			cache.remove(name.toLowerCase());
+		}
+	}
+
+	/**
+	 * 名前解決.
+	 * @param name 対象のドメイン名かIPアドレスを設定します.
+	 * @return InetAddress 名前解決結果が返却されます.
+	 * @exception UnknownHostException 名前解決に失敗しました.
+	 */
+	public static final InetAddress resolve(String name)
+		throws UnknownHostException {
+		final InetAddress ret = get(name);
+		if(ret == null) {
+			throw new UnknownHostException(name);
+		}
+		return ret;
+	}
+
+	/**
+	 * 名前解決.
+	 * @param name 対象のドメイン名かIPアドレスを設定します.
+	 * @return InetAddress 名前解決結果が返却されます.
+	 *                     nullの場合は名前解決に失敗しました.
+	 */
+	public static final InetAddress get(String name) {
+		if(name == null || name.isEmpty()) {
+			return null;
+		}
+		// IPアドレスの場合は名前解決を行わない.
+		if(isAddress(name)) {
+			try {
+				return InetAddress.getByName(name);
+			} catch(Exception e) {
+				return null;
+			}
+		}
+		final String key = name.toLowerCase();
+		final long now = System.currentTimeMillis();
+		final Element e = cache.get(key);
+		if(e != null) {
+			e.access = now;
+			// 再取得時間を過ぎた場合は別スレッドで再取得して
+			// 再取得が終わるまでは現在の結果を返却.
+			if(now >= e.refresh) {
+				refresh(key, e);
+			}
+			return e.addr;
+		}
+		// キャッシュが存在しない場合は名前解決.
+		return first(key);
+	}
+
+	/**
+	 * 名前解決を別スレッドで事前に実行.
+	 * @param name 対象のドメイン名を設定します.
+	 */
+	public static final void prefetch(String name) {
+		if(name == null || name.isEmpty() || isAddress(name)) {
+			return;
+		}
+		final String key = name.toLowerCase();
+		final Element e = cache.get(key);
+		if(e == null || System.currentTimeMillis() >= e.refresh) {
+			refresh(key, e);
+		}
+	}
+
+	// キャッシュに存在しない名前の名前解決.
+	// 同一名の名前解決中の場合はその結果を待つ.
+	private static final InetAddress first(String key) {
+		final CompletableFuture<InetAddress> f =
+			new CompletableFuture<InetAddress>();
+		final CompletableFuture<InetAddress> before =
+			inflight.putIfAbsent(key, f);
+		if(before != null) {
+			try {
+				return before.get();
+			} catch(Exception e) {
+				return null;
+			}
+		}
+		InetAddress ret = null;
+		try {
+			ret = lookup(key, cache.get(key));
+			return ret;
+		} finally {
+			inflight.remove(key, f);
+			f.complete(ret);
+		}
+	}
+
+	// 別スレッドで再取得.
+	private static final void refresh(final String key, final Element e) {
+		final CompletableFuture<InetAddress> f =
+			new CompletableFuture<InetAddress>();
+		// 既に名前解決中の場合は登録しない.
+		if(inflight.putIfAbsent(key, f) != null) {
+			return;
+		}
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					InetAddress ret = null;
+					try {
+						ret = lookup(key, cache.get(key));
+					} finally {
+						inflight.remove(key, f);
+						f.complete(ret);
+					}
+				}
+			});
+		} catch(RejectedExecutionException re) {
+			// 次回の参照時に再登録する.
+			inflight.remove(key, f);
+			f.complete(e == null ? null : e.addr);
+		}
+	}
+
+	// 名前解決してキャッシュに登録.
+	private static final InetAddress lookup(String key, Element old) {
+		InetAddress addr;
+		try {
+			addr = InetAddress.getByName(key);
+		} catch(Exception e) {
+			addr = null;
+		}
+		final long now = System.currentTimeMillis();
+		// 再取得に失敗した場合は有効期限まで元の結果を利用して
+		// 失敗時の有効時間の80%経過後に再取得する.
+		if(addr == null && old != null && old.addr != null &&
+			now < old.expire) {
+			final long t = Math.max(1000L, negativeTtl.get());
+			cache.put(key, new Element(old.addr, old.expire,
+				Math.min(old.expire, now + (t - (t / 5L))), old.access));
+			return old.addr;
+		}
+		// 失敗した結果を保持しない場合.
+		if(addr == null && negativeTtl.get() <= 0L) {
+			cache.remove(key);
+			return null;
+		}
+		cache.put(key, new Element(addr, now));
+		if(cache.size() > maxSize.get()) {
+			evict(now);
+		}
+		return addr;
+	}
+
+	// 期限切れと最も長く参照されていない結果を破棄.
+	private static final void evict(long now) {
+		synchronized(evictLock) {
+			Iterator<Map.Entry<String, Element>> it =
+				cache.entrySet().iterator();
+			// 期限切れを破棄.
+			while(it.hasNext()) {
+				if(now >= it.next().getValue().expire) {
+					it.remove();
+				}
+			}
+			Map.Entry<String, Element> n, min;
+			final int max = maxSize.get();
+			while(cache.size() > max) {
+				min = null;
+				it = cache.entrySet().iterator();
+				while(it.hasNext()) {
+					n = it.next();
+					if(min == null ||
+						n.getValue().access < min.getValue().access) {
+						min = n;
+					}
+				}
+				if(min == null) {
+					break;
+				}
+				cache.remove(min.getKey(), min.getValue());
+			}
+		}
+	}
+
+	// IPアドレス表記かチェック.
+	private static final boolean isAddress(String name) {
+		char c;
+		final int len = name.length();
+		// IPV6.
+		if(name.indexOf(":") != -1) {
+			return true;
+		}
+		// IPV4.
+		for(int i = 0; i < len; i ++) {
+			if(!((c = name.charAt(i)) == '.' || (c >= '0' && c <= '9'))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -143,7 +143,7 @@ public class IpPermission {
 					// InetAddress変換.
 					if(iaddr == null) {
 						try {
-							iaddr = InetAddress.getByName(addr);
+							iaddr = DnsCache.resolve(addr);
 						} catch(Exception e) {
 							return false;
 						}
@@ -90,6 +90,8 @@ public class IpV4Range {
 			this.max = toEndMaskLongIp(a[0], this.mask);
 		} else {
 			this.domain = addr;
+			// ドメイン名の名前解決を事前に実行.
+			DnsCache.prefetch(addr);
 		}
 	}
 	
@@ -173,7 +175,7 @@ public class IpV4Range {
 				m = convertLongIp("" + start);
 				if(m == null) {
 					m = convertLongIp(
-						InetAddress.getByName("" + start)
+						DnsCache.resolve("" + start)
 							.getAddress());
 				}
 			}
@@ -186,7 +188,7 @@ public class IpV4Range {
 				x = convertLongIp("" + end);
 				if(x == null) {
 					x = convertLongIp(
-						InetAddress.getByName("" + end)
+						DnsCache.resolve("" + end)
 							.getAddress());
 				}
 			}
@@ -275,7 +277,7 @@ public class IpV4Range {
 			// ドメインの可能性.
 			try {
 				// InetAddressで取得.
-				return convertLongIp(InetAddress.getByName(addr));
+				return convertLongIp(DnsCache.resolve(addr));
 			} catch(Exception e) {
 				// エラーの場合はnull返却.
 				return null;
@@ -302,7 +304,7 @@ public class IpV4Range {
 			// ドメインの可能性.
 			try {
 				// InetAddressで取得.
-				return convertLongIp(InetAddress.getByName(addr));
+				return convertLongIp(DnsCache.resolve(addr));
 			} catch(Exception ee) {
 				// エラーの場合はnull返却.
 				return null;
@@ -369,8 +371,8 @@ public class IpV4Range {
 	protected Boolean isEqDomain(String addr) {
 		if(domain != null) {
 			try {
-				return InetAddress.getByName(domain)
-					.equals(InetAddress.getByName(addr));
+				return DnsCache.resolve(domain)
+					.equals(DnsCache.resolve(addr));
 			} catch(Exception e) {
 				return false;
 			}
@@ -388,7 +390,7 @@ public class IpV4Range {
 	protected Boolean isEqDomain(InetAddress addr) {
 		if(domain != null) {
 			try {
-				return InetAddress.getByName(domain)
+				return DnsCache.resolve(domain)
 					.equals(addr);
 			} catch(Exception e) {
 				return false;
@@ -428,7 +430,7 @@ public class IpV4Range {
 		if(a == null) {
 			// InetAddressで再度チェック.
 			try {
-				return isRange(InetAddress.getByName(addr));
+				return isRange(DnsCache.resolve(addr));
 			} catch(Exception e) {
 				return false;
 			}
@@ -512,10 +514,8 @@ public class IpV4Range {
 					mask == r.mask;
 		} else if(r.domain != null) {
 			try {
-				return InetAddress
-					.getByName(domain)
-					.equals(InetAddress
-						.getByName(r.domain));
+				return DnsCache.resolve(domain)
+					.equals(DnsCache.resolve(r.domain));
 			} catch(Exception e) {}
 		}
 		return false;
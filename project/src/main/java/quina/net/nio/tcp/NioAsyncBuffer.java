@@ -27,6 +27,66 @@ public class NioAsyncBuffer {
 	// クローズ処理実行フラグ.
 	private final Flag closeFlag = new Flag(false);
 
+	// InputStream利用時のクローズ処理呼び出しフラグ.
+	private final Flag isCloseInputStream = new Flag(false);
+
+	// 格納可能な最大データ長(0以下の場合は無制限).
+	private final int maxLength;
+
+	// 書き込み待機のタイムアウト値(0以下の場合は無制限).
+	private final long writeTimeout;
+
+	// 書き込み待機用オブジェクト.
+	private final Object writeSync = new Object();
+
+	// 書き込み待機中のスレッドが存在する場合.
+	private volatile boolean waitWrite = false;
+
+	// 書き込み待機の最大単位時間(ミリ秒).
+	private static final long WRITE_WAIT_TIME = 50L;
+
+	/**
+	 * コンストラクタ.
+	 */
+	public NioAsyncBuffer() {
+		this(-1);
+	}
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * 最大データ長を設定した場合、OutputStreamでの書き込みは
+	 * 格納データ長が最大データ長以下になるまで読み込みを待機します.
+	 * これにより送信が追いつかない場合の書き込み側を一時停止します.
+	 *
+	 * 読み込みが行われない場合の書き込み待機のタイムアウト値は
+	 * 無通信が続くタイムアウト値となります.
+	 *
+	 * @param maxLength 格納可能な最大データ長を設定します.
+	 *                  0以下の場合は無制限です.
+	 */
+	public NioAsyncBuffer(int maxLength) {
+		this(maxLength, NioConstants.getTimeout());
+	}
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * 最大データ長を設定した場合、OutputStreamでの書き込みは
+	 * 格納データ長が最大データ長以下になるまで読み込みを待機します.
+	 * これにより送信が追いつかない場合の書き込み側を一時停止します.
+	 *
+	 * @param maxLength 格納可能な最大データ長を設定します.
+	 *                  0以下の場合は無制限です.
+	 * @param writeTimeout 書き込み待機のタイムアウト値(ミリ秒)を
+	 *                     設定します.
+	 *                     0以下の場合は無制限です.
+	 */
+	public NioAsyncBuffer(int maxLength, long writeTimeout) {
+		this.maxLength = maxLength;
+		this.writeTimeout = writeTimeout;
+	}
+
 	/**
 	 * クローズ処理.
 	 */
@@ -36,6 +96,7 @@ public class NioAsyncBuffer {
 		topBuffer = null;
 		buffer.clear();
 		bufferLength.set(0);
+		signalWrite();
 	}
 
 	/**
@@ -118,6 +179,76 @@ public class NioAsyncBuffer {
 		bufferLength.add(b.length);
 	}
 
+	/**
+	 * 格納可能な最大データ長を取得.
+	 * @return int 最大データ長が返却されます.
+	 *             0以下の場合は無制限です.
+	 */
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * 指定データ長の書き込みが可能になるまで待機.
+	 *
+	 * 格納データ長と書き込みデータ長の合計が最大データ長を超える場合は
+	 * 読み込みが行われるまで待機します.
+	 * ただし格納データが存在しない場合は待機しません.
+	 *
+	 * @param len 書き込むデータ長を設定します.
+	 * @exception IOException 読み込み側がクローズされた場合か
+	 *                        書き込み待機がタイムアウトした場合.
+	 */
+	public void awaitWrite(int len) throws IOException {
+		if(maxLength <= 0) {
+			return;
+		}
+		int bufLen;
+		long wait;
+		final long timeout = writeTimeout <= 0L ?
+			-1L : System.currentTimeMillis() + writeTimeout;
+		while((bufLen = bufferLength.get()) > 0 && bufLen + len > maxLength) {
+			if(closeFlag.get() || isCloseInputStream.get()) {
+				throw new IOException("NioAsyncBuffer reader is closed.");
+			}
+			// 読み込みが行われずにタイムアウトした場合.
+			wait = WRITE_WAIT_TIME;
+			if(timeout != -1L) {
+				if((wait = timeout - System.currentTimeMillis()) <= 0L) {
+					throw new IOException(
+						"NioAsyncBuffer write has timed out.");
+				} else if(wait > WRITE_WAIT_TIME) {
+					wait = WRITE_WAIT_TIME;
+				}
+			}
+			try {
+				synchronized(writeSync) {
+					waitWrite = true;
+					// 待機フラグ設定後に再確認.
+					if((bufLen = bufferLength.get()) > 0 &&
+						bufLen + len > maxLength) {
+						writeSync.wait(wait);
+					}
+					waitWrite = false;
+				}
+			} catch(InterruptedException ie) {
+				throw new IOException(ie);
+			}
+		}
+		if(closeFlag.get() || isCloseInputStream.get()) {
+			throw new IOException("NioAsyncBuffer reader is closed.");
+		}
+	}
+
+	// 書き込み待機中のスレッドに通知.
+	private final void signalWrite() {
+		if(waitWrite) {
+			synchronized(writeSync) {
+				writeSync.notifyAll();
+			}
+		}
+	}
+
 	/**
 	 * 読み込み処理.
 	 *
@@ -148,6 +279,15 @@ public class NioAsyncBuffer {
 	 * @return
 	 */
 	public int read(byte[] b, int off, int len) {
+		final int ret = readBuffer(b, off, len);
+		if(ret > 0) {
+			signalWrite();
+		}
+		return ret;
+	}
+
+	// バッファから読み込み.
+	private final int readBuffer(byte[] b, int off, int len) {
 		checkClose();
 		int bufLen, etcLen;
 		int ret = 0;
@@ -207,6 +347,15 @@ public class NioAsyncBuffer {
 	 * @return
 	 */
 	public int skip(int len) {
+		final int ret = skipBuffer(len);
+		if(ret > 0) {
+			signalWrite();
+		}
+		return ret;
+	}
+
+	// バッファをスキップ.
+	private final int skipBuffer(int len) {
 		checkClose();
 		int bufLen, etcLen;
 		int ret = 0;
@@ -424,6 +573,12 @@ public class NioAsyncBuffer {
 		 */
 		@Override
 		public void close() throws IOException {
+			final NioAsyncBuffer buf = this.buffer;
+			if(buf != null) {
+				// 書き込み待機中のスレッドを解除.
+				buf.isCloseInputStream.set(true);
+				buf.signalWrite();
+			}
 			this.buffer = null;
 		}
 
@@ -609,6 +764,8 @@ public class NioAsyncBuffer {
 		public void flush() throws IOException {
 			final NioAsyncBuffer buf = checkClose();
 			if(position > 0) {
+				// 最大データ長が設定されている場合は読み込みを待機.
+				buf.awaitWrite(position);
 				buf.write(outBuffer, 0, position);
 				position = 0;
 			}
@@ -0,0 +1,86 @@
+package quina.net.nio.tcp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Nio送信ByteBufferデータ.
+ *
+ * 共有されたByteBuffer(DirectBuffer等)をduplicateして送信します.
+ * 元のByteBufferの内容はコピーせずに参照するので、送信中に
+ * 元のByteBufferの内容を変更しないでください.
+ */
+public class NioSendBufferData extends AbstractNioSendData {
+	/** 元のByteBuffer. **/
+	private ByteBuffer src;
+
+	/** 送信用ByteBuffer. **/
+	private ByteBuffer buffer;
+
+	/**
+	 * コンストラクタ.
+	 * @param src 送信データのByteBufferを設定します.
+	 *            position から limit までが送信対象となります.
+	 */
+	public NioSendBufferData(ByteBuffer src) {
+		this.src = src;
+		this.buffer = src.duplicate();
+		this.length = buffer.remaining();
+		this.position = 0L;
+		this.closeFlag = false;
+	}
+
+	/**
+	 * クローズ処理.
+	 */
+	@Override
+	public void close() {
+		closeFlag = true;
+		src = null;
+		buffer = null;
+	}
+
+	/**
+	 * NioSendDataをコピー.
+	 * この処理は「複数先に同じものを送信したい場合」に利用します.
+	 * @return NioSendData コピーされたNioSendDataが返却されます.
+	 */
+	@Override
+	public NioSendData copy() {
+		check();
+		return new NioSendBufferData(src);
+	}
+
+	/**
+	 * データ取得.
+	 * @param buf 対象のByteBufferを設定します.
+	 * @return int 読み込まれたデータ数が返却されます.
+	 *             -1 の場合EOFに達しました.
+	 */
+	@Override
+	public int read(ByteBuffer buf) {
+		check();
+		if(!buf.hasRemaining()) {
+			return 0;
+		}
+		final int sendLen = Math.min(buf.remaining(), buffer.remaining());
+		if(sendLen <= 0) {
+			return -1;
+		}
+		// 受け取り先の空き分のみ転送.
+		final int limit = buffer.limit();
+		buffer.limit(buffer.position() + sendLen);
+		buf.put(buffer);
+		buffer.limit(limit);
+		position += (long)sendLen;
+		return sendLen;
+	}
+
+	@Override
+	public String toString() {
+		check();
+		return new StringBuilder("[BufferBody]")
+			.append(" position: ").append(position)
+			.append(", length: ").append(length)
+			.toString();
+	}
+}
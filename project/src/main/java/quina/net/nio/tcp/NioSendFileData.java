@@ -21,6 +21,9 @@ public class NioSendFileData extends AbstractNioSendData {
 	/** 送信ファイル名. **/
 	private String fileName;
 
+	/** 送信開始位置. **/
+	private long offset;
+
 	/** オブジェクトコピーカウント. **/
 	private AtomicNumber copyCount;
 
@@ -46,6 +49,28 @@ public class NioSendFileData extends AbstractNioSendData {
 		init(false, new File(fileName), length);
 	}
 
+	/**
+	 * コンストラクタ.
+	 * ファイルの指定範囲のみを送信します.
+	 * @param fileName Body送信対象のファイル名を設定します.
+	 * @param offset 送信開始位置を設定します.
+	 * @param length 送信するデータ長を設定します.
+	 * @exception IOException I/O例外.
+	 */
+	public NioSendFileData(String fileName, long offset, long length)
+		throws IOException {
+		init(false, new File(fileName), length);
+		if(offset > 0L) {
+			try {
+				this.channel.position(offset);
+			} catch(IOException e) {
+				close();
+				throw e;
+			}
+			this.offset = offset;
+		}
+	}
+
 	/**
 	 * コンストラクタ.
 	 * @param fileName Body送信対象のファイル名を設定します.
@@ -94,16 +119,22 @@ public class NioSendFileData extends AbstractNioSendData {
 	 *
 	 * @param length 対象のデータ長を設定します.
 	 * @param fileName 対象のファイル名を設定します.
+	 * @param offset 送信開始位置を設定します.
 	 * @exception IOException I/O例外.
 	 */
-	private NioSendFileData(long length, String fileName, AtomicNumber copyCount)
+	private NioSendFileData(long length, String fileName, long offset,
+		AtomicNumber copyCount)
 		throws IOException {
 		this.fileName = fileName;
+		this.offset = offset;
 		this.length = length;
 		this.position = 0L;
 		this.closeFlag = false;
 		this.copyCount = copyCount;
 		this.channel = openChannel(fileName);
+		if(offset > 0L) {
+			this.channel.position(offset);
+		}
 
 		// コピーカウントを１インクリメント.
 		if(copyCount != null) {
@@ -126,6 +157,7 @@ public class NioSendFileData extends AbstractNioSendData {
 		}
 		String fpath = file.getCanonicalPath();
 		this.fileName = fpath;
+		this.offset = 0L;
 		this.length = length;
 		this.position = 0L;
 		this.closeFlag = false;
@@ -197,7 +229,7 @@ public class NioSendFileData extends AbstractNioSendData {
 	public NioSendData copy() {
 		check();
 		try {
-			return new NioSendFileData(length, fileName, copyCount);
+			return new NioSendFileData(length, fileName, offset, copyCount);
 		} catch(Exception e) {
 			throw new NioException(e);
 		}
@@ -216,8 +248,24 @@ public class NioSendFileData extends AbstractNioSendData {
 		if(!buf.hasRemaining()) {
 			return 0;
 		}
-		// ファイル内容を読み込む.
-		final int readLen = channel.read(buf);
+		final long remaining = length - position;
+		if(remaining <= 0L) {
+			return -1;
+		}
+		final int readLen;
+		// 送信範囲を超える場合は受け取り先の読み込み範囲を制限.
+		if(buf.remaining() > remaining) {
+			final int limit = buf.limit();
+			buf.limit(buf.position() + (int)remaining);
+			try {
+				readLen = channel.read(buf);
+			} finally {
+				buf.limit(limit);
+			}
+		} else {
+			// ファイル内容を読み込む.
+			readLen = channel.read(buf);
+		}
 		// EOF.
 		if(readLen <= 0) {
 			return -1;
@@ -249,6 +297,7 @@ public class NioSendFileData extends AbstractNioSendData {
 		check();
 		return new StringBuilder("[FileBody]")
 			.append(" fileName: \"").append(fileName).append("\"")
+			.append(", offset: ").append(offset)
 			.append(", position: ").append(position)
 			.append(", length: ").append(length)
 			.append(", isEndToDelete: ").append(isEndToDelete())
@@ -50,6 +50,31 @@ public class NioClientConstants {
 	 */
 	private static final int MAX_RETRY = 16;
 
+	/**
+	 * HttpClientの接続プール.
+	 */
+	private static final boolean CONNECTION_POOL = true;
+
+	/**
+	 * HttpClientの接続先毎の最大接続数.
+	 */
+	private static final int MAX_CONNECTIONS = 32;
+
+	/**
+	 * HttpClientのプールした接続の最大アイドル時間(ミリ秒).
+	 */
+	private static final long POOL_IDLE_TIMEOUT = 30000L;
+
+	/**
+	 * HttpClientの非同期接続を行う最大スレッド数.
+	 */
+	private static final int ASYNC_THREADS = 16;
+
+	/**
+	 * HttpClientの非同期接続の最大待ち数.
+	 */
+	private static final int ASYNC_QUEUE = 1024;
+
 	// TCPクライアント用送信バッファ.
 	private static final AtomicNumber sendBuf = new AtomicNumber(NioClientConstants.SEND_BUFFER);
 
@@ -75,6 +100,25 @@ public class NioClientConstants {
 	// リトライ許容回数.
 	private static final AtomicNumber maxRetry = new AtomicNumber(MAX_RETRY);
 
+	// HttpClientの接続プール.
+	private static final Flag connectionPool = new Flag(CONNECTION_POOL);
+
+	// HttpClientの接続先毎の最大接続数.
+	private static final AtomicNumber maxConnections =
+		new AtomicNumber(MAX_CONNECTIONS);
+
+	// HttpClientのプールした接続の最大アイドル時間.
+	private static final AtomicNumber64 poolIdleTimeout =
+		new AtomicNumber64(POOL_IDLE_TIMEOUT);
+
+	// HttpClientの非同期接続を行う最大スレッド数.
+	private static final AtomicNumber asyncThreads =
+		new AtomicNumber(ASYNC_THREADS);
+
+	// HttpClientの非同期接続の最大待ち数.
+	private static final AtomicNumber asyncQueue =
+		new AtomicNumber(ASYNC_QUEUE);
+
 	/**
 	 * TCPクライアント用送信バッファ.
 	 * @return sendBuf
@@ -210,6 +254,97 @@ public class NioClientConstants {
 		NioClientConstants.maxRetry.set(maxRetry);
 	}
 
+	/**
+	 * HttpClientの接続プールが有効かチェック.
+	 * @return boolean trueの場合、接続プールは有効です.
+	 */
+	public static final boolean isConnectionPool() {
+		return connectionPool.get();
+	}
 
+	/**
+	 * HttpClientの接続プールを設定.
+	 * @param connectionPool trueの場合、接続をKeep-Aliveで再利用します.
+	 */
+	public static final void setConnectionPool(boolean connectionPool) {
+		NioClientConstants.connectionPool.set(connectionPool);
+	}
 
+	/**
+	 * HttpClientの接続先毎の最大接続数を取得.
+	 * @return int 接続先毎の最大接続数が返却されます.
+	 */
+	public static final int getMaxConnections() {
+		return maxConnections.get();
+	}
+
+	/**
+	 * HttpClientの接続先毎の最大接続数を設定.
+	 * @param maxConnections 接続先毎の最大接続数を設定します.
+	 */
+	public static final void setMaxConnections(int maxConnections) {
+		if(maxConnections <= 0) {
+			maxConnections = 1;
+		}
+		NioClientConstants.maxConnections.set(maxConnections);
+	}
+
+	/**
+	 * HttpClientのプールした接続の最大アイドル時間を取得.
+	 * @return long 最大アイドル時間(ミリ秒)が返却されます.
+	 */
+	public static final long getPoolIdleTimeout() {
+		return poolIdleTimeout.get();
+	}
+
+	/**
+	 * HttpClientのプールした接続の最大アイドル時間を設定.
+	 * @param poolIdleTimeout 最大アイドル時間(ミリ秒)を設定します.
+	 */
+	public static final void setPoolIdleTimeout(long poolIdleTimeout) {
+		if(poolIdleTimeout <= 0L) {
+			poolIdleTimeout = 1000L;
+		}
+		NioClientConstants.poolIdleTimeout.set(poolIdleTimeout);
+	}
+
+	/**
+	 * HttpClientの非同期接続を行う最大スレッド数を取得.
+	 * @return int 最大スレッド数が返却されます.
+	 */
+	public static final int getAsyncThreads() {
+		return asyncThreads.get();
+	}
+
+	/**
+	 * HttpClientの非同期接続を行う最大スレッド数を設定.
+	 * 最初の非同期接続の前に設定します.
+	 * @param asyncThreads 最大スレッド数を設定します.
+	 */
+	public static final void setAsyncThreads(int asyncThreads) {
+		if(asyncThreads <= 0) {
+			asyncThreads = 1;
+		}
+		NioClientConstants.asyncThreads.set(asyncThreads);
+	}
+
+	/**
+	 * HttpClientの非同期接続の最大待ち数を取得.
+	 * @return int 最大待ち数が返却されます.
+	 */
+	public static final int getAsyncQueue() {
+		return asyncQueue.get();
+	}
+
+	/**
+	 * HttpClientの非同期接続の最大待ち数を設定.
+	 * 最初の非同期接続の前に設定します.
+	 * @param asyncQueue 最大待ち数を設定します.
+	 */
+	public static final void setAsyncQueue(int asyncQueue) {
+		if(asyncQueue <= 0) {
+			asyncQueue = 1;
+		}
+		NioClientConstants.asyncQueue.set(asyncQueue);
+	}
 }
@@ -6,6 +6,7 @@ import java.net.Socket;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 
+import quina.net.DnsCache;
 import quina.net.nio.tcp.NioException;
 import quina.net.nio.tcp.SslCacerts;
 
@@ -58,7 +59,8 @@ public final class NioClientSocket {
 			SSLSocketFactory factory = SslCacerts.getSSLSocketFactory();
 			ret = (SSLSocket) factory.createSocket();
 			setSocketOption(ret, timeout);
-			ret.connect(new InetSocketAddress(addr, port), (int)timeout);
+			ret.connect(new InetSocketAddress(
+				DnsCache.resolve(addr), port), (int)timeout);
 			ret.startHandshake();
 		} catch (Exception e) {
 			if (ret != null) {
@@ -77,7 +79,8 @@ public final class NioClientSocket {
 		Socket ret = new Socket();
 		try {
 			setSocketOption(ret, timeout);
-			ret.connect(new InetSocketAddress(addr, port), (int)timeout);
+			ret.connect(new InetSocketAddress(
+				DnsCache.resolve(addr), port), (int)timeout);
 		} catch (Exception e) {
 			try {
 				ret.close();
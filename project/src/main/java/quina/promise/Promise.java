@@ -1,5 +1,7 @@
 package quina.promise;
 
+import java.util.concurrent.Executor;
+
 import quina.Quina;
 import quina.exception.QuinaException;
 import quina.thread.QuinaWait;
@@ -55,6 +57,9 @@ public class Promise {
 	protected PromiseFromEndWorkerCall firstCall = null;
 	// promiseアクション.
 	protected PromiseActionImpl action;
+	// 初期実行を行うExecutor.
+	// nullの場合はワーカースレッドで実行します.
+	protected Executor firstExecutor = null;
 	
 	/**
 	 * コンストラクタ.
@@ -81,6 +86,19 @@ public class Promise {
 			this.action, call);
 	}
 
+	/**
+	 * コンストラクタ.
+	 * ワーカースレッドを占有するブロッキング処理を初期実行する場合は
+	 * 専用のExecutorで実行します.
+	 * @param call 初期実行処理を設定します.
+	 * @param executor 初期実行を行うExecutorを設定します.
+	 *                 nullの場合はワーカースレッドで実行します.
+	 */
+	public Promise(PromiseFromEndCall call, Executor executor) {
+		this(call);
+		this.firstExecutor = executor;
+	}
+
 	// Promiseが開始している場合はエラー出力.
 	private static final void checkStartPromise(Promise p) {
 		if(p.isStart()) {
@@ -345,8 +363,18 @@ public class Promise {
 			firstCall = null;
 			// actionを自動実行させずに起動.
 			action.start(false);
+			// firstCallのExecutor実行.
+			if(firstExecutor != null) {
+				try {
+					firstExecutor.execute(() -> call.executeCall(0));
+				} catch(RuntimeException e) {
+					// 実行を受け付けない場合はリジェクト.
+					action.reject(e);
+				}
 			// firstCallのワーカー実行.
-			Quina.get().pushWorker(call);
+			} else {
+				Quina.get().pushWorker(call);
+			}
 		// 初期実行が定義されていない場合.
 		} else {
 			// actionを自動実行で起動.
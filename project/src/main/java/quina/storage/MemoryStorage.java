@@ -4,20 +4,28 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Date;
-import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
 
 import quina.exception.QuinaException;
+import quina.util.AtomicNumber64;
 import quina.util.BinaryIO;
 import quina.util.BooleanUtil;
 import quina.util.DateUtil;
+import quina.util.Flag;
 import quina.util.NumberUtil;
 import quina.util.StringUtil;
-import quina.util.collection.IndexKeyValueList;
 import quina.util.collection.TypesClass;
 import quina.util.collection.TypesConstants;
 
 /**
  * メモリストレージ情報.
+ * 
+ * 各Storageは個別のConcurrentHashMapで要素を管理するので
+ * 他のStorageとロックを共有せず、読み込み・書き込み共に
+ * ロックなしで処理します.
+ * 
+ * スナップショットから読み込まれた要素は最初に参照された時に
+ * 解析してConcurrentHashMapに昇格します.
  */
 public class MemoryStorage implements Storage {
 	
@@ -28,14 +36,28 @@ public class MemoryStorage implements Storage {
 	protected String managerName;
 	
 	// ストレージ管理.
-	protected IndexKeyValueList<String, Object> keyValue =
-		new IndexKeyValueList<String, Object>();
+	protected final ConcurrentHashMap<String, Object> keyValue =
+		new ConcurrentHashMap<String, Object>();
 	
 	// 更新時間.
-	protected long accessTime;
+	protected volatile long accessTime;
 	
-	// Read/Writeロック.
-	protected final ReadWriteLock lock;
+	// 削除済みフラグ.
+	protected final Flag removeFlag = new Flag(false);
+	
+	// 遅延読み込み対象のスナップショット.
+	// nullの場合は全ての要素がkeyValueに存在します.
+	protected volatile MemoryStorageSnapshot.View mapped = null;
+	
+	// スナップショットの要素を削除した事を示す要素.
+	protected static final Object REMOVED = new Object();
+	
+	// 要素毎の有効期限.
+	protected final ConcurrentHashMap<String, Long> keyExpire =
+		new ConcurrentHashMap<String, Long>();
+	
+	// 有効期限インデックスに登録されているバケット.
+	protected final AtomicNumber64 expiryBucket = new AtomicNumber64(-1L);
 	
 	/**
 	 * コンストラクタ.
@@ -46,8 +68,7 @@ public class MemoryStorage implements Storage {
 		MemoryStorageManager man, String name) {
 		this.manager = man;
 		this.managerName = name;
-		this.lock = man.lock;
-		this.accessTime = System.currentTimeMillis();
+		setUpdateTime(System.currentTimeMillis());
 	}
 	
 	/**
@@ -55,11 +76,11 @@ public class MemoryStorage implements Storage {
 	 * @param time 更新時間を設定します.
 	 */
 	protected void setUpdateTime(long time) {
-		lock.writeLock().lock();
-		try {
-			accessTime = time;
-		} finally {
-			lock.writeLock().unlock();
+		accessTime = time;
+		// 有効期限インデックスを更新.
+		final MemoryStorageExpiry expiry = manager.expiry;
+		if(expiry != null) {
+			expiry.touch(this, time);
 		}
 	}
 	
@@ -69,12 +90,14 @@ public class MemoryStorage implements Storage {
 	 */
 	@Override
 	public long getUpdateTime() {
-		lock.readLock().lock();
-		try {
-			return accessTime;
-		} finally {
-			lock.readLock().unlock();
-		}
+		return accessTime;
+	}
+	
+	/**
+	 * このStorageを削除済みに設定.
+	 */
+	protected void removed() {
+		removeFlag.set(true);
 	}
 	
 	/**
@@ -82,12 +105,13 @@ public class MemoryStorage implements Storage {
 	 */
 	@Override
 	public void clear() {
-		lock.writeLock().lock();
-		try {
-			keyValue.clear();
-		} finally {
-			lock.writeLock().unlock();
+		final MemoryStorageWal wal = manager.wal;
+		if(wal != null) {
+			wal.clear(managerName);
 		}
+		mapped = null;
+		keyValue.clear();
+		keyExpire.clear();
 	}
 	
 	// 引数チェック.
@@ -103,8 +127,8 @@ public class MemoryStorage implements Storage {
 	
 	// storageの存在確認.
 	protected void checkStorage() {
-		// storageが存在する場合に要素追加.
-		if(!manager.isStorage(managerName)) {
+		// storageが削除されていない場合に処理.
+		if(removeFlag.get() || manager.destroyFlag.get()) {
 			// 存在しない場合は410エラー.
 			// 410:ファイルが削除されたため、ほぼ永久的にWebページが
 			//     存在しない.
@@ -116,7 +140,48 @@ public class MemoryStorage implements Storage {
 	
 	// アクセス時間を更新.
 	protected final void updateTime() {
-		accessTime = System.currentTimeMillis();
+		setUpdateTime(System.currentTimeMillis());
+	}
+	
+	// 要素をセット.
+	protected Storage setValue(String key, final Object value) {
+		key = checkArgs(key, value);
+		checkStorage();
+		final MemoryStorageWal wal = manager.wal;
+		if(wal == null) {
+			// 再セットで有効期限は解除.
+			keyExpire.remove(key);
+			keyValue.put(key, value);
+		} else {
+			// 同一キーに対する更新順とWALの出力順を一致させる.
+			keyValue.compute(key, (k, v) -> {
+				wal.set(managerName, k, value);
+				keyExpire.remove(k);
+				return value;
+			});
+		}
+		updateTime();
+		return this;
+	}
+	
+	// 要素を取得.
+	protected Object getValue(String key) {
+		// 有効期限切れの場合は削除.
+		if(isExpired(key)) {
+			return null;
+		}
+		Object ret = keyValue.get(key);
+		if(ret == null) {
+			final MemoryStorageSnapshot.View v = mapped;
+			// スナップショットの要素を解析してヒープに昇格.
+			if(v != null && (ret = v.get(key)) != null) {
+				final Object o = keyValue.putIfAbsent(key, ret);
+				if(o != null) {
+					ret = o;
+				}
+			}
+		}
+		return ret == REMOVED ? null : ret;
 	}
 	
 	/**
@@ -127,16 +192,7 @@ public class MemoryStorage implements Storage {
 	 */
 	@Override
 	public Storage set(String key, Boolean value) {
-		lock.writeLock().lock();
-		try {
-			key = checkArgs(key, value);
-			checkStorage();
-			keyValue.put(key, value);
-			updateTime();
-			return this;
-		} finally {
-			lock.writeLock().unlock();
-		}
+		return setValue(key, value);
 	}
 	
 	/**
@@ -147,16 +203,7 @@ public class MemoryStorage implements Storage {
 	 */
 	@Override
 	public Storage set(String key, Byte value) {
-		lock.writeLock().lock();
-		try {
-			key = checkArgs(key, value);
-			checkStorage();
-			keyValue.put(key, value);
-			updateTime();
-			return this;
-		} finally {
-			lock.writeLock().unlock();
-		}
+		return setValue(key, value);
 	}
 	
 	/**
@@ -167,16 +214,7 @@ public class MemoryStorage implements Storage {
 	 */
 	@Override
 	public Storage set(String key, Short value) {
-		lock.writeLock().lock();
-		try {
-			key = checkArgs(key, value);
-			checkStorage();
-			keyValue.put(key, value);
-			updateTime();
-			return this;
-		} finally {
-			lock.writeLock().unlock();
-		}
+		return setValue(key, value);
 	}
 	
 	/**
@@ -187,16 +225,7 @@ public class MemoryStorage implements Storage {
 	 */
 	@Override
 	public Storage set(String key, Integer value) {
-		lock.writeLock().lock();
-		try {
-			key = checkArgs(key, value);
-			checkStorage();
-			keyValue.put(key, value);
-			updateTime();
-			return this;
-		} finally {
-			lock.writeLock().unlock();
-		}
+		return setValue(key, value);
 	}
 	
 	/**
@@ -207,16 +236,7 @@ public class MemoryStorage implements Storage {
 	 */
 	@Override
 	public Storage set(String key, Long value) {
-		lock.writeLock().lock();
-		try {
-			key = checkArgs(key, value);
-			checkStorage();
-			keyValue.put(key, value);
-			updateTime();
-			return this;
-		} finally {
-			lock.writeLock().unlock();
-		}
+		return setValue(key, value);
 	}
 	
 	/**
@@ -227,16 +247,7 @@ public class MemoryStorage implements Storage {
 	 */
 	@Override
 	public Storage set(String key, Float value) {
-		lock.writeLock().lock();
-		try {
-			key = checkArgs(key, value);
-			checkStorage();
-			keyValue.put(key, value);
-			updateTime();
-			return this;
-		} finally {
-			lock.writeLock().unlock();
-		}
+		return setValue(key, value);
 	}
 	
 	/**
@@ -247,16 +258,7 @@ public class MemoryStorage implements Storage {
 	 */
 	@Override
 	public Storage set(String key, Double value) {
-		lock.writeLock().lock();
-		try {
-			key = checkArgs(key, value);
-			checkStorage();
-			keyValue.put(key, value);
-			updateTime();
-			return this;
-		} finally {
-			lock.writeLock().unlock();
-		}
+		return setValue(key, value);
 	}
 	
 	/**
@@ -267,16 +269,7 @@ public class MemoryStorage implements Storage {
 	 */
 	@Override
 	public Storage set(String key, String value) {
-		lock.writeLock().lock();
-		try {
-			key = checkArgs(key, value);
-			checkStorage();
-			keyValue.put(key, value);
-			updateTime();
-			return this;
-		} finally {
-			lock.writeLock().unlock();
-		}
+		return setValue(key, value);
 	}
 	
 	/**
@@ -287,16 +280,7 @@ public class MemoryStorage implements Storage {
 	 */
 	@Override
 	public Storage set(String key, Date value) {
-		lock.writeLock().lock();
-		try {
-			key = checkArgs(key, value);
-			checkStorage();
-			keyValue.put(key, value);
-			updateTime();
-			return this;
-		} finally {
-			lock.writeLock().unlock();
-		}
+		return setValue(key, value);
 	}
 	
 	/**
@@ -309,14 +293,9 @@ public class MemoryStorage implements Storage {
 		if(key == null || (key = key.trim()).isEmpty()) {
 			return null;
 		}
-		lock.readLock().lock();
-		try {
-			checkStorage();
-			updateTime();
-			return BooleanUtil.parseBoolean(keyValue.get(key));
-		} finally {
-			lock.readLock().unlock();
-		}
+		checkStorage();
+		updateTime();
+		return BooleanUtil.parseBoolean(getValue(key));
 	}
 	
 	/**
@@ -329,14 +308,9 @@ public class MemoryStorage implements Storage {
 		if(key == null || (key = key.trim()).isEmpty()) {
 			return null;
 		}
-		lock.readLock().lock();
-		try {
-			checkStorage();
-			updateTime();
-			return NumberUtil.parseByte(keyValue.get(key));
-		} finally {
-			lock.readLock().unlock();
-		}
+		checkStorage();
+		updateTime();
+		return NumberUtil.parseByte(getValue(key));
 	}
 	
 	/**
@@ -349,14 +323,9 @@ public class MemoryStorage implements Storage {
 		if(key == null || (key = key.trim()).isEmpty()) {
 			return null;
 		}
-		lock.readLock().lock();
-		try {
-			checkStorage();
-			updateTime();
-			return NumberUtil.parseShort(keyValue.get(key));
-		} finally {
-			lock.readLock().unlock();
-		}
+		checkStorage();
+		updateTime();
+		return NumberUtil.parseShort(getValue(key));
 	}
 	
 	/**
@@ -369,14 +338,9 @@ public class MemoryStorage implements Storage {
 		if(key == null || (key = key.trim()).isEmpty()) {
 			return null;
 		}
-		lock.readLock().lock();
-		try {
-			checkStorage();
-			updateTime();
-			return NumberUtil.parseInt(keyValue.get(key));
-		} finally {
-			lock.readLock().unlock();
-		}
+		checkStorage();
+		updateTime();
+		return NumberUtil.parseInt(getValue(key));
 	}
 	
 	/**
@@ -389,14 +353,9 @@ public class MemoryStorage implements Storage {
 		if(key == null || (key = key.trim()).isEmpty()) {
 			return null;
 		}
-		lock.readLock().lock();
-		try {
-			checkStorage();
-			updateTime();
-			return NumberUtil.parseLong(keyValue.get(key));
-		} finally {
-			lock.readLock().unlock();
-		}
+		checkStorage();
+		updateTime();
+		return NumberUtil.parseLong(getValue(key));
 	}
 	
 	/**
@@ -409,14 +368,9 @@ public class MemoryStorage implements Storage {
 		if(key == null || (key = key.trim()).isEmpty()) {
 			return null;
 		}
-		lock.readLock().lock();
-		try {
-			checkStorage();
-			updateTime();
-			return NumberUtil.parseFloat(keyValue.get(key));
-		} finally {
-			lock.readLock().unlock();
-		}
+		checkStorage();
+		updateTime();
+		return NumberUtil.parseFloat(getValue(key));
 	}
 	
 	/**
@@ -429,14 +383,9 @@ public class MemoryStorage implements Storage {
 		if(key == null || (key = key.trim()).isEmpty()) {
 			return null;
 		}
-		lock.readLock().lock();
-		try {
-			checkStorage();
-			updateTime();
-			return NumberUtil.parseDouble(keyValue.get(key));
-		} finally {
-			lock.readLock().unlock();
-		}
+		checkStorage();
+		updateTime();
+		return NumberUtil.parseDouble(getValue(key));
 	}
 
 	/**
@@ -449,14 +398,9 @@ public class MemoryStorage implements Storage {
 		if(key == null || (key = key.trim()).isEmpty()) {
 			return null;
 		}
-		lock.readLock().lock();
-		try {
-			checkStorage();
-			updateTime();
-			return StringUtil.parseString(keyValue.get(key));
-		} finally {
-			lock.readLock().unlock();
-		}
+		checkStorage();
+		updateTime();
+		return StringUtil.parseString(getValue(key));
 	}
 	
 	/**
@@ -468,14 +412,9 @@ public class MemoryStorage implements Storage {
 		if(key == null || (key = key.trim()).isEmpty()) {
 			return null;
 		}
-		lock.readLock().lock();
-		try {
-			checkStorage();
-			updateTime();
-			return DateUtil.parseDate(keyValue.get(key));
-		} finally {
-			lock.readLock().unlock();
-		}
+		checkStorage();
+		updateTime();
+		return DateUtil.parseDate(getValue(key));
 	}
 	
 	/**
@@ -489,14 +428,9 @@ public class MemoryStorage implements Storage {
 		if(key == null || (key = key.trim()).isEmpty()) {
 			return null;
 		}
-		lock.readLock().lock();
-		try {
-			checkStorage();
-			updateTime();
-			return getTypesClass(keyValue.get(key));
-		} finally {
-			lock.readLock().unlock();
-		}
+		checkStorage();
+		updateTime();
+		return getTypesClass(getValue(key));
 	}
 	
 	/**
@@ -509,14 +443,17 @@ public class MemoryStorage implements Storage {
 		if(key == null || (key = key.trim()).isEmpty()) {
 			return false;
 		}
-		lock.readLock().lock();
-		try {
-			checkStorage();
-			updateTime();
-			return keyValue.containsKey(key);
-		} finally {
-			lock.readLock().unlock();
+		checkStorage();
+		updateTime();
+		if(isExpired(key)) {
+			return false;
+		}
+		final Object o = keyValue.get(key);
+		if(o == null) {
+			final MemoryStorageSnapshot.View v = mapped;
+			return v != null && v.find(key) != -1;
 		}
+		return o != REMOVED;
 	}
 	
 	/**
@@ -528,13 +465,33 @@ public class MemoryStorage implements Storage {
 		if(key == null || (key = key.trim()).isEmpty()) {
 			return;
 		}
-		lock.writeLock().lock();
-		try {
-			checkStorage();
-			updateTime();
-			keyValue.remove(key);
-		} finally {
-			lock.writeLock().unlock();
+		checkStorage();
+		updateTime();
+		removeValue(key);
+	}
+	
+	// 要素を削除.
+	private final void removeValue(String key) {
+		final MemoryStorageWal wal = manager.wal;
+		final MemoryStorageSnapshot.View v = mapped;
+		keyExpire.remove(key);
+		// スナップショットの要素が存在する場合は削除済みを設定.
+		if(wal == null) {
+			if(v == null) {
+				keyValue.remove(key);
+			} else {
+				keyValue.put(key, REMOVED);
+			}
+		} else {
+			// 同一キーに対する更新順とWALの出力順を一致させる.
+			keyValue.compute(key, (k, o) -> {
+				wal.remove(managerName, k);
+				return v == null ? null : REMOVED;
+			});
+		}
+		// 並行してclearされた場合は削除済みの設定を取り消す.
+		if(v != null && mapped == null) {
+			keyValue.remove(key, REMOVED);
 		}
 	}
 	
@@ -544,13 +501,121 @@ public class MemoryStorage implements Storage {
 	 */
 	@Override
 	public int size() {
-		lock.readLock().lock();
-		try {
-			checkStorage();
-			updateTime();
+		checkStorage();
+		updateTime();
+		final MemoryStorageSnapshot.View v = mapped;
+		if(v == null) {
 			return keyValue.size();
-		} finally {
-			lock.readLock().unlock();
+		}
+		// ヒープの要素とヒープに昇格していないスナップショットの
+		// 要素をカウント.
+		int ret = 0;
+		for(Object o : keyValue.values()) {
+			if(o != REMOVED) {
+				ret ++;
+			}
+		}
+		final int len = v.size();
+		for(int i = 0; i < len; i ++) {
+			if(!keyValue.containsKey(v.key(i))) {
+				ret ++;
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * 指定要素の有効期限を設定.
+	 * @param key キー名を設定します.
+	 * @param ttl 有効期限(ミリ秒)を設定します.
+	 *            0以下の場合は有効期限を解除します.
+	 * @return boolean trueの場合、設定されました.
+	 */
+	@Override
+	public boolean expire(String key, long ttl) {
+		if(key == null || (key = key.trim()).isEmpty()) {
+			return false;
+		}
+		checkStorage();
+		updateTime();
+		// スナップショットの要素はヒープに昇格.
+		if(getValue(key) == null) {
+			return false;
+		}
+		final long deadline = ttl <= 0L ?
+			0L : System.currentTimeMillis() + ttl;
+		final MemoryStorageWal wal = manager.wal;
+		final Flag ret = new Flag(false);
+		// 同一キーに対する更新順とWALの出力順を一致させる.
+		keyValue.computeIfPresent(key, (k, v) -> {
+			if(v != REMOVED) {
+				if(wal != null) {
+					wal.expire(managerName, k, deadline);
+				}
+				setExpire(k, deadline);
+				ret.set(true);
+			}
+			return v;
+		});
+		return ret.get();
+	}
+	
+	/**
+	 * 指定要素の有効期限までの残り時間を取得.
+	 * @param key キー名を設定します.
+	 * @return long 残り時間(ミリ秒)が返却されます.
+	 *              有効期限が設定されていない場合は-1が返却されます.
+	 */
+	@Override
+	public long getExpire(String key) {
+		if(key == null || (key = key.trim()).isEmpty()) {
+			return -1L;
+		}
+		checkStorage();
+		updateTime();
+		final Long deadline = keyExpire.get(key);
+		if(deadline == null) {
+			return -1L;
+		}
+		return Math.max(0L, deadline - System.currentTimeMillis());
+	}
+	
+	// 有効期限を設定.
+	private final void setExpire(String key, long deadline) {
+		if(deadline <= 0L) {
+			keyExpire.remove(key);
+			return;
+		}
+		keyExpire.put(key, deadline);
+		final MemoryStorageExpiry expiry = manager.expiry;
+		if(expiry != null) {
+			expiry.expire(this, key, deadline);
+		}
+	}
+	
+	// 有効期限切れの場合は削除してtrueを返却.
+	private final boolean isExpired(String key) {
+		if(keyExpire.isEmpty()) {
+			return false;
+		}
+		final Long deadline = keyExpire.get(key);
+		if(deadline != null &&
+			deadline <= System.currentTimeMillis()) {
+			expireKey(key, deadline);
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * 有効期限切れの要素を削除.
+	 * @param key キー名を設定します.
+	 * @param deadline 有効期限を設定します.
+	 */
+	protected void expireKey(String key, long deadline) {
+		// 有効期限が変更されていない場合のみ削除.
+		if(!removeFlag.get() && keyExpire.remove(key, deadline)) {
+			removeValue(key);
 		}
 	}
 	
@@ -581,6 +646,114 @@ public class MemoryStorage implements Storage {
 		return TypesClass.String;
 	}
 	
+	/**
+	 * 要素の読み込み.
+	 * @param in 読み込み元のInputStreamを設定します.
+	 * @param tmp テンポラリ用のバイナリを設定します.
+	 * @return Object 読み込まれた要素が返却されます.
+	 * @throws IOException I/O例外.
+	 */
+	protected static final Object readValue(InputStream in, byte[] tmp)
+		throws IOException {
+		final TypesClass cls = TypesClass.getByTypeNo(
+			BinaryIO.readInt1(in, tmp));
+		switch(cls) {
+			case Null:
+				return null;
+			case Boolean:
+				return BinaryIO.readInt1(in, tmp) == 1;
+			case Byte:
+				return (byte)BinaryIO.readInt1(in, tmp);
+			case Short:
+				return (short)BinaryIO.readInt2(in, tmp);
+			case Integer:
+				return BinaryIO.readInt4(in, tmp);
+			case Long:
+				return BinaryIO.readLong(in, tmp);
+			case Float:
+				return Float.intBitsToFloat(
+					BinaryIO.readInt4(in, tmp));
+			case Double:
+				return Double.longBitsToDouble(
+					BinaryIO.readLong(in, tmp));
+			case Date:
+				return new Date(BinaryIO.readLong(in, tmp));
+			case String:
+				return BinaryIO.readString(in, tmp);
+			default :
+				// string.
+				return BinaryIO.readString(in, tmp);
+		}
+	}
+	
+	/**
+	 * 要素の書き込み.
+	 * @param out 保存先のOutputStreamを設定します.
+	 * @param tmp テンポラリ用のバイナリを設定します.
+	 * @param value 書き込む要素を設定します.
+	 * @throws IOException I/O例外.
+	 */
+	protected static final void writeValue(
+		OutputStream out, byte[] tmp, Object value)
+		throws IOException {
+		// valueがnull.
+		if(value == null) {
+			BinaryIO.writeInt1(out, tmp,
+				TypesConstants.TYPENO_NULL);
+			return;
+		}
+		// タイプ毎に保存.
+		final TypesClass cls = getTypesClass(value);
+		switch(cls) {
+		case Boolean:
+			BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
+			BinaryIO.writeInt1(out, tmp,
+				((Boolean)value) ? 1 : 0);
+			break;
+		case Byte:
+			BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
+			BinaryIO.writeInt1(out, tmp, (Number)value);
+			break;
+		case Short:
+			BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
+			BinaryIO.writeInt2(out, tmp, (Number)value);
+			break;
+		case Integer:
+			BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
+			BinaryIO.writeInt4(out, tmp, (Integer)value);
+			break;
+		case Long:
+			BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
+			BinaryIO.writeLong(out, tmp, (Long)value);
+			break;
+		case Float:
+			BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
+			BinaryIO.writeInt4(out, tmp,
+				Float.floatToIntBits((Float)value));
+			break;
+		case Double:
+			BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
+			BinaryIO.writeLong(out, tmp,
+				Double.doubleToLongBits((Double)value));
+			break;
+		case Date:
+			BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
+			BinaryIO.writeLong(out, tmp,
+				((Date)value).getTime());
+			break;
+		case String:
+			BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
+			BinaryIO.writeString(out, tmp, (String)value);
+			break;
+		default:
+			// Stirng.
+			BinaryIO.writeInt1(out, tmp,
+				TypesClass.String.getTypeNo());
+			BinaryIO.writeString(out, tmp, value.toString());
+			break;
+		}
+	}
+	
 	/**
 	 * Storageの読み込み.
 	 * @param in 読み込み元のInputStreamを設定します.
@@ -590,7 +763,6 @@ public class MemoryStorage implements Storage {
 		throws IOException {
 		String key;
 		Object value;
-		TypesClass cls;
 		final byte[] tmp = BinaryIO.createTmp();
 		// 更新時間.
 		accessTime = BinaryIO.readLong(in, tmp);
@@ -598,128 +770,56 @@ public class MemoryStorage implements Storage {
 		final int len = BinaryIO.readSavingInt(in, tmp);
 		for(int i = 0; i < len; i ++) {
 			key = BinaryIO.readString(in, tmp);
-			cls = TypesClass.getByTypeNo(
-				BinaryIO.readInt1(in, tmp));
-			switch(cls) {
-				case Null:
-					value = null;
-					break;
-				case Boolean:
-					value = BinaryIO.readInt1(in, tmp) == 1;
-					break;
-				case Byte:
-					value = (byte)BinaryIO.readInt1(in, tmp);
-					break;
-				case Short:
-					value = (short)BinaryIO.readInt2(in, tmp);
-					break;
-				case Integer:
-					value = BinaryIO.readInt4(in, tmp);
-					break;
-				case Long:
-					value = BinaryIO.readLong(in, tmp);
-					break;
-				case Float:
-					value = Float.intBitsToFloat(
-						BinaryIO.readInt4(in, tmp));
-					break;
-				case Double:
-					value = Double.longBitsToDouble(
-						BinaryIO.readLong(in, tmp));
-					break;
-				case Date:
-					value = new Date(BinaryIO.readLong(in, tmp));
-					break;
-				case String:
-					value = BinaryIO.readString(in, tmp);
-					break;
-				default :
-					// string.
-					value = BinaryIO.readString(in, tmp);
-					break;
+			value = readValue(in, tmp);
+			// ConcurrentHashMapはnullを保持できないので除外.
+			if(value != null) {
+				keyValue.put(key, value);
 			}
-			keyValue.put(key, value);
 			key = null; value = null;
 		}
 	}
 	
 	/**
-	 * Storageの保存.
-	 * @param out 保存先のOutputStreamを設定します.
-	 * @throws IOException I/O例外.
+	 * WALの再実行で要素をセット.
+	 * @param key キー名を設定します.
+	 * @param value 要素を設定します.
 	 */
-	protected void save(OutputStream out)
-		throws IOException {
-		TypesClass cls;
-		final byte[] tmp = BinaryIO.createTmp();
-		// 更新時間.
-		BinaryIO.writeLong(out, tmp, accessTime);
-		// storageLength.
-		final int len = keyValue.size();
-		BinaryIO.writeSavingBinary(out, tmp, len);
-		String key;
-		Object value;
-		for(int i = 0; i < len; i ++) {
-			key = keyValue.keyAt(i);
-			value = keyValue.valueAt(i);
-			// key.
-			BinaryIO.writeString(out, tmp, key);
-			// valueがnull.
-			if(value == null) {
-				BinaryIO.writeInt1(out, tmp,
-					TypesConstants.TYPENO_NULL);
-				continue;
-			}
-			// タイプ毎に保存.
-			cls = getTypesClass(value);
-			switch(cls) {
-			case Boolean:
-				BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
-				BinaryIO.writeInt1(out, tmp,
-					((Boolean)value) ? 1 : 0);
-				break;
-			case Byte:
-				BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
-				BinaryIO.writeInt1(out, tmp, (Integer)value);
-				break;
-			case Short:
-				BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
-				BinaryIO.writeInt2(out, tmp, (Integer)value);
-				break;
-			case Integer:
-				BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
-				BinaryIO.writeInt4(out, tmp, (Integer)value);
-				break;
-			case Long:
-				BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
-				BinaryIO.writeLong(out, tmp, (Long)value);
-				break;
-			case Float:
-				BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
-				BinaryIO.writeInt4(out, tmp,
-					Float.floatToIntBits((Float)value));
-				break;
-			case Double:
-				BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
-				BinaryIO.writeLong(out, tmp,
-					Double.doubleToLongBits((Long)value));
-				break;
-			case Date:
-				BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
-				BinaryIO.writeLong(out, tmp,
-					((Date)value).getTime());
-				break;
-			case String:
-				BinaryIO.writeInt1(out, tmp, cls.getTypeNo());
-				BinaryIO.writeString(out, tmp, (String)value);
-				break;
-			default:
-				// Stirng.
-				BinaryIO.writeInt1(out, tmp,
-					TypesClass.String.getTypeNo());
-				BinaryIO.writeString(out, tmp, value.toString());
-				break;
-			}
+	protected void replaySet(String key, Object value) {
+		if(value != null) {
+			keyValue.put(key, value);
+		}
+		keyExpire.remove(key);
+	}
+	
+	/**
+	 * WALの再実行で要素を削除.
+	 * @param key キー名を設定します.
+	 */
+	protected void replayRemove(String key) {
+		keyExpire.remove(key);
+		if(mapped == null) {
+			keyValue.remove(key);
+		} else {
+			keyValue.put(key, REMOVED);
 		}
 	}
+	
+	/**
+	 * WALの再実行で要素をクリア.
+	 */
+	protected void replayClear() {
+		mapped = null;
+		keyValue.clear();
+		keyExpire.clear();
+	}
+	
+	/**
+	 * WALの再実行や読み込みで有効期限をセット.
+	 * @param key キー名を設定します.
+	 * @param deadline 有効期限を設定します.
+	 *                 0以下の場合は有効期限を解除します.
+	 */
+	protected void replayExpire(String key, long deadline) {
+		setExpire(key, deadline);
+	}
 }
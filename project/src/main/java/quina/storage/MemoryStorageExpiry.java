@@ -0,0 +1,150 @@
+package quina.storage;
+
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * MemoryStorageの有効期限インデックス.
+ *
+ * 最終アクセス時間と要素の有効期限を一定時間幅のバケットで
+ * 管理するので、タイムアウト処理は全Storageを走査せずに
+ * 期限切れのバケットのみ処理します.
+ *
+ * バケットへの登録はアクセス時間が後のバケットに移った時のみ
+ * 行い、古いバケットに残った登録は処理時に読み飛ばします.
+ * 登録先バケットの更新はCASで行うので、１つのバケットへの
+ * 登録は１スレッドのみが行います.
+ */
+final class MemoryStorageExpiry {
+
+	// 要素の有効期限を管理するバケットの時間幅.
+	private static final long KEY_SPAN = 1000L;
+
+	// 要素の有効期限.
+	private static final class KeyExpire {
+		protected final MemoryStorage storage;
+		protected final String key;
+		protected final long deadline;
+
+		protected KeyExpire(MemoryStorage storage, String key,
+			long deadline) {
+			this.storage = storage;
+			this.key = key;
+			this.deadline = deadline;
+		}
+	}
+
+	// Storageのバケットの時間幅.
+	private final long span;
+
+	// 最終アクセス時間のバケット.
+	private final ConcurrentSkipListMap<Long, Queue<MemoryStorage>> storages =
+		new ConcurrentSkipListMap<Long, Queue<MemoryStorage>>();
+
+	// 要素の有効期限のバケット.
+	private final ConcurrentSkipListMap<Long, Queue<KeyExpire>> keys =
+		new ConcurrentSkipListMap<Long, Queue<KeyExpire>>();
+
+	/**
+	 * コンストラクタ.
+	 * @param span バケットの時間幅(ミリ秒)を設定します.
+	 */
+	protected MemoryStorageExpiry(long span) {
+		this.span = span <= 0L ? KEY_SPAN : span;
+	}
+
+	/**
+	 * Storageの最終アクセス時間を登録.
+	 * @param ms 対象のMemoryStorageを設定します.
+	 * @param time 最終アクセス時間を設定します.
+	 */
+	protected void touch(MemoryStorage ms, long time) {
+		moveBucket(ms, -1L, time / span);
+	}
+
+	// 登録先バケットを後のバケットに移す.
+	// before が -1 以外の場合は登録先がbeforeの場合のみ移す.
+	private void moveBucket(MemoryStorage ms, long before, long bucket) {
+		long now;
+		while(true) {
+			now = ms.expiryBucket.get();
+			// 同一か後のバケットに登録済み.
+			if(now >= bucket || (before != -1L && now != before)) {
+				return;
+			}
+			// 登録先の更新に成功したスレッドのみ登録する.
+			if(ms.expiryBucket.compareAndSet(now, bucket)) {
+				storages.computeIfAbsent(bucket,
+					k -> new ConcurrentLinkedQueue<MemoryStorage>())
+					.offer(ms);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 要素の有効期限を登録.
+	 * @param ms 対象のMemoryStorageを設定します.
+	 * @param key 対象のキー名を設定します.
+	 * @param deadline 有効期限を設定します.
+	 */
+	protected void expire(MemoryStorage ms, String key, long deadline) {
+		keys.computeIfAbsent(deadline / KEY_SPAN,
+			k -> new ConcurrentLinkedQueue<KeyExpire>())
+			.offer(new KeyExpire(ms, key, deadline));
+	}
+
+	/**
+	 * タイムアウト処理を実行.
+	 * @param manager 対象のMemoryStorageManagerを設定します.
+	 * @param timeout Storageのタイムアウト値を設定します.
+	 * @param nowTime 現在の時間を設定します.
+	 */
+	protected void executeTimeout(MemoryStorageManager manager,
+		long timeout, long nowTime) {
+		// タイムアウトしたStorageを削除.
+		long bucket;
+		MemoryStorage ms;
+		Entry<Long, Queue<MemoryStorage>> se;
+		while((se = storages.firstEntry()) != null) {
+			bucket = se.getKey();
+			// バケット内の全てのアクセス時間がタイムアウトしていない.
+			if((bucket + 1L) * span + timeout > nowTime) {
+				break;
+			}
+			storages.remove(bucket, se.getValue());
+			final Queue<MemoryStorage> q = se.getValue();
+			while((ms = q.poll()) != null) {
+				// 別のバケットに移ったStorageは移動先で処理する.
+				if(ms.expiryBucket.get() != bucket || ms.removeFlag.get()) {
+					continue;
+				}
+				// タイムアウトした場合は削除.
+				if(ms.getUpdateTime() + timeout < nowTime) {
+					manager.removeStorage(ms);
+				// タイムアウトしていない場合は現在のアクセス時間の
+				// バケットに登録し直す.
+				} else {
+					moveBucket(ms, bucket, Math.max(
+						ms.getUpdateTime() / span, bucket + 1L));
+				}
+			}
+		}
+		// 有効期限切れの要素を削除.
+		KeyExpire ke;
+		Entry<Long, Queue<KeyExpire>> ee;
+		while((ee = keys.firstEntry()) != null) {
+			bucket = ee.getKey();
+			if((bucket + 1L) * KEY_SPAN > nowTime) {
+				break;
+			}
+			keys.remove(bucket, ee.getValue());
+			final Queue<KeyExpire> q = ee.getValue();
+			while((ke = q.poll()) != null) {
+				ke.storage.expireKey(ke.key, ke.deadline);
+			}
+		}
+	}
+}
@@ -60,23 +60,26 @@ final class MemoryStorageLoopElement
 	 * @param time 現在の時間が設定されます.
 	 */
 	protected void executeTimeout(long nowTime) {
+		// 読み込み中の場合は処理しない.
+		if(!manager.loadFlag.get()) {
+			return;
+		}
+		// 有効期限インデックスが存在する場合は
+		// 期限切れのバケットのみ処理する.
+		final MemoryStorageExpiry expiry = manager.expiry;
+		if(expiry != null) {
+			expiry.executeTimeout(manager, timeout, nowTime);
+			return;
+		}
 		// タイムアウトチェックを行う.
-		String key;
 		MemoryStorage ms;
-		final int len = manager.size();
-		for(int i = len - 1; i >= 0; i --) {
-			// キー名を取得.
-			if((key = manager.keyAt(i)) == null) {
-				continue;
-			}
-			// Storageを取得.
-			ms = (MemoryStorage)manager.getStorage(key);
-			if(ms == null) {
-				continue;
-			}
+		final MemoryStorage[] list = manager.storages();
+		final int len = list.length;
+		for(int i = 0; i < len; i ++) {
+			ms = list[i];
 			// タイムアウトの場合は削除.
 			if(ms.getUpdateTime() + timeout < nowTime) {
-				manager.removeStorage(key);
+				manager.removeStorage(ms);
 			}
 		}
 	}
@@ -1,14 +1,17 @@
 package quina.storage;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
 
 import quina.exception.QuinaException;
+import quina.thread.QuinaWait;
 import quina.util.BinaryIO;
 import quina.util.Flag;
-import quina.util.collection.IndexKeyValueList;
 
 /**
  * MemoryStorageManager.
@@ -23,19 +26,36 @@ public class MemoryStorageManager
 	};
 	
 	// 管理オブジェクト.
-	protected final IndexKeyValueList<String, MemoryStorage> manager;
-	
-	// Read-Writeロックオブジェクト.
-	protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+	protected final ConcurrentHashMap<String, MemoryStorage> manager;
 	
 	// 破棄フラグ.
 	protected final Flag destroyFlag = new Flag(false);
 	
+	// 読み込み完了フラグ.
+	protected final Flag loadFlag = new Flag(true);
+	
+	// 読み込み失敗フラグ.
+	protected final Flag loadFailureFlag = new Flag(false);
+	
+	// デフォルトの読み込み待機タイムアウト(ミリ秒).
+	protected static final long DEF_LOAD_TIMEOUT = 60000L;
+	
+	// 読み込み待機タイムアウト(ミリ秒).
+	protected volatile long loadTimeout = DEF_LOAD_TIMEOUT;
+	
+	// WriteAheadLog.
+	// nullの場合はWALを出力しません.
+	protected volatile MemoryStorageWal wal = null;
+	
+	// 有効期限インデックス.
+	// nullの場合はタイムアウト処理で全Storageを確認します.
+	protected volatile MemoryStorageExpiry expiry = null;
+	
 	/**
 	 * コンストラクタ.
 	 */
 	public MemoryStorageManager() {
-		manager = new IndexKeyValueList<String, MemoryStorage>();
+		manager = new ConcurrentHashMap<String, MemoryStorage>();
 	}
 	
 	/**
@@ -43,6 +63,15 @@ public class MemoryStorageManager
 	 * @param in 永続化されたファイルのInputStreamを設定します.
 	 */
 	public MemoryStorageManager(InputStream in) {
+		manager = new ConcurrentHashMap<String, MemoryStorage>();
+		load(in);
+	}
+	
+	/**
+	 * 永続化されたMemoryStorageを読み込む.
+	 * @param in 永続化されたファイルのInputStreamを設定します.
+	 */
+	protected void load(InputStream in) {
 		try {
 			int i;
 			final byte[] tmp = BinaryIO.createTmp();
@@ -54,6 +83,19 @@ public class MemoryStorageManager
 					"The persisted content does not match the Memory " +
 					"Storage Manager.");
 			}
+			// スナップショット形式の場合.
+			if(MemoryStorageSnapshot.isHeader(
+				ByteBuffer.wrap(tmp, 0, plen))) {
+				final ByteArrayOutputStream bo = new ByteArrayOutputStream();
+				bo.write(tmp, 0, plen);
+				final byte[] b = new byte[4096];
+				while((len = in.read(b)) != -1) {
+					bo.write(b, 0, len);
+				}
+				MemoryStorageSnapshot.attach(
+					this, ByteBuffer.wrap(bo.toByteArray()));
+				return;
+			}
 			// 永続化ヘッダ内容が一致しない.
 			for(i = 0; i < plen; i ++) {
 				if(PERSISTENCE_STORAGE_HEADER[i] != tmp[i]) {
@@ -64,8 +106,6 @@ public class MemoryStorageManager
 			}
 			MemoryStorage storage;
 			String name;
-			final IndexKeyValueList<String, MemoryStorage> man = new
-				IndexKeyValueList<String, MemoryStorage>();
 			// 永続化したMemoryStorage数を取得して読み込み.
 			final int storageLen = BinaryIO.readSavingInt(in, tmp);
 			for(i = 0; i < storageLen; i ++) {
@@ -75,13 +115,44 @@ public class MemoryStorageManager
 				storage = new MemoryStorage(this, name);
 				storage.load(in);
 				// マネージャにセット.
-				man.put(name, storage);
+				manager.put(name, storage);
+			}
+		} catch(QuinaException qe) {
+			throw qe;
+		} catch(Exception e) {
+			throw new QuinaException(e);
+		}
+	}
+	
+	/**
+	 * 永続化されたMemoryStorageファイルを読み込む.
+	 * スナップショット形式の場合はファイルを読み込み専用で
+	 * マッピングして、要素は最初に参照された時に解析します.
+	 * @param file 永続化されたファイル名を設定します.
+	 */
+	protected void load(String file) {
+		InputStream in = null;
+		try {
+			final ByteBuffer buf = MemoryStorageSnapshot.map(file);
+			if(buf != null) {
+				MemoryStorageSnapshot.attach(this, buf);
+				return;
 			}
-			this.manager = man;
+			// 以前の形式の場合はInputStreamで読み込む.
+			in = new BufferedInputStream(new FileInputStream(file));
+			load(in);
+			in.close();
+			in = null;
 		} catch(QuinaException qe) {
 			throw qe;
 		} catch(Exception e) {
 			throw new QuinaException(e);
+		} finally {
+			if(in != null) {
+				try {
+					in.close();
+				} catch(Exception e) {}
+			}
 		}
 	}
 	
@@ -93,6 +164,74 @@ public class MemoryStorageManager
 		destroyFlag.set(true);
 	}
 	
+	/**
+	 * 読み込み中に設定.
+	 * 読み込み完了まで各処理は待機します.
+	 */
+	protected void startLoad() {
+		loadFlag.set(false);
+	}
+	
+	/**
+	 * 読み込み完了に設定.
+	 */
+	protected void endLoad() {
+		loadFlag.set(true);
+	}
+	
+	/**
+	 * 読み込み失敗に設定.
+	 * 読み込みに失敗した場合は不完全な内容で
+	 * 前回の保存内容を上書きしないようにし、
+	 * Storageへのアクセスを拒否します.
+	 */
+	protected void failLoad() {
+		loadFailureFlag.set(true);
+	}
+	
+	/**
+	 * 読み込みに失敗したか取得.
+	 * @return boolean trueの場合読み込みに失敗しています.
+	 */
+	protected boolean isLoadFailure() {
+		return loadFailureFlag.get();
+	}
+	
+	/**
+	 * 読み込み待機タイムアウトを設定.
+	 * @param timeout 読み込み待機タイムアウト(ミリ秒)を設定します.
+	 *                0以下の場合はデフォルト値になります.
+	 */
+	protected void setLoadTimeout(long timeout) {
+		loadTimeout = timeout <= 0L ? DEF_LOAD_TIMEOUT : timeout;
+	}
+	
+	/**
+	 * 読み込み待機タイムアウトまで読み込み完了を待機.
+	 * @return boolean falseの場合タイムアウトしました.
+	 */
+	protected boolean waitLoad() {
+		return loadFlag.get() || QuinaWait.await(loadTimeout, loadFlag);
+	}
+	
+	/**
+	 * 読み込み完了まで待機.
+	 * 読み込みに失敗した場合は書き込んだ内容が保存されないため
+	 * Storageへのアクセスを拒否します.
+	 * @exception QuinaException 読み込み待機がタイムアウトした場合か
+	 *                           読み込みに失敗した場合に発生します.
+	 */
+	protected void awaitLoad() {
+		if(!waitLoad()) {
+			throw new QuinaException(503,
+				"Loading of the memory storage has timed out.");
+		} else if(loadFailureFlag.get()) {
+			throw new QuinaException(503,
+				"The memory storage is not available because " +
+				"loading it failed.");
+		}
+	}
+	
 	// 名前チェック.
 	protected String checkName(String name) {
 		if(name == null || (name = name.trim()).isEmpty()) {
@@ -109,20 +248,30 @@ public class MemoryStorageManager
 			return null;
 		}
 		name = checkName(name);
-		lock.writeLock().lock();
-		try {
-			if(manager.containsKey(name)) {
-				// 既に存在している場合.
-				throw new QuinaException(
-					"Storage \"" + name +
-					"\" with the specified name already exists.");
-			}
-			MemoryStorage ret = new MemoryStorage(this, name);
-			manager.put(name, ret);
-			return ret;
-		} finally {
-			lock.writeLock().unlock();
+		awaitLoad();
+		final MemoryStorage ret = new MemoryStorage(this, name);
+		final MemoryStorageWal w = wal;
+		final MemoryStorage before;
+		if(w == null) {
+			before = manager.putIfAbsent(name, ret);
+		} else {
+			// 同一名に対する更新順とWALの出力順を一致させる.
+			final String n = name;
+			before = manager.compute(name, (k, v) -> {
+				if(v == null) {
+					w.createStorage(n);
+					return ret;
+				}
+				return v;
+			});
+		}
+		if(before != null && before != ret) {
+			// 既に存在している場合.
+			throw new QuinaException(
+				"Storage \"" + name +
+				"\" with the specified name already exists.");
 		}
+		return ret;
 	}
 
 	@Override
@@ -132,12 +281,59 @@ public class MemoryStorageManager
 			return;
 		}
 		name = checkName(name);
-		lock.writeLock().lock();
-		try {
-			manager.remove(name);
-		} finally {
-			lock.writeLock().unlock();
+		awaitLoad();
+		final MemoryStorageWal w = wal;
+		final MemoryStorage ms;
+		if(w == null) {
+			ms = manager.remove(name);
+		} else {
+			// 同一名に対する更新順とWALの出力順を一致させる.
+			final MemoryStorage[] out = new MemoryStorage[1];
+			manager.computeIfPresent(name, (k, v) -> {
+				w.removeStorage(k);
+				out[0] = v;
+				return null;
+			});
+			ms = out[0];
+		}
+		if(ms != null) {
+			ms.removed();
+		}
+	}
+	
+	/**
+	 * 指定Storageが登録されている場合のみ削除.
+	 * @param ms 削除対象のMemoryStorageを設定します.
+	 * @return boolean trueの場合削除されました.
+	 */
+	protected boolean removeStorage(MemoryStorage ms) {
+		// 破棄済みの場合は処理しない.
+		if(destroyFlag.get()) {
+			return false;
+		}
+		// 同一名で再作成されたStorageは削除しない.
+		final MemoryStorageWal w = wal;
+		if(w == null) {
+			if(manager.remove(ms.managerName, ms)) {
+				ms.removed();
+				return true;
+			}
+			return false;
 		}
+		// 同一名に対する更新順とWALの出力順を一致させる.
+		final boolean[] out = new boolean[1];
+		manager.computeIfPresent(ms.managerName, (k, v) -> {
+			if(v != ms) {
+				return v;
+			}
+			w.removeStorage(k);
+			out[0] = true;
+			return null;
+		});
+		if(out[0]) {
+			ms.removed();
+		}
+		return out[0];
 	}
 
 	@Override
@@ -147,12 +343,8 @@ public class MemoryStorageManager
 			return null;
 		}
 		name = checkName(name);
-		lock.readLock().lock();
-		try {
-			return manager.get(name);
-		} finally {
-			lock.readLock().unlock();
-		}
+		awaitLoad();
+		return manager.get(name);
 	}
 
 	@Override
@@ -162,12 +354,8 @@ public class MemoryStorageManager
 			return false;
 		}
 		name = checkName(name);
-		lock.readLock().lock();
-		try {
-			return manager.containsKey(name);
-		} finally {
-			lock.readLock().unlock();
-		}
+		awaitLoad();
+		return manager.containsKey(name);
 	}
 
 	@Override
@@ -176,32 +364,20 @@ public class MemoryStorageManager
 		if(destroyFlag.get()) {
 			return 0;
 		}
-		lock.readLock().lock();
-		try {
-			return manager.size();
-		} finally {
-			lock.readLock().unlock();
-		}
+		awaitLoad();
+		return manager.size();
 	}
 	
 	/**
-	 * 項番を指定してキー名を取得.
-	 * @param no 対象の項番を設定します.
-	 * @return String キー名が返却されます.
+	 * 現在登録されているMemoryStorage一覧を取得.
+	 * @return MemoryStorage[] MemoryStorage一覧が返却されます.
 	 */
-	protected String keyAt(int no) {
-		// 破棄済みの場合は処理しない.
-		if(destroyFlag.get()) {
-			return null;
-		}
-		lock.readLock().lock();
-		try {
-			return manager.keyAt(no);
-		} catch(Exception e) {
-			return null;
-		} finally {
-			lock.readLock().unlock();
+	protected MemoryStorage[] storages() {
+		// 破棄済み or 読み込み中の場合は処理しない.
+		if(destroyFlag.get() || !loadFlag.get()) {
+			return new MemoryStorage[0];
 		}
+		return manager.values().toArray(new MemoryStorage[0]);
 	}
 	
 	/**
@@ -213,25 +389,18 @@ public class MemoryStorageManager
 		if(destroyFlag.get()) {
 			return;
 		}
-		lock.readLock().lock();
 		try {
-			final byte[] tmp = BinaryIO.createTmp();
-			// ヘッダ.
-			out.write(PERSISTENCE_STORAGE_HEADER);
-			// 長さ.
-			final int len = manager.size();
-			BinaryIO.writeSavingBinary(out, tmp, len);
-			// 各MemoryStorageを永続化.
-			for(int i = 0; i < len; i ++) {
-				BinaryIO.writeString(out, tmp, manager.keyAt(i));
-				manager.valueAt(i).save(out);
-			}
+			// 読み込み中の場合は完了まで待機.
+			awaitLoad();
+			// 保存中の追加・削除で件数がずれないように現在の一覧を取得.
+			final MemoryStorage[] list = manager.values()
+				.toArray(new MemoryStorage[0]);
+			// スナップショット形式で永続化.
+			MemoryStorageSnapshot.write(list, out);
 		} catch(QuinaException qe) {
 			throw qe;
 		} catch(Exception e) {
 			throw new QuinaException(e);
-		} finally {
-			lock.readLock().unlock();
 		}
 	}
-}
\ No newline at end of file
+}
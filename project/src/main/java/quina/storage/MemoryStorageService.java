@@ -1,11 +1,5 @@
 package quina.storage;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -13,6 +7,7 @@ import quina.Quina;
 import quina.QuinaConfig;
 import quina.QuinaUtil;
 import quina.exception.QuinaException;
+import quina.logger.LogFactory;
 import quina.util.FileUtil;
 import quina.util.Flag;
 import quina.util.collection.TypesClass;
@@ -38,8 +33,17 @@ public class MemoryStorageService
 		,StorageConstants.TIMEOUT, TypesClass.Long, StorageConstants.getTimeout()
 		,StorageConstants.TIMING, TypesClass.Long, StorageConstants.getCheckTiming()
 		,"saveFile", TypesClass.String, SAVE_FILE_NAME
+		,"wal", TypesClass.Boolean, true
+		,"walSyncTiming", TypesClass.Long, 1000L
+		,"snapshotTiming", TypesClass.Long, 300000L
+		,"snapshotWalSize", TypesClass.Long, 67108864L
+		,"asyncLoad", TypesClass.Boolean, true
+		,"loadTimeout", TypesClass.Long, 60000L
 	);
 	
+	// WriteAheadLog.
+	private MemoryStorageWal wal;
+	
 	// 開始サービスフラグ.
 	private final Flag startFlag = new Flag(false);
 	
@@ -91,25 +95,49 @@ public class MemoryStorageService
 	 */
 	@Override
 	public void startService() {
-		InputStream in = null;
-		MemoryStorageManager man;
+		final MemoryStorageManager man;
+		final MemoryStorageWal w;
 		MemoryStorageLoopElement em;
 		wlock();
 		try {
 			// 一度起動している場合はエラー.
 			checkService(true);
-			// 前回保存されたStorage保存先ファイルが存在する場合.
-			if(FileUtil.isFile(config.getString("saveFile"))) {
-				// InputStreamを取得.
-				in = new BufferedInputStream(
-					new FileInputStream(config.getString("saveFile")));
-				// Storageの読み込み.
-				man = new MemoryStorageManager(in);
-				in.close();
-				in = null;
+			final String saveFile = config.getString("saveFile");
+			// 空のStorageを生成して読み込み中にする.
+			man = new MemoryStorageManager();
+			man.startLoad();
+			man.setLoadTimeout(config.getLong("loadTimeout"));
+			// 有効期限インデックスを設定.
+			man.expiry = new MemoryStorageExpiry(
+				StorageConstants.getCheckTiming(
+					config.getLong(StorageConstants.TIMING)));
+			// WriteAheadLogを利用する場合.
+			if(config.getBoolean("wal")) {
+				w = new MemoryStorageWal(man, saveFile
+					,config.getLong("walSyncTiming")
+					,config.getLong("snapshotTiming")
+					,config.getLong("snapshotWalSize"));
+			} else {
+				w = null;
+			}
+			// 非同期で読み込む場合.
+			// 読み込み完了までStorageへのアクセスは待機します.
+			if(config.getBoolean("asyncLoad")) {
+				final Thread t = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							loadStorage(man, w, saveFile);
+						} catch(Exception e) {
+							LogFactory.getInstance().get().error(
+								"Failed to load the memory storage.", e);
+						}
+					}
+				});
+				t.setDaemon(true);
+				t.start();
 			} else {
-				// 空のStorageを生成.
-				man = new MemoryStorageManager();
+				loadStorage(man, w, saveFile);
 			}
 			// Storageタイムアウト監視Loop要素を生成.
 			em = new MemoryStorageLoopElement(
@@ -122,6 +150,7 @@ public class MemoryStorageService
 			QuinaUtil.startServiceLog(this);
 			// スタートアップ完了.
 			this.manager = man;
+			this.wal = w;
 			// サービス開始.
 			startFlag.set(true);
 		} catch(QuinaException qe) {
@@ -130,11 +159,42 @@ public class MemoryStorageService
 			throw new QuinaException(e);
 		} finally {
 			wulock();
-			if(in != null) {
-				try {
-					in.close();
-				} catch(Exception ee) {}
+		}
+	}
+	
+	// 前回保存されたStorageとWriteAheadLogを読み込む.
+	private static final void loadStorage(
+		MemoryStorageManager man, MemoryStorageWal w, String saveFile) {
+		boolean success = false;
+		try {
+			// 前回保存されたStorage保存先ファイルが存在する場合.
+			if(FileUtil.isFile(saveFile)) {
+				man.load(saveFile);
 			}
+			if(w != null) {
+				// スナップショット以降の操作を再実行.
+				w.replay();
+				// 読み込み完了前にサービスが停止された場合.
+				if(man.destroyFlag.get()) {
+					return;
+				}
+				// 新しい世代のWALで出力開始.
+				w.open();
+				man.wal = w;
+				w.startThread();
+			}
+			success = true;
+		} catch(QuinaException qe) {
+			throw qe;
+		} catch(Exception e) {
+			throw new QuinaException(e);
+		} finally {
+			// 読み込みに失敗した場合.
+			if(!success) {
+				man.failLoad();
+			}
+			// 読み込み完了.
+			man.endLoad();
 		}
 	}
 	
@@ -143,23 +203,40 @@ public class MemoryStorageService
 	 */
 	@Override
 	public void stopService() {
-		OutputStream out = null;
 		wlock();
 		try {
 			// 開始していない or 既に停止してる場合
 			if(!startFlag.get()) {
 				return;
 			}
-			// MemoryStorage内容の保存先を生成.
-			out = new BufferedOutputStream(
-				new FileOutputStream(
-					config.getString("saveFile")));
-			// 保存処理.
-			manager.save(out);
-			out.flush();
-			// クローズ.
-			out.close();
-			out = null;
+			final String saveFile = config.getString("saveFile");
+			// 読み込み中の場合は完了まで待機.
+			// タイムアウトした場合は読み込み失敗として扱う.
+			if(!manager.waitLoad()) {
+				manager.failLoad();
+			}
+			// WriteAheadLogを停止.
+			final MemoryStorageWal w = manager.wal;
+			if(w != null) {
+				manager.wal = null;
+				w.stopThread();
+				w.awaitExit();
+			}
+			// 読み込みに失敗した場合は前回の保存内容と
+			// WALファイルを上書き・削除せずに残します.
+			if(manager.isLoadFailure()) {
+				LogFactory.getInstance().get().warn(
+					"The memory storage was not saved because " +
+					"loading it failed: " + saveFile);
+			} else {
+				// MemoryStorage内容を保存.
+				MemoryStorageWal.writeSnapshot(manager, saveFile);
+				// 保存内容に含まれるWALファイルを削除.
+				if(w != null) {
+					MemoryStorageWal.deleteWal(saveFile, Long.MAX_VALUE);
+				}
+			}
+			wal = null;
 			// マネージャ破棄.
 			manager.destroy();
 			// サービス停止.
@@ -171,11 +248,6 @@ public class MemoryStorageService
 		} catch(Exception e) {
 			throw new QuinaException(e);
 		} finally {
-			if(out != null) {
-				try {
-					out.close();
-				} catch(Exception e) {}
-			}
 			wulock();
 		}
 	}
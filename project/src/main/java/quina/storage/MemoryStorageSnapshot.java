@@ -0,0 +1,445 @@
+package quina.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import quina.exception.QuinaException;
+import quina.util.BinaryIO;
+
+/**
+ * MemoryStorageのスナップショット.
+ *
+ * FileChannel.mapで読み込み専用でマッピングして利用する
+ * 永続化フォーマットです.
+ * 各Storage毎にキーのハッシュ順のインデックスを持つので
+ * 読み込み時に全要素を解析せず、要素は最初に参照された時に
+ * 読み込まれます.
+ *
+ * <pre>
+ * [ヘッダ(5byte)]
+ * [要素: key(string), value] ... 全Storage分.
+ * [インデックス: hash(4byte), offset(4byte), length(4byte)]
+ *     ... Storage毎にhash昇順.
+ * [ディレクトリ: Storage数(4byte),
+ *     {name(string), accessTime(8byte), 要素数(4byte),
+ *      インデックス開始位置(4byte), 有効期限数(4byte),
+ *      {key(string), 有効期限(8byte)} ... 有効期限数分}
+ *     ... Storage数分]
+ * [ディレクトリ開始位置(4byte)]
+ * </pre>
+ */
+final class MemoryStorageSnapshot {
+	private MemoryStorageSnapshot() {}
+
+	/**
+	 * スナップショットのファイルヘッダ.
+	 * quinaStgm
+	 */
+	protected static final byte[] HEADER = new byte[] {
+		(byte)0x90, (byte)0x17, (byte)0xa8, (byte)'t', (byte)0x9f
+	};
+
+	// 1インデックスの長さ.
+	private static final int INDEX_LENGTH = 12;
+
+	// 書き込み位置をカウントするOutputStream.
+	private static final class CountOutputStream extends OutputStream {
+		private final OutputStream out;
+		private long count = 0L;
+
+		protected CountOutputStream(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count ++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len)
+			throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+
+		// 現在の書き込み位置を取得.
+		protected int position() {
+			if(count > Integer.MAX_VALUE) {
+				throw new QuinaException(
+					"The memory storage snapshot exceeds 2GB.");
+			}
+			return (int)count;
+		}
+	}
+
+	// ByteBufferの指定範囲を読み込むInputStream.
+	private static final class BufferInputStream extends InputStream {
+		private final ByteBuffer buf;
+
+		protected BufferInputStream(ByteBuffer src, int pos) {
+			buf = src.duplicate();
+			buf.position(pos);
+		}
+
+		@Override
+		public int read() {
+			return buf.hasRemaining() ? buf.get() & 0x000000ff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if(!buf.hasRemaining()) {
+				return -1;
+			}
+			len = Math.min(len, buf.remaining());
+			buf.get(b, off, len);
+			return len;
+		}
+	}
+
+	/**
+	 * Storage単位のスナップショット参照.
+	 */
+	protected static final class View {
+		private final ByteBuffer buf;
+		private final int index;
+		private final int count;
+
+		/**
+		 * コンストラクタ.
+		 * @param buf スナップショットのバッファを設定します.
+		 * @param index インデックス開始位置を設定します.
+		 * @param count 要素数を設定します.
+		 */
+		protected View(ByteBuffer buf, int index, int count) {
+			this.buf = buf;
+			this.index = index;
+			this.count = count;
+		}
+
+		/**
+		 * 要素数を取得.
+		 * @return int 要素数が返却されます.
+		 */
+		protected int size() {
+			return count;
+		}
+
+		/**
+		 * 指定キーの要素番号を取得.
+		 * @param key 対象のキー名を設定します.
+		 * @return int 要素番号が返却されます.
+		 *             存在しない場合は-1が返却されます.
+		 */
+		protected int find(String key) {
+			final int hash = key.hashCode();
+			// hashの下限を二分探索.
+			int low = 0;
+			int high = count;
+			int mid;
+			while(low < high) {
+				mid = (low + high) >>> 1;
+				if(hash(mid) < hash) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			// 同一hashの要素からキーが一致するものを検索.
+			for(; low < count && hash(low) == hash; low ++) {
+				if(key.equals(key(low))) {
+					return low;
+				}
+			}
+			return -1;
+		}
+
+		// 指定要素番号のhashを取得.
+		private final int hash(int no) {
+			return buf.getInt(index + (no * INDEX_LENGTH));
+		}
+
+		// 指定要素番号の開始位置を取得.
+		private final int offset(int no) {
+			return buf.getInt(index + (no * INDEX_LENGTH) + 4);
+		}
+
+		// 指定要素番号の長さを取得.
+		private final int length(int no) {
+			return buf.getInt(index + (no * INDEX_LENGTH) + 8);
+		}
+
+		/**
+		 * 指定要素番号のキー名を取得.
+		 * @param no 要素番号を設定します.
+		 * @return String キー名が返却されます.
+		 */
+		protected String key(int no) {
+			try {
+				return BinaryIO.readString(
+					new BufferInputStream(buf, offset(no)),
+					BinaryIO.createTmp());
+			} catch(Exception e) {
+				throw new QuinaException(e);
+			}
+		}
+
+		/**
+		 * 指定要素番号の要素を取得.
+		 * @param no 要素番号を設定します.
+		 * @return Object 要素が返却されます.
+		 */
+		protected Object value(int no) {
+			try {
+				final byte[] tmp = BinaryIO.createTmp();
+				final InputStream in =
+					new BufferInputStream(buf, offset(no));
+				// キーを読み飛ばす.
+				in.skip(BinaryIO.readSavingInt(in, tmp));
+				return MemoryStorage.readValue(in, tmp);
+			} catch(Exception e) {
+				throw new QuinaException(e);
+			}
+		}
+
+		/**
+		 * 指定キーの要素を取得.
+		 * @param key 対象のキー名を設定します.
+		 * @return Object 要素が返却されます.
+		 *                存在しない場合はnullが返却されます.
+		 */
+		protected Object get(String key) {
+			final int no = find(key);
+			return no == -1 ? null : value(no);
+		}
+
+		// 指定要素番号の要素をそのままコピー.
+		private final void copy(OutputStream out, int no, byte[] b)
+			throws IOException {
+			final int len = length(no);
+			if(b.length < len) {
+				b = new byte[len];
+			}
+			final ByteBuffer d = buf.duplicate();
+			d.position(offset(no));
+			d.get(b, 0, len);
+			out.write(b, 0, len);
+		}
+	}
+
+	/**
+	 * スナップショットを出力.
+	 * @param list 出力対象のMemoryStorage群を設定します.
+	 * @param o 出力先のOutputStreamを設定します.
+	 * @throws IOException I/O例外.
+	 */
+	protected static final void write(MemoryStorage[] list, OutputStream o)
+		throws IOException {
+		int i, j, cnt, pos;
+		String key;
+		Object value;
+		MemoryStorage ms;
+		View view;
+		final byte[] tmp = BinaryIO.createTmp();
+		final byte[] copyBuf = new byte[256];
+		final CountOutputStream out = new CountOutputStream(o);
+		final int len = list.length;
+		final int[][] hashs = new int[len][];
+		final int[][] offsets = new int[len][];
+		final int[][] lengths = new int[len][];
+		final int[] counts = new int[len];
+		final long[] accessTimes = new long[len];
+		out.write(HEADER);
+		// 各Storageの要素を出力.
+		for(i = 0; i < len; i ++) {
+			ms = list[i];
+			accessTimes[i] = ms.accessTime;
+			view = ms.mapped;
+			// 保存中の更新で件数がずれないように現在の要素を取得.
+			@SuppressWarnings("unchecked")
+			final Entry<String, Object>[] entries =
+				(Entry<String, Object>[])ms.keyValue.entrySet()
+					.toArray(new Entry<?, ?>[0]);
+			final int max = entries.length + (view == null ? 0 : view.size());
+			hashs[i] = new int[max];
+			offsets[i] = new int[max];
+			lengths[i] = new int[max];
+			cnt = 0;
+			// ヒープ上の要素を出力.
+			final Set<String> written = view == null ?
+				null : new HashSet<String>(entries.length << 1);
+			for(j = 0; j < entries.length; j ++) {
+				key = entries[j].getKey();
+				if(written != null) {
+					written.add(key);
+				}
+				if((value = entries[j].getValue()) == MemoryStorage.REMOVED) {
+					continue;
+				}
+				pos = out.position();
+				BinaryIO.writeString(out, tmp, key);
+				MemoryStorage.writeValue(out, tmp, value);
+				hashs[i][cnt] = key.hashCode();
+				offsets[i][cnt] = pos;
+				lengths[i][cnt ++] = out.position() - pos;
+			}
+			// ヒープに昇格していないスナップショットの要素は
+			// 解析せずにそのままコピー.
+			if(view != null) {
+				final int vlen = view.size();
+				for(j = 0; j < vlen; j ++) {
+					key = view.key(j);
+					if(written.contains(key) ||
+						(value = ms.keyValue.get(key)) == MemoryStorage.REMOVED) {
+						continue;
+					}
+					pos = out.position();
+					if(value == null) {
+						view.copy(out, j, copyBuf);
+					} else {
+						// 保存中にヒープに昇格した要素.
+						BinaryIO.writeString(out, tmp, key);
+						MemoryStorage.writeValue(out, tmp, value);
+					}
+					hashs[i][cnt] = key.hashCode();
+					offsets[i][cnt] = pos;
+					lengths[i][cnt ++] = out.position() - pos;
+				}
+			}
+			counts[i] = cnt;
+		}
+		// 各Storageのインデックスを出力.
+		final int[] indexs = new int[len];
+		for(i = 0; i < len; i ++) {
+			indexs[i] = out.position();
+			cnt = counts[i];
+			// hash順にソート.
+			final long[] sort = new long[cnt];
+			for(j = 0; j < cnt; j ++) {
+				sort[j] = ((long)hashs[i][j] << 32L) | (long)j;
+			}
+			Arrays.sort(sort);
+			for(j = 0; j < cnt; j ++) {
+				pos = (int)(sort[j] & 0x00000000ffffffffL);
+				BinaryIO.writeInt4(out, tmp, hashs[i][pos]);
+				BinaryIO.writeInt4(out, tmp, offsets[i][pos]);
+				BinaryIO.writeInt4(out, tmp, lengths[i][pos]);
+			}
+			hashs[i] = null; offsets[i] = null; lengths[i] = null;
+		}
+		// ディレクトリを出力.
+		final int directory = out.position();
+		BinaryIO.writeInt4(out, tmp, len);
+		for(i = 0; i < len; i ++) {
+			BinaryIO.writeString(out, tmp, list[i].managerName);
+			BinaryIO.writeLong(out, tmp, accessTimes[i]);
+			BinaryIO.writeInt4(out, tmp, counts[i]);
+			BinaryIO.writeInt4(out, tmp, indexs[i]);
+			// 要素毎の有効期限.
+			@SuppressWarnings("unchecked")
+			final Entry<String, Long>[] expires =
+				(Entry<String, Long>[])list[i].keyExpire
+					.entrySet().toArray(new Entry<?, ?>[0]);
+			BinaryIO.writeInt4(out, tmp, expires.length);
+			for(j = 0; j < expires.length; j ++) {
+				BinaryIO.writeString(out, tmp, expires[j].getKey());
+				BinaryIO.writeLong(out, tmp, expires[j].getValue());
+			}
+		}
+		BinaryIO.writeInt4(out, tmp, directory);
+	}
+
+	/**
+	 * 指定ファイルを読み込み専用でマッピング.
+	 * @param file 対象のファイル名を設定します.
+	 * @return ByteBuffer マッピングされたバッファが返却されます.
+	 *                    スナップショット形式でない場合は
+	 *                    nullが返却されます.
+	 * @throws IOException I/O例外.
+	 */
+	protected static final ByteBuffer map(String file)
+		throws IOException {
+		try(FileChannel ch = FileChannel.open(
+			Paths.get(file), StandardOpenOption.READ)) {
+			final long size = ch.size();
+			if(size < HEADER.length + 8 || size > Integer.MAX_VALUE) {
+				return null;
+			}
+			// マッピングはチャネルのクローズ後も有効.
+			final ByteBuffer ret = ch.map(
+				FileChannel.MapMode.READ_ONLY, 0L, size);
+			return isHeader(ret) ? ret : null;
+		}
+	}
+
+	/**
+	 * スナップショット形式のヘッダかチェック.
+	 * @param buf 対象のバッファを設定します.
+	 * @return boolean trueの場合スナップショット形式です.
+	 */
+	protected static final boolean isHeader(ByteBuffer buf) {
+		final int len = HEADER.length;
+		if(buf.limit() < len) {
+			return false;
+		}
+		for(int i = 0; i < len; i ++) {
+			if(buf.get(i) != HEADER[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * スナップショットをMemoryStorageManagerに登録.
+	 * 要素は解析せず、各MemoryStorageから参照されます.
+	 * @param man 登録先のMemoryStorageManagerを設定します.
+	 * @param buf スナップショットのバッファを設定します.
+	 */
+	protected static final void attach(
+		MemoryStorageManager man, ByteBuffer buf) {
+		try {
+			final byte[] tmp = BinaryIO.createTmp();
+			final int directory = buf.getInt(buf.limit() - 4);
+			final InputStream in = new BufferInputStream(buf, directory);
+			String name;
+			long accessTime;
+			int count, index, expireLen;
+			MemoryStorage ms;
+			final int len = BinaryIO.readInt4(in, tmp);
+			for(int i = 0; i < len; i ++) {
+				name = BinaryIO.readString(in, tmp);
+				accessTime = BinaryIO.readLong(in, tmp);
+				count = BinaryIO.readInt4(in, tmp);
+				index = BinaryIO.readInt4(in, tmp);
+				ms = new MemoryStorage(man, name);
+				ms.setUpdateTime(accessTime);
+				if(count > 0) {
+					ms.mapped = new View(buf, index, count);
+				}
+				// 要素毎の有効期限.
+				expireLen = BinaryIO.readInt4(in, tmp);
+				for(int j = 0; j < expireLen; j ++) {
+					ms.replayExpire(BinaryIO.readString(in, tmp),
+						BinaryIO.readLong(in, tmp));
+				}
+				man.manager.put(name, ms);
+			}
+		} catch(QuinaException qe) {
+			throw qe;
+		} catch(Exception e) {
+			throw new QuinaException(e);
+		}
+	}
+}
@@ -0,0 +1,635 @@
+package quina.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import quina.exception.QuinaException;
+import quina.logger.LogFactory;
+import quina.thread.QuinaServiceThread;
+import quina.thread.QuinaWait;
+import quina.util.BinaryIO;
+import quina.util.NumberUtil;
+
+/**
+ * MemoryStorageのWriteAheadLog.
+ *
+ * MemoryStorageに対する createStorage, removeStorage, set,
+ * remove, clear の操作をBinaryIO形式で追記出力します.
+ *
+ * 出力は専用スレッドでまとめて書き込み(グループコミット),
+ * fsyncは指定間隔でまとめて実行します.
+ * また定期的に全体のスナップショットを作成して、
+ * それ以前のWALファイルを削除(コンパクション)します.
+ *
+ * WALファイルは {saveFile}.wal.{世代番号} で作成され
+ * スナップショット作成毎に世代番号が１つ増えます.
+ */
+final class MemoryStorageWal extends QuinaServiceThread<Object> {
+
+	// WALファイル名の区切り.
+	private static final String WAL_NAME = ".wal.";
+
+	// スナップショット作成中のテンポラリ拡張子.
+	private static final String TMP_EXTENSION = ".tmp";
+
+	// 操作種別: createStorage.
+	private static final int OP_CREATE_STORAGE = 1;
+
+	// 操作種別: removeStorage.
+	private static final int OP_REMOVE_STORAGE = 2;
+
+	// 操作種別: set.
+	private static final int OP_SET = 3;
+
+	// 操作種別: remove.
+	private static final int OP_REMOVE = 4;
+
+	// 操作種別: clear.
+	private static final int OP_CLEAR = 5;
+
+	// 操作種別: expire.
+	private static final int OP_EXPIRE = 6;
+
+	// waitタイムアウト値.
+	private static final int TIMEOUT = 100;
+
+	// １回の書き込みでまとめる最大レコード数.
+	private static final int MAX_BATCH = 4096;
+
+	// 1レコードの最大長.
+	private static final int MAX_RECORD_LENGTH = 0x3fffffff;
+
+	// 読み込みバッファ長.
+	private static final int READ_BUFFER = 65536;
+
+	// WALの１つの出力要素.
+	private static final class WalRecord {
+		protected final int op;
+		protected final long time;
+		protected final String name;
+		protected final String key;
+		protected final Object value;
+
+		protected WalRecord(int op, long time, String name,
+			String key, Object value) {
+			this.op = op;
+			this.time = time;
+			this.name = name;
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	// 内部バッファを直接参照できるByteArrayOutputStream.
+	private static final class WalBuffer extends ByteArrayOutputStream {
+		protected WalBuffer(int size) {
+			super(size);
+		}
+
+		// 指定位置に4バイトのintをセット.
+		protected void setInt4(int pos, int v) {
+			buf[pos] = (byte)((v & 0xff000000) >> 24);
+			buf[pos + 1] = (byte)((v & 0x00ff0000) >> 16);
+			buf[pos + 2] = (byte)((v & 0x0000ff00) >> 8);
+			buf[pos + 3] = (byte) (v & 0x000000ff);
+		}
+
+		// ByteBufferでラップ.
+		protected ByteBuffer wrap() {
+			return ByteBuffer.wrap(buf, 0, count);
+		}
+	}
+
+	// WAL出力待ちキュー.
+	private final Queue<WalRecord> queue =
+		new ConcurrentLinkedQueue<WalRecord>();
+
+	// wait管理.
+	private final QuinaWait wait = new QuinaWait();
+
+	// MemoryStorageマネージャ.
+	private final MemoryStorageManager manager;
+
+	// スナップショットファイル名.
+	private final String saveFile;
+
+	// fsyncを行う間隔(ミリ秒).
+	// 0以下の場合は書き込み毎にfsyncします.
+	private final long syncTiming;
+
+	// スナップショットを作成する間隔(ミリ秒).
+	// 0以下の場合は時間でのスナップショットは作成しません.
+	private final long snapshotTiming;
+
+	// スナップショットを作成するWALファイルサイズ.
+	// 0以下の場合はサイズでのスナップショットは作成しません.
+	private final long snapshotSize;
+
+	// 書き込みバッファ.
+	private final WalBuffer buf = new WalBuffer(READ_BUFFER);
+
+	// テンポラリ.
+	private final byte[] tmp = BinaryIO.createTmp();
+
+	// 現在のWALファイル.
+	private FileChannel channel = null;
+
+	// 現在のWAL世代番号.
+	private long generation = 0L;
+
+	// 現在のWALファイルサイズ.
+	private long walSize = 0L;
+
+	// fsyncが必要な場合true.
+	private boolean syncFlag = false;
+
+	// 次回fsync時間.
+	private long nextSync = 0L;
+
+	// 次回スナップショット作成時間.
+	private long nextSnapshot = 0L;
+
+	/**
+	 * コンストラクタ.
+	 * @param manager MemoryStorageマネージャを設定します.
+	 * @param saveFile スナップショットファイル名を設定します.
+	 * @param syncTiming fsyncを行う間隔(ミリ秒)を設定します.
+	 * @param snapshotTiming スナップショットを作成する間隔(ミリ秒)を
+	 *                       設定します.
+	 * @param snapshotSize スナップショットを作成するWALファイルサイズを
+	 *                     設定します.
+	 */
+	protected MemoryStorageWal(MemoryStorageManager manager,
+		String saveFile, long syncTiming, long snapshotTiming,
+		long snapshotSize) {
+		this.manager = manager;
+		this.saveFile = saveFile;
+		this.syncTiming = syncTiming;
+		this.snapshotTiming = snapshotTiming;
+		this.snapshotSize = snapshotSize;
+	}
+
+	/**
+	 * createStorageを出力.
+	 * @param name Storage名を設定します.
+	 */
+	protected void createStorage(String name) {
+		push(OP_CREATE_STORAGE, name, null, null);
+	}
+
+	/**
+	 * removeStorageを出力.
+	 * @param name Storage名を設定します.
+	 */
+	protected void removeStorage(String name) {
+		push(OP_REMOVE_STORAGE, name, null, null);
+	}
+
+	/**
+	 * setを出力.
+	 * @param name Storage名を設定します.
+	 * @param key キー名を設定します.
+	 * @param value 要素を設定します.
+	 */
+	protected void set(String name, String key, Object value) {
+		push(OP_SET, name, key, value);
+	}
+
+	/**
+	 * removeを出力.
+	 * @param name Storage名を設定します.
+	 * @param key キー名を設定します.
+	 */
+	protected void remove(String name, String key) {
+		push(OP_REMOVE, name, key, null);
+	}
+
+	/**
+	 * expireを出力.
+	 * @param name Storage名を設定します.
+	 * @param key キー名を設定します.
+	 * @param deadline 有効期限を設定します.
+	 */
+	protected void expire(String name, String key, long deadline) {
+		push(OP_EXPIRE, name, key, deadline);
+	}
+
+	/**
+	 * clearを出力.
+	 * @param name Storage名を設定します.
+	 */
+	protected void clear(String name) {
+		push(OP_CLEAR, name, null, null);
+	}
+
+	// 出力要素を登録.
+	private final void push(int op, String name, String key,
+		Object value) {
+		queue.offer(new WalRecord(op, System.currentTimeMillis(),
+			name, key, value));
+		wait.signal();
+	}
+
+	/**
+	 * 新しい要素をセット.
+	 */
+	@Override
+	public void offer(Object value) {
+		wait.signal();
+	}
+
+	/**
+	 * 出力待ちが無い場合は一定時間待機.
+	 */
+	@Override
+	protected Object poll() {
+		if(queue.isEmpty()) {
+			wait.await(TIMEOUT);
+		}
+		return null;
+	}
+
+	/**
+	 * 出力処理.
+	 */
+	@Override
+	protected void executeCall(Object call)
+		throws Throwable {
+		// 出力待ちのレコードを出力.
+		flush();
+		final long now = System.currentTimeMillis();
+		// fsync処理.
+		if(syncFlag && (syncTiming <= 0L || nextSync <= now)) {
+			sync(now);
+		}
+		// スナップショット作成.
+		if(walSize > 0L && (
+			(snapshotTiming > 0L && nextSnapshot <= now) ||
+			(snapshotSize > 0L && walSize >= snapshotSize))) {
+			snapshot();
+		}
+	}
+
+	/**
+	 * エラースレッドコール.
+	 */
+	@Override
+	protected void errorThreadCall(Object call, Throwable t) {
+		LogFactory.getInstance().get().error(
+			"Failed to write the memory storage WAL.", t);
+	}
+
+	/**
+	 * 後始末実行.
+	 */
+	@Override
+	protected void cleanUpCall() {
+		try {
+			// 残りのレコードを全て出力.
+			while(!queue.isEmpty()) {
+				flush();
+			}
+			if(syncFlag) {
+				sync(System.currentTimeMillis());
+			}
+		} catch(Exception e) {
+			LogFactory.getInstance().get().error(
+				"Failed to write the memory storage WAL.", e);
+		} finally {
+			closeChannel();
+		}
+	}
+
+	// 出力待ちのレコードをまとめて出力.
+	private final void flush() throws IOException {
+		WalRecord rec;
+		int cnt = 0;
+		buf.reset();
+		while(cnt < MAX_BATCH && (rec = queue.poll()) != null) {
+			writeRecord(rec);
+			cnt ++;
+		}
+		if(cnt == 0) {
+			return;
+		}
+		final ByteBuffer b = buf.wrap();
+		while(b.hasRemaining()) {
+			walSize += channel.write(b);
+		}
+		syncFlag = true;
+	}
+
+	// 1レコードをバッファに出力.
+	private final void writeRecord(WalRecord rec) throws IOException {
+		// レコード長の領域を確保.
+		final int top = buf.size();
+		BinaryIO.writeInt4(buf, tmp, 0);
+		// レコード内容.
+		BinaryIO.writeInt1(buf, tmp, rec.op);
+		BinaryIO.writeLong(buf, tmp, rec.time);
+		BinaryIO.writeString(buf, tmp, rec.name);
+		switch(rec.op) {
+		case OP_SET:
+			BinaryIO.writeString(buf, tmp, rec.key);
+			MemoryStorage.writeValue(buf, tmp, rec.value);
+			break;
+		case OP_REMOVE:
+			BinaryIO.writeString(buf, tmp, rec.key);
+			break;
+		case OP_EXPIRE:
+			BinaryIO.writeString(buf, tmp, rec.key);
+			BinaryIO.writeLong(buf, tmp, (Long)rec.value);
+			break;
+		}
+		// レコード長をセット.
+		buf.setInt4(top, buf.size() - top - 4);
+	}
+
+	// fsync処理.
+	private final void sync(long now) throws IOException {
+		channel.force(false);
+		syncFlag = false;
+		nextSync = now + syncTiming;
+	}
+
+	// WALファイルのクローズ.
+	private final void closeChannel() {
+		if(channel != null) {
+			try {
+				channel.close();
+			} catch(Exception e) {}
+			channel = null;
+		}
+	}
+
+	/**
+	 * 新しい世代のWALファイルを作成して出力を開始.
+	 * @throws IOException I/O例外.
+	 */
+	protected void open() throws IOException {
+		final long[] gens = generations(saveFile);
+		final long next = gens.length == 0 ?
+			1L : gens[gens.length - 1] + 1L;
+		openGeneration(next);
+		nextSnapshot = System.currentTimeMillis() + snapshotTiming;
+	}
+
+	// 指定世代のWALファイルをオープン.
+	private final void openGeneration(long gen) throws IOException {
+		closeChannel();
+		channel = FileChannel.open(Paths.get(walName(saveFile, gen)),
+			StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			StandardOpenOption.APPEND);
+		generation = gen;
+		walSize = channel.size();
+		syncFlag = false;
+	}
+
+	/**
+	 * スナップショットを作成して古いWALファイルを削除.
+	 * @throws IOException I/O例外.
+	 */
+	protected void snapshot() throws IOException {
+		// 現在のWALをfsyncして次の世代に切り替える.
+		if(syncFlag) {
+			sync(System.currentTimeMillis());
+		}
+		final long before = generation;
+		openGeneration(before + 1L);
+		// 切り替え後の全体内容をスナップショット出力.
+		// 切り替え後の操作は新しい世代のWALにも出力されるので
+		// 復元時に再実行されます.
+		writeSnapshot(manager, saveFile);
+		// スナップショットに含まれる世代のWALを削除.
+		deleteWal(saveFile, before);
+		nextSnapshot = System.currentTimeMillis() + snapshotTiming;
+	}
+
+	/**
+	 * 保存されているWALファイルを順に再実行.
+	 * この処理はMemoryStorageManagerの読み込み中に呼び出します.
+	 * @return long 再実行したレコード数が返却されます.
+	 */
+	protected long replay() {
+		long ret = 0L;
+		final long[] gens = generations(saveFile);
+		final int len = gens.length;
+		for(int i = 0; i < len; i ++) {
+			ret += replay(walName(saveFile, gens[i]));
+		}
+		return ret;
+	}
+
+	// 1つのWALファイルを再実行.
+	private final long replay(String name) {
+		int len;
+		long ret = 0L;
+		byte[] rec = new byte[256];
+		final byte[] t = BinaryIO.createTmp();
+		InputStream in = null;
+		try {
+			in = new BufferedInputStream(
+				new FileInputStream(name), READ_BUFFER);
+			while(true) {
+				// レコード長を取得.
+				if(!readFully(in, t, 4)) {
+					break;
+				}
+				len = BinaryIO.bin4Int(t);
+				if(len <= 0 || len > MAX_RECORD_LENGTH) {
+					// 不正なレコード長の場合は以降を破棄.
+					break;
+				}
+				if(rec.length < len) {
+					rec = new byte[len];
+				}
+				// 書き込み途中で終了したレコードは破棄.
+				if(!readFully(in, rec, len)) {
+					break;
+				}
+				apply(new ByteArrayInputStream(rec, 0, len), t);
+				ret ++;
+			}
+			in.close();
+			in = null;
+		} catch(Exception e) {
+			LogFactory.getInstance().get().warn(
+				"Failed to replay the memory storage WAL: " + name, e);
+		} finally {
+			if(in != null) {
+				try {
+					in.close();
+				} catch(Exception e) {}
+			}
+		}
+		return ret;
+	}
+
+	// 指定長を読み込む.
+	private static final boolean readFully(
+		InputStream in, byte[] out, int len)
+		throws IOException {
+		int n;
+		int off = 0;
+		while(off < len) {
+			if((n = in.read(out, off, len - off)) == -1) {
+				return false;
+			}
+			off += n;
+		}
+		return true;
+	}
+
+	// 1レコードをMemoryStorageManagerに反映.
+	private final void apply(InputStream in, byte[] t)
+		throws IOException {
+		final int op = BinaryIO.readInt1(in, t);
+		final long time = BinaryIO.readLong(in, t);
+		final String name = BinaryIO.readString(in, t);
+		final MemoryStorage ms;
+		switch(op) {
+		case OP_CREATE_STORAGE:
+			getReplayStorage(name).setUpdateTime(time);
+			break;
+		case OP_REMOVE_STORAGE:
+			ms = manager.manager.remove(name);
+			if(ms != null) {
+				ms.removed();
+			}
+			break;
+		case OP_SET:
+			final String key = BinaryIO.readString(in, t);
+			final Object value = MemoryStorage.readValue(in, t);
+			ms = getReplayStorage(name);
+			ms.replaySet(key, value);
+			ms.setUpdateTime(time);
+			break;
+		case OP_REMOVE:
+			ms = getReplayStorage(name);
+			ms.replayRemove(BinaryIO.readString(in, t));
+			ms.setUpdateTime(time);
+			break;
+		case OP_EXPIRE:
+			ms = getReplayStorage(name);
+			ms.replayExpire(BinaryIO.readString(in, t),
+				BinaryIO.readLong(in, t));
+			ms.setUpdateTime(time);
+			break;
+		case OP_CLEAR:
+			ms = getReplayStorage(name);
+			ms.replayClear();
+			ms.setUpdateTime(time);
+			break;
+		default:
+			throw new QuinaException(
+				"Unknown memory storage WAL operation: " + op);
+		}
+	}
+
+	// 再実行対象のMemoryStorageを取得.
+	// 存在しない場合は作成します.
+	private final MemoryStorage getReplayStorage(String name) {
+		MemoryStorage ret = manager.manager.get(name);
+		if(ret == null) {
+			ret = new MemoryStorage(manager, name);
+			manager.manager.put(name, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * スナップショットファイルを出力.
+	 * テンポラリファイルに出力後、fsyncしてから置き換えます.
+	 * @param manager 対象のMemoryStorageマネージャを設定します.
+	 * @param saveFile スナップショットファイル名を設定します.
+	 * @throws IOException I/O例外.
+	 */
+	protected static final void writeSnapshot(
+		MemoryStorageManager manager, String saveFile)
+		throws IOException {
+		final String tmpName = saveFile + TMP_EXTENSION;
+		FileOutputStream fo = null;
+		try {
+			fo = new FileOutputStream(tmpName);
+			final BufferedOutputStream out =
+				new BufferedOutputStream(fo, READ_BUFFER);
+			manager.save(out);
+			out.flush();
+			fo.getFD().sync();
+			out.close();
+			fo = null;
+		} finally {
+			if(fo != null) {
+				try {
+					fo.close();
+				} catch(Exception e) {}
+			}
+		}
+		Files.move(Paths.get(tmpName), Paths.get(saveFile),
+			StandardCopyOption.REPLACE_EXISTING,
+			StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * 指定世代以前のWALファイルを削除.
+	 * @param saveFile スナップショットファイル名を設定します.
+	 * @param gen 削除対象の世代番号を設定します.
+	 */
+	protected static final void deleteWal(String saveFile, long gen) {
+		final long[] gens = generations(saveFile);
+		final int len = gens.length;
+		for(int i = 0; i < len; i ++) {
+			if(gens[i] <= gen) {
+				new File(walName(saveFile, gens[i])).delete();
+			}
+		}
+	}
+
+	// WALファイル名を取得.
+	private static final String walName(String saveFile, long gen) {
+		return saveFile + WAL_NAME + gen;
+	}
+
+	// 保存されているWALファイルの世代番号一覧を昇順で取得.
+	private static final long[] generations(String saveFile) {
+		final File f = new File(saveFile).getAbsoluteFile();
+		final File dir = f.getParentFile();
+		final String head = f.getName() + WAL_NAME;
+		final String[] list = dir == null ? null : dir.list();
+		if(list == null) {
+			return new long[0];
+		}
+		int cnt = 0;
+		String n;
+		final int len = list.length;
+		final long[] ret = new long[len];
+		for(int i = 0; i < len; i ++) {
+			n = list[i];
+			if(n.startsWith(head)) {
+				n = n.substring(head.length());
+				if(NumberUtil.isNumeric(n)) {
+					ret[cnt ++] = NumberUtil.parseLong(n);
+				}
+			}
+		}
+		final long[] sorted = Arrays.copyOf(ret, cnt);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+}
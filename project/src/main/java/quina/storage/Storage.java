@@ -2,6 +2,7 @@ package quina.storage;
 
 import java.util.Date;
 
+import quina.exception.QuinaException;
 import quina.util.collection.TypesClass;
 
 /**
@@ -181,4 +182,27 @@ public interface Storage {
 	 * @return
 	 */
 	public int size();
+	
+	/**
+	 * 指定要素の有効期限を設定.
+	 * 要素を再セットした場合、有効期限は解除されます.
+	 * @param key キー名を設定します.
+	 * @param ttl 有効期限(ミリ秒)を設定します.
+	 *            0以下の場合は有効期限を解除します.
+	 * @return boolean trueの場合、設定されました.
+	 */
+	default boolean expire(String key, long ttl) {
+		throw new QuinaException(
+			"This storage does not support expiration per element.");
+	}
+	
+	/**
+	 * 指定要素の有効期限までの残り時間を取得.
+	 * @param key キー名を設定します.
+	 * @return long 残り時間(ミリ秒)が返却されます.
+	 *              有効期限が設定されていない場合は-1が返却されます.
+	 */
+	default long getExpire(String key) {
+		return -1L;
+	}
 }
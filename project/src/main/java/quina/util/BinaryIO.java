@@ -660,8 +660,28 @@ public class BinaryIO {
 	public static final String readString(
 		InputStream in, byte[] tmp)
 		throws IOException {
+		return readString(in, tmp, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * 最大バイト長を指定してStringを取得.
+	 * 外部から受け取ったバイナリの場合は、長さ情報で
+	 * 過大なバッファを確保しないように最大バイト長を指定します.
+	 * @param in InputStreamを設定します.
+	 * @param tmp テンポラリ用のバイナリを設定します.
+	 * @param maxLength 文字列の最大バイト長を設定します.
+	 * @return String 文字列が返却されます.
+	 * @throws IOException 文字列長が不正な場合か I/O例外.
+	 */
+	public static final String readString(
+		InputStream in, byte[] tmp, int maxLength)
+		throws IOException {
 		final int len = readSavingInt(in, tmp);
-		if(len == 0) {
+		if(len < 0 || len > maxLength) {
+			throw new IOException(
+				"Invalid string length: " + len +
+				" (max: " + maxLength + ")");
+		} else if(len == 0) {
 			return "";
 		}
 		byte[] b = new byte[len];
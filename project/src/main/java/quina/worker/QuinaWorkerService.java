@@ -52,6 +52,15 @@ public class QuinaWorkerService
 	public QuinaWorkerService() {
 	}
 	
+	/**
+	 * 現在のスレッドがワーカースレッドかチェック.
+	 * @return boolean trueの場合はワーカースレッドです.
+	 */
+	public static final boolean isWorkerThread() {
+		return Thread.currentThread() instanceof
+			QuinaWorkerManager.QuinaWorkerThread;
+	}
+	
 	/**
 	 * ワーカーハンドラーを設定.
 	 * @param handle 対象のワーカーハンドラーを設定します.
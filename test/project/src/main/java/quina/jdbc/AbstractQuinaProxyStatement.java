@@ -1,5 +1,6 @@
 package quina.jdbc;
 
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 
@@ -24,6 +25,12 @@ public abstract class AbstractQuinaProxyStatement
 	 */
 	protected Flag closeFlag = new Flag(true);
 	
+	/**
+	 * PreparedStatementキャッシュのキー.
+	 * nullの場合はキャッシュ対象外です.
+	 */
+	protected String cacheKey = null;
+	
 	/**
 	 * Statementを取得.
 	 * @return Statement 対象のステートメントが返却されます.
@@ -52,6 +59,14 @@ public abstract class AbstractQuinaProxyStatement
 		this.closeFlag.set(false);
 	}
 	
+	/**
+	 * PreparedStatementキャッシュのキーを設定.
+	 * @param key 対象のキャッシュキーを設定します.
+	 */
+	protected void setCacheKey(String key) {
+		this.cacheKey = key;
+	}
+	
 	@ProxyInjectMethod
 	protected void checkClose() throws SQLException {
 		if(isClosed()) {
@@ -68,6 +83,11 @@ public abstract class AbstractQuinaProxyStatement
 		final Statement s = getStatement();
 		setStatement(null);
 		if(s != null) {
+			// キャッシュ対象の場合は物理クローズせずにキャッシュに戻す.
+			if(cacheKey != null && connection.releaseStatement(
+				cacheKey, (PreparedStatement)s)) {
+				return;
+			}
 			s.close();
 		}
 	}
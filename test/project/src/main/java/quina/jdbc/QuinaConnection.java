@@ -1,8 +1,10 @@
 package quina.jdbc;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Statement;
 
 import quina.compile.cdi.annotation.proxy.ProxyField;
@@ -11,6 +13,7 @@ import quina.compile.cdi.annotation.proxy.ProxyInjectMethod;
 import quina.compile.cdi.annotation.proxy.ProxyOverride;
 import quina.compile.cdi.annotation.proxy.ProxyScoped;
 import quina.jdbc.io.AbstractStatement;
+import quina.jdbc.io.BulkInsertStatement;
 import quina.jdbc.io.IoStatement;
 import quina.jdbc.io.QueryStatement;
 import quina.jdbc.io.WriteBatchStatement;
@@ -42,6 +45,10 @@ public abstract class QuinaConnection
 	protected final AtomicNumber64 lastPoolingTime =
 		new AtomicNumber64();
 	
+	// 最終接続検証時間.
+	protected final AtomicNumber64 lastValidTime =
+		new AtomicNumber64();
+	
 	// プーリング対象のデータソース.
 	private QuinaDataSource dataSource;
 	
@@ -60,6 +67,9 @@ public abstract class QuinaConnection
 	// I/Oステートメント管理.
 	private ObjectList<AbstractStatement<?>> ioStatementList = null;
 	
+	// PreparedStatementキャッシュ.
+	private QuinaStatementCache statementCache = null;
+	
 	/**
 	 * 初期設定.
 	 * @param notPooling trueの場合、プーリングしません.
@@ -83,6 +93,13 @@ public abstract class QuinaConnection
 			this.dataSource.getConfig()
 				.appendConnection(
 					this.connection);
+			// プーリングする場合はPreparedStatementキャッシュを生成.
+			final int cacheSize = this.dataSource.getConfig()
+				.getStatementCacheSize();
+			if(!notPooling && cacheSize > 0) {
+				this.statementCache = new QuinaStatementCache(
+					this.dataSource, cacheSize);
+			}
 			// コネクションカウントを１UP.
 			this.dataSource.incConnectionCount();
 		}
@@ -124,6 +141,10 @@ public abstract class QuinaConnection
 		closeFlag.set(true);
 		lastPoolingTime.set(DESTROY_TIMEOUT);
 		closeIoStatement();
+		// キャッシュされたPreparedStatementをクローズ.
+		if(statementCache != null) {
+			statementCache.clear();
+		}
 		Connection c = connection;
 		connection = null;
 		dataSource = null;
@@ -144,22 +165,183 @@ public abstract class QuinaConnection
 	
 	/**
 	 * 仮クローズを再オープン.
+	 * 最後に利用可能を確認してから接続検証を行うアイドル時間を
+	 * 経過していない場合は、接続検証を行わずに再オープンします.
 	 * @return boolean trueの場合、再オープンできました.
 	 */
 	protected boolean reOpen() {
 		if(destroyFlag.get()) {
 			return false;
 		}
+		// 最後に利用可能を確認した時間を取得.
+		final long lastTime = Math.max(
+			lastPoolingTime.get(), lastValidTime.get());
 		// タイムアウト監視しない.
 		lastPoolingTime.set(NONE_TIMEOUT);
-		// アクセス可能かチェック.
+		final QuinaDataSource ds = dataSource;
+		if(ds == null) {
+			return false;
+		}
+		final QuinaJDBCConfig config = ds.getConfig();
+		final int idleTime = config.getValidationIdleTime();
+		// 一定時間以上利用されていない場合のみ接続検証.
+		if(idleTime == 0 || (idleTime > 0 &&
+			System.currentTimeMillis() - lastTime >= (long)idleTime)) {
+			final Connection c = connection;
+			if(c == null || !validate(c, config)) {
+				try {
+					destroy();
+				} catch(Exception e) {}
+				return false;
+			}
+			lastValidTime.set(System.currentTimeMillis());
+		}
+		// この時点でタイムアウト監視などで
+		// 廃棄された場合.
+		if(destroyFlag.get()) {
+			return false;
+		}
+		// オープン処理.
+		closeFlag.set(false);
+		return true;
+	}
+	
+	/**
+	 * プーリング中のコネクションの接続検証.
+	 * 最後に利用可能を確認してから接続検証を行うアイドル時間を
+	 * 経過している場合は、プーリングから一時的に取り出して
+	 * 接続検証を行います.
+	 * @return boolean trueの場合、接続検証に失敗して破棄しました.
+	 */
+	protected boolean validateByPooling() {
+		final QuinaDataSource ds = dataSource;
+		final long time = lastPoolingTime.get();
+		// 破棄されているか利用中の場合.
+		if(ds == null || destroyFlag.get() || time <= DESTROY_TIMEOUT) {
+			return false;
+		}
+		final QuinaJDBCConfig config = ds.getConfig();
+		final int idleTime = config.getValidationIdleTime();
+		if(idleTime <= 0 || System.currentTimeMillis() -
+			Math.max(time, lastValidTime.get()) < (long)idleTime) {
+			return false;
+		}
+		// プーリングから取り出せない場合は利用中なので検証しない.
+		if(!ds.getPooling().remove(this)) {
+			return false;
+		}
+		final Connection c = connection;
+		if(c != null && !ds.isDestroy() && validate(c, config)) {
+			lastValidTime.set(System.currentTimeMillis());
+			// プーリングに戻す(コネクション待ちが存在する場合は受け渡す).
+			if(!destroyFlag.get()) {
+				ds.pushPooling(this);
+				return isDestroy();
+			}
+		}
+		try {
+			destroy();
+		} catch(Exception e) {}
+		return true;
+	}
+	
+	/**
+	 * 最小アイドルコネクションの維持.
+	 * プーリングから取り出して、残りのプーリング中のコネクション数が
+	 * 最小アイドルコネクション数を下回る場合は、プーリング時間を
+	 * 更新して接続検証をデータソースの維持スレッドに依頼します.
+	 * @return boolean trueの場合、タイムアウトさせずに維持します.
+	 */
+	protected boolean keepIdle() {
+		final QuinaDataSource ds = dataSource;
+		final long time = lastPoolingTime.get();
+		// 破棄されているか利用中の場合.
+		if(ds == null || destroyFlag.get() || time <= DESTROY_TIMEOUT ||
+			ds.isDestroy()) {
+			return false;
+		}
+		// プーリングから取り出せない場合は利用中.
+		if(!ds.getPooling().remove(this)) {
+			return false;
+		}
+		// 最小アイドルコネクション数を超えている場合は
+		// プーリングから取り出したままタイムアウトさせる.
+		if(ds.getKeepIdleCount() >= ds.getConfig().getMinIdle()) {
+			return false;
+		}
+		// 接続検証中にタイムアウトしないようにプーリング時間を更新.
+		lastPoolingTime.set(System.currentTimeMillis());
+		ds.validateIdle(this);
+		return true;
+	}
+	
+	/**
+	 * 最小アイドルコネクションの接続検証.
+	 * 接続検証に成功した場合はプーリングに戻し、
+	 * 失敗した場合は破棄します.
+	 */
+	protected void validateIdle() {
+		final QuinaDataSource ds = dataSource;
+		final Connection c = connection;
+		if(ds != null && c != null && !destroyFlag.get() &&
+			validate(c, ds.getConfig())) {
+			final long now = System.currentTimeMillis();
+			lastValidTime.set(now);
+			lastPoolingTime.set(now);
+			// プーリングに戻す(コネクション待ちが存在する場合は受け渡す).
+			if(!destroyFlag.get()) {
+				ds.pushPooling(this);
+				return;
+			}
+		}
+		try {
+			destroy();
+		} catch(Exception e) {}
+	}
+	
+	/**
+	 * 新規作成したコネクションを利用せずにプーリング.
+	 * 事前接続や最小アイドルコネクションの作成で利用します.
+	 * @return boolean trueの場合、プーリングされました.
+	 */
+	protected boolean offerPooling() {
+		final QuinaDataSource ds = dataSource;
+		if(ds == null || notPooling || destroyFlag.get()) {
+			return false;
+		}
+		// オープン中の場合のみ仮クローズ.
+		if(!closeFlag.setToGetBefore(true)) {
+			final long now = System.currentTimeMillis();
+			lastValidTime.set(now);
+			lastPoolingTime.set(now);
+			// プーリング管理にセット.
+			return ds.pushPooling(this) && !isDestroy();
+		}
+		return false;
+	}
+	
+	// 接続検証.
+	protected static final boolean validate(
+		Connection c, QuinaJDBCConfig config) {
+		try {
+			return c.isValid(config.getValidationTimeout());
+		} catch(SQLFeatureNotSupportedException | AbstractMethodError e) {
+			// isValidに対応していない場合は確認用SQLで検証.
+			return echo(c, config);
+		} catch(Exception e) {
+			return false;
+		}
+	}
+	
+	// 確認用SQLで接続検証.
+	private static final boolean echo(
+		Connection c, QuinaJDBCConfig config) {
 		boolean ret = true;
 		Statement stm = null;
 		ResultSet rs = null;
 		try {
-			stm = connection.createStatement();
-			rs = stm.executeQuery(
-				dataSource.getConfig().getSQL(ECHO_SQL));
+			stm = c.createStatement();
+			rs = stm.executeQuery(config.getSQL(ECHO_SQL));
 			rs.next();
 			rs.close(); rs = null;
 			stm.close(); stm = null;
@@ -176,24 +358,8 @@ public abstract class QuinaConnection
 					stm.close();
 				} catch(Exception e) {}
 			}
-			if(!ret) {
-				try {
-					destroy();
-				} catch(Exception e) {}
-			}
 		}
-		// 再オープン成功の場合.
-		if(ret) {
-			// この時点でタイムアウト監視などで
-			// 廃棄された場合.
-			if(destroyFlag.get()) {
-				return false;
-			}
-			// オープン処理.
-			closeFlag.set(false);
-			return true;
-		}
-		return false;
+		return ret;
 	}
 	
 	/**
@@ -305,6 +471,46 @@ public abstract class QuinaConnection
 		return dataSource.getConfig().getSQL(sql);
 	}
 	
+	/**
+	 * クローズされたPreparedStatementをキャッシュに戻す.
+	 * @param key 対象のキャッシュキーを設定します.
+	 * @param ps 対象のPreparedStatementを設定します.
+	 * @return boolean falseの場合キャッシュされなかったので
+	 *                 物理クローズが必要です.
+	 */
+	protected boolean releaseStatement(String key, PreparedStatement ps) {
+		final QuinaStatementCache cache = statementCache;
+		if(cache == null || destroyFlag.get() || !cache.offer(key, ps)) {
+			return false;
+		}
+		// キャッシュ中に破棄された場合.
+		if(destroyFlag.get()) {
+			cache.clear();
+		}
+		return true;
+	}
+	
+	// キャッシュ対象のPreparedStatementを生成.
+	private final QuinaPreparedStatement cachedStatement(
+		String key, PreparedStatement ps) {
+		final QuinaPreparedStatement ret =
+			QuinaProxyUtil.getPreparedStatement(this, ps);
+		if(statementCache != null) {
+			ret.setCacheKey(key);
+		}
+		appendStatement(ret);
+		// 生成時のオプションを記録(キャッシュからの取得時は記録済み).
+		if(statementCache != null) {
+			statementCache.record(ps);
+		}
+		return ret;
+	}
+	
+	// キャッシュからPreparedStatementを取得.
+	private final PreparedStatement pollStatement(String key) {
+		return statementCache == null ? null : statementCache.poll(key);
+	}
+	
 	/**
 	 * StatementにKind定義を反映.
 	 * @param stmt 対象のStatementを設定します.
@@ -397,10 +603,13 @@ public abstract class QuinaConnection
 	public QuinaPreparedStatement prepareStatement(String sql)
 		throws SQLException {
 		checkClose();
-		return (QuinaPreparedStatement)appendStatement(
-			QuinaProxyUtil.getPreparedStatement(
-				this, connection.prepareStatement(getSQL(sql)))
-		);
+		sql = getSQL(sql);
+		final String key = "0@/" + sql;
+		PreparedStatement ps = pollStatement(key);
+		if(ps == null) {
+			ps = connection.prepareStatement(sql);
+		}
+		return cachedStatement(key, ps);
 	}
 	
 	@Override
@@ -409,11 +618,17 @@ public abstract class QuinaConnection
 		String sql, int resultSetType, int resultSetConcurrency)
 			throws SQLException {
 		checkClose();
-		return (QuinaPreparedStatement)appendStatement(
-			QuinaProxyUtil.getPreparedStatement(
-				this, connection.prepareStatement(
-					getSQL(sql), resultSetType, resultSetConcurrency))
-		);
+		sql = getSQL(sql);
+		final String key = new StringBuilder("4@")
+			.append(resultSetType).append("/")
+			.append(resultSetConcurrency).append("/")
+			.append(sql).toString();
+		PreparedStatement ps = pollStatement(key);
+		if(ps == null) {
+			ps = connection.prepareStatement(
+				sql, resultSetType, resultSetConcurrency);
+		}
+		return cachedStatement(key, ps);
 	}
 	
 	@Override
@@ -422,12 +637,19 @@ public abstract class QuinaConnection
 		String sql, int resultSetType, int resultSetConcurrency,
 		int resultSetHoldability) throws SQLException {
 		checkClose();
-		return (QuinaPreparedStatement)appendStatement(
-			QuinaProxyUtil.getPreparedStatement(
-				this, connection.prepareStatement(
-					getSQL(sql), resultSetType, resultSetConcurrency,
-					resultSetHoldability))
-		);
+		sql = getSQL(sql);
+		final String key = new StringBuilder("5@")
+			.append(resultSetType).append("/")
+			.append(resultSetConcurrency).append("/")
+			.append(resultSetHoldability).append("/")
+			.append(sql).toString();
+		PreparedStatement ps = pollStatement(key);
+		if(ps == null) {
+			ps = connection.prepareStatement(
+				sql, resultSetType, resultSetConcurrency,
+				resultSetHoldability);
+		}
+		return cachedStatement(key, ps);
 	}
 	
 	@Override
@@ -436,11 +658,15 @@ public abstract class QuinaConnection
 		String sql, int autoGeneratedKeys)
 		throws SQLException {
 		checkClose();
-		return (QuinaPreparedStatement)appendStatement(
-			QuinaProxyUtil.getPreparedStatement(
-				this, connection.prepareStatement(
-					getSQL(sql), autoGeneratedKeys))
-		);
+		sql = getSQL(sql);
+		final String key = new StringBuilder("1@")
+			.append(autoGeneratedKeys).append("/")
+			.append(sql).toString();
+		PreparedStatement ps = pollStatement(key);
+		if(ps == null) {
+			ps = connection.prepareStatement(sql, autoGeneratedKeys);
+		}
+		return cachedStatement(key, ps);
 	}
 	
 	@Override
@@ -449,11 +675,18 @@ public abstract class QuinaConnection
 		String sql, int[] columnIndexes)
 		throws SQLException {
 		checkClose();
-		return (QuinaPreparedStatement)appendStatement(
-			QuinaProxyUtil.getPreparedStatement(
-				this, connection.prepareStatement(
-					getSQL(sql), columnIndexes))
-		);
+		sql = getSQL(sql);
+		final StringBuilder buf = new StringBuilder("2@");
+		final int len = columnIndexes.length;
+		for(int i = 0; i < len; i ++) {
+			buf.append(columnIndexes[i]).append("/");
+		}
+		final String key = buf.append(sql).toString();
+		PreparedStatement ps = pollStatement(key);
+		if(ps == null) {
+			ps = connection.prepareStatement(sql, columnIndexes);
+		}
+		return cachedStatement(key, ps);
 	}
 	
 	@Override
@@ -462,11 +695,18 @@ public abstract class QuinaConnection
 		(String sql, String[] columnNames)
 		throws SQLException {
 		checkClose();
-		return (QuinaPreparedStatement)appendStatement(
-			QuinaProxyUtil.getPreparedStatement(
-				this, connection.prepareStatement(
-					getSQL(sql), columnNames))
-		);
+		sql = getSQL(sql);
+		final StringBuilder buf = new StringBuilder("3@");
+		final int len = columnNames.length;
+		for(int i = 0; i < len; i ++) {
+			buf.append(columnNames[i]).append("/");
+		}
+		final String key = buf.append(sql).toString();
+		PreparedStatement ps = pollStatement(key);
+		if(ps == null) {
+			ps = connection.prepareStatement(sql, columnNames);
+		}
+		return cachedStatement(key, ps);
 	}
 	
 	// I/Oステートメントを追加.
@@ -618,5 +858,22 @@ public abstract class QuinaConnection
 		addIoStatement(ret);
 		return ret;
 	}
-
+	
+	/**
+	 * BulkInsertステートメントを取得.
+	 * 対象DBに合わせてCOPY又は複数行Insertで書き込みます.
+	 * @param tableName テーブル名を設定します.
+	 * @param columns カラム名群を設定します.
+	 * @return BulkInsertStatement BulkInsertステートメントが返却されます.
+	 * @throws SQLException SQL例外.
+	 */
+	public BulkInsertStatement bulkInsertStatement(
+		String tableName, String... columns)
+		throws SQLException {
+		checkClose();
+		BulkInsertStatement ret =
+			new BulkInsertStatement(this, tableName, columns);
+		addIoStatement(ret);
+		return ret;
+	}
 }
@@ -6,6 +6,8 @@ import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
 import java.util.Properties;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -15,8 +17,11 @@ import javax.sql.DataSource;
 
 import quina.exception.QuinaException;
 import quina.jdbc.kind.QuinaJDBCKind;
+import quina.logger.LogFactory;
 import quina.util.AtomicNumber;
+import quina.util.AtomicNumber64;
 import quina.util.Flag;
+import quina.util.collection.ObjectList;
 
 /**
  * QuinaJDBCDdataSource.
@@ -45,6 +50,90 @@ public class QuinaDataSource implements DataSource {
 	/** 現在のコネクション数. **/
 	private final AtomicNumber connectionCount =new AtomicNumber(0);
 	
+	/** レプリカ管理. **/
+	private final QuinaReplicaGroup replicaGroup;
+	
+	/** コネクション待ち(到着順). **/
+	private final ArrayDeque<Waiter> waiters = new ArrayDeque<Waiter>();
+	
+	/** コネクション待ち数. **/
+	private final AtomicNumber waitCount = new AtomicNumber(0);
+	
+	/** 新規作成中のコネクション数. **/
+	private final AtomicNumber creatingCount = new AtomicNumber(0);
+	
+	/** 作成したコネクションの累計数. **/
+	private final AtomicNumber64 createdCount = new AtomicNumber64(0L);
+	
+	/** 破棄したコネクションの累計数. **/
+	private final AtomicNumber64 destroyedCount = new AtomicNumber64(0L);
+	
+	/** コネクション取得タイムアウトの累計数. **/
+	private final AtomicNumber64 timeoutCount = new AtomicNumber64(0L);
+	
+	/** ステートメントキャッシュヒットの累計数. **/
+	private final AtomicNumber64 statementCacheHit = new AtomicNumber64(0L);
+	
+	/** ステートメントキャッシュミスの累計数. **/
+	private final AtomicNumber64 statementCacheMiss = new AtomicNumber64(0L);
+	
+	/**
+	 * コネクション取得待ち時間ヒストグラムの各区間の上限値(ミリ秒).
+	 * 最後の区間は上限値以上の待ち時間となります.
+	 */
+	public static final long[] WAIT_TIME_HISTOGRAM_BOUNDS = new long[] {
+		1L, 5L, 10L, 50L, 100L, 500L, 1000L, 5000L
+	};
+	
+	/** コネクション取得待ち時間ヒストグラム. **/
+	private final AtomicNumber64[] waitTimeHistogram;
+	
+	/** 次に最小アイドルコネクションの作成を行う時間. **/
+	private volatile long nextIdleTime = 0L;
+	
+	/** 最小アイドルコネクション維持スレッドの実行中フラグ. **/
+	private final Flag idleWorking = new Flag(false);
+	
+	/** 接続検証待ちの最小アイドルコネクション群. **/
+	private final Queue<QuinaConnection> idleValidates =
+		new ConcurrentLinkedQueue<QuinaConnection>();
+	
+	/** 接続検証中の最小アイドルコネクション数. **/
+	private final AtomicNumber idleValidating = new AtomicNumber(0);
+	
+	/** 待機の最大単位時間(ミリ秒). **/
+	private static final long MAX_WAIT_TIME = 1000L;
+	
+	/**
+	 * コネクション待機要素.
+	 */
+	private static final class Waiter {
+		// 受け渡されたコネクション.
+		private QuinaConnection conn = null;
+		// コネクションの新規作成が許可された場合.
+		private boolean create = false;
+		// 通知済み.
+		private boolean signal = false;
+		
+		// 通知.
+		private synchronized void signal(
+			QuinaConnection conn, boolean create) {
+			this.conn = conn;
+			this.create = create;
+			this.signal = true;
+			notify();
+		}
+		
+		// 通知まで待機.
+		private synchronized boolean await(long timeout)
+			throws InterruptedException {
+			if(!signal && timeout > 0L) {
+				wait(timeout);
+			}
+			return signal;
+		}
+	}
+	
 	/**
 	 * コンストラクタ.
 	 * @param regNo 登録番号を設定します.
@@ -58,6 +147,14 @@ public class QuinaDataSource implements DataSource {
 		this.regName = regName;
 		this.service = service;
 		this.config = config;
+		final int len = WAIT_TIME_HISTOGRAM_BOUNDS.length + 1;
+		this.waitTimeHistogram = new AtomicNumber64[len];
+		for(int i = 0; i < len; i ++) {
+			this.waitTimeHistogram[i] = new AtomicNumber64(0L);
+		}
+		// レプリカが定義されている場合.
+		this.replicaGroup = config.getReplicaSize() > 0 ?
+			new QuinaReplicaGroup(this, service, config) : null;
 	}
 	
 	/**
@@ -75,6 +172,36 @@ public class QuinaDataSource implements DataSource {
 					}
 				}
 			}
+			// 待機中の処理を全て解除.
+			synchronized(waiters) {
+				Waiter w;
+				while((w = waiters.pollFirst()) != null) {
+					waitCount.dec();
+					w.signal(null, false);
+				}
+			}
+			// レプリカを破棄.
+			if(replicaGroup != null) {
+				replicaGroup.destroy();
+			}
+		}
+	}
+	
+	// プーリング中のコネクションを全て破棄.
+	protected void clearPooling() {
+		QuinaConnection conn;
+		while((conn = pooling.poll()) != null) {
+			try {
+				conn.destroy();
+			} catch(Exception e) {}
+		}
+	}
+	
+	// レプリカも含めてプーリング中のコネクションを全て破棄.
+	protected void clearAllPooling() {
+		clearPooling();
+		if(replicaGroup != null) {
+			replicaGroup.clearPooling();
 		}
 	}
 	
@@ -95,26 +222,60 @@ public class QuinaDataSource implements DataSource {
 	}
 	
 	// Poolingにセット.
+	// コネクション待ちが存在する場合は一番古い待機者に受け渡します.
 	protected boolean pushPooling(QuinaConnection conn) {
 		// コネクションが存在しないか破棄されてる場合.
 		if(conn == null || conn.isDestroy()) {
 			return false;
-		// Pooling管理数を超えてる場合.
-		} else if(destroyFlag.get() ||
-			config.getPoolingSize() < pooling.size()) {
+		}
+		boolean pool = false;
+		if(!destroyFlag.get()) {
+			synchronized(waiters) {
+				final Waiter w = waiters.pollFirst();
+				// コネクション待ちが存在する場合は直接受け渡す.
+				if(w != null) {
+					waitCount.dec();
+					w.signal(conn, false);
+					return true;
+				// Pooling管理数を超えてない場合.
+				} else if(config.getPoolingSize() >= pooling.size()) {
+					// プーリングにセット.
+					pooling.offer(conn);
+					pool = true;
+				}
+			}
+		}
+		// 破棄されてるかPooling管理数を超えてる場合.
+		if(!pool) {
 			// プーリングせずに廃棄.
 			try {
 				conn.destroy();
 			} catch(Exception e) {}
 			return false;
 		}
-		// プーリングにセット.
-		pooling.offer(conn);
 		// タイムアウト監視セット.
 		service.getTimeoutLoopElement().offer(conn);
 		return true;
 	}
 	
+	// コネクション数に空きがある場合は待機者に新規作成を許可.
+	private void signalWaiter() {
+		if(waitCount.get() == 0) {
+			return;
+		}
+		final int maxConnection = config.getMaxConnection();
+		synchronized(waiters) {
+			Waiter w;
+			while(!waiters.isEmpty() && (maxConnection == -1 ||
+				connectionCount.get() + creatingCount.get() < maxConnection)) {
+				w = waiters.pollFirst();
+				waitCount.dec();
+				creatingCount.inc();
+				w.signal(null, true);
+			}
+		}
+	}
+	
 	/**
 	 * 登録番号を取得
 	 * @return int 登録番号が返却されます.
@@ -153,6 +314,7 @@ public class QuinaDataSource implements DataSource {
 	 */
 	protected void incConnectionCount() {
 		connectionCount.inc();
+		createdCount.inc();
 	}
 	
 	/**
@@ -160,6 +322,9 @@ public class QuinaDataSource implements DataSource {
 	 */
 	protected void decConnectionCount() {
 		connectionCount.dec();
+		destroyedCount.inc();
+		// 待機者にコネクションの新規作成を許可.
+		signalWaiter();
 	}
 	
 	/**
@@ -170,6 +335,118 @@ public class QuinaDataSource implements DataSource {
 		return connectionCount.get();
 	}
 
+	/**
+	 * コネクション待ち数を取得.
+	 * @return int 現在コネクション待ちの数が返却されます.
+	 */
+	public int getWaitCount() {
+		return waitCount.get();
+	}
+	
+	/**
+	 * プーリング中のコネクション数を取得.
+	 * @return int プーリング中のコネクション数が返却されます.
+	 */
+	public int getIdleCount() {
+		return pooling.size();
+	}
+	
+	/**
+	 * 利用中のコネクション数を取得.
+	 * @return int 利用中のコネクション数が返却されます.
+	 */
+	public int getActiveCount() {
+		return Math.max(0, connectionCount.get() - pooling.size());
+	}
+	
+	/**
+	 * 作成したコネクションの累計数を取得.
+	 * @return long 作成したコネクションの累計数が返却されます.
+	 */
+	public long getCreatedCount() {
+		return createdCount.get();
+	}
+	
+	/**
+	 * 破棄したコネクションの累計数を取得.
+	 * @return long 破棄したコネクションの累計数が返却されます.
+	 */
+	public long getDestroyedCount() {
+		return destroyedCount.get();
+	}
+	
+	/**
+	 * コネクション取得タイムアウトの累計数を取得.
+	 * @return long コネクション取得タイムアウトの累計数が返却されます.
+	 */
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+	
+	/**
+	 * ステートメントキャッシュヒットの累計数を取得.
+	 * @return long ステートメントキャッシュヒットの累計数が返却されます.
+	 */
+	public long getStatementCacheHitCount() {
+		return statementCacheHit.get();
+	}
+	
+	/**
+	 * ステートメントキャッシュミスの累計数を取得.
+	 * @return long ステートメントキャッシュミスの累計数が返却されます.
+	 */
+	public long getStatementCacheMissCount() {
+		return statementCacheMiss.get();
+	}
+	
+	/**
+	 * ステートメントキャッシュのヒット率を取得.
+	 * @return double ヒット率(0.0 - 1.0)が返却されます.
+	 */
+	public double getStatementCacheHitRate() {
+		final long hit = statementCacheHit.get();
+		final long total = hit + statementCacheMiss.get();
+		return total == 0L ? 0.0d : (double)hit / (double)total;
+	}
+	
+	// ステートメントキャッシュヒットを記録.
+	protected void hitStatementCache() {
+		statementCacheHit.inc();
+	}
+	
+	// ステートメントキャッシュミスを記録.
+	protected void missStatementCache() {
+		statementCacheMiss.inc();
+	}
+	
+	/**
+	 * コネクション取得待ち時間ヒストグラムを取得.
+	 * 各区間の上限値は WAIT_TIME_HISTOGRAM_BOUNDS で、
+	 * 最後の要素は最後の上限値以上の待ち時間の件数です.
+	 * @return long[] 区間毎のコネクション取得件数が返却されます.
+	 */
+	public long[] getWaitTimeHistogram() {
+		final int len = waitTimeHistogram.length;
+		final long[] ret = new long[len];
+		for(int i = 0; i < len; i ++) {
+			ret[i] = waitTimeHistogram[i].get();
+		}
+		return ret;
+	}
+	
+	// コネクション取得待ち時間を記録.
+	private QuinaConnection recordWaitTime(
+		QuinaConnection conn, long startTime) {
+		final long time = System.currentTimeMillis() - startTime;
+		final int len = WAIT_TIME_HISTOGRAM_BOUNDS.length;
+		int i = 0;
+		while(i < len && time >= WAIT_TIME_HISTOGRAM_BOUNDS[i]) {
+			i ++;
+		}
+		waitTimeHistogram[i].inc();
+		return conn;
+	}
+
 	/**
 	 * QuinaJDBCConfigを取得.
 	 * @return QuinaJDBCConfigが返却されます.
@@ -180,6 +457,8 @@ public class QuinaDataSource implements DataSource {
 	
 	/**
 	 * コネクションを取得.
+	 * 最大コネクション数に達している場合は、コネクションが
+	 * 返却されるまで到着順に待機します.
 	 * @return QuinaConnection コネクションが返却されます.
 	 * @exception SQLException SQL例外.
 	 */
@@ -187,57 +466,458 @@ public class QuinaDataSource implements DataSource {
 	public QuinaConnection getConnection()
 		throws SQLException {
 		QuinaConnection conn;
+		Waiter w;
+		boolean create;
+		long wait;
 		
 		// コネクションタイムアウト値を取得.
+		final long startTime = System.currentTimeMillis();
 		long timeout = -1L;
 		if(config.getConnectionTimeout() != -1) {
-			timeout = System.currentTimeMillis() +
+			timeout = startTime +
 				(long)config.getConnectionTimeout();
 		}
 		
 		// 最大コネクション数を取得.
 		final int maxConnection = config.getMaxConnection();
 		
+		// 受け渡しに失敗した場合は待ち行列の先頭で待機.
+		boolean first = false;
+		
 		// サービスが終了するまで実行.
 		while(!service.isExit()) {
+			checkDestroy();
+			conn = null;
+			w = null;
+			create = false;
 			
+			// コネクション待ちが存在しない場合は
 			// プーリング情報から取得.
-			while((conn = pooling.poll()) != null) {
-				// ReOpenが成功した場合.
-				if(conn.reOpen()) {
-					// プーリングオブジェクトを返却.
-					return conn;
+			if(!first && waitCount.get() == 0) {
+				while((conn = pooling.poll()) != null) {
+					// ReOpenが成功した場合.
+					if(conn.reOpen()) {
+						// プーリングオブジェクトを返却.
+						return recordWaitTime(conn, startTime);
+					}
+				}
+			}
+			synchronized(waiters) {
+				// コネクション待ちが存在しない場合.
+				// もしくは受け渡されたコネクションの取得に失敗して
+				// 待ち行列の先頭で取得しなおす場合.
+				if(first || waiters.isEmpty()) {
+					conn = pooling.poll();
+					// 最大コネクション数に達していない場合は新規作成.
+					if(conn == null && (maxConnection == -1 ||
+						connectionCount.get() + creatingCount.get()
+							< maxConnection)) {
+						creatingCount.inc();
+						create = true;
+					}
+				}
+				// コネクション待ちに登録.
+				if(conn == null && !create) {
+					w = new Waiter();
+					if(first) {
+						waiters.addFirst(w);
+					} else {
+						waiters.addLast(w);
+					}
+					waitCount.inc();
 				}
 			}
 			
-			// Maxコネクション数が設定されてる場合
-			// 現状が最大コネクション数を上回ってる場合は
-			// 一定時間待機してリトライ.
-			if(maxConnection != -1 &&
-				maxConnection <= connectionCount.get()) {
-				// 一定期間待機.
+			// コネクション返却を待機.
+			if(w != null) {
 				try {
-					Thread.sleep(5L);
-				} catch(Exception e) {}
-				
-				// コネクションタイムアウトを検知.
-				if(timeout != -1L &&
-					System.currentTimeMillis() > timeout) {
-					throw new SQLException(
-						"The connection has timed out.");
+					while(true) {
+						if(timeout == -1L) {
+							wait = MAX_WAIT_TIME;
+						} else if((wait = timeout -
+							System.currentTimeMillis()) > MAX_WAIT_TIME) {
+							wait = MAX_WAIT_TIME;
+						}
+						// 通知された場合.
+						if(w.await(wait)) {
+							break;
+						}
+						// タイムアウトかサービスが終了した場合.
+						if(service.isExit() || destroyFlag.get() ||
+							(timeout != -1L &&
+								System.currentTimeMillis() > timeout)) {
+							if(cancelWait(w)) {
+								if(service.isExit() || destroyFlag.get()) {
+									break;
+								}
+								timeoutCount.inc();
+								throw new SQLTimeoutException(
+									"The connection has timed out.");
+							}
+							// キャンセル前に通知された場合.
+							break;
+						}
+					}
+				} catch(InterruptedException ie) {
+					if(cancelWait(w)) {
+						throw new SQLException(ie);
+					}
+					Thread.currentThread().interrupt();
 				}
-				continue;
+				conn = w.conn;
+				create = w.create;
 			}
 			
-			// プーリングコネクションを新規作成.
-			return _getQuinaProxyConnection(
-				false, config.getUser(), config.getPassword());
+			// 受け渡されたかプーリングから取得した場合.
+			if(conn != null) {
+				// ReOpenが成功した場合.
+				if(conn.reOpen()) {
+					return recordWaitTime(conn, startTime);
+				}
+				// 取得に失敗した場合は先頭で待機しなおす.
+				first = w != null;
+				continue;
+			// コネクションの新規作成が許可された場合.
+			} else if(create) {
+				try {
+					// プーリングコネクションを新規作成.
+					return recordWaitTime(_getQuinaProxyConnection(
+						false, config.getUser(), config.getPassword()),
+						startTime);
+				} finally {
+					creatingCount.dec();
+					// 作成に失敗した場合は別の待機者に許可.
+					signalWaiter();
+				}
+			}
+			// 通知のみの場合は先頭で待機しなおす.
+			first = w != null;
 		}
 		
 		// コネクション取得失敗例外.
 		throw new SQLException("Failed to get the connection.");
 	}
 	
+	/**
+	 * 読み込み用のコネクションを取得.
+	 * レプリカが定義されている場合はレプリカの読み込み専用
+	 * コネクションが返却されます.
+	 * レプリカが定義されていないか、振り分け可能なレプリカが
+	 * 存在しない場合はプライマリのコネクションが返却されます.
+	 * @return QuinaConnection コネクションが返却されます.
+	 * @exception SQLException SQL例外.
+	 */
+	public QuinaConnection getReadConnection()
+		throws SQLException {
+		checkDestroy();
+		if(replicaGroup == null) {
+			return getConnection();
+		}
+		return replicaGroup.getConnection();
+	}
+	
+	/**
+	 * レプリカ数を取得.
+	 * @return int レプリカ数が返却されます.
+	 */
+	public int getReplicaSize() {
+		return replicaGroup == null ? 0 : replicaGroup.size();
+	}
+	
+	/**
+	 * レプリカのデータソースを取得.
+	 * @param no 対象の項番を設定します.
+	 * @return QuinaDataSource レプリカのデータソースが返却されます.
+	 */
+	public QuinaDataSource getReplica(int no) {
+		if(replicaGroup == null) {
+			throw new QuinaJDBCException(
+				"No replica is defined: " + regName);
+		}
+		return replicaGroup.get(no);
+	}
+	
+	/**
+	 * レプリカが振り分け対象か取得.
+	 * @param no 対象の項番を設定します.
+	 * @return boolean falseの場合は接続に失敗して
+	 *                 振り分け対象から外れています.
+	 */
+	public boolean isReplicaActive(int no) {
+		if(replicaGroup == null) {
+			throw new QuinaJDBCException(
+				"No replica is defined: " + regName);
+		}
+		return replicaGroup.isActive(no);
+	}
+	
+	/**
+	 * 読み込み用のコネクションをプライマリで代替した累計数を取得.
+	 * @return long プライマリで代替した累計数が返却されます.
+	 */
+	public long getReplicaFallbackCount() {
+		return replicaGroup == null ? 0L : replicaGroup.getFallbackCount();
+	}
+	
+	// レプリカの接続検証.
+	protected void checkReplica(long now) {
+		if(replicaGroup != null && !destroyFlag.get()) {
+			replicaGroup.check(now);
+		}
+	}
+	
+	/**
+	 * 事前接続.
+	 * 事前接続数のコネクションを並列で作成してプーリングします.
+	 * レプリカが定義されている場合はレプリカも事前接続します.
+	 * @return int プーリングしたコネクション数が返却されます.
+	 * @exception SQLException 事前接続に失敗した場合にサービス開始を
+	 *                         失敗させる設定で、事前接続数の
+	 *                         コネクションを作成できない場合に
+	 *                         発生します.
+	 */
+	protected int preWarm() throws SQLException {
+		checkDestroy();
+		final int size = config.getPreWarm();
+		int ret = 0;
+		if(size > 0) {
+			final ObjectList<QuinaConnection> list =
+				new ObjectList<QuinaConnection>(size);
+			final SQLException error = createParallel(size, list);
+			// プーリングにセット.
+			// タイムアウト監視の登録でQuinaJDBCServiceのロックを
+			// 取得するため、作成したスレッドではなく呼び出し元で
+			// プーリングする.
+			final int len = list.size();
+			for(int i = 0; i < len; i ++) {
+				if(list.get(i).offerPooling()) {
+					ret ++;
+				}
+			}
+			if(ret < size) {
+				final String msg = "Pre-warming of the data source \"" +
+					regName + "\" created only " + ret + " of " +
+					size + " connections.";
+				// サービス開始を失敗させる場合.
+				if(config.isPreWarmFailFast()) {
+					clearPooling();
+					throw new SQLException(msg, error);
+				} else if(error != null) {
+					LogFactory.getInstance().get().warn(msg, error);
+				} else {
+					LogFactory.getInstance().get().warn(msg);
+				}
+			}
+		}
+		// レプリカの事前接続.
+		if(replicaGroup != null) {
+			replicaGroup.preWarm();
+		}
+		return ret;
+	}
+	
+	// 指定数のコネクションを並列で作成.
+	// 作成に失敗した場合は最初の例外を返却.
+	private SQLException createParallel(
+		final int size, final ObjectList<QuinaConnection> out) {
+		final AtomicNumber remaining = new AtomicNumber(size);
+		final SQLException[] error = new SQLException[1];
+		final Runnable r = new Runnable() {
+			@Override
+			public void run() {
+				QuinaConnection conn;
+				while(remaining.dec() >= 0) {
+					try {
+						// 最大コネクション数に達した場合.
+						if((conn = createIdle()) == null) {
+							break;
+						}
+						synchronized(out) {
+							out.add(conn);
+						}
+					} catch(Exception e) {
+						synchronized(out) {
+							if(error[0] == null) {
+								error[0] = e instanceof SQLException ?
+									(SQLException)e : new SQLException(e);
+							}
+						}
+						break;
+					}
+				}
+			}
+		};
+		final int len = Math.min(size,
+			QuinaJDBCConstants.MAX_PRE_WARM_THREADS);
+		final Thread[] threads = new Thread[len - 1];
+		for(int i = 0; i < len - 1; i ++) {
+			threads[i] = new Thread(r, "quina-jdbc-prewarm-" + (i + 1));
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		// 呼び出し元のスレッドでも作成する.
+		r.run();
+		for(int i = 0; i < len - 1; i ++) {
+			try {
+				threads[i].join();
+			} catch(InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		synchronized(out) {
+			return error[0];
+		}
+	}
+	
+	// 最大コネクション数の範囲でプーリング用のコネクションを新規作成.
+	// 最大コネクション数に達している場合は null を返却.
+	private QuinaConnection createIdle() throws SQLException {
+		final int maxConnection = config.getMaxConnection();
+		synchronized(waiters) {
+			if(maxConnection != -1 && connectionCount.get() +
+				creatingCount.get() >= maxConnection) {
+				return null;
+			}
+			creatingCount.inc();
+		}
+		try {
+			return _getQuinaProxyConnection(
+				false, config.getUser(), config.getPassword());
+		} finally {
+			creatingCount.dec();
+			// 作成に失敗した場合は待機者に許可.
+			signalWaiter();
+		}
+	}
+	
+	/**
+	 * 最小アイドルコネクションの維持.
+	 * プーリング中のコネクション数が最小アイドルコネクション数を
+	 * 下回っている場合は、維持スレッドでコネクションを作成して
+	 * プーリングします.
+	 * QuinaJDBCのLoopスレッドで接続処理を行わないため、
+	 * この処理は維持スレッドの開始のみを行います.
+	 * 作成に失敗した場合は一定時間作成を行いません.
+	 * @param now 現在の時間を設定します.
+	 */
+	protected void keepMinIdle(long now) {
+		if(isLackIdle(now)) {
+			startIdleWorker();
+		}
+		// レプリカの最小アイドルコネクションの維持.
+		if(replicaGroup != null) {
+			replicaGroup.keepMinIdle(now);
+		}
+	}
+	
+	/**
+	 * 最小アイドルコネクションの接続検証を維持スレッドに依頼.
+	 * 接続検証に成功した場合はプーリングに戻し、失敗した場合は
+	 * 破棄します.
+	 * @param conn プーリングから取り出したコネクションを設定します.
+	 */
+	protected void validateIdle(QuinaConnection conn) {
+		idleValidating.inc();
+		idleValidates.offer(conn);
+		startIdleWorker();
+	}
+	
+	/**
+	 * 接続検証中を含めたアイドルコネクション数を取得.
+	 * @return int アイドルコネクション数が返却されます.
+	 */
+	protected int getKeepIdleCount() {
+		return pooling.size() + idleValidating.get();
+	}
+	
+	// 最小アイドルコネクションが不足しているかチェック.
+	// コネクション待ちが存在する場合は待機者が作成する.
+	private boolean isLackIdle(long now) {
+		final int minIdle = config.getMinIdle();
+		return minIdle > 0 && !destroyFlag.get() &&
+			nextIdleTime <= now && waitCount.get() == 0 &&
+			getKeepIdleCount() < minIdle;
+	}
+	
+	// 最小アイドルコネクション維持スレッドを開始.
+	// 既に実行中の場合は実行中のスレッドが処理する.
+	private void startIdleWorker() {
+		if(idleWorking.setToGetBefore(true)) {
+			return;
+		}
+		final Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				executeIdle();
+			}
+		}, "quina-jdbc-idle-" + regName);
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	// 最小アイドルコネクション維持スレッドの処理.
+	private void executeIdle() {
+		QuinaConnection conn;
+		try {
+			while(true) {
+				// 接続検証待ちのコネクションを処理.
+				while((conn = idleValidates.poll()) != null) {
+					try {
+						conn.validateIdle();
+					} finally {
+						idleValidating.dec();
+					}
+				}
+				// 不足している最小アイドルコネクションを作成.
+				if(!createMinIdle()) {
+					break;
+				}
+			}
+		} finally {
+			idleWorking.set(false);
+		}
+		// 終了中に接続検証が依頼された場合.
+		if(!idleValidates.isEmpty()) {
+			startIdleWorker();
+		}
+	}
+	
+	// 最小アイドルコネクションを１つ作成してプーリング.
+	// 続けて作成する必要がない場合は false を返却.
+	private boolean createMinIdle() {
+		final long now = System.currentTimeMillis();
+		if(!isLackIdle(now)) {
+			return false;
+		}
+		try {
+			final QuinaConnection conn = createIdle();
+			// 最大コネクション数に達した場合.
+			if(conn == null) {
+				return false;
+			}
+			return conn.offerPooling();
+		} catch(Exception e) {
+			nextIdleTime = now + QuinaJDBCConstants.MIN_IDLE_RETRY_TIME;
+			LogFactory.getInstance().get().warn(
+				"Failed to create the minimum idle connection of \"" +
+				regName + "\".", e);
+			return false;
+		}
+	}
+	
+	// コネクション待ちをキャンセル.
+	// 既に通知済みの場合は false を返却.
+	private boolean cancelWait(Waiter w) {
+		synchronized(waiters) {
+			if(waiters.remove(w)) {
+				waitCount.dec();
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	/**
 	 * 直接JDBCからコネクションの取得.
 	 * 
@@ -2,7 +2,9 @@ package quina.jdbc;
 
 import java.sql.Connection;
 import java.sql.Statement;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
@@ -22,6 +24,7 @@ import quina.util.Flag;
 import quina.util.NumberUtil;
 import quina.util.StringUtil;
 import quina.util.collection.IndexMap;
+import quina.util.collection.ObjectList;
 
 /**
  * QuinaJDBC接続定義.
@@ -62,6 +65,27 @@ public class QuinaJDBCConfig {
 	private Integer maxConnection = null;
 	// コネクションタイムアウト.
 	private Integer connectionTimeout = null;
+	// 接続検証を行うアイドル時間.
+	private Integer validationIdleTime = null;
+	// 接続検証タイムアウト.
+	private Integer validationTimeout = null;
+	// コネクション単位のステートメントキャッシュ数.
+	private Integer statementCacheSize = null;
+	
+	// 最小アイドルコネクション数.
+	private Integer minIdle = null;
+	// サービス開始時の事前接続数.
+	private Integer preWarm = null;
+	// 事前接続に失敗した場合はサービス開始を失敗させる.
+	private boolean preWarmFailFast = false;
+	
+	// レプリカ定義群.
+	private ObjectList<QuinaJDBCConfig> replicas = null;
+	// レプリカの振り分け方法.
+	private int replicaBalance =
+		QuinaJDBCConstants.REPLICA_BALANCE_ROUND_ROBIN;
+	// レプリカ接続検証間隔.
+	private Integer replicaCheckTime = null;
 	
 	// oracle の jdbc接続など、末尾に；を付けるとエラーになるものは[true].
 	// oracleやderbyなど.
@@ -314,7 +338,16 @@ public class QuinaJDBCConfig {
 				if(poolSize > maxConn) {
 					// プーリングサイズの１．２５倍を
 					// Maxコネクション数とする.
-					this.setMaxConnection(poolSize);
+					// (Fix済みなのでsetMaxConnectionは利用できない).
+					this.maxConnection = Math.min(
+						poolSize, QuinaJDBCConstants.MAX_MAX_CONNECTION);
+				}
+			}
+			// レプリカ定義をFix.
+			if(replicas != null) {
+				final int len = replicas.size();
+				for(int i = 0; i < len; i ++) {
+					replicas.get(i).fix();
 				}
 			}
 			// fix完了処理.
@@ -426,7 +459,7 @@ public class QuinaJDBCConfig {
 			if(!sql.endsWith(";")) {
 				return sql + ";";
 			}
-		} else if(!sql.endsWith(";")) {
+		} else if(sql.endsWith(";")) {
 			return sql.substring(0, sql.length() - 1);
 		}
 		return sql;
@@ -550,6 +583,113 @@ public class QuinaJDBCConfig {
 		return connectionTimeout;
 	}
 	
+	/**
+	 * 接続検証を行うアイドル時間を取得.
+	 * @return Integer 接続検証を行うアイドル時間(ミリ秒)が返却されます.
+	 *                 0の場合は毎回接続検証を行います.
+	 *                 マイナス値の場合は接続検証を行いません.
+	 */
+	public Integer getValidationIdleTime() {
+		if(validationIdleTime == null) {
+			return QuinaJDBCConstants.getValidationIdleTime();
+		}
+		return validationIdleTime;
+	}
+	
+	/**
+	 * 接続検証タイムアウト値を取得.
+	 * @return Integer 接続検証タイムアウト値(秒)が返却されます.
+	 */
+	public Integer getValidationTimeout() {
+		if(validationTimeout == null) {
+			return QuinaJDBCConstants.getValidationTimeout();
+		}
+		return validationTimeout;
+	}
+	
+	/**
+	 * コネクション単位のステートメントキャッシュ数を取得.
+	 * @return Integer コネクション単位のステートメントキャッシュ数が返却されます.
+	 *                 0の場合はキャッシュしません.
+	 */
+	public Integer getStatementCacheSize() {
+		if(statementCacheSize == null) {
+			return QuinaJDBCConstants.getStatementCacheSize();
+		}
+		return statementCacheSize;
+	}
+	
+	/**
+	 * 最小アイドルコネクション数を取得.
+	 * @return int 最小アイドルコネクション数が返却されます.
+	 *             0の場合はアイドルコネクションを維持しません.
+	 */
+	public int getMinIdle() {
+		if(minIdle == null) {
+			return 0;
+		}
+		return Math.min(minIdle, getPoolingSize());
+	}
+	
+	/**
+	 * サービス開始時の事前接続数を取得.
+	 * @return int サービス開始時の事前接続数が返却されます.
+	 *             0の場合は事前接続を行いません.
+	 */
+	public int getPreWarm() {
+		if(preWarm == null) {
+			return getMinIdle();
+		}
+		return Math.min(preWarm, getPoolingSize());
+	}
+	
+	/**
+	 * 事前接続に失敗した場合にサービス開始を失敗させるか取得.
+	 * @return boolean trueの場合はサービス開始を失敗させます.
+	 */
+	public boolean isPreWarmFailFast() {
+		return preWarmFailFast;
+	}
+	
+	/**
+	 * レプリカ定義数を取得.
+	 * @return int レプリカ定義数が返却されます.
+	 */
+	public int getReplicaSize() {
+		return replicas == null ? 0 : replicas.size();
+	}
+	
+	/**
+	 * レプリカ定義を取得.
+	 * @param no 対象の項番を設定します.
+	 * @return QuinaJDBCConfig レプリカ定義が返却されます.
+	 */
+	public QuinaJDBCConfig getReplica(int no) {
+		return replicas.get(no);
+	}
+	
+	/**
+	 * レプリカの振り分け方法を取得.
+	 * @return int レプリカの振り分け方法が返却されます.
+	 *             REPLICA_BALANCE_ROUND_ROBIN の場合はラウンドロビン.
+	 *             REPLICA_BALANCE_LEAST_ACTIVE の場合は利用中
+	 *             コネクション数が最も少ないレプリカに振り分けます.
+	 */
+	public int getReplicaBalance() {
+		return replicaBalance;
+	}
+	
+	/**
+	 * レプリカ接続検証間隔を取得.
+	 * @return Integer レプリカ接続検証間隔(ミリ秒)が返却されます.
+	 */
+	public Integer getReplicaCheckTime() {
+		if(replicaCheckTime == null) {
+			return QuinaJDBCConstants.getReplicaCheckTime();
+		}
+		return replicaCheckTime;
+	}
+	
 	/**
 	 * SQLの末端にセミコロンを付与させない場合は
 	 * 「true」が返却されます.
@@ -775,7 +915,192 @@ public class QuinaJDBCConfig {
 		return this;
 	}
 
+	
+	/**
+	 * 接続検証を行うアイドル時間を設定.
+	 * プーリングから取得する時にこの時間以上利用されていない
+	 * コネクションのみ接続検証を行います.
+	 * @param time 接続検証を行うアイドル時間(ミリ秒)を設定します.
+	 *             0を設定した場合は、毎回接続検証を行います.
+	 *             マイナス値を設定した場合は、接続検証を行いません.
+	 * @return QuinaJDBCConfig オブジェクトが返却されます.
+	 */
+	public QuinaJDBCConfig setValidationIdleTime(Integer time) {
+		checkFix();
+		if(time != null) {
+			if(time < 0) {
+				time = -1;
+			} else if(time > QuinaJDBCConstants.MAX_VALIDATION_IDLE_TIME) {
+				time = QuinaJDBCConstants.MAX_VALIDATION_IDLE_TIME;
+			}
+			this.validationIdleTime = time;
+		} else {
+			this.validationIdleTime =
+				QuinaJDBCConstants.getValidationIdleTime();
+		}
+		return this;
+	}
+	
+	/**
+	 * 接続検証タイムアウト値を設定.
+	 * @param timeout 接続検証タイムアウト値(秒)を設定します.
+	 * @return QuinaJDBCConfig オブジェクトが返却されます.
+	 */
+	public QuinaJDBCConfig setValidationTimeout(Integer timeout) {
+		checkFix();
+		if(timeout != null) {
+			if(timeout < QuinaJDBCConstants.MIN_VALIDATION_TIMEOUT) {
+				timeout = QuinaJDBCConstants.MIN_VALIDATION_TIMEOUT;
+			} else if(timeout > QuinaJDBCConstants.MAX_VALIDATION_TIMEOUT) {
+				timeout = QuinaJDBCConstants.MAX_VALIDATION_TIMEOUT;
+			}
+			this.validationTimeout = timeout;
+		} else {
+			this.validationTimeout =
+				QuinaJDBCConstants.getValidationTimeout();
+		}
+		return this;
+	}
+	
+	/**
+	 * コネクション単位のステートメントキャッシュ数を設定.
+	 * プーリングされるコネクション毎に、クローズされた
+	 * PreparedStatementをSQL単位で保持して再利用します.
+	 * @param size コネクション単位のステートメントキャッシュ数を設定します.
+	 *             0を設定した場合は、キャッシュしません.
+	 * @return QuinaJDBCConfig オブジェクトが返却されます.
+	 */
+	public QuinaJDBCConfig setStatementCacheSize(Integer size) {
+		checkFix();
+		if(size != null) {
+			if(size < 0) {
+				size = 0;
+			} else if(size > QuinaJDBCConstants.MAX_STATEMENT_CACHE_SIZE) {
+				size = QuinaJDBCConstants.MAX_STATEMENT_CACHE_SIZE;
+			}
+			this.statementCacheSize = size;
+		} else {
+			this.statementCacheSize =
+				QuinaJDBCConstants.getStatementCacheSize();
+		}
+		return this;
+	}
 
+	/**
+	 * 最小アイドルコネクション数を設定.
+	 * バックグラウンドでプーリング中のコネクション数が
+	 * この値を下回らないようにコネクションを作成し、
+	 * この値以下のアイドルコネクションはタイムアウトさせません.
+	 * @param size 最小アイドルコネクション数を設定します.
+	 *             プーリングサイズを超える場合は
+	 *             プーリングサイズとなります.
+	 * @return QuinaJDBCConfig オブジェクトが返却されます.
+	 */
+	public QuinaJDBCConfig setMinIdle(Integer size) {
+		checkFix();
+		if(size != null) {
+			if(size < 0) {
+				size = 0;
+			} else if(size > QuinaJDBCConstants.MAX_POOLING_SIZE) {
+				size = QuinaJDBCConstants.MAX_POOLING_SIZE;
+			}
+		}
+		this.minIdle = size;
+		return this;
+	}
+	
+	/**
+	 * サービス開始時の事前接続数を設定.
+	 * サービス開始時に指定数のコネクションを並列で作成して
+	 * プーリングします.
+	 * @param size サービス開始時の事前接続数を設定します.
+	 *             nullの場合は最小アイドルコネクション数となります.
+	 * @return QuinaJDBCConfig オブジェクトが返却されます.
+	 */
+	public QuinaJDBCConfig setPreWarm(Integer size) {
+		checkFix();
+		if(size != null) {
+			if(size < 0) {
+				size = 0;
+			} else if(size > QuinaJDBCConstants.MAX_POOLING_SIZE) {
+				size = QuinaJDBCConstants.MAX_POOLING_SIZE;
+			}
+		}
+		this.preWarm = size;
+		return this;
+	}
+	
+	/**
+	 * 事前接続に失敗した場合にサービス開始を失敗させるか設定.
+	 * @param failFast trueの場合は事前接続数のコネクションを
+	 *                 作成できない場合にサービス開始を失敗させます.
+	 * @return QuinaJDBCConfig オブジェクトが返却されます.
+	 */
+	public QuinaJDBCConfig setPreWarmFailFast(boolean failFast) {
+		checkFix();
+		this.preWarmFailFast = failFast;
+		return this;
+	}
+	
+	/**
+	 * レプリカ定義を追加.
+	 * レプリカは読み込み専用のコネクションとして
+	 * 個別のプーリングで管理されます.
+	 * @param replica 対象のレプリカ定義を設定します.
+	 * @return QuinaJDBCConfig オブジェクトが返却されます.
+	 */
+	public QuinaJDBCConfig addReplica(QuinaJDBCConfig replica) {
+		checkFix();
+		if(replica == null) {
+			throw new QuinaJDBCException("replica define is not set.");
+		}
+		// レプリカは読み込み専用.
+		replica.setReadOnly(true);
+		if(replicas == null) {
+			replicas = new ObjectList<QuinaJDBCConfig>();
+		}
+		replicas.add(replica);
+		return this;
+	}
+	
+	/**
+	 * レプリカの振り分け方法を設定.
+	 * @param balance 振り分け方法を設定します.
+	 *                "roundRobin" の場合はラウンドロビン.
+	 *                "leastActive" の場合は利用中コネクション数が
+	 *                最も少ないレプリカに振り分けます.
+	 *                nullの場合はラウンドロビンとなります.
+	 * @return QuinaJDBCConfig オブジェクトが返却されます.
+	 */
+	public QuinaJDBCConfig setReplicaBalance(Object balance) {
+		checkFix();
+		this.replicaBalance = replicaBalance(balance);
+		return this;
+	}
+	
+	/**
+	 * レプリカ接続検証間隔を設定.
+	 * 一定間隔でレプリカの接続検証を行い、失敗したレプリカは
+	 * 振り分け対象から外し、成功した場合に振り分け対象に戻します.
+	 * @param time レプリカ接続検証間隔(ミリ秒)を設定します.
+	 * @return QuinaJDBCConfig オブジェクトが返却されます.
+	 */
+	public QuinaJDBCConfig setReplicaCheckTime(Integer time) {
+		checkFix();
+		if(time != null) {
+			if(time < QuinaJDBCConstants.MIN_REPLICA_CHECK_TIME) {
+				time = QuinaJDBCConstants.MIN_REPLICA_CHECK_TIME;
+			} else if(time > QuinaJDBCConstants.MAX_REPLICA_CHECK_TIME) {
+				time = QuinaJDBCConstants.MAX_REPLICA_CHECK_TIME;
+			}
+			this.replicaCheckTime = time;
+		} else {
+			this.replicaCheckTime =
+				QuinaJDBCConstants.getReplicaCheckTime();
+		}
+		return this;
+	}
+	
 	// URLに合わせたSQL終端のセミコロン許可を判別してセット.
 	protected QuinaJDBCConfig setNotSemicolon() {
 		this.notSemicolon = checkNotSemicolon(this.url);
@@ -844,6 +1169,71 @@ public class QuinaJDBCConfig {
 		}
 		this.setConnectionTimeout(i);
 		
+		i = NumberUtil.parseInt(conf.get("validationIdleTime"));
+		if(i == null) {
+			i = NumberUtil.parseInt(conf.get("validIdle"));
+		}
+		this.setValidationIdleTime(i);
+		
+		i = NumberUtil.parseInt(conf.get("validationTimeout"));
+		if(i == null) {
+			i = NumberUtil.parseInt(conf.get("validTimeout"));
+		}
+		this.setValidationTimeout(i);
+		
+		i = NumberUtil.parseInt(conf.get("statementCacheSize"));
+		if(i == null) {
+			i = NumberUtil.parseInt(conf.get("stmtCache"));
+		}
+		this.setStatementCacheSize(i);
+		
+		this.setMinIdle(NumberUtil.parseInt(conf.get("minIdle")));
+		this.setPreWarm(NumberUtil.parseInt(conf.get("preWarm")));
+		f = BooleanUtil.parseBoolean(conf.get("preWarmFailFast"));
+		if(f == null) {
+			f = BooleanUtil.parseBoolean(conf.get("failFast"));
+		}
+		if(f != null) {
+			this.setPreWarmFailFast(f);
+		}
+		
+		// レプリカ定義.
+		Object o = conf.get("replicaBalance");
+		if(o == null) {
+			o = conf.get("balance");
+		}
+		this.setReplicaBalance(o);
+		
+		i = NumberUtil.parseInt(conf.get("replicaCheckTime"));
+		if(i == null) {
+			i = NumberUtil.parseInt(conf.get("replicaCheck"));
+		}
+		this.setReplicaCheckTime(i);
+		
+		if(conf.get("replicas") instanceof List) {
+			final List list = (List)conf.get("replicas");
+			final int len = list.size();
+			Map<String, Object> rc;
+			for(int j = 0; j < len; j ++) {
+				// プライマリの定義を引き継いで
+				// レプリカ毎の定義で上書きする.
+				rc = new HashMap<String, Object>(conf);
+				rc.remove("replicas");
+				rc.remove("default");
+				rc.remove("def");
+				o = list.get(j);
+				if(o instanceof Map) {
+					rc.putAll((Map)o);
+				} else if(o instanceof String) {
+					rc.put("url", o);
+				} else {
+					throw new QuinaJDBCException(
+						"Invalid replica definition: " + name);
+				}
+				this.addReplica(create(name + "#" + (j + 1), rc));
+			}
+		}
+		
 		m = null;
 		if(conf.get("params") instanceof Map) {
 			m = new IndexMap((Map)conf.get("params"));
@@ -870,6 +1260,29 @@ public class QuinaJDBCConfig {
 	}
 	
 	
+	// レプリカの振り分け方法を取得.
+	private static final int replicaBalance(Object o) {
+		if(o == null) {
+			return QuinaJDBCConstants.REPLICA_BALANCE_ROUND_ROBIN;
+		} else if(o instanceof Number) {
+			final int n = ((Number)o).intValue();
+			if(n == QuinaJDBCConstants.REPLICA_BALANCE_ROUND_ROBIN ||
+				n == QuinaJDBCConstants.REPLICA_BALANCE_LEAST_ACTIVE) {
+				return n;
+			}
+		} else {
+			final String s = o.toString().trim();
+			if(Alphabet.eq(s, "roundRobin") || Alphabet.eq(s, "rr")) {
+				return QuinaJDBCConstants.REPLICA_BALANCE_ROUND_ROBIN;
+			} else if(Alphabet.eq(s, "leastActive") ||
+				Alphabet.eq(s, "least")) {
+				return QuinaJDBCConstants.REPLICA_BALANCE_LEAST_ACTIVE;
+			}
+		}
+		throw new QuinaJDBCException(
+			"Unsupported replica balance: " + o);
+	}
+	
 	// Map指定したURLパラメータを文字列変換.
 	@SuppressWarnings("rawtypes")
 	private static final String convertUrlParams(
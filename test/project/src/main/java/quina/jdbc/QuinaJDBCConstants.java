@@ -188,4 +188,194 @@ public class QuinaJDBCConstants {
 	public static final int getConnectionTimeout() {
 		return connectionTimeout.get();
 	}
+	
+	/**
+	 * デフォルトの接続検証を行うアイドル時間.
+	 * 5秒.
+	 */
+	protected static final int DEF_VALIDATION_IDLE_TIME = 5000;
+	
+	/**
+	 * 最大の接続検証を行うアイドル時間.
+	 * 5分.
+	 */
+	protected static final int MAX_VALIDATION_IDLE_TIME = 300000;
+	
+	/**
+	 * 接続検証を行うアイドル時間.
+	 */
+	protected static final AtomicNumber validationIdleTime =
+		new AtomicNumber(DEF_VALIDATION_IDLE_TIME);
+	
+	/**
+	 * 接続検証を行うアイドル時間を設定.
+	 * プーリングから取得する時にこの時間以上利用されていない
+	 * コネクションのみ接続検証を行います.
+	 * @param time 接続検証を行うアイドル時間(ミリ秒)を設定します.
+	 *             0を設定した場合は、毎回接続検証を行います.
+	 *             マイナス値を設定した場合は、接続検証を行いません.
+	 */
+	public static final void setValidationIdleTime(int time) {
+		if(time < 0) {
+			time = -1;
+		} else if(MAX_VALIDATION_IDLE_TIME < time) {
+			time = MAX_VALIDATION_IDLE_TIME;
+		}
+		validationIdleTime.set(time);
+	}
+	
+	/**
+	 * 接続検証を行うアイドル時間を取得.
+	 * @return int 接続検証を行うアイドル時間(ミリ秒)が返却されます.
+	 */
+	public static final int getValidationIdleTime() {
+		return validationIdleTime.get();
+	}
+	
+	/**
+	 * デフォルトの接続検証タイムアウト.
+	 * 3秒.
+	 */
+	protected static final int DEF_VALIDATION_TIMEOUT = 3;
+	
+	/**
+	 * 最小の接続検証タイムアウト.
+	 */
+	protected static final int MIN_VALIDATION_TIMEOUT = 1;
+	
+	/**
+	 * 最大の接続検証タイムアウト.
+	 */
+	protected static final int MAX_VALIDATION_TIMEOUT = 60;
+	
+	/**
+	 * 接続検証タイムアウト.
+	 */
+	protected static final AtomicNumber validationTimeout =
+		new AtomicNumber(DEF_VALIDATION_TIMEOUT);
+	
+	/**
+	 * 接続検証タイムアウト値を設定.
+	 * @param timeout 接続検証タイムアウト値(秒)を設定します.
+	 */
+	public static final void setValidationTimeout(int timeout) {
+		if(MIN_VALIDATION_TIMEOUT > timeout) {
+			timeout = MIN_VALIDATION_TIMEOUT;
+		} else if(MAX_VALIDATION_TIMEOUT < timeout) {
+			timeout = MAX_VALIDATION_TIMEOUT;
+		}
+		validationTimeout.set(timeout);
+	}
+	
+	/**
+	 * 接続検証タイムアウト値を取得.
+	 * @return int 接続検証タイムアウト値(秒)が返却されます.
+	 */
+	public static final int getValidationTimeout() {
+		return validationTimeout.get();
+	}
+	
+	/**
+	 * デフォルトのコネクション単位のステートメントキャッシュ数.
+	 */
+	protected static final int DEF_STATEMENT_CACHE_SIZE = 32;
+	
+	/**
+	 * 最大のコネクション単位のステートメントキャッシュ数.
+	 */
+	protected static final int MAX_STATEMENT_CACHE_SIZE = 1024;
+	
+	/**
+	 * コネクション単位のステートメントキャッシュ数.
+	 */
+	protected static final AtomicNumber statementCacheSize =
+		new AtomicNumber(DEF_STATEMENT_CACHE_SIZE);
+	
+	/**
+	 * コネクション単位のステートメントキャッシュ数を設定.
+	 * @param size コネクション単位のステートメントキャッシュ数を設定します.
+	 *             0以下を設定した場合は、キャッシュしません.
+	 */
+	public static final void setStatementCacheSize(int size) {
+		if(size < 0) {
+			size = 0;
+		} else if(MAX_STATEMENT_CACHE_SIZE < size) {
+			size = MAX_STATEMENT_CACHE_SIZE;
+		}
+		statementCacheSize.set(size);
+	}
+	
+	/**
+	 * コネクション単位のステートメントキャッシュ数を取得.
+	 * @return int コネクション単位のステートメントキャッシュ数が返却されます.
+	 */
+	public static final int getStatementCacheSize() {
+		return statementCacheSize.get();
+	}
+	
+	/**
+	 * レプリカ振り分け: ラウンドロビン.
+	 */
+	public static final int REPLICA_BALANCE_ROUND_ROBIN = 0;
+	
+	/**
+	 * レプリカ振り分け: 利用中コネクション数が最も少ないレプリカ.
+	 */
+	public static final int REPLICA_BALANCE_LEAST_ACTIVE = 1;
+	
+	/**
+	 * デフォルトのレプリカ接続検証間隔.
+	 * 5秒.
+	 */
+	protected static final int DEF_REPLICA_CHECK_TIME = 5000;
+	
+	/**
+	 * 最小のレプリカ接続検証間隔.
+	 * 0.5秒.
+	 */
+	protected static final int MIN_REPLICA_CHECK_TIME = 500;
+	
+	/**
+	 * 最大のレプリカ接続検証間隔.
+	 * 5分.
+	 */
+	protected static final int MAX_REPLICA_CHECK_TIME = 300000;
+	
+	/**
+	 * レプリカ接続検証間隔.
+	 */
+	protected static final AtomicNumber replicaCheckTime =
+		new AtomicNumber(DEF_REPLICA_CHECK_TIME);
+	
+	/**
+	 * レプリカ接続検証間隔を設定.
+	 * @param time レプリカ接続検証間隔(ミリ秒)を設定します.
+	 */
+	public static final void setReplicaCheckTime(int time) {
+		if(time < MIN_REPLICA_CHECK_TIME) {
+			time = MIN_REPLICA_CHECK_TIME;
+		} else if(MAX_REPLICA_CHECK_TIME < time) {
+			time = MAX_REPLICA_CHECK_TIME;
+		}
+		replicaCheckTime.set(time);
+	}
+	
+	/**
+	 * レプリカ接続検証間隔を取得.
+	 * @return int レプリカ接続検証間隔(ミリ秒)が返却されます.
+	 */
+	public static final int getReplicaCheckTime() {
+		return replicaCheckTime.get();
+	}
+	
+	/**
+	 * 事前接続を行う最大スレッド数.
+	 */
+	protected static final int MAX_PRE_WARM_THREADS = 8;
+	
+	/**
+	 * 最小アイドルコネクションの作成に失敗した場合の再試行間隔.
+	 * 5秒.
+	 */
+	protected static final long MIN_IDLE_RETRY_TIME = 5000L;
 }
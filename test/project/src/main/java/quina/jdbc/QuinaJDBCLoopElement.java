@@ -0,0 +1,51 @@
+package quina.jdbc;
+
+import quina.thread.QuinaThreadStatus;
+import quina.worker.timeout.TimeoutLoopElement;
+
+/**
+ * QuinaJDBCのLoop処理要素.
+ *
+ * プーリングコネクションのタイムアウト監視に加えて
+ * 各データソースのレプリカ接続検証と
+ * 最小アイドルコネクションの維持を行います.
+ */
+final class QuinaJDBCLoopElement
+	extends TimeoutLoopElement {
+
+	// 対象のデータソース群.
+	private final QuinaDataSource[] dataSources;
+
+	/**
+	 * コンストラクタ.
+	 * @param timeout タイムアウト値（ミリ秒）を設定します.
+	 * @param doubtTime タイムアウト監視に移行する時間（ミリ秒）を
+	 *                  設定します.
+	 * @param dataSources 対象のデータソース群を設定します.
+	 */
+	protected QuinaJDBCLoopElement(long timeout, long doubtTime,
+		QuinaDataSource[] dataSources) {
+		super(timeout, doubtTime, new QuinaJDBCTimeoutHandler());
+		this.dataSources = dataSources;
+	}
+
+	/**
+	 * Loop実行.
+	 * @param status QuinaThreadステータスが設定されます.
+	 * @exception Throwable 例外.
+	 */
+	@Override
+	public void execute(QuinaThreadStatus status)
+		throws Throwable {
+		// タイムアウト監視.
+		super.execute(status);
+		final long now = System.currentTimeMillis();
+		final int len = dataSources.length;
+		for(int i = 0; i < len && !status.isStopThread(); i ++) {
+			// レプリカの接続検証.
+			dataSources[i].checkReplica(now);
+			// 最小アイドルコネクションの維持.
+			dataSources[i].keepMinIdle(now);
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package quina.jdbc;
 
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -195,11 +196,19 @@ public class QuinaJDBCService implements QuinaService {
 			// TimeoutThreadを生成して開始して、
 			// 各DataSourceに登録する.
 			if(dataSources != null && dataSources.size() > 0) {
+				// データソース群を取得.
+				final int len = dataSources.size();
+				final QuinaDataSource[] list = new QuinaDataSource[len];
+				for(int i = 0; i < len; i ++) {
+					list[i] = dataSources.valueAt(i);
+				}
 				// timeoutLoopElementを生成.
-				timeoutLoopElement = new TimeoutLoopElement(
+				timeoutLoopElement = new QuinaJDBCLoopElement(
 					config.getLong("timeout"),
 					getDoubtTimeout(config.getLong("timeout")),
-					new QuinaJDBCTimeoutHandler());
+					list);
+				// 各DataSourceの事前接続.
+				preWarm(list);
 				// timeoutLoopElementを登録.
 				Quina.get().getQuinaLoopManager().regLoopElement(timeoutLoopElement);
 			}
@@ -212,6 +221,28 @@ public class QuinaJDBCService implements QuinaService {
 		QuinaUtil.startServiceLog(this);
 	}
 	
+	// 各DataSourceの事前接続.
+	// 事前接続に失敗した場合にサービス開始を失敗させる設定の
+	// DataSourceで事前接続に失敗した場合は例外.
+	private void preWarm(QuinaDataSource[] list) {
+		final int len = list.length;
+		int i = 0;
+		try {
+			for(; i < len; i ++) {
+				list[i].preWarm();
+			}
+		} catch(SQLException se) {
+			// レプリカも含めて事前接続したコネクションを破棄.
+			for(int j = 0; j <= i; j ++) {
+				list[j].clearAllPooling();
+			}
+			timeoutLoopElement = null;
+			throw new QuinaException(
+				"Failed to pre-warm the data source \"" +
+				list[i].getName() + "\".", se);
+		}
+	}
+	
 	@Override
 	public void stopService() {
 		wlock();
@@ -41,8 +41,10 @@ final class QuinaJDBCTimeoutHandler
 	@Override
 	public boolean isExecuteTimeout(
 		TimeoutElement element, long timeout) {
-		// タイムアウトを許可する.
-		return true;
+		final QuinaConnection conn = (QuinaConnection)element;
+		// 最小アイドルコネクションとして維持する場合は
+		// タイムアウトさせない.
+		return !conn.keepIdle();
 	}
 	
 	/**
@@ -80,6 +82,8 @@ final class QuinaJDBCTimeoutHandler
 			conn.releaseTimeout();
 			return true;
 		}
-		return false;
+		// プーリング中の場合は一定時間毎に接続検証を行い
+		// 失敗した場合は破棄してタイムアウトから除外.
+		return conn.validateByPooling();
 	}
 }
@@ -0,0 +1,322 @@
+package quina.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+
+import quina.logger.LogFactory;
+import quina.util.AtomicNumber;
+import quina.util.AtomicNumber64;
+import quina.util.Flag;
+
+/**
+ * QuinaDataSourceのレプリカ管理.
+ *
+ * プライマリに対する読み込み専用のレプリカ群を保持して
+ * 読み込み用のコネクションをレプリカに振り分けます.
+ * 接続に失敗したレプリカは振り分け対象から外し、
+ * バックグラウンドの接続検証で復旧を確認した場合に
+ * 振り分け対象に戻します.
+ * 接続検証はレプリカ単位の検証スレッドで行い、
+ * QuinaJDBCのLoopスレッドは検証結果の反映のみを行います.
+ * 振り分け可能なレプリカが存在しない場合は
+ * プライマリのコネクションを利用します.
+ */
+final class QuinaReplicaGroup {
+
+	// プライマリのデータソース.
+	private final QuinaDataSource primary;
+
+	// レプリカのデータソース群.
+	private final QuinaDataSource[] replicas;
+
+	// 振り分け対象から外されたレプリカ.
+	private final Flag[] ejects;
+
+	// 接続検証中のレプリカ.
+	private final Flag[] probes;
+
+	// 接続検証の開始時間.
+	private final AtomicNumber64[] probeTimes;
+
+	// 振り分け方法.
+	private final int balance;
+
+	// 接続検証間隔.
+	private final long checkTime;
+
+	// ラウンドロビンのカウンタ.
+	private final AtomicNumber counter = new AtomicNumber(0);
+
+	// プライマリで代替した累計数.
+	private final AtomicNumber64 fallbackCount = new AtomicNumber64(0L);
+
+	// 次に接続検証を行う時間.
+	private long nextCheckTime;
+
+	/**
+	 * コンストラクタ.
+	 * @param primary プライマリのデータソースを設定します.
+	 * @param service QuinaJDBCServiceを設定します.
+	 * @param config プライマリのQuinaJDBCConfigを設定します.
+	 */
+	protected QuinaReplicaGroup(QuinaDataSource primary,
+		QuinaJDBCService service, QuinaJDBCConfig config) {
+		final int len = config.getReplicaSize();
+		QuinaJDBCConfig rc;
+		this.primary = primary;
+		this.replicas = new QuinaDataSource[len];
+		this.ejects = new Flag[len];
+		this.probes = new Flag[len];
+		this.probeTimes = new AtomicNumber64[len];
+		for(int i = 0; i < len; i ++) {
+			rc = config.getReplica(i);
+			this.replicas[i] = new QuinaDataSource(
+				primary.getNo(), rc.getName(), service, rc);
+			this.ejects[i] = new Flag(false);
+			this.probes[i] = new Flag(false);
+			this.probeTimes[i] = new AtomicNumber64(0L);
+		}
+		this.balance = config.getReplicaBalance();
+		this.checkTime = (long)config.getReplicaCheckTime();
+		this.nextCheckTime = System.currentTimeMillis() + checkTime;
+	}
+
+	/**
+	 * レプリカ群を破棄.
+	 */
+	protected void destroy() {
+		final int len = replicas.length;
+		for(int i = 0; i < len; i ++) {
+			replicas[i].destroy();
+		}
+	}
+
+	/**
+	 * レプリカ群のプーリング中のコネクションを全て破棄.
+	 */
+	protected void clearPooling() {
+		final int len = replicas.length;
+		for(int i = 0; i < len; i ++) {
+			replicas[i].clearPooling();
+		}
+	}
+
+	/**
+	 * レプリカ群の事前接続.
+	 * 事前接続に失敗したレプリカは振り分け対象から外します.
+	 */
+	protected void preWarm() {
+		final int len = replicas.length;
+		for(int i = 0; i < len; i ++) {
+			try {
+				replicas[i].preWarm();
+			} catch(SQLException se) {
+				eject(i, se);
+			}
+		}
+	}
+	
+	/**
+	 * レプリカ群の最小アイドルコネクションの維持.
+	 * 振り分け対象から外されたレプリカは対象外です.
+	 * @param now 現在の時間を設定します.
+	 */
+	protected void keepMinIdle(long now) {
+		final int len = replicas.length;
+		for(int i = 0; i < len; i ++) {
+			if(!ejects[i].get()) {
+				replicas[i].keepMinIdle(now);
+			}
+		}
+	}
+	
+	/**
+	 * 読み込み用のコネクションを取得.
+	 * 振り分け可能なレプリカが存在しない場合は
+	 * プライマリのコネクションが返却されます.
+	 * @return QuinaConnection コネクションが返却されます.
+	 * @exception SQLException SQL例外.
+	 */
+	protected QuinaConnection getConnection()
+		throws SQLException {
+		int no;
+		final int len = replicas.length;
+		for(int i = 0; i < len; i ++) {
+			if((no = select()) == -1) {
+				break;
+			}
+			try {
+				return replicas[no].getConnection();
+			} catch(SQLTimeoutException te) {
+				// コネクション待ちのタイムアウトは
+				// 振り分け対象から外さない.
+				break;
+			} catch(SQLException se) {
+				// 接続に失敗したレプリカは振り分け対象から外す.
+				eject(no, se);
+			}
+		}
+		// プライマリで代替.
+		fallbackCount.inc();
+		return primary.getConnection();
+	}
+
+	// 振り分け先のレプリカを選択.
+	private int select() {
+		final int len = replicas.length;
+		final int start = (counter.inc() & 0x7fffffff) % len;
+		int ret = -1;
+		int min = Integer.MAX_VALUE;
+		int no, n;
+		for(int i = 0; i < len; i ++) {
+			no = (start + i) % len;
+			// 振り分け対象から外れてる場合.
+			if(ejects[no].get()) {
+				continue;
+			// ラウンドロビンの場合.
+			} else if(balance ==
+				QuinaJDBCConstants.REPLICA_BALANCE_ROUND_ROBIN) {
+				return no;
+			}
+			// 利用中コネクション数が最も少ないレプリカを選択.
+			n = replicas[no].getActiveCount() + replicas[no].getWaitCount();
+			if(n < min) {
+				min = n;
+				ret = no;
+			}
+		}
+		return ret;
+	}
+
+	// レプリカを振り分け対象から外す.
+	private void eject(int no, Exception e) {
+		if(!ejects[no].setToGetBefore(true)) {
+			// プーリング中のコネクションを破棄.
+			replicas[no].clearPooling();
+			final String msg = "The replica \"" + replicas[no].getName() +
+				"\" has been removed from the distribution.";
+			if(e == null) {
+				LogFactory.getInstance().get().warn(msg);
+			} else {
+				LogFactory.getInstance().get().warn(msg, e);
+			}
+		}
+	}
+
+	/**
+	 * 接続検証.
+	 * 接続検証間隔毎に各レプリカの検証スレッドを開始します.
+	 * 検証タイムアウトを超えても終わらない接続検証のレプリカは
+	 * 振り分け対象から外し、検証が終わった時に結果を反映します.
+	 * @param now 現在の時間を設定します.
+	 */
+	protected void check(long now) {
+		final int len = replicas.length;
+		// 検証タイムアウトを超えた接続検証.
+		for(int i = 0; i < len; i ++) {
+			if(probes[i].get() && !ejects[i].get() &&
+				probeTimes[i].get() + getProbeTimeout(replicas[i]) < now) {
+				eject(i, null);
+			}
+		}
+		if(nextCheckTime > now) {
+			return;
+		}
+		for(int i = 0; i < len; i ++) {
+			startProbe(i, now);
+		}
+		nextCheckTime = now + checkTime;
+	}
+
+	// 接続検証のタイムアウト値(ミリ秒)を取得.
+	private static final long getProbeTimeout(QuinaDataSource ds) {
+		return Math.max(1, ds.getConfig().getValidationTimeout()) * 1000L;
+	}
+
+	// 検証スレッドを開始.
+	// 前回の接続検証が終わっていない場合は開始しない.
+	private void startProbe(final int no, long now) {
+		if(probes[no].setToGetBefore(true)) {
+			return;
+		}
+		probeTimes[no].set(now);
+		final Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					// 接続検証に成功した場合は振り分け対象に戻す.
+					if(validate(replicas[no])) {
+						if(ejects[no].setToGetBefore(false)) {
+							LogFactory.getInstance().get().info(
+								"The replica \"" + replicas[no].getName() +
+								"\" has been restored to the distribution.");
+						}
+					} else {
+						eject(no, null);
+					}
+				} finally {
+					probes[no].set(false);
+				}
+			}
+		}, "quina-jdbc-replica-" + replicas[no].getName());
+		t.setDaemon(true);
+		t.start();
+	}
+
+	// プーリングを利用せずに接続検証.
+	private static final boolean validate(QuinaDataSource ds) {
+		if(ds.isDestroy()) {
+			return false;
+		}
+		final QuinaJDBCConfig config = ds.getConfig();
+		Connection c = null;
+		try {
+			c = QuinaDataSource._getRawConnection(config,
+				config.getUrl(), config.getUser(), config.getPassword());
+			return QuinaConnection.validate(c, config);
+		} catch(Exception e) {
+			return false;
+		} finally {
+			if(c != null) {
+				try {
+					c.close();
+				} catch(Exception e) {}
+			}
+		}
+	}
+
+	/**
+	 * レプリカ数を取得.
+	 * @return int レプリカ数が返却されます.
+	 */
+	protected int size() {
+		return replicas.length;
+	}
+
+	/**
+	 * レプリカのデータソースを取得.
+	 * @param no 対象の項番を設定します.
+	 * @return QuinaDataSource レプリカのデータソースが返却されます.
+	 */
+	protected QuinaDataSource get(int no) {
+		return replicas[no];
+	}
+
+	/**
+	 * レプリカが振り分け対象か取得.
+	 * @param no 対象の項番を設定します.
+	 * @return boolean trueの場合は振り分け対象です.
+	 */
+	protected boolean isActive(int no) {
+		return !ejects[no].get();
+	}
+
+	/**
+	 * プライマリで代替した累計数を取得.
+	 * @return long プライマリで代替した累計数が返却されます.
+	 */
+	protected long getFallbackCount() {
+		return fallbackCount.get();
+	}
+}
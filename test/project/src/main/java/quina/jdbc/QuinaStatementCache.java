@@ -0,0 +1,180 @@
+package quina.jdbc;
+
+import java.sql.PreparedStatement;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * コネクション単位のPreparedStatementキャッシュ.
+ *
+ * SQL文と生成オプションをキーに、論理クローズされた
+ * PreparedStatementを保持して再利用します.
+ * 最大数を超えた場合は最も長く利用されていないものから
+ * 物理クローズします.
+ *
+ * 利用者が変更したオプション(maxRows, queryTimeout, fetchSize,
+ * fetchDirection, maxFieldSize)は生成時の値に戻してから
+ * キャッシュします.
+ */
+final class QuinaStatementCache {
+	// キャッシュ.
+	private final LinkedHashMap<String, PreparedStatement> cache;
+	// 生成時のオプション.
+	private final IdentityHashMap<PreparedStatement, int[]> options =
+		new IdentityHashMap<PreparedStatement, int[]>();
+	// 最大保持数.
+	private final int maxSize;
+	// 集計先のデータソース.
+	private final QuinaDataSource dataSource;
+
+	/**
+	 * コンストラクタ.
+	 * @param dataSource 集計先のデータソースを設定します.
+	 * @param maxSize 最大保持数を設定します.
+	 */
+	protected QuinaStatementCache(QuinaDataSource dataSource, int maxSize) {
+		this.dataSource = dataSource;
+		this.maxSize = maxSize;
+		this.cache = new LinkedHashMap<String, PreparedStatement>(
+			16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(
+				Map.Entry<String, PreparedStatement> e) {
+				// 最大数を超えた場合は物理クローズして破棄.
+				if(size() > QuinaStatementCache.this.maxSize) {
+					options.remove(e.getValue());
+					close(e.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * キャッシュから取得.
+	 * 取得したPreparedStatementはキャッシュから外れます.
+	 * @param key 対象のキーを設定します.
+	 * @return PreparedStatement PreparedStatementが返却されます.
+	 *                           nullの場合キャッシュに存在しません.
+	 */
+	protected synchronized PreparedStatement poll(String key) {
+		final PreparedStatement ret = cache.remove(key);
+		if(ret != null) {
+			dataSource.hitStatementCache();
+		} else {
+			dataSource.missStatementCache();
+		}
+		return ret;
+	}
+
+	/**
+	 * 生成時のオプションを記録.
+	 * 既に記録済みの場合は何もしません.
+	 * @param ps 対象のPreparedStatementを設定します.
+	 */
+	protected synchronized void record(PreparedStatement ps) {
+		if(options.containsKey(ps)) {
+			return;
+		}
+		try {
+			options.put(ps, new int[] {
+				ps.getMaxRows(),
+				ps.getQueryTimeout(),
+				ps.getFetchSize(),
+				ps.getFetchDirection(),
+				ps.getMaxFieldSize()
+			});
+		} catch(Exception e) {
+			// 取得できない場合はキャッシュ対象外.
+		}
+	}
+
+	/**
+	 * キャッシュに戻す.
+	 * @param key 対象のキーを設定します.
+	 * @param ps 対象のPreparedStatementを設定します.
+	 * @return boolean falseの場合キャッシュされなかったので
+	 *                 物理クローズが必要です.
+	 */
+	protected boolean offer(String key, PreparedStatement ps) {
+		final int[] opt;
+		synchronized(this) {
+			opt = options.remove(ps);
+		}
+		// 生成時のオプションが不明な場合.
+		if(opt == null) {
+			return false;
+		}
+		// 再利用できるように状態をクリア.
+		try {
+			if(ps.isClosed()) {
+				return false;
+			}
+			ps.clearParameters();
+			ps.clearWarnings();
+			// 変更されたオプションを生成時の値に戻す.
+			if(ps.getMaxRows() != opt[0]) {
+				ps.setMaxRows(opt[0]);
+			}
+			if(ps.getQueryTimeout() != opt[1]) {
+				ps.setQueryTimeout(opt[1]);
+			}
+			if(ps.getFetchSize() != opt[2]) {
+				ps.setFetchSize(opt[2]);
+			}
+			if(ps.getFetchDirection() != opt[3]) {
+				ps.setFetchDirection(opt[3]);
+			}
+			if(ps.getMaxFieldSize() != opt[4]) {
+				ps.setMaxFieldSize(opt[4]);
+			}
+		} catch(Exception e) {
+			return false;
+		}
+		try {
+			ps.clearBatch();
+		} catch(Exception e) {
+			// バッチ非対応の場合は無視.
+		}
+		synchronized(this) {
+			// 同じキーがキャッシュされてる場合.
+			if(cache.containsKey(key)) {
+				return false;
+			}
+			options.put(ps, opt);
+			cache.put(key, ps);
+		}
+		return true;
+	}
+
+	/**
+	 * キャッシュを全て物理クローズしてクリア.
+	 */
+	protected synchronized void clear() {
+		final Iterator<PreparedStatement> it = cache.values().iterator();
+		while(it.hasNext()) {
+			close(it.next());
+		}
+		cache.clear();
+		options.clear();
+	}
+
+	/**
+	 * キャッシュ数を取得.
+	 * @return int キャッシュ数が返却されます.
+	 */
+	protected synchronized int size() {
+		return cache.size();
+	}
+
+	// 物理クローズ.
+	private static final void close(PreparedStatement ps) {
+		try {
+			ps.close();
+		} catch(Exception e) {}
+	}
+}
@@ -0,0 +1,477 @@
+package quina.jdbc.io;
+
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.sql.ParameterMetaData;
+import java.util.Arrays;
+import java.util.List;
+
+import quina.exception.QuinaException;
+import quina.jdbc.QuinaConnection;
+import quina.jdbc.QuinaPreparedStatement;
+import quina.jdbc.kind.QuinaJDBCKind;
+import quina.util.Alphabet;
+import quina.util.CsvReader;
+
+/**
+ * BulkInsert用Statement.
+ *
+ * 大量の行を１つのテーブルに追加する場合に利用します.
+ *
+ * 対象DBのKindに合わせて以下の方法で書き込みます.
+ * - COPY対応(PostgreSQL)の場合は copy ... from stdin.
+ * - 複数行Insert対応の場合は insert into ... values (...), (...).
+ *   １つのSQL文の行数はKind毎の最大行数とバインドパラメータ上限に
+ *   合わせ、値の推定サイズがKind毎の上限を超えた場合も書き込みます.
+ * - それ以外の場合は通常のBatch実行.
+ *
+ * BulkInsertStatement bis =
+ *   conn.bulkInsertStatement(
+ *     "testTable", "id", "age", "name");
+ * bis.params(100, 25, "hoge")
+ *    .add()
+ *    .params(200, 32, "tanaka")
+ *    .add()
+ *    .execute();
+ *
+ * CSVを読み込む場合は以下のように行います.
+ *
+ * bis.load(new CsvReader("testTable.csv", ","));
+ *
+ * 書き込みはコネクションのトランザクション内で行われるので
+ * 反映にはコミットが必要です.
+ */
+public class BulkInsertStatement
+	extends AbstractStatement<BulkInsertStatement> {
+
+	/**
+	 * COPYで１度に書き込む行数.
+	 */
+	protected static final int COPY_ROWS = 10000;
+
+	/**
+	 * 複数行Insertに対応していない場合の１度にBatch実行する行数.
+	 */
+	protected static final int BATCH_ROWS = 1000;
+
+	// テーブル名.
+	private String tableName;
+
+	// カラム名群.
+	private String[] columns;
+
+	// １度に書き込む行数.
+	private int chunkRows;
+
+	// 書き込み待ちの値群(行数 * カラム数).
+	private Object[] values;
+
+	// 書き込み待ちの行数.
+	private int rows;
+
+	// 複数行Insertで１つのSQL文に含める値の最大サイズ(byte).
+	private int maxBytes;
+
+	// 書き込み待ちの値の推定サイズ(byte).
+	private long bytes;
+
+	// 書き込んだ行数.
+	private long count;
+
+	// COPY用の書き込み待ち.
+	private StringBuilder copyBuffer;
+
+	// COPY用オブジェクト.
+	private Object copyManager;
+
+	// COPY実行メソッド.
+	private Method copyIn;
+
+	// Batch実行で書き込む場合.
+	private boolean batch;
+
+	// １度に書き込む行数分のPreparedStatement.
+	private QuinaPreparedStatement chunkPs;
+
+	// chunkPsのパラメータメタデータ.
+	private ParameterMetaData chunkMeta;
+
+	// コンストラクタ.
+	@SuppressWarnings("unused")
+	private BulkInsertStatement() {}
+
+	/**
+	 * コンストラクタ.
+	 * @param conn JDBCコネクションを設定します.
+	 * @param tableName テーブル名を設定します.
+	 * @param columns カラム名群を設定します.
+	 */
+	public BulkInsertStatement(
+		QuinaConnection conn, String tableName, String... columns) {
+		if(tableName == null || (tableName = tableName.trim()).isEmpty()) {
+			throw new QuinaException("The table name is not set.");
+		} else if(columns == null || columns.length == 0) {
+			throw new QuinaException("The column name is not set.");
+		}
+		try {
+			init(conn);
+			this.tableName = tableName;
+			this.columns = columns;
+			final QuinaJDBCKind kind = conn.getConfig().getKind();
+			// COPYに対応している場合.
+			if(kind.isBulkCopy() && initCopy(conn, kind)) {
+				this.chunkRows = COPY_ROWS;
+				this.copyBuffer = new StringBuilder();
+			// 複数行Insertに対応している場合.
+			} else if(kind.getMaxInsertRows() > 0) {
+				// バインドパラメータ上限に合わせた行数.
+				this.chunkRows = Math.max(1, Math.min(
+					kind.getMaxInsertRows(),
+					kind.getMaxBindParameters() / columns.length));
+				this.maxBytes = kind.getMaxInsertBytes();
+				this.values = new Object[chunkRows * columns.length];
+			// 通常のBatch実行.
+			} else {
+				this.chunkRows = BATCH_ROWS;
+				this.batch = true;
+				final StringBuilder buf = new StringBuilder();
+				DbUtil.createInsert(buf, tableName, columns);
+				prepareStatement(buf.toString());
+			}
+		} catch(QuinaException qe) {
+			throw qe;
+		} catch(Exception e) {
+			throw new QuinaException(e);
+		}
+	}
+
+	// ドライバのCOPY APIを取得.
+	private final boolean initCopy(
+		QuinaConnection conn, QuinaJDBCKind kind) {
+		try {
+			final Class<?> c = Class.forName(
+				"org.postgresql.PGConnection", true,
+				kind.getDriver().getClass().getClassLoader());
+			if(!conn.isWrapperFor(c)) {
+				return false;
+			}
+			final Object pg = conn.unwrap(c);
+			copyManager = c.getMethod("getCopyAPI").invoke(pg);
+			copyIn = copyManager.getClass().getMethod(
+				"copyIn", String.class, java.io.Reader.class);
+			return true;
+		} catch(Exception e) {
+			// COPYが利用できない場合は複数行Insertで処理.
+			copyManager = null;
+			copyIn = null;
+			return false;
+		}
+	}
+
+	@Override
+	public void close() throws java.io.IOException {
+		super.close();
+		values = null;
+		copyBuffer = null;
+		copyManager = null;
+		copyIn = null;
+		chunkPs = null;
+		chunkMeta = null;
+	}
+
+	/**
+	 * １度に書き込む行数を取得.
+	 * @return int １度に書き込む行数が返却されます.
+	 */
+	public int getChunkRows() {
+		return chunkRows;
+	}
+
+	/**
+	 * COPYで書き込むか取得.
+	 * @return boolean trueの場合COPYで書き込みます.
+	 */
+	public boolean isCopy() {
+		return copyIn != null;
+	}
+
+	/**
+	 * 複数行Insertで書き込むか取得.
+	 * @return boolean trueの場合複数行Insertで書き込みます.
+	 */
+	public boolean isMultiRowInsert() {
+		return values != null;
+	}
+
+	/**
+	 * 実行可能チェック.
+	 */
+	protected void checkExecute() {
+		if(params == null || params.size() != columns.length) {
+			throw new QuinaException(
+				"The number of parameters does not match the " +
+				"number of columns: " + (params == null ? 0 : params.size()) +
+				"/" + columns.length);
+		}
+	}
+
+	/**
+	 * １行を書き込み待ちに追加.
+	 * 書き込み待ちが１度に書き込む行数に達した場合は
+	 * この処理で書き込みます.
+	 * @return BulkInsertStatement このオブジェクトが返却されます.
+	 */
+	public BulkInsertStatement add() {
+		// クローズチェック.
+		checkClose();
+		// 実行可能チェック.
+		checkExecute();
+		try {
+			final int len = columns.length;
+			// COPYの場合.
+			if(copyBuffer != null) {
+				for(int i = 0; i < len; i ++) {
+					if(i != 0) {
+						copyBuffer.append('\t');
+					}
+					appendCopy(copyBuffer, params.get(i));
+				}
+				copyBuffer.append('\n');
+			// Batch実行の場合.
+			} else if(batch) {
+				final QuinaPreparedStatement ps = nowPreparedStatement();
+				this.updateParams(ps);
+				ps.addBatch();
+			// 複数行Insertの場合.
+			} else {
+				final int off = rows * len;
+				Object v;
+				for(int i = 0; i < len; i ++) {
+					v = params.get(i);
+					values[off + i] = v;
+					if(maxBytes > 0) {
+						bytes += valueBytes(v);
+					}
+				}
+			}
+			// １度に書き込む行数か最大サイズに達した場合.
+			if(++ rows >= chunkRows ||
+				(maxBytes > 0 && bytes >= maxBytes)) {
+				flush();
+			}
+			return this;
+		} catch(QuinaException qe) {
+			throw qe;
+		} catch(Exception e) {
+			throw new QuinaException(e);
+		} finally {
+			// パラメータクリア.
+			clearParmas();
+		}
+	}
+
+	/**
+	 * CSVを読み込んで書き込む.
+	 * CSVのヘッダ名とカラム名が一致する列を書き込みます.
+	 * 空の値はnullとして扱います.
+	 * @param csv 対象のCsvReaderを設定します.
+	 * @return long 書き込んだ行数が返却されます.
+	 */
+	public long load(CsvReader csv) {
+		checkClose();
+		// カラム名に対するCSVの列番号を取得.
+		final int len = columns.length;
+		final int hlen = csv.getHeaderSize();
+		final int[] index = new int[len];
+		for(int i = 0; i < len; i ++) {
+			index[i] = -1;
+			for(int j = 0; j < hlen; j ++) {
+				if(Alphabet.eq(columns[i], csv.getHeader(j))) {
+					index[i] = j;
+					break;
+				}
+			}
+			if(index[i] == -1) {
+				throw new QuinaException(
+					"The column \"" + columns[i] +
+					"\" does not exist in the CSV header.");
+			}
+		}
+		String v;
+		List<String> row;
+		final Object[] line = new Object[len];
+		while(csv.hasNext()) {
+			row = csv.nextRow();
+			for(int i = 0; i < len; i ++) {
+				v = row.get(index[i]);
+				line[i] = v == null || v.isEmpty() ? null : v;
+			}
+			params(line).add();
+		}
+		return execute();
+	}
+
+	/**
+	 * 書き込み待ちを全て書き込む.
+	 * @return long 前回の実行から書き込んだ行数が返却されます.
+	 */
+	public long execute() {
+		// クローズチェック.
+		checkClose();
+		try {
+			flush();
+			final long ret = count;
+			count = 0L;
+			return ret;
+		} catch(QuinaException qe) {
+			throw qe;
+		} catch(Exception e) {
+			throw new QuinaException(e);
+		}
+	}
+
+	/**
+	 * 書き込み待ちを全て書き込む.
+	 * @param out out[0]に前回の実行から書き込んだ行数が返却されます.
+	 * @return BulkInsertStatement このオブジェクトが返却されます.
+	 */
+	public BulkInsertStatement execute(long[] out) {
+		if(out != null && out.length > 0) {
+			out[0] = execute();
+		} else {
+			execute();
+		}
+		return this;
+	}
+
+	// 書き込み待ちを書き込む.
+	private final void flush() throws Exception {
+		if(rows == 0) {
+			return;
+		}
+		final int n = rows;
+		rows = 0;
+		bytes = 0L;
+		// COPYの場合.
+		if(copyBuffer != null) {
+			final String data = copyBuffer.toString();
+			copyBuffer.setLength(0);
+			count += (Long)copyIn.invoke(copyManager,
+				copySQL(), new StringReader(data));
+		// Batch実行の場合.
+		} else if(batch) {
+			nowPreparedStatement().executeLargeBatch();
+			count += n;
+		// 複数行Insertの場合.
+		} else {
+			QuinaPreparedStatement ps;
+			ParameterMetaData meta;
+			Object[] params = values;
+			// １度に書き込む行数分の場合は生成済みを再利用.
+			if(n == chunkRows) {
+				if(chunkPs == null) {
+					chunkPs = prepareStatement(insertSQL(n));
+					chunkMeta = metaData(chunkPs);
+				}
+				ps = chunkPs;
+				meta = chunkMeta;
+			} else {
+				ps = prepareStatement(insertSQL(n));
+				meta = metaData(ps);
+				params = Arrays.copyOf(values, n * columns.length);
+			}
+			DbUtil.preParams(ps, meta, params);
+			ps.executeUpdate();
+			Arrays.fill(values, null);
+			count += n;
+		}
+	}
+
+	// 値の推定サイズ(byte)を取得.
+	private static final int valueBytes(Object v) {
+		if(v == null) {
+			return 4;
+		} else if(v instanceof CharSequence) {
+			// UTF8の最大バイト数で推定.
+			return ((CharSequence)v).length() * 3 + 2;
+		} else if(v instanceof byte[]) {
+			return ((byte[])v).length * 2 + 2;
+		}
+		return 16;
+	}
+
+	// パラメータメタデータを取得.
+	private static final ParameterMetaData metaData(
+		QuinaPreparedStatement ps) {
+		try {
+			return ps.getParameterMetaData();
+		} catch(Exception e) {
+			return null;
+		}
+	}
+
+	// 複数行InsertのSQLを生成.
+	private final String insertSQL(int n) {
+		final StringBuilder buf = new StringBuilder();
+		DbUtil.createInsert(buf, tableName, columns);
+		final int first = buf.lastIndexOf("(");
+		final String row = buf.substring(first);
+		for(int i = 1; i < n; i ++) {
+			buf.append(", ").append(row);
+		}
+		return buf.toString();
+	}
+
+	// COPYのSQLを生成.
+	private final String copySQL() {
+		final int len = columns.length;
+		final StringBuilder buf = new StringBuilder("copy ")
+			.append(tableName).append(" (");
+		for(int i = 0; i < len; i ++) {
+			if(i != 0) {
+				buf.append(", ");
+			}
+			buf.append(columns[i]);
+		}
+		return buf.append(") from stdin").toString();
+	}
+
+	// COPYのテキスト形式で値を追加.
+	private static final void appendCopy(StringBuilder out, Object v) {
+		if(v == null) {
+			out.append("\\N");
+			return;
+		}
+		final String s;
+		if(v instanceof byte[]) {
+			// bytea(hex形式).
+			final byte[] b = (byte[])v;
+			final int len = b.length;
+			out.append("\\\\x");
+			for(int i = 0; i < len; i ++) {
+				out.append(Character.forDigit((b[i] >> 4) & 0x0f, 16))
+					.append(Character.forDigit(b[i] & 0x0f, 16));
+			}
+			return;
+		} else if(v instanceof java.util.Date &&
+			!(v instanceof java.sql.Timestamp) &&
+			!(v instanceof java.sql.Date) &&
+			!(v instanceof java.sql.Time)) {
+			s = new java.sql.Timestamp(
+				((java.util.Date)v).getTime()).toString();
+		} else {
+			s = v.toString();
+		}
+		char c;
+		final int len = s.length();
+		for(int i = 0; i < len; i ++) {
+			switch(c = s.charAt(i)) {
+			case '\\': out.append("\\\\"); break;
+			case '\t': out.append("\\t"); break;
+			case '\n': out.append("\\n"); break;
+			case '\r': out.append("\\r"); break;
+			default: out.append(c); break;
+			}
+		}
+	}
+}
@@ -676,10 +676,7 @@ public final class DbUtil {
 					primaryKey.getKey(i) +
 					"\" is not set in values.");
 			}
-			if(i != 0) {
-				buf.append(" and ");
-			}
-			buf.append(" where ")
+			buf.append(i == 0 ? " where " : " and ")
 				.append(primaryKey.getKey(i)).append("=?");
 			params.add(values.get(primaryKey.getKey(i)));
 		}
@@ -702,10 +699,7 @@ public final class DbUtil {
 				" values array do not match. ");
 		}
 		for(int i = 0; i < len; i ++) {
-			if(i != 0) {
-				buf.append(" and ");
-			}
-			buf.append(" where ")
+			buf.append(i == 0 ? " where " : " and ")
 				.append(primaryKey.getKey(i)).append("=?");
 			params.add(values[i]);
 		}
@@ -781,28 +775,15 @@ public final class DbUtil {
 		BaseTemplate<?> wt, boolean valuesMode,
 		String table, PrimaryKey primaryKey, Object values) {
 		try {
-			StringBuilder buf = wt.clearSql();
-			buf.append("select ");
-			// select文を生成.
-			final int len = primaryKey.size();
-			if(len == 1) {
-				buf.append("count(")
-					.append(primaryKey.getKey(0))
-					.append(") as rowsCount ");
-			} else {
-				buf.append("count(*) as rowsCount ");
-			}
-			buf.append("from ").append(table);
-			ObjectList<Object> params = new ObjectList<Object>();
-			wt.setParams(params);
-			// primaryKeyに対するwhere文を生成.
+			// primaryKeyに対する行数取得のSQL文を生成.
 			if(valuesMode) {
 				// values = Map.
-				wherePrimaryKeys(buf, params, primaryKey, (Map)values);
+				TemplateSqlCache.exists(
+					wt, table, primaryKey, (Map)values);
 			} else {
 				// values = Object[].
-				wherePrimaryKeys(buf, params, primaryKey,
-					DbUtil.getPrimaryKey(primaryKey, (Object[])values));
+				TemplateSqlCache.exists(
+					wt, table, primaryKey, (Object[])values);
 			}
 			// 実行処理.
 			QueryResult res = executeQuery(wt);
@@ -1,7 +1,11 @@
 package quina.jdbc.io;
 
+import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -13,10 +17,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
 import quina.exception.QuinaException;
+import quina.http.server.response.AbstractResponse;
+import quina.http.server.response.ResponseUtil;
+import quina.jdbc.QuinaConnection;
 import quina.jdbc.QuinaResultSet;
+import quina.json.Json;
+import quina.json.JsonBuilder;
 import quina.json.JsonOut;
+import quina.net.nio.tcp.NioAsyncBuffer;
 import quina.util.collection.AbstractEntryIterator;
 import quina.util.collection.AbstractKeyIterator;
 import quina.util.collection.mc.McCollection;
@@ -202,6 +213,152 @@ public class QueryResult implements
 		return JsonOut.toString(this);
 	}
 	
+	// JSON送信の最大バッファ長.
+	private static final int SEND_JSON_MAX_BUFFER_LENGTH = 0x00010000;
+	
+	// Writerに出力するJsonBuilder.
+	private static final class WriterJsonBuilder implements JsonBuilder {
+		private final Writer out;
+		protected WriterJsonBuilder(Writer out) {
+			this.out = out;
+		}
+		@Override
+		public JsonBuilder append(String s) {
+			try {
+				out.write(s);
+			} catch(Exception e) {
+				throw new QuinaException(e);
+			}
+			return this;
+		}
+		@Override
+		public String toString() {
+			// 文字列は空返却.
+			return "";
+		}
+	}
+	
+	// 残りの行情報をJSON配列で出力.
+	private long writeJSON(Writer out) throws Exception {
+		// 出力キー名を生成.
+		final int len = metaNames.length;
+		final String[] keys = new String[len];
+		for(int i = 0; i < len; i ++) {
+			keys[i] = new StringBuilder(i == 0 ? "{\"" : ",\"")
+				.append(metaNames[i].toLowerCase())
+				.append("\":").toString();
+		}
+		final JsonBuilder jb = new WriterJsonBuilder(out);
+		long ret = 0L;
+		boolean next = nowRow != null || rs.next();
+		nowRow = null;
+		out.write("[");
+		while(next) {
+			if(ret != 0L) {
+				out.write(",");
+			}
+			if(len == 0) {
+				out.write("{");
+			}
+			for(int i = 0; i < len; i ++) {
+				out.write(keys[i]);
+				Json.encode(jb, DbUtil.getResultColumn(
+					rs, metaTypes[i], i + 1));
+			}
+			out.write("}");
+			ret ++;
+			next = rs.next();
+		}
+		out.write("]");
+		return ret;
+	}
+	
+	/**
+	 * 残りの行情報をJSON配列でレスポンスに逐次送信.
+	 * 行情報をListに変換せずにResultSetから１行づつJSON変換して
+	 * chunkedで送信するので、大量の行情報でもヒープを消費しません.
+	 * 送信完了または送信先の切断でこのQueryResultとコネクションを
+	 * クローズします.
+	 * <例>
+	 * QuinaConnection conn = ds.getConnection();
+	 * conn.queryStatement()
+	 *     .sql("select * from TestTable")
+	 *     .executeQuery()
+	 *     .sendJSON(res);
+	 * return SyncResponse.NOSEND;
+	 * 
+	 * @param res 対象のレスポンスを設定します.
+	 * @return long 送信した行数が返却されます.
+	 */
+	public long sendJSON(AbstractResponse<?> res) {
+		return sendJSON(res, 0, true);
+	}
+	
+	/**
+	 * 残りの行情報をJSON配列でレスポンスに逐次送信.
+	 * 行情報をListに変換せずにResultSetから１行づつJSON変換して
+	 * chunkedで送信するので、大量の行情報でもヒープを消費しません.
+	 * 送信待ちのデータが一定量を超える場合は、送信されるまで
+	 * ResultSetの読み込みを待機します.
+	 * 送信完了または送信先の切断でこのQueryResultはクローズします.
+	 * 
+	 * @param res 対象のレスポンスを設定します.
+	 * @param fetchSize ResultSetのフェッチサイズを設定します.
+	 *                  0以下の場合はStatementの設定で取得します.
+	 * @param closeConnection trueの場合、送信完了または送信先の切断で
+	 *                        コネクションもクローズします.
+	 * @return long 送信した行数が返却されます.
+	 */
+	public long sendJSON(AbstractResponse<?> res, int fetchSize,
+		boolean closeConnection) {
+		check();
+		final QuinaConnection conn = closeConnection ? ioStmt.conn : null;
+		NioAsyncBuffer buffer = null;
+		boolean complete = false;
+		try {
+			if(fetchSize > 0) {
+				rs.setFetchSize(fetchSize);
+			}
+			// chunkedで送信開始.
+			if(!res.isContentType()) {
+				res.setContentType("application/json");
+			}
+			final String charset = res.getCharset();
+			final boolean gzip = res.isGzip();
+			buffer = new NioAsyncBuffer(SEND_JSON_MAX_BUFFER_LENGTH);
+			ResponseUtil.sendInputStream(
+				res, buffer.getInputStream(), -1L, charset);
+			OutputStream os = buffer.getOutputStream();
+			if(gzip) {
+				os = new GZIPOutputStream(os);
+			}
+			final Writer out = new BufferedWriter(
+				new OutputStreamWriter(os, charset));
+			final long ret = writeJSON(out);
+			// 送信完了.
+			out.close();
+			complete = true;
+			return ret;
+		} catch(QuinaException qe) {
+			throw qe;
+		} catch(Exception e) {
+			throw new QuinaException(e);
+		} finally {
+			// 送信完了前に終了した場合は送信を中断する.
+			if(!complete && buffer != null) {
+				buffer.close();
+			}
+			try {
+				close();
+			} catch(Exception e) {}
+			if(conn != null) {
+				try {
+					conn.close();
+				} catch(Exception e) {}
+			}
+		}
+	}
+	
 	// 1行の情報を取得.
 	private boolean _row() {
 		nowRow = null;
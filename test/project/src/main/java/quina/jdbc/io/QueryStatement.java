@@ -1,6 +1,8 @@
 package quina.jdbc.io;
 
+import quina.exception.QuinaException;
 import quina.jdbc.QuinaConnection;
+import quina.jdbc.QuinaDataSource;
 import quina.jdbc.io.template.ReadTemplate;
 
 /**
@@ -30,4 +32,51 @@ public class QueryStatement
 	public QueryResult executeQuery() {
 		return DbUtil.executeQuery(this);
 	}
+	
+	/**
+	 * 読み込み専用ステートメントコール実行.
+	 * データソースにレプリカが定義されている場合は
+	 * レプリカのコネクションで実行されます.
+	 * @param ds QuinaDataSourceを設定します.
+	 * @param call 読み込み専用ステートメントコールを設定します.
+	 * @return Object QueryStatementCall.execute(qs)の処理結果を返却.
+	 */
+	public static final Object execute(
+		QuinaDataSource ds, QueryStatementCall call) {
+		QuinaConnection conn = null;
+		QueryStatement qs = null;
+		try {
+			Object ret = null;
+			// 読み込み用コネクション取得.
+			conn = ds.getReadConnection();
+			qs = conn.queryStatement();
+			
+			// JDBCI/Oコール実行.
+			ret = call.execute(qs);
+			
+			// 終了処理.
+			qs.close();
+			qs = null;
+			conn.close();
+			conn = null;
+			
+			// 取得結果を返却.
+			return ret;
+		} catch(QuinaException qe) {
+			throw qe;
+		} catch(Exception e) {
+			throw new QuinaException(e);
+		} finally {
+			if(qs != null) {
+				try {
+					qs.close();
+				} catch(Exception ee) {}
+			}
+			if(conn != null) {
+				try {
+					conn.close();
+				} catch(Exception ee) {}
+			}
+		}
+	}
 }
@@ -0,0 +1,18 @@
+package quina.jdbc.io;
+
+import java.sql.SQLException;
+
+/**
+ * 読み込み専用ステートメントコール.
+ */
+public interface QueryStatementCall {
+	
+	/**
+	 * 実行処理.
+	 * @param qs QueryStatementがセットされます.
+	 * @return Object 処理結果を返却します.
+	 * @exception SQLException SQL例外.
+	 */
+	public Object execute(QueryStatement qs)
+		throws SQLException;
+}
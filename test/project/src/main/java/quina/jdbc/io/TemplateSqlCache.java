@@ -0,0 +1,485 @@
+package quina.jdbc.io;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import quina.exception.QuinaException;
+import quina.jdbc.io.template.BaseTemplate;
+import quina.util.collection.ObjectList;
+
+/**
+ * テンプレート用SQL文のキャッシュ.
+ *
+ * ReadTemplate/WriteTemplateのinsert, update, delete, selectRow
+ * などで生成するSQL文を、処理種別・テーブル名・カラム名群・
+ * PrimaryKey群をキーに、生成済みのSQL文とパラメータの
+ * バインド順でキャッシュします.
+ *
+ * これにより同じ条件のテンプレート呼び出しではSQL文の
+ * 生成を行わずに、キャッシュされたSQL文とバインド順で
+ * パラメータを設定します.
+ */
+public final class TemplateSqlCache {
+	private TemplateSqlCache() {}
+
+	// insert.
+	private static final int INSERT = 0;
+	// primaryKey条件のupdate.
+	private static final int UPDATE = 1;
+	// primaryKey条件のdelete.
+	private static final int DELETE = 2;
+	// primaryKey条件のselect.
+	private static final int SELECT = 3;
+	// primaryKey条件の行数取得.
+	private static final int EXISTS = 4;
+	// Map指定(バインド順が異なるので処理種別に付加する).
+	private static final int MAP_MODE = 0x10;
+
+	// 最大キャッシュ数.
+	private static final int MAX_SIZE = 4096;
+
+	// Select * from xxxx的な感じの全カラム取得.
+	private static final String[] ALL_COLUMNS = new String[] {"*"};
+
+	// 空の文字配列.
+	private static final String[] BLANK_STRING_ARRAY = new String[0];
+
+	// キャッシュ.
+	private static final Map<Key, Compiled> cache =
+		new ConcurrentHashMap<Key, Compiled>();
+
+	// キャッシュキー.
+	private static final class Key {
+		// 処理種別.
+		private final int kind;
+		// テーブル名.
+		private final String table;
+		// カラム名群.
+		private final String[] columns;
+		// PrimaryKey群.
+		private final String[] keys;
+		// hashCode.
+		private final int hash;
+
+		private Key(int kind, String table, String[] columns,
+			String[] keys) {
+			this.kind = kind;
+			this.table = table;
+			this.columns = columns;
+			this.keys = keys;
+			int h = kind;
+			h = 31 * h + Objects.hashCode(table);
+			h = 31 * h + Arrays.hashCode(columns);
+			h = 31 * h + Arrays.hashCode(keys);
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(o == this) {
+				return true;
+			} else if(!(o instanceof Key)) {
+				return false;
+			}
+			final Key k = (Key)o;
+			return kind == k.kind && hash == k.hash &&
+				Objects.equals(table, k.table) &&
+				Arrays.equals(columns, k.columns) &&
+				Arrays.equals(keys, k.keys);
+		}
+	}
+
+	// 生成済みのSQL文とバインド順.
+	private static final class Compiled {
+		// SQL文.
+		private final String sql;
+		// パラメータのバインド順(元の値群の位置).
+		private final int[] binds;
+
+		private Compiled(String sql, int[] binds) {
+			this.sql = sql;
+			this.binds = binds;
+		}
+
+		// SQL文とパラメータをテンプレートにセット.
+		private final void apply(BaseTemplate<?> bt, Object[] values) {
+			final int len = binds.length;
+			final Object[] params = new Object[len];
+			for(int i = 0; i < len; i ++) {
+				params[i] = values[binds[i]];
+			}
+			bt.clearSql().append(sql);
+			bt.setParams(new ObjectList<Object>(params));
+		}
+	}
+
+	/**
+	 * キャッシュ数を取得.
+	 * @return int キャッシュ数が返却されます.
+	 */
+	public static final int size() {
+		return cache.size();
+	}
+
+	/**
+	 * キャッシュをクリア.
+	 */
+	public static final void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * Insert用のSQLとパラメータをセット.
+	 * @param bt 対象のテンプレートを設定します.
+	 * @param table テーブル名を設定します.
+	 * @param values column, value, column, value...
+	 *               で設定します.
+	 */
+	public static final void insert(BaseTemplate<?> bt, String table,
+		Object... values) {
+		final String[] columns = keyValueColumns(values);
+		final Key key = new Key(INSERT, table, columns, BLANK_STRING_ARRAY);
+		Compiled c = cache.get(key);
+		if(c == null) {
+			final int len = columns.length;
+			final int[] binds = new int[len];
+			for(int i = 0; i < len; i ++) {
+				binds[i] = (i << 1) + 1;
+			}
+			c = put(key, insertSQL(table, columns), binds);
+		}
+		c.apply(bt, values);
+	}
+
+	/**
+	 * Insert用のSQLとパラメータをセット.
+	 * @param bt 対象のテンプレートを設定します.
+	 * @param table テーブル名を設定します.
+	 * @param data key=カラム名,value=要素のMapを設定します.
+	 */
+	public static final void insert(BaseTemplate<?> bt, String table,
+		Map<String, Object> data) {
+		final Object[] values = mapValues(data);
+		final String[] columns = mapColumns(data, values);
+		final Key key = new Key(INSERT | MAP_MODE, table, columns,
+			BLANK_STRING_ARRAY);
+		Compiled c = cache.get(key);
+		if(c == null) {
+			c = put(key, insertSQL(table, columns),
+				sequence(columns.length));
+		}
+		c.apply(bt, values);
+	}
+
+	/**
+	 * PrimaryKey条件のUpdate用のSQLとパラメータをセット.
+	 * @param bt 対象のテンプレートを設定します.
+	 * @param table テーブル名を設定します.
+	 * @param primaryKey PrimaryKeyを設定します.
+	 * @param values column, value, column, value...
+	 *               で設定します.
+	 */
+	public static final void update(BaseTemplate<?> bt, String table,
+		PrimaryKey primaryKey, Object... values) {
+		final String[] columns = keyValueColumns(values);
+		final Key key = new Key(UPDATE, table, columns, primaryKey.getKeys());
+		Compiled c = cache.get(key);
+		if(c == null) {
+			final int len = columns.length;
+			final int pkLen = primaryKey.size();
+			final int[] binds = new int[len + pkLen];
+			for(int i = 0; i < len; i ++) {
+				binds[i] = (i << 1) + 1;
+			}
+			for(int i = 0; i < pkLen; i ++) {
+				binds[len + i] = (columnIndex(
+					columns, primaryKey, i, false) << 1) + 1;
+			}
+			c = put(key, updateSQL(table, columns, primaryKey), binds);
+		}
+		c.apply(bt, values);
+	}
+
+	/**
+	 * PrimaryKey条件のUpdate用のSQLとパラメータをセット.
+	 * @param bt 対象のテンプレートを設定します.
+	 * @param table テーブル名を設定します.
+	 * @param primaryKey PrimaryKeyを設定します.
+	 * @param data key=カラム名,value=要素のMapを設定します.
+	 */
+	public static final void update(BaseTemplate<?> bt, String table,
+		PrimaryKey primaryKey, Map<String, Object> data) {
+		final Object[] values = mapValues(data);
+		final String[] columns = mapColumns(data, values);
+		final Key key = new Key(UPDATE | MAP_MODE, table, columns,
+			primaryKey.getKeys());
+		Compiled c = cache.get(key);
+		if(c == null) {
+			final int len = columns.length;
+			final int pkLen = primaryKey.size();
+			final int[] binds = new int[len + pkLen];
+			for(int i = 0; i < len; i ++) {
+				binds[i] = i;
+			}
+			for(int i = 0; i < pkLen; i ++) {
+				binds[len + i] = columnIndex(columns, primaryKey, i, true);
+			}
+			c = put(key, updateSQL(table, columns, primaryKey), binds);
+		}
+		c.apply(bt, values);
+	}
+
+	/**
+	 * PrimaryKey条件のDelete用のSQLとパラメータをセット.
+	 * @param bt 対象のテンプレートを設定します.
+	 * @param table テーブル名を設定します.
+	 * @param primaryKey PrimaryKeyを設定します.
+	 * @param values PrimaryKeyに対するValue群を設定します.
+	 */
+	public static final void delete(BaseTemplate<?> bt, String table,
+		PrimaryKey primaryKey, Object... values) {
+		checkPrimaryKeyValues(primaryKey, values);
+		final Key key = new Key(DELETE, table, BLANK_STRING_ARRAY,
+			primaryKey.getKeys());
+		Compiled c = cache.get(key);
+		if(c == null) {
+			final StringBuilder buf = new StringBuilder();
+			DbUtil.createDeleteSQL(buf, table);
+			wherePrimaryKeys(buf, primaryKey);
+			c = put(key, buf.toString(), sequence(primaryKey.size()));
+		}
+		c.apply(bt, values);
+	}
+
+	/**
+	 * PrimaryKey条件のSelect用のSQLとパラメータをセット.
+	 * @param bt 対象のテンプレートを設定します.
+	 * @param table テーブル名を設定します.
+	 * @param primaryKey PrimaryKeyを設定します.
+	 * @param columns 取得カラム名群を設定します.
+	 * @param values PrimaryKeyに対するValue群を設定します.
+	 */
+	public static final void select(BaseTemplate<?> bt, String table,
+		PrimaryKey primaryKey, QueryColumns columns, Object... values) {
+		checkPrimaryKeyValues(primaryKey, values);
+		final String[] cols = columns == null || columns.isEmpty() ?
+			ALL_COLUMNS : columns.get();
+		final Key key = new Key(SELECT, table, cols, primaryKey.getKeys());
+		Compiled c = cache.get(key);
+		if(c == null) {
+			final StringBuilder buf = new StringBuilder();
+			DbUtil.createSelectSQL(buf, table, cols);
+			wherePrimaryKeys(buf, primaryKey);
+			c = put(key, buf.toString(), sequence(primaryKey.size()));
+		}
+		c.apply(bt, values);
+	}
+
+	/**
+	 * PrimaryKey条件の行数取得用のSQLとパラメータをセット.
+	 * 取得結果のカラム名は rowsCount です.
+	 * @param bt 対象のテンプレートを設定します.
+	 * @param table テーブル名を設定します.
+	 * @param primaryKey PrimaryKeyを設定します.
+	 * @param values column, value, column, value...
+	 *               で設定します.
+	 */
+	public static final void exists(BaseTemplate<?> bt, String table,
+		PrimaryKey primaryKey, Object... values) {
+		final String[] columns = keyValueColumns(values);
+		final Key key = new Key(EXISTS, table, columns, primaryKey.getKeys());
+		Compiled c = cache.get(key);
+		if(c == null) {
+			final int pkLen = primaryKey.size();
+			final int[] binds = new int[pkLen];
+			for(int i = 0; i < pkLen; i ++) {
+				binds[i] = (columnIndex(
+					columns, primaryKey, i, false) << 1) + 1;
+			}
+			c = put(key, existsSQL(table, primaryKey), binds);
+		}
+		c.apply(bt, values);
+	}
+
+	/**
+	 * PrimaryKey条件の行数取得用のSQLとパラメータをセット.
+	 * 取得結果のカラム名は rowsCount です.
+	 * @param bt 対象のテンプレートを設定します.
+	 * @param table テーブル名を設定します.
+	 * @param primaryKey PrimaryKeyを設定します.
+	 * @param data key=カラム名,value=要素のMapを設定します.
+	 */
+	public static final void exists(BaseTemplate<?> bt, String table,
+		PrimaryKey primaryKey, Map<String, Object> data) {
+		final Object[] values = mapValues(data);
+		final String[] columns = mapColumns(data, values);
+		final Key key = new Key(EXISTS | MAP_MODE, table, columns,
+			primaryKey.getKeys());
+		Compiled c = cache.get(key);
+		if(c == null) {
+			final int pkLen = primaryKey.size();
+			final int[] binds = new int[pkLen];
+			for(int i = 0; i < pkLen; i ++) {
+				binds[i] = columnIndex(columns, primaryKey, i, true);
+			}
+			c = put(key, existsSQL(table, primaryKey), binds);
+		}
+		c.apply(bt, values);
+	}
+
+	// キャッシュに登録.
+	private static final Compiled put(Key key, String sql, int[] binds) {
+		// 最大数を超える場合はクリア.
+		if(cache.size() >= MAX_SIZE) {
+			cache.clear();
+		}
+		final Compiled ret = new Compiled(sql, binds);
+		cache.put(key, ret);
+		return ret;
+	}
+
+	// Insert文を生成.
+	private static final String insertSQL(String table, String[] columns) {
+		final StringBuilder buf = new StringBuilder();
+		DbUtil.createInsert(buf, table, columns);
+		return buf.toString();
+	}
+
+	// PrimaryKey条件のUpdate文を生成.
+	private static final String updateSQL(String table, String[] columns,
+		PrimaryKey primaryKey) {
+		if(table == null || (table = table.trim()).isEmpty()) {
+			throw new QuinaException("The table name is not set.");
+		}
+		final int len = columns.length;
+		final StringBuilder buf = new StringBuilder("update ")
+			.append(table).append(" set ");
+		for(int i = 0; i < len; i ++) {
+			if(i != 0) {
+				buf.append(", ");
+			}
+			buf.append(columns[i]).append("=?");
+		}
+		wherePrimaryKeys(buf, primaryKey);
+		return buf.toString();
+	}
+
+	// PrimaryKey条件の行数取得文を生成.
+	private static final String existsSQL(String table,
+		PrimaryKey primaryKey) {
+		if(table == null || (table = table.trim()).isEmpty()) {
+			throw new QuinaException("The table name is not set.");
+		}
+		final StringBuilder buf = new StringBuilder("select ");
+		if(primaryKey.size() == 1) {
+			buf.append("count(")
+				.append(primaryKey.getKey(0))
+				.append(") as rowsCount ");
+		} else {
+			buf.append("count(*) as rowsCount ");
+		}
+		buf.append("from ").append(table);
+		wherePrimaryKeys(buf, primaryKey);
+		return buf.toString();
+	}
+
+	// PrimaryKeyのWhere条件を生成.
+	private static final void wherePrimaryKeys(StringBuilder buf,
+		PrimaryKey primaryKey) {
+		final int len = primaryKey.size();
+		buf.append(" where ");
+		for(int i = 0; i < len; i ++) {
+			if(i != 0) {
+				buf.append(" and ");
+			}
+			buf.append(primaryKey.getKey(i)).append("=?");
+		}
+	}
+
+	// PrimaryKeyのカラム位置を取得.
+	private static final int columnIndex(String[] columns,
+		PrimaryKey primaryKey, int no, boolean mapMode) {
+		final String pk = primaryKey.getKey(no);
+		final int len = columns.length;
+		for(int i = 0; i < len; i ++) {
+			if(pk.equals(columns[i])) {
+				return i;
+			}
+		}
+		if(mapMode) {
+			throw new QuinaException(
+				"The specified PrimaryKey \"" + pk +
+				"\" is not set in values.");
+		}
+		throw new QuinaException(
+			"There is no condition for Primary Key: " + primaryKey);
+	}
+
+	// PrimaryKeyに対するValue数をチェック.
+	private static final void checkPrimaryKeyValues(
+		PrimaryKey primaryKey, Object[] values) {
+		if(values == null || values.length != primaryKey.size()) {
+			throw new QuinaException(
+				"The defined number of PrimaryKeys and the number of" +
+				" values array do not match. ");
+		}
+	}
+
+	// column, value, column, value... のカラム名群を取得.
+	private static final String[] keyValueColumns(Object[] values) {
+		if(values == null || values.length == 0 ||
+			(values.length & 1) != 0) {
+			throw new QuinaException(
+				"No key and value conditions have been set. ");
+		}
+		final int len = values.length >> 1;
+		final String[] ret = new String[len];
+		for(int i = 0; i < len; i ++) {
+			ret[i] = String.valueOf(values[i << 1]);
+		}
+		return ret;
+	}
+
+	// Mapの要素群を取得.
+	private static final Object[] mapValues(Map<String, Object> data) {
+		if(data == null || data.size() == 0) {
+			throw new QuinaException(
+				"No key and value conditions have been set.");
+		}
+		return new Object[data.size()];
+	}
+
+	// Mapのカラム名群を取得して要素群をセット.
+	private static final String[] mapColumns(Map<String, Object> data,
+		Object[] outValues) {
+		int cnt = 0;
+		Entry<String, Object> e;
+		final String[] ret = new String[outValues.length];
+		final Iterator<Entry<String, Object>> itr =
+			data.entrySet().iterator();
+		while(itr.hasNext()) {
+			e = itr.next();
+			ret[cnt] = e.getKey();
+			outValues[cnt ++] = e.getValue();
+		}
+		return ret;
+	}
+
+	// 0から始まる連番のバインド順を生成.
+	private static final int[] sequence(int len) {
+		final int[] ret = new int[len];
+		for(int i = 0; i < len; i ++) {
+			ret[i] = i;
+		}
+		return ret;
+	}
+}
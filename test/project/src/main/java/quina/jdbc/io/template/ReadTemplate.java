@@ -8,7 +8,7 @@ import quina.jdbc.io.PrimaryKey;
 import quina.jdbc.io.QueryColumns;
 import quina.jdbc.io.QueryResult;
 import quina.jdbc.io.QueryResultRow;
-import quina.util.collection.ObjectList;
+import quina.jdbc.io.TemplateSqlCache;
 
 /**
  * 読み込みテンプレート.
@@ -73,13 +73,19 @@ public interface ReadTemplate<T>
 		String tableName, PrimaryKey primaryKey, QueryColumns columns,
 		Object... values) {
 		QueryResultRow ret = null;
-		if(columns == null || columns.isEmpty()) {
-			selectSQL(tableName);
-		} else {
-			selectSQL(tableName, columns.get());
+		try {
+			// primaryKeyに対するselect文を生成.
+			TemplateSqlCache.select(
+				this, tableName, primaryKey, columns, values);
+		} catch(QuinaException qe) {
+			// 登録されてたSQLとパラメータをクリア.
+			clearSqlAndParmas();
+			throw qe;
+		} catch(Exception e) {
+			// 登録されてたSQLとパラメータをクリア.
+			clearSqlAndParmas();
+			throw new QuinaException(e);
 		}
-		setParams(new ObjectList<Object>());
-		DbUtil.wherePrimaryKeys(getSql(), getParams(), primaryKey, values);
 		QueryResult res = executeQuery();
 		if(res.hasNext()) {
 			ret = res.next().getCopy();
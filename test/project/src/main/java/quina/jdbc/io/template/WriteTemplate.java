@@ -6,6 +6,7 @@ import quina.exception.QuinaException;
 import quina.jdbc.io.DbUtil;
 import quina.jdbc.io.PrimaryKey;
 import quina.jdbc.io.QueryResult;
+import quina.jdbc.io.TemplateSqlCache;
 import quina.util.collection.ObjectList;
 
 /**
@@ -222,9 +223,9 @@ public interface WriteTemplate<T>
 	default T insert(
 		QueryResult[] out, String tableName) {
 		try {
-			StringBuilder sqlBuf = clearSql();
-			setParams(DbUtil.createInsert(
-				sqlBuf, tableName, getParams()));
+			final ObjectList<Object> params = getParams();
+			TemplateSqlCache.insert(this, tableName,
+				params == null ? null : params.toArray());
 			executeUpdate(out, null);
 			return (T)this;
 		} finally {
@@ -281,9 +282,7 @@ public interface WriteTemplate<T>
 	default T insert(QueryResult[] out, String tableName,
 		Map<String, Object> values) {
 		try {
-			StringBuilder sqlBuf = clearSql();
-			setParams(DbUtil.createInsert(
-				sqlBuf, getParams(), tableName, values));
+			TemplateSqlCache.insert(this, tableName, values);
 			executeUpdate(out, null);
 			return (T)this;
 		} finally {
@@ -329,10 +328,7 @@ public interface WriteTemplate<T>
 	default T insert(
 		QueryResult[] out, String tableName, Object... values) {
 		try {
-			StringBuilder sqlBuf = clearSql();
-			setParams(new ObjectList<Object>(values));
-			setParams(DbUtil.createInsert(
-				sqlBuf, tableName, getParams()));
+			TemplateSqlCache.insert(this, tableName, values);
 			executeUpdate(out, null);
 			return (T)this;
 		} finally {
@@ -350,11 +346,18 @@ public interface WriteTemplate<T>
 	 */
 	default T update(String tableName, PrimaryKey primaryKey,
 		Map<String, Object> values) {
-		// 更新処理.
-		updateSQL(tableName, values);
-		// primaryKeyに対するwhere文を生成.
-		DbUtil.wherePrimaryKeys(
-			getSql(), getParams(), primaryKey, values);
+		try {
+			// primaryKeyに対するupdate文を生成.
+			TemplateSqlCache.update(this, tableName, primaryKey, values);
+		} catch(QuinaException qe) {
+			// 登録されてたSQLとパラメータをクリア.
+			clearSqlAndParmas();
+			throw qe;
+		} catch(Exception e) {
+			// 登録されてたSQLとパラメータをクリア.
+			clearSqlAndParmas();
+			throw new QuinaException(e);
+		}
 		// 実行処理.
 		executeUpdate();
 		return (T)this;
@@ -369,12 +372,18 @@ public interface WriteTemplate<T>
 	 */
 	default T update(String tableName, PrimaryKey primaryKey,
 		Object... values) {
-		// 更新処理.
-		updateSQL(tableName, values);
-		// primaryKeyに対するwhere文を生成.
-		DbUtil.wherePrimaryKeys(
-			getSql(), getParams(), primaryKey,
-			DbUtil.getPrimaryKey(primaryKey, values));
+		try {
+			// primaryKeyに対するupdate文を生成.
+			TemplateSqlCache.update(this, tableName, primaryKey, values);
+		} catch(QuinaException qe) {
+			// 登録されてたSQLとパラメータをクリア.
+			clearSqlAndParmas();
+			throw qe;
+		} catch(Exception e) {
+			// 登録されてたSQLとパラメータをクリア.
+			clearSqlAndParmas();
+			throw new QuinaException(e);
+		}
 		// 実行処理.
 		executeUpdate();
 		return (T)this;
@@ -530,9 +539,18 @@ public interface WriteTemplate<T>
 	 */
 	default T delete(
 		String tableName, PrimaryKey primaryKey, Object... values) {
-		deleteSQL(tableName);
-		setParams(new ObjectList<Object>());
-		DbUtil.wherePrimaryKeys(getSql(), getParams(), primaryKey, values);
+		try {
+			// primaryKeyに対するdelete文を生成.
+			TemplateSqlCache.delete(this, tableName, primaryKey, values);
+		} catch(QuinaException qe) {
+			// 登録されてたSQLとパラメータをクリア.
+			clearSqlAndParmas();
+			throw qe;
+		} catch(Exception e) {
+			// 登録されてたSQLとパラメータをクリア.
+			clearSqlAndParmas();
+			throw new QuinaException(e);
+		}
 		executeUpdate(null, null);
 		return (T)this;
 	}
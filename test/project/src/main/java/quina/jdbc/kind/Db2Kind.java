@@ -61,4 +61,14 @@ public class Db2Kind implements QuinaJDBCKind {
 		return Alphabet.startsWith(
 			url, "jdbc:db2:", "jdbc:db2j:net:", "jdbc:ids:");
 	}
+	
+	/**
+	 * １つのSQL文で利用可能なバインドパラメータの最大数を取得.
+	 * Db2の上限は32767です.
+	 * @return int バインドパラメータの最大数が返却されます.
+	 */
+	@Override
+	public int getMaxBindParameters() {
+		return 32767;
+	}
 }
@@ -192,4 +192,14 @@ public class H2Kind implements QuinaJDBCKind {
 	public boolean isUrlType() {
 		return false;
 	}
+	
+	/**
+	 * １つのSQL文で利用可能なバインドパラメータの最大数を取得.
+	 * H2は明確な上限は無いのでSQL文が大きくなりすぎない値とします.
+	 * @return int バインドパラメータの最大数が返却されます.
+	 */
+	@Override
+	public int getMaxBindParameters() {
+		return 32767;
+	}
 }
@@ -62,5 +62,36 @@ public class MariaDbKind implements QuinaJDBCKind {
 		// URLの接続先がmariadb接続の場合.
 		return Alphabet.startsWith(url, "jdbc:mariadb:");
 	}
-
+	
+	/**
+	 * １つのSQL文で利用可能なバインドパラメータの最大数を取得.
+	 * MariaDBの上限は65535です.
+	 * @return int バインドパラメータの最大数が返却されます.
+	 */
+	@Override
+	public int getMaxBindParameters() {
+		return 65535;
+	}
+	
+	/**
+	 * 複数行Insertで１つのSQL文に含められる最大行数を取得.
+	 * バインドパラメータ上限だけだと１つのSQL文が
+	 * max_allowed_packetを超えやすいので1000行とします.
+	 * @return int 最大行数が返却されます.
+	 */
+	@Override
+	public int getMaxInsertRows() {
+		return 1000;
+	}
+	
+	/**
+	 * 複数行Insertで１つのSQL文に含める値の最大サイズ(byte)を取得.
+	 * MariaDBのmax_allowed_packetの既定値(4MB)より
+	 * 余裕を持たせた値とします.
+	 * @return int 最大サイズ(byte)が返却されます.
+	 */
+	@Override
+	public int getMaxInsertBytes() {
+		return 1024 * 1024;
+	}
 }
@@ -71,5 +71,24 @@ public class MsSqlKind implements QuinaJDBCKind {
 	public boolean isUrlType() {
 		return false;
 	}
-
+	
+	/**
+	 * １つのSQL文で利用可能なバインドパラメータの最大数を取得.
+	 * SQLServerの上限は2100なので余裕を持たせた値とします.
+	 * @return int バインドパラメータの最大数が返却されます.
+	 */
+	@Override
+	public int getMaxBindParameters() {
+		return 2000;
+	}
+	
+	/**
+	 * 複数行Insertで１つのSQL文に含められる最大行数を取得.
+	 * SQLServerの上限は1000行です.
+	 * @return int 最大行数が返却されます.
+	 */
+	@Override
+	public int getMaxInsertRows() {
+		return 1000;
+	}
 }
@@ -60,4 +60,25 @@ public class OracleKind implements QuinaJDBCKind {
 		}
 		return Alphabet.startsWith(url, "jdbc:oracle:");
 	}
+	
+	/**
+	 * １つのSQL文で利用可能なバインドパラメータの最大数を取得.
+	 * Oracleの上限は65535です.
+	 * @return int バインドパラメータの最大数が返却されます.
+	 */
+	@Override
+	public int getMaxBindParameters() {
+		return 65535;
+	}
+	
+	/**
+	 * 複数行Insertで１つのSQL文に含められる最大行数を取得.
+	 * Oracleは insert into ... values (...), (...) に
+	 * 対応していないのでBatch実行を利用します.
+	 * @return int 0が返却されます.
+	 */
+	@Override
+	public int getMaxInsertRows() {
+		return 0;
+	}
 }
@@ -60,5 +60,24 @@ public class PostgresSqlKind implements QuinaJDBCKind {
 		}
 		return Alphabet.startsWith(url, "jdbc:postgresql:");
 	}
-
+	
+	/**
+	 * １つのSQL文で利用可能なバインドパラメータの最大数を取得.
+	 * PostgreSQLの上限は32767です.
+	 * @return int バインドパラメータの最大数が返却されます.
+	 */
+	@Override
+	public int getMaxBindParameters() {
+		return 32767;
+	}
+	
+	/**
+	 * ドライバのCOPY(copy ... from stdin)によるバルクロードに
+	 * 対応しているか取得.
+	 * @return boolean trueが返却されます.
+	 */
+	@Override
+	public boolean isBulkCopy() {
+		return true;
+	}
 }
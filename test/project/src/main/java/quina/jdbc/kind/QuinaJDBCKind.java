@@ -86,4 +86,42 @@ public interface QuinaJDBCKind {
 	default boolean isUrlType() {
 		return true;
 	}
+	
+	/**
+	 * １つのSQL文で利用可能なバインドパラメータの最大数を取得.
+	 * @return int バインドパラメータの最大数が返却されます.
+	 */
+	default int getMaxBindParameters() {
+		return 2000;
+	}
+	
+	/**
+	 * 複数行Insert(insert into ... values (...), (...))で
+	 * １つのSQL文に含められる最大行数を取得.
+	 * @return int 最大行数が返却されます.
+	 *             0の場合は複数行Insertに対応していません.
+	 */
+	default int getMaxInsertRows() {
+		return 1000;
+	}
+	
+	/**
+	 * 複数行Insertで１つのSQL文に含める値の最大サイズ(byte)を取得.
+	 * 書き込み待ちの値の推定サイズがこの値を超えた場合は
+	 * 最大行数に達していなくても書き込みます.
+	 * @return int 最大サイズ(byte)が返却されます.
+	 *             0以下の場合はサイズでの制限は行いません.
+	 */
+	default int getMaxInsertBytes() {
+		return 0;
+	}
+	
+	/**
+	 * ドライバのCOPY(copy ... from stdin)によるバルクロードに
+	 * 対応しているか取得.
+	 * @return boolean trueの場合対応しています.
+	 */
+	default boolean isBulkCopy() {
+		return false;
+	}
 }
@@ -1,5 +1,6 @@
 package quina.jdbc.storage;
 
+import java.util.Collections;
 import java.util.Date;
 
 import quina.exception.QuinaException;
@@ -28,6 +29,14 @@ public class JDBCStorage implements Storage {
 	// 更新時間.
 	protected long accessTime;
 	
+	// WriteBehind管理.
+	// nullの場合は要素の追加・削除毎に書き込みます.
+	protected JDBCStorageWriteBehind writeBehind;
+	
+	// NearCache.
+	// nullの場合は読み込み毎にRDBMSから取得します.
+	protected JDBCStorageNearCache nearCache;
+	
 	/**
 	 * コンストラクタ.
 	 * @param ds QuinaDataSourceを設定します.
@@ -101,17 +110,81 @@ public class JDBCStorage implements Storage {
 	protected void checkStorage(IoStatement ios) {
 		// storageが存在する場合に要素追加.
 		if(!isStorage(ios)) {
-			// 存在しない場合は410エラー.
-			// 410:ファイルが削除されたため、ほぼ永久的にWebページが
-			//     存在しない.
-			throw new QuinaException(410,
-				"Storage with the specified name \"" + managerName +
-				"\" has already been deleted.");
+			throw storageDeleted();
+		}
+	}
+	
+	// storageが削除されている場合の例外.
+	protected QuinaException storageDeleted() {
+		// 存在しない場合は410エラー.
+		// 410:ファイルが削除されたため、ほぼ永久的にWebページが
+		//     存在しない.
+		return new QuinaException(410,
+			"Storage with the specified name \"" + managerName +
+			"\" has already been deleted.");
+	}
+	
+	// NearCacheのキャッシュ要素を取得.
+	private JDBCStorageNearCache.Entry getNear() {
+		final JDBCStorageNearCache.Entry ret =
+			nearCache.get(dataSource, managerName);
+		if(ret == null) {
+			throw storageDeleted();
+		}
+		return ret;
+	}
+	
+	// NearCacheを利用して書き込む.
+	private void writeNear(final boolean clear, final String key,
+		final JDBCStorageWriteBuffer.Element em) {
+		try {
+			IoStatement.execute(dataSource, (ios) -> {
+				// storage存在確認.
+				final JDBCStorageNearCache.Entry e =
+					nearCache.get(ios, managerName);
+				if(e == null) {
+					throw storageDeleted();
+				}
+				if(clear) {
+					// 全ての要素を削除.
+					JDBCStorageUtil.clearElement(ios, managerId);
+				} else if(em.remove) {
+					// 要素を削除.
+					JDBCStorageUtil.deleteElement(ios, managerId, key);
+				} else {
+					// １つの要素を追加・更新.
+					JDBCStorageUtil.putElement(
+						ios, managerId, key, em.type, em.value);
+				}
+				// NearCacheに反映.
+				nearCache.write(ios, e, clear, clear ?
+					null : Collections.singletonMap(key, em));
+				return null;
+			});
+		} catch(RuntimeException re) {
+			// 書き込みに失敗した場合はNearCacheを無効化.
+			nearCache.invalidate(managerName);
+			throw re;
 		}
 	}
 	
 	@Override
 	public void clear() {
+		// WriteBehindの場合は書き込み待ちも破棄.
+		if(writeBehind != null) {
+			writeBehind.clear(managerId, () -> clearElement());
+			return;
+		}
+		clearElement();
+	}
+	
+	// 全ての要素を削除.
+	private void clearElement() {
+		// NearCacheの場合.
+		if(nearCache != null) {
+			writeNear(true, null, null);
+			return;
+		}
 		IoStatement.execute(dataSource, (ios) -> {
 			// storage存在確認.
 			checkStorage(ios);
@@ -121,10 +194,32 @@ public class JDBCStorage implements Storage {
 		});
 	}
 	
+	// WriteBehindの書き込み待ち要素を取得.
+	private JDBCStorageWriteBuffer.Element getPending(String key) {
+		if(writeBehind == null) {
+			return null;
+		}
+		return writeBehind.get(managerId, key);
+	}
+	
 	// １つの要素を追加.
 	private Storage setValue(
 		String key, int type, Object value) {
 		final Storage ret = this;
+		// WriteBehindの場合は書き込み待ちに追加.
+		if(writeBehind != null) {
+			writeBehind.put(managerId, managerName, checkKey(key),
+				JDBCStorageWriteBuffer.Element.put(type,
+					value == null ? null : String.valueOf(value)));
+			return ret;
+		}
+		// NearCacheの場合.
+		if(nearCache != null) {
+			writeNear(false, checkKey(key),
+				JDBCStorageWriteBuffer.Element.put(type,
+					value == null ? null : String.valueOf(value)));
+			return ret;
+		}
 		return (Storage)IoStatement.execute(dataSource, (ios) -> {
 			// キーチェック.
 			final String eKey = checkKey(key);
@@ -195,6 +290,17 @@ public class JDBCStorage implements Storage {
 	
 	// 指定名の要素を取得.
 	private String getValue(String key) {
+		// 書き込み待ちの場合はその内容を返却.
+		final JDBCStorageWriteBuffer.Element em = getPending(checkKey(key));
+		if(em != null) {
+			return em.getValue();
+		}
+		// NearCacheの場合.
+		if(nearCache != null) {
+			final JDBCStorageWriteBuffer.Element ne =
+				getNear().get(checkKey(key));
+			return ne == null ? null : ne.getValue();
+		}
 		return (String)IoStatement.execute(dataSource, (ios) -> {
 			// キーチェック.
 			final String eKey = checkKey(key);
@@ -252,6 +358,17 @@ public class JDBCStorage implements Storage {
 
 	@Override
 	public TypesClass getType(String key) {
+		// 書き込み待ちの場合はその内容を返却.
+		final JDBCStorageWriteBuffer.Element em = getPending(checkKey(key));
+		if(em != null) {
+			return em.getType();
+		}
+		// NearCacheの場合.
+		if(nearCache != null) {
+			final JDBCStorageWriteBuffer.Element ne =
+				getNear().get(checkKey(key));
+			return ne == null ? null : ne.getType();
+		}
 		return (TypesClass)IoStatement.execute(dataSource, (ios) -> {
 			// キーチェック.
 			final String eKey = checkKey(key);
@@ -264,6 +381,15 @@ public class JDBCStorage implements Storage {
 
 	@Override
 	public boolean contains(String key) {
+		// 書き込み待ちの場合はその内容を返却.
+		final JDBCStorageWriteBuffer.Element em = getPending(checkKey(key));
+		if(em != null) {
+			return !em.remove;
+		}
+		// NearCacheの場合.
+		if(nearCache != null) {
+			return getNear().get(checkKey(key)) != null;
+		}
 		return (boolean)IoStatement.execute(dataSource, (ios) -> {
 			// キーチェック.
 			final String eKey = checkKey(key);
@@ -276,6 +402,18 @@ public class JDBCStorage implements Storage {
 
 	@Override
 	public void remove(String key) {
+		// WriteBehindの場合は書き込み待ちに追加.
+		if(writeBehind != null) {
+			writeBehind.put(managerId, managerName, checkKey(key),
+				JDBCStorageWriteBuffer.Element.remove());
+			return;
+		}
+		// NearCacheの場合.
+		if(nearCache != null) {
+			writeNear(false, checkKey(key),
+				JDBCStorageWriteBuffer.Element.remove());
+			return;
+		}
 		IoStatement.execute(dataSource, (ios) -> {
 			// キーチェック.
 			final String eKey = checkKey(key);
@@ -289,6 +427,14 @@ public class JDBCStorage implements Storage {
 
 	@Override
 	public int size() {
+		// WriteBehindの場合は書き込み待ちを書き込んでから取得.
+		if(writeBehind != null) {
+			writeBehind.flush(managerId);
+		}
+		// NearCacheの場合.
+		if(nearCache != null) {
+			return getNear().size();
+		}
 		return (int)IoStatement.execute(dataSource, (ios) -> {
 			// storage存在確認.
 			checkStorage(ios);
@@ -9,6 +9,131 @@ public class JDBCStorageConstants {
 	// ５秒.
 	protected static final long FIXED_INTERVAL_TIME = 5000L;
 	
+	// デフォルトのWriteBehind書き込みタイミング.
+	// 1秒.
+	private static final long DEF_WRITE_BEHIND_TIMING = 1000L;
+	
+	// 最小WriteBehind書き込みタイミング.
+	// 50ミリ秒.
+	private static final long MIN_WRITE_BEHIND_TIMING = 50L;
+	
+	// 最大WriteBehind書き込みタイミング.
+	// 60秒.
+	private static final long MAX_WRITE_BEHIND_TIMING = 60000L;
+	
+	// デフォルトのWriteBehind書き込み要素数.
+	private static final int DEF_WRITE_BEHIND_SIZE = 64;
+	
+	// 最小WriteBehind書き込み要素数.
+	private static final int MIN_WRITE_BEHIND_SIZE = 1;
+	
+	// 最大WriteBehind書き込み要素数.
+	private static final int MAX_WRITE_BEHIND_SIZE = 4096;
+	
+	// WriteBehindの最大書き込み待ち要素数の書き込み要素数に対する倍率.
+	private static final int WRITE_BEHIND_PENDING_RATE = 64;
+	
+	// WriteBehind書き込み時の１回のdelete条件(in)数.
+	protected static final int WRITE_BEHIND_IN_LENGTH = 256;
+	
+	/**
+	 * WriteBehindの書き込みタイミングを取得.
+	 * @param time 書き込みタイミングを設定します.
+	 *             0以下の場合はデフォルト値になります.
+	 * @return long 整形された内容が返却されます.
+	 */
+	protected static final long getWriteBehindTiming(long time) {
+		if(time <= 0L) {
+			time = DEF_WRITE_BEHIND_TIMING;
+		} else if(time < MIN_WRITE_BEHIND_TIMING) {
+			time = MIN_WRITE_BEHIND_TIMING;
+		} else if(time > MAX_WRITE_BEHIND_TIMING) {
+			time = MAX_WRITE_BEHIND_TIMING;
+		}
+		return time;
+	}
+	
+	/**
+	 * WriteBehindの書き込み要素数を取得.
+	 * Storage単位の書き込み待ち要素数がこの値に達した場合は
+	 * 書き込みタイミングを待たずに書き込みます.
+	 * @param size 書き込み要素数を設定します.
+	 *             0以下の場合はデフォルト値になります.
+	 * @return int 整形された内容が返却されます.
+	 */
+	protected static final int getWriteBehindSize(int size) {
+		if(size <= 0) {
+			size = DEF_WRITE_BEHIND_SIZE;
+		} else if(size < MIN_WRITE_BEHIND_SIZE) {
+			size = MIN_WRITE_BEHIND_SIZE;
+		} else if(size > MAX_WRITE_BEHIND_SIZE) {
+			size = MAX_WRITE_BEHIND_SIZE;
+		}
+		return size;
+	}
+	
+	/**
+	 * WriteBehindの最大書き込み待ち要素数を取得.
+	 * Storage単位の書き込み待ち要素数がこの値に達した場合は
+	 * 新しいキーの書き込みを拒否します.
+	 * @param size 整形済みの書き込み要素数を設定します.
+	 * @return int 最大書き込み待ち要素数が返却されます.
+	 */
+	protected static final int getWriteBehindMaxPending(int size) {
+		return size * WRITE_BEHIND_PENDING_RATE;
+	}
+	
+	// デフォルトのNearCache最大保持Storage数.
+	private static final int DEF_NEAR_CACHE_SIZE = 1024;
+	
+	// 最小NearCache最大保持Storage数.
+	private static final int MIN_NEAR_CACHE_SIZE = 16;
+	
+	// 最大NearCache最大保持Storage数.
+	private static final int MAX_NEAR_CACHE_SIZE = 65536;
+	
+	// デフォルトのNearCacheバージョン確認を行わない期間.
+	// 1秒.
+	private static final long DEF_NEAR_CACHE_STALENESS = 1000L;
+	
+	// 最大NearCacheバージョン確認を行わない期間.
+	// 60秒.
+	private static final long MAX_NEAR_CACHE_STALENESS = 60000L;
+	
+	/**
+	 * NearCacheの最大保持Storage数を取得.
+	 * @param size 最大保持Storage数を設定します.
+	 *             0以下の場合はデフォルト値になります.
+	 * @return int 整形された内容が返却されます.
+	 */
+	protected static final int getNearCacheSize(int size) {
+		if(size <= 0) {
+			size = DEF_NEAR_CACHE_SIZE;
+		} else if(size < MIN_NEAR_CACHE_SIZE) {
+			size = MIN_NEAR_CACHE_SIZE;
+		} else if(size > MAX_NEAR_CACHE_SIZE) {
+			size = MAX_NEAR_CACHE_SIZE;
+		}
+		return size;
+	}
+	
+	/**
+	 * NearCacheのバージョン確認を行わない期間を取得.
+	 * この期間内は他のノードでの更新が反映されません.
+	 * @param time 期間(ミリ秒)を設定します.
+	 *             0の場合は毎回バージョン確認を行います.
+	 *             マイナス値の場合はデフォルト値になります.
+	 * @return long 整形された内容が返却されます.
+	 */
+	protected static final long getNearCacheStaleness(long time) {
+		if(time < 0L) {
+			time = DEF_NEAR_CACHE_STALENESS;
+		} else if(time > MAX_NEAR_CACHE_STALENESS) {
+			time = MAX_NEAR_CACHE_STALENESS;
+		}
+		return time;
+	}
+	
 	// Storageテーブル基本名.
 	protected static final String BASE_TABLE_NAME = "QUINA_JDBC_STORAGE";
 
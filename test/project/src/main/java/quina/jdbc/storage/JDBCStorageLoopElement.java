@@ -26,6 +26,9 @@ final class JDBCStorageLoopElement
 	// 前回確認したタイムアウト値.
 	protected long beforeTimeout;
 	
+	// 次回WriteBehindの書き込みを行う時間.
+	protected long nextWriteBehind;
+	
 	/**
 	 * コンストラクタ.
 	 * @param timeout 各StorageManagerのタイムアウト時間を
@@ -48,6 +51,13 @@ final class JDBCStorageLoopElement
 	public void execute(QuinaThreadStatus status)
 		throws Throwable {
 		final long nowTime = System.currentTimeMillis();
+		// WriteBehindの書き込みタイミング又は書き込み要求がある場合.
+		final JDBCStorageWriteBehind wb = manager.writeBehind;
+		if(wb != null &&
+			(nextWriteBehind <= nowTime || wb.isFlushRequest())) {
+			wb.flush();
+			nextWriteBehind = System.currentTimeMillis() + wb.getTiming();
+		}
 		// タイムアウトチェックを行わない場合.
 		if(beforeTimeout > nowTime) {
 			sleep();
@@ -32,6 +32,14 @@ public class JDBCStorageManager
 	// ロックオブジェクト.
 	protected final Lock lock = new ReentrantLock();
 	
+	// WriteBehind管理.
+	// nullの場合は要素の追加・削除毎に書き込みます.
+	protected JDBCStorageWriteBehind writeBehind;
+	
+	// NearCache.
+	// nullの場合は読み込み毎にRDBMSから取得します.
+	protected JDBCStorageNearCache nearCache;
+	
 	/**
 	 * コンストラクタ.
 	 * @param dsName JDBCStorage情報を展開する
@@ -96,6 +104,38 @@ public class JDBCStorageManager
 		return dataSource;
 	}
 	
+	/**
+	 * WriteBehindを設定.
+	 * 要素の追加・削除をStorage単位にまとめて書き込みます.
+	 * @param timing 書き込みタイミング(ミリ秒)を設定します.
+	 * @param size Storage単位の書き込み要素数を設定します.
+	 *             書き込み待ち要素数がこの値に達した場合は
+	 *             書き込みタイミングを待たずに書き込みます.
+	 */
+	protected void setWriteBehind(long timing, int size) {
+		writeBehind = new JDBCStorageWriteBehind(this, timing, size);
+	}
+	
+	/**
+	 * NearCacheを設定.
+	 * Storage要素群をStorage単位でまとめて読み込んで保持します.
+	 * @param size 最大保持Storage数を設定します.
+	 * @param staleness バージョン確認を行わない期間(ミリ秒)を設定します.
+	 *                  この期間内は他のノードでの更新が反映されません.
+	 */
+	protected void setNearCache(int size, long staleness) {
+		nearCache = new JDBCStorageNearCache(size, staleness);
+	}
+	
+	/**
+	 * WriteBehindの書き込み待ちを全て書き込む.
+	 */
+	protected void flush() {
+		if(writeBehind != null) {
+			writeBehind.flush();
+		}
+	}
+	
 	/**
 	 * オブジェクトを破棄.
 	 */
@@ -128,8 +168,11 @@ public class JDBCStorageManager
 					"\" with the specified name already exists.");
 			}
 			// 生成処理.
-			return JDBCStorageUtil.createStorage(
+			final JDBCStorage ret = JDBCStorageUtil.createStorage(
 				dataSource, ios, sname);
+			ret.writeBehind = writeBehind;
+			ret.nearCache = nearCache;
+			return ret;
 		});
 	}
 
@@ -146,6 +189,14 @@ public class JDBCStorageManager
 				dataSource, ios, sname);
 			// 取得できた場合削除処理.
 			if(js != null) {
+				// 書き込み待ちを破棄.
+				if(writeBehind != null) {
+					writeBehind.remove(js.getManagerId());
+				}
+				// NearCacheを破棄.
+				if(nearCache != null) {
+					nearCache.remove(sname);
+				}
 				JDBCStorageUtil.deleteStorage(ios,
 					js.getManagerId());
 			}
@@ -160,12 +211,26 @@ public class JDBCStorageManager
 			return null;
 		}
 		final String sname = checkName(name);
+		// NearCacheの場合.
+		if(nearCache != null) {
+			final JDBCStorageNearCache.Entry e =
+				nearCache.get(init(), sname);
+			if(e == null) {
+				return null;
+			}
+			final JDBCStorage ret = new JDBCStorage(
+				dataSource, e.managerId, sname, e.getVersion());
+			ret.writeBehind = writeBehind;
+			ret.nearCache = nearCache;
+			return ret;
+		}
 		return (Storage)IoStatement.execute(init(), (ios) -> {
 			// JDBCStorageを取得.
 			JDBCStorage ret = JDBCStorageUtil.getStorage(
 				dataSource, ios, sname);
 			// 存在する場合.
 			if(ret != null) {
+				ret.writeBehind = writeBehind;
 				// 前回アクセスから一定時間を超えてる場合はアクセス時間を更新.
 				long time = System.currentTimeMillis();
 				if(ret.getUpdateTime() +
@@ -188,6 +253,10 @@ public class JDBCStorageManager
 			return false;
 		}
 		final String sname = checkName(name);
+		// NearCacheの場合.
+		if(nearCache != null) {
+			return nearCache.get(init(), sname) != null;
+		}
 		return (boolean)IoStatement.execute(init(), (ios) -> {
 			// Storage名存在を取得.
 			return JDBCStorageUtil.isStorage(
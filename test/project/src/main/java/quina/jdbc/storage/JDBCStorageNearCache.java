@@ -0,0 +1,294 @@
+package quina.jdbc.storage;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import quina.jdbc.QuinaDataSource;
+import quina.jdbc.io.IoStatement;
+
+/**
+ * JDBCStorageのNearCache.
+ *
+ * Storage単位で要素群を一括で読み込んでローカルに保持します.
+ * Storage管理テーブルの update_time をバージョンとして扱い
+ * 一定期間(staleness)を超えた場合のみバージョンを確認して
+ * 変更されていた場合は読み込み直します.
+ * 保持するStorage数は最大数を超えた場合は最も長く利用されて
+ * いないものから破棄します.
+ */
+final class JDBCStorageNearCache {
+
+	/**
+	 * キャッシュ要素.
+	 */
+	static final class Entry {
+		// ストレージマネージャID.
+		final long managerId;
+		// ストレージマネージャ名.
+		final String managerName;
+		// バージョン(update_time).
+		private long version;
+		// 前回バージョンを確認した時間.
+		private long checkTime;
+		// 要素群.
+		private final HashMap<String, JDBCStorageWriteBuffer.Element> elements;
+
+		// コンストラクタ.
+		private Entry(long manId, String manName, long version,
+			long checkTime,
+			HashMap<String, JDBCStorageWriteBuffer.Element> elements) {
+			this.managerId = manId;
+			this.managerName = manName;
+			this.version = version;
+			this.checkTime = checkTime;
+			this.elements = elements;
+		}
+
+		/**
+		 * バージョンを取得.
+		 * @return long バージョンが返却されます.
+		 */
+		synchronized long getVersion() {
+			return version;
+		}
+
+		/**
+		 * 要素を取得.
+		 * @param key 対象のキーを設定します.
+		 * @return JDBCStorageWriteBuffer.Element 要素が返却されます.
+		 *                 nullの場合は存在しません.
+		 */
+		synchronized JDBCStorageWriteBuffer.Element get(String key) {
+			return elements.get(key);
+		}
+
+		/**
+		 * 要素数を取得.
+		 * @return int 要素数が返却されます.
+		 */
+		synchronized int size() {
+			return elements.size();
+		}
+
+		// 有効期限内かチェック.
+		private synchronized boolean isFresh(long now, long staleness) {
+			return checkTime + staleness > now;
+		}
+
+		// 無効化.
+		private synchronized void invalidate() {
+			version = -1L;
+			checkTime = 0L;
+		}
+	}
+
+	// キャッシュ.
+	private final LinkedHashMap<String, Entry> cache;
+
+	// 最大保持Storage数.
+	private final int maxSize;
+
+	// バージョン確認を行わない期間.
+	private final long staleness;
+
+	/**
+	 * コンストラクタ.
+	 * @param maxSize 最大保持Storage数を設定します.
+	 * @param staleness バージョン確認を行わない期間(ミリ秒)を設定します.
+	 */
+	protected JDBCStorageNearCache(int maxSize, long staleness) {
+		this.maxSize = JDBCStorageConstants.getNearCacheSize(maxSize);
+		this.staleness = JDBCStorageConstants.getNearCacheStaleness(staleness);
+		this.cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> e) {
+				return size() > JDBCStorageNearCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * キャッシュ要素を取得.
+	 * 有効期限内の場合はRDBMSにアクセスしません.
+	 * @param ds 対象のデータソースを設定します.
+	 * @param name Storage名を設定します.
+	 * @return Entry キャッシュ要素が返却されます.
+	 *               nullの場合Storageは存在しません.
+	 */
+	protected Entry get(QuinaDataSource ds, String name) {
+		final Entry ret = getFresh(name);
+		if(ret != null) {
+			return ret;
+		}
+		return (Entry)IoStatement.execute(ds, (ios) -> {
+			return load(ios, name);
+		});
+	}
+
+	/**
+	 * キャッシュ要素を取得.
+	 * 有効期限内の場合はRDBMSにアクセスしません.
+	 * @param ios IoStatementを設定します.
+	 * @param name Storage名を設定します.
+	 * @return Entry キャッシュ要素が返却されます.
+	 *               nullの場合Storageは存在しません.
+	 */
+	protected Entry get(IoStatement ios, String name) {
+		final Entry ret = getFresh(name);
+		if(ret != null) {
+			return ret;
+		}
+		return load(ios, name);
+	}
+
+	// 有効期限内のキャッシュ要素を取得.
+	private Entry getFresh(String name) {
+		final Entry ret;
+		synchronized(cache) {
+			ret = cache.get(name);
+		}
+		if(ret != null && ret.isFresh(
+			System.currentTimeMillis(), staleness)) {
+			return ret;
+		}
+		return null;
+	}
+
+	// バージョンを確認して変更されている場合は読み込み直す.
+	private Entry load(IoStatement ios, String name) {
+		// Storage管理IDとバージョンを取得.
+		final long[] v = JDBCStorageUtil.getStorageVersion(ios, name);
+		// 存在しない場合.
+		if(v == null) {
+			remove(name);
+			return null;
+		}
+		final long now = System.currentTimeMillis();
+		final long before = v[1];
+		// 前回アクセスから一定時間を超えてる場合はアクセス時間を更新.
+		if(before + JDBCStorageConstants.FIXED_INTERVAL_TIME < now &&
+			JDBCStorageUtil.updateStorage(ios, v[0], before, now)) {
+			v[1] = now;
+		}
+		Entry ret;
+		synchronized(cache) {
+			ret = cache.get(name);
+		}
+		// バージョンが変わっていない場合.
+		if(ret != null && ret.managerId == v[0]) {
+			synchronized(ret) {
+				if(ret.version == before) {
+					ret.version = v[1];
+					ret.checkTime = now;
+					return ret;
+				}
+			}
+		}
+		// Storage要素群を一括で読み込む.
+		ret = new Entry(v[0], name, v[1], now,
+			JDBCStorageUtil.loadElements(ios, v[0]));
+		synchronized(cache) {
+			cache.put(name, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * Storageの書き込み内容をキャッシュに反映.
+	 * バージョン(update_time)を更新して、他から変更されていない
+	 * 場合のみキャッシュ内容を更新します.
+	 * 他から変更されている場合はキャッシュを無効化します.
+	 * @param ios 書き込み中のIoStatementを設定します.
+	 * @param entry 対象のキャッシュ要素を設定します.
+	 * @param clear trueの場合は全ての要素を削除した後に反映します.
+	 * @param elements 書き込んだ要素群を設定します.
+	 */
+	protected void write(IoStatement ios, Entry entry, boolean clear,
+		Map<String, JDBCStorageWriteBuffer.Element> elements) {
+		final long before = entry.getVersion();
+		long time = System.currentTimeMillis();
+		if(time <= before) {
+			time = before + 1L;
+		}
+		// 他から変更されていない場合のみバージョンを更新.
+		if(before == -1L || !JDBCStorageUtil.updateStorage(
+			ios, entry.managerId, before, time)) {
+			// 他から変更されている場合は、同一時間での更新と
+			// 区別できるように現在のバージョンから変更する.
+			JDBCStorageUtil.incrementStorage(ios, entry.managerId);
+			entry.invalidate();
+			return;
+		}
+		synchronized(entry) {
+			// 反映中に読み込み直されている場合.
+			if(entry.version != before) {
+				entry.invalidate();
+				return;
+			}
+			if(clear) {
+				entry.elements.clear();
+			}
+			if(elements != null) {
+				Map.Entry<String, JDBCStorageWriteBuffer.Element> e;
+				final Iterator<Map.Entry<String,
+					JDBCStorageWriteBuffer.Element>> it =
+						elements.entrySet().iterator();
+				while(it.hasNext()) {
+					e = it.next();
+					if(e.getValue().remove) {
+						entry.elements.remove(e.getKey());
+					} else {
+						entry.elements.put(e.getKey(), e.getValue());
+					}
+				}
+			}
+			entry.version = time;
+		}
+	}
+
+	/**
+	 * 指定Storageのキャッシュを無効化.
+	 * @param name Storage名を設定します.
+	 */
+	protected void invalidate(String name) {
+		final Entry e;
+		synchronized(cache) {
+			e = cache.get(name);
+		}
+		if(e != null) {
+			e.invalidate();
+		}
+	}
+
+	/**
+	 * 指定Storageのキャッシュを削除.
+	 * @param name Storage名を設定します.
+	 */
+	protected void remove(String name) {
+		synchronized(cache) {
+			cache.remove(name);
+		}
+	}
+
+	/**
+	 * キャッシュ数を取得.
+	 * @return int キャッシュ数が返却されます.
+	 */
+	protected int size() {
+		synchronized(cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * キャッシュをクリア.
+	 */
+	protected void clear() {
+		synchronized(cache) {
+			cache.clear();
+		}
+	}
+}
@@ -34,6 +34,12 @@ public class JDBCStorageService
 		,StorageConstants.TIMEOUT, TypesClass.Long, StorageConstants.getTimeout()
 		,StorageConstants.TIMING, TypesClass.Long, StorageConstants.getCheckTiming()
 		,"dataSource", TypesClass.String, null
+		,"writeBehind", TypesClass.Boolean, false
+		,"writeBehindTiming", TypesClass.Long, 1000L
+		,"writeBehindSize", TypesClass.Integer, 64
+		,"nearCache", TypesClass.Boolean, false
+		,"nearCacheSize", TypesClass.Integer, 1024
+		,"nearCacheStaleness", TypesClass.Long, 1000L
 	);
 	
 	// 開始サービスフラグ.
@@ -96,6 +102,18 @@ public class JDBCStorageService
 			// JDBCStorageManagerを生成.
 			man = new JDBCStorageManager(
 				config.getString("dataSource"));
+			// WriteBehindを利用する場合.
+			if(config.getBoolean("writeBehind")) {
+				man.setWriteBehind(
+					config.getLong("writeBehindTiming")
+					,config.getInt("writeBehindSize"));
+			}
+			// NearCacheを利用する場合.
+			if(config.getBoolean("nearCache")) {
+				man.setNearCache(
+					config.getInt("nearCacheSize")
+					,config.getLong("nearCacheStaleness"));
+			}
 			// Storageタイムアウト監視Loop要素を生成.
 			em = new JDBCStorageLoopElement(
 				config.getLong(StorageConstants.TIMEOUT)
@@ -129,6 +147,8 @@ public class JDBCStorageService
 			if(!startFlag.get()) {
 				return;
 			}
+			// WriteBehindの書き込み待ちを書き込む.
+			manager.flush();
 			// マネージャを破棄.
 			manager.destroy();
 			// サービス停止.
@@ -1,11 +1,19 @@
 package quina.jdbc.storage;
 
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
 import quina.jdbc.QuinaDataSource;
 import quina.jdbc.io.IoStatement;
 import quina.jdbc.io.PrimaryKey;
 import quina.jdbc.io.QueryColumns;
 import quina.jdbc.io.QueryResult;
 import quina.jdbc.io.QueryResultRow;
+import quina.jdbc.io.WriteBatchStatement;
+import quina.util.collection.ObjectList;
 import quina.util.collection.TypesClass;
 
 /**
@@ -115,12 +123,71 @@ final class JDBCStorageUtil {
 		IoStatement ios, long manId, long time) {
 		ios.update(
 			JDBCStorageConstants.MANAGE_TABLE_NAME
+			,PrimaryKey.of("id")
 			,"id", manId
 			,"update_time", time
 		);
 		return time;
 	}
 	
+	/**
+	 * Storage管理情報のバージョンを更新.
+	 * 指定したバージョンから変更されていない場合のみ更新します.
+	 * @param ios IoStatementを設定します.
+	 * @param manId 管理IDを設定します.
+	 * @param before 前回のバージョン(update_time)を設定します.
+	 * @param time 更新するバージョン(update_time)を設定します.
+	 * @return boolean trueの場合更新されました.
+	 */
+	public static final boolean updateStorage(
+		IoStatement ios, long manId, long before, long time) {
+		final long[] out = new long[1];
+		ios.updateSQL(JDBCStorageConstants.MANAGE_TABLE_NAME
+			,"update_time", time)
+			.sql("where id=? and update_time=?")
+			.params(manId, before)
+			.executeUpdate(out);
+		return out[0] > 0L;
+	}
+	
+	/**
+	 * Storage管理情報のバージョンを現在の値から必ず変更.
+	 * @param ios IoStatementを設定します.
+	 * @param manId 管理IDを設定します.
+	 */
+	public static final void incrementStorage(
+		IoStatement ios, long manId) {
+		ios.sql("update")
+			.sql(JDBCStorageConstants.MANAGE_TABLE_NAME)
+			.sql("set update_time=update_time+1 where id=?")
+			.params(manId)
+			.executeUpdate();
+	}
+	
+	/**
+	 * Storage管理IDとバージョンを取得.
+	 * @param ios IoStatementを設定します.
+	 * @param name Storage名を設定します.
+	 * @return long[] [0]に管理ID、[1]にバージョン(update_time)が
+	 *                返却されます.
+	 *                nullの場合Storageは存在しません.
+	 */
+	public static final long[] getStorageVersion(
+		IoStatement ios, String name) {
+		QueryResult res = ios.selectSQL(
+			JDBCStorageConstants.MANAGE_TABLE_NAME
+			,"id", "update_time")
+			.sql("where name=?")
+			.params(name)
+			.executeQuery();
+		while(res.hasNext()) {
+			QueryResultRow row = res.next();
+			return new long[] {
+				row.getLong("id"), row.getLong("update_time")};
+		}
+		return null;
+	}
+	
 	/**
 	 * 指定名のJDBCStorageを取得.
 	 * @param ds QuinDataSourceを設定します.
@@ -212,6 +279,97 @@ final class JDBCStorageUtil {
 		);
 	}
 	
+	/**
+	 * 複数の要素をまとめて書き込み.
+	 * 対象キーの要素を削除した後に、削除要素以外を
+	 * Batch実行でまとめて追加します.
+	 * @param ios IoStatementを設定します.
+	 * @param manId 管理IDを設定します.
+	 * @param elements 書き込み対象の要素群を設定します.
+	 * @throws SQLException SQL例外.
+	 */
+	public static final void writeElements(
+		IoStatement ios, long manId,
+		Map<String, JDBCStorageWriteBuffer.Element> elements)
+		throws SQLException {
+		final int max = JDBCStorageConstants.WRITE_BEHIND_IN_LENGTH;
+		final ObjectList<Object> params = new ObjectList<Object>(max + 1);
+		Map.Entry<String, JDBCStorageWriteBuffer.Element> e;
+		// 対象キーの要素を削除.
+		Iterator<Map.Entry<String, JDBCStorageWriteBuffer.Element>> it =
+			elements.entrySet().iterator();
+		while(it.hasNext()) {
+			if(params.size() == 0) {
+				params.add(manId);
+			}
+			params.add(it.next().getKey());
+			if(params.size() > max || !it.hasNext()) {
+				ios.deleteSQL(JDBCStorageConstants.ELEMENT_TABLE_NAME)
+					.sql("where man_id=? and key_name in(")
+					.paramsSQL(params.size() - 1)
+					.sql(")")
+					.params(params)
+					.executeUpdate();
+				params.clear();
+			}
+		}
+		// 削除要素以外をBatch実行で追加.
+		WriteBatchStatement wbs = null;
+		try {
+			it = elements.entrySet().iterator();
+			while(it.hasNext()) {
+				e = it.next();
+				if(e.getValue().remove) {
+					continue;
+				}
+				if(wbs == null) {
+					wbs = ios.getConnection().writeBatchStatement(
+						JDBCStorageConstants.ELEMENT_TABLE_NAME
+						,"man_id", "key_name", "val_type", "val");
+				}
+				wbs.params(manId, e.getKey(),
+					e.getValue().type, e.getValue().value)
+					.add();
+			}
+			if(wbs != null) {
+				wbs.execute();
+			}
+		} finally {
+			if(wbs != null) {
+				try {
+					wbs.close();
+				} catch(IOException ioe) {}
+			}
+		}
+	}
+	
+	/**
+	 * Storage要素を全て取得.
+	 * @param ios IoStatementを設定します.
+	 * @param manId 管理IDを設定します.
+	 * @return HashMap<String, JDBCStorageWriteBuffer.Element>
+	 *                 Storage要素群が返却されます.
+	 */
+	public static final HashMap<String, JDBCStorageWriteBuffer.Element>
+		loadElements(IoStatement ios, long manId) {
+		final HashMap<String, JDBCStorageWriteBuffer.Element> ret =
+			new HashMap<String, JDBCStorageWriteBuffer.Element>();
+		QueryResult res = ios.selectSQL(
+			JDBCStorageConstants.ELEMENT_TABLE_NAME
+			,"key_name", "val_type", "val")
+			.sql("where man_id=?")
+			.params(manId)
+			.executeQuery();
+		QueryResultRow row;
+		while(res.hasNext()) {
+			row = res.next();
+			ret.put(row.getString("key_name"),
+				JDBCStorageWriteBuffer.Element.put(
+					row.getInt("val_type"), row.getString("val")));
+		}
+		return ret;
+	}
+	
 	/**
 	 * 要素タイプを取得.
 	 * @param ios IoStatementを設定します.
@@ -225,8 +383,7 @@ final class JDBCStorageUtil {
 			JDBCStorageConstants.ELEMENT_TABLE_NAME
 			,PrimaryKey.of("man_id", "key_name")
 			,QueryColumns.of("val_type")
-			,"man_id", manId
-			,"key_name", name
+			,manId, name
 		);
 		if(row == null) {
 			return null;
@@ -248,8 +405,7 @@ final class JDBCStorageUtil {
 			JDBCStorageConstants.ELEMENT_TABLE_NAME
 			,PrimaryKey.of("man_id", "key_name")
 			,QueryColumns.of("val_type", "val")
-			,"man_id", manId
-			,"key_name", name
+			,manId, name
 		);
 		// 存在しない場合.
 		if(row == null) {
@@ -298,8 +454,7 @@ final class JDBCStorageUtil {
 		IoStatement ios, long manId, String name) {
 		ios.delete(JDBCStorageConstants.ELEMENT_TABLE_NAME
 			,PrimaryKey.of("man_id", "key_name")
-			,"man_id", manId
-			,"key_name", name
+			,manId, name
 		);
 	}
 	
@@ -333,7 +488,7 @@ final class JDBCStorageUtil {
 		IoStatement ios, long manId) {
 		ios.delete(JDBCStorageConstants.ELEMENT_TABLE_NAME
 			,PrimaryKey.of("man_id")
-			,"man_id", manId
+			,manId
 		);
 	}
 }
@@ -0,0 +1,205 @@
+package quina.jdbc.storage;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import quina.exception.QuinaException;
+import quina.jdbc.QuinaDataSource;
+import quina.logger.LogFactory;
+import quina.util.Flag;
+
+/**
+ * JDBCStorageのWriteBehind管理.
+ *
+ * JDBCStorageの要素追加・削除をStorage単位のバッファに
+ * 保持して、一定間隔又は一定要素数でまとめて書き込みます.
+ * 書き込みはJDBCStorageLoopElementで行われ、書き込み待ちが
+ * 最大書き込み待ち要素数に達した場合は新しいキーの追加を拒否します.
+ */
+final class JDBCStorageWriteBehind {
+
+	// Storage単位の書き込みバッファ.
+	private final ConcurrentHashMap<Long, JDBCStorageWriteBuffer> buffers =
+		new ConcurrentHashMap<Long, JDBCStorageWriteBuffer>();
+
+	// JDBCStorageマネージャ.
+	private final JDBCStorageManager manager;
+
+	// 書き込みタイミング.
+	private final long timing;
+
+	// 書き込み要素数.
+	private final int size;
+
+	// 最大書き込み待ち要素数.
+	private final int maxPending;
+
+	// 書き込み要求フラグ.
+	private final Flag flushRequest = new Flag(false);
+
+	// 前回の書き込み失敗フラグ.
+	private final Flag flushFailure = new Flag(false);
+
+	/**
+	 * コンストラクタ.
+	 * @param manager JDBCStorageマネージャを設定します.
+	 * @param timing 書き込みタイミング(ミリ秒)を設定します.
+	 * @param size 書き込み要素数を設定します.
+	 */
+	protected JDBCStorageWriteBehind(
+		JDBCStorageManager manager, long timing, int size) {
+		this.manager = manager;
+		this.timing = JDBCStorageConstants.getWriteBehindTiming(timing);
+		this.size = JDBCStorageConstants.getWriteBehindSize(size);
+		this.maxPending = JDBCStorageConstants.getWriteBehindMaxPending(
+			this.size);
+	}
+
+	/**
+	 * 書き込みタイミングを取得.
+	 * @return long 書き込みタイミング(ミリ秒)が返却されます.
+	 */
+	protected long getTiming() {
+		return timing;
+	}
+
+	/**
+	 * 書き込み要素数を取得.
+	 * @return int 書き込み要素数が返却されます.
+	 */
+	protected int getSize() {
+		return size;
+	}
+
+	/**
+	 * 書き込み要素数に達した書き込み待ちが存在するかチェック.
+	 * 前回の書き込みに失敗している場合は書き込みタイミングまで
+	 * 再書き込みを行わないためfalseが返却されます.
+	 * @return boolean trueの場合書き込みが要求されています.
+	 */
+	protected boolean isFlushRequest() {
+		return flushRequest.get() && !flushFailure.get();
+	}
+
+	/**
+	 * 書き込み前の要素を取得.
+	 * @param manId 管理IDを設定します.
+	 * @param key 対象のキーを設定します.
+	 * @return JDBCStorageWriteBuffer.Element 要素が返却されます.
+	 *                 nullの場合はバッファに存在しません.
+	 */
+	protected JDBCStorageWriteBuffer.Element get(long manId, String key) {
+		final JDBCStorageWriteBuffer buf = buffers.get(manId);
+		if(buf == null) {
+			return null;
+		}
+		return buf.get(key);
+	}
+
+	/**
+	 * 要素を書き込み待ちに追加.
+	 * 書き込み待ち要素数が書き込み要素数に達した場合は
+	 * JDBCStorageLoopElementに書き込みを要求します.
+	 * @param manId 管理IDを設定します.
+	 * @param manName 管理名を設定します.
+	 * @param key 対象のキーを設定します.
+	 * @param element 要素を設定します.
+	 * @exception QuinaException 書き込み待ちが上限に達している
+	 *                           場合に発生します.
+	 */
+	protected void put(long manId, String manName, String key,
+		JDBCStorageWriteBuffer.Element element) {
+		JDBCStorageWriteBuffer buf;
+		int len;
+		while(true) {
+			buf = buffers.computeIfAbsent(manId,
+				(k) -> new JDBCStorageWriteBuffer(k, manName, maxPending));
+			// 破棄されたバッファの場合は取得し直す.
+			if((len = buf.put(key, element)) != -1) {
+				break;
+			}
+			buffers.remove(manId, buf);
+		}
+		// 書き込み待ちが上限に達している場合.
+		if(len == -2) {
+			flushRequest.set(true);
+			throw new QuinaException(
+				"The write-behind buffer of the jdbc storage is full " +
+				"(name: " + manName + ", max: " + maxPending + ").");
+		// 書き込み要素数に達した場合.
+		} else if(len >= size) {
+			flushRequest.set(true);
+		}
+	}
+
+	/**
+	 * 指定Storageの書き込み待ちを書き込む.
+	 * @param manId 管理IDを設定します.
+	 */
+	protected void flush(long manId) {
+		final JDBCStorageWriteBuffer buf = buffers.get(manId);
+		if(buf != null) {
+			buf.flush(manager.dataSource, manager.nearCache);
+		}
+	}
+
+	/**
+	 * 指定Storageの書き込み待ちを破棄してStorage要素を全て削除.
+	 * @param manId 管理IDを設定します.
+	 * @param call 削除処理を設定します.
+	 */
+	protected void clear(long manId, Runnable call) {
+		final JDBCStorageWriteBuffer buf = buffers.get(manId);
+		if(buf == null) {
+			call.run();
+		} else {
+			buf.clear(call);
+		}
+	}
+
+	/**
+	 * 指定Storageの書き込み待ちを破棄.
+	 * @param manId 管理IDを設定します.
+	 */
+	protected void remove(long manId) {
+		final JDBCStorageWriteBuffer buf = buffers.remove(manId);
+		if(buf != null) {
+			buf.discard();
+		}
+	}
+
+	/**
+	 * 全ての書き込み待ちを書き込む.
+	 * 書き込み待ちが無いバッファは破棄します.
+	 */
+	protected void flush() {
+		flushRequest.set(false);
+		final QuinaDataSource ds = manager.dataSource;
+		if(ds == null) {
+			return;
+		}
+		boolean failure = false;
+		JDBCStorageWriteBuffer buf;
+		Map.Entry<Long, JDBCStorageWriteBuffer> e;
+		final Iterator<Map.Entry<Long, JDBCStorageWriteBuffer>> it =
+			buffers.entrySet().iterator();
+		while(it.hasNext()) {
+			e = it.next();
+			buf = e.getValue();
+			try {
+				// 書き込み待ちが無い場合は破棄.
+				if(!buf.flush(ds, manager.nearCache) && buf.closeIfEmpty()) {
+					buffers.remove(e.getKey(), buf);
+				}
+			} catch(Exception ex) {
+				// 書き込みに失敗した場合は次回書き込む.
+				failure = true;
+				LogFactory.getInstance().get().error(
+					"Failed to write the jdbc storage (id: " +
+					e.getKey() + ").", ex);
+			}
+		}
+		flushFailure.set(failure);
+	}
+}
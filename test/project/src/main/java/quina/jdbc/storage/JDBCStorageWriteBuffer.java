@@ -0,0 +1,296 @@
+package quina.jdbc.storage;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import quina.exception.QuinaException;
+import quina.jdbc.QuinaDataSource;
+import quina.jdbc.io.IoStatement;
+import quina.util.collection.TypesClass;
+
+/**
+ * JDBCStorage単位のWriteBehind書き込みバッファ.
+ *
+ * 同一キーへの書き込みはバッファ内でマージされ、
+ * 書き込み時にまとめてBatch実行されます.
+ * 書き込み中の内容も書き込み完了まで参照できます.
+ */
+final class JDBCStorageWriteBuffer {
+
+	/**
+	 * 書き込み待ち要素.
+	 */
+	static final class Element {
+		// 要素タイプ.
+		final int type;
+		// 要素内容.
+		final String value;
+		// 削除要素.
+		final boolean remove;
+
+		// コンストラクタ.
+		private Element(int type, String value, boolean remove) {
+			this.type = type;
+			this.value = value;
+			this.remove = remove;
+		}
+
+		/**
+		 * 追加・更新要素を生成.
+		 * @param type 要素タイプを設定します.
+		 * @param value 要素を設定します.
+		 * @return Element 要素が返却されます.
+		 */
+		static final Element put(int type, String value) {
+			// valueがnullの場合.
+			if(value == null) {
+				return new Element(
+					TypesClass.Null.getTypeNo(), "$n", false);
+			}
+			return new Element(type, value, false);
+		}
+
+		/**
+		 * 削除要素を生成.
+		 * @return Element 要素が返却されます.
+		 */
+		static final Element remove() {
+			return new Element(
+				TypesClass.Null.getTypeNo(), null, true);
+		}
+
+		/**
+		 * 要素内容を取得.
+		 * @return String 要素内容が返却されます.
+		 */
+		String getValue() {
+			if(remove || type == TypesClass.Null.getTypeNo()) {
+				return null;
+			}
+			return value;
+		}
+
+		/**
+		 * 要素タイプを取得.
+		 * @return TypesClass 要素タイプが返却されます.
+		 */
+		TypesClass getType() {
+			if(remove) {
+				return null;
+			}
+			return TypesClass.getByTypeNo(type);
+		}
+	}
+
+	// ストレージマネージャID.
+	private final long managerId;
+
+	// ストレージマネージャ名.
+	private final String managerName;
+
+	// 最大書き込み待ち要素数.
+	private final int maxPending;
+
+	// 書き込み待ち要素群.
+	private HashMap<String, Element> pending =
+		new HashMap<String, Element>();
+
+	// 書き込み中の要素群.
+	private HashMap<String, Element> flushing = null;
+
+	// 破棄フラグ.
+	private boolean closed = false;
+
+	// 書き込みロック.
+	private final ReentrantLock flushLock = new ReentrantLock();
+
+	/**
+	 * コンストラクタ.
+	 * @param manId 管理IDを設定します.
+	 * @param manName 管理名を設定します.
+	 * @param maxPending 最大書き込み待ち要素数を設定します.
+	 */
+	protected JDBCStorageWriteBuffer(
+		long manId, String manName, int maxPending) {
+		this.managerId = manId;
+		this.managerName = manName;
+		this.maxPending = maxPending;
+	}
+
+	/**
+	 * 書き込み前の要素を取得.
+	 * @param key 対象のキーを設定します.
+	 * @return Element 要素が返却されます.
+	 *                 nullの場合はバッファに存在しません.
+	 */
+	protected synchronized Element get(String key) {
+		final Element ret = pending.get(key);
+		if(ret == null && flushing != null) {
+			return flushing.get(key);
+		}
+		return ret;
+	}
+
+	/**
+	 * 要素を書き込み待ちに追加.
+	 * @param key 対象のキーを設定します.
+	 * @param element 要素を設定します.
+	 * @return int 書き込み待ちの要素数が返却されます.
+	 *             -1の場合はバッファは破棄されています.
+	 *             -2の場合は書き込み待ちが上限に達しています.
+	 */
+	protected synchronized int put(String key, Element element) {
+		if(closed) {
+			return -1;
+		}
+		// 上限に達した場合は既存キーの更新のみ受け付ける.
+		if(pending.size() >= maxPending && !pending.containsKey(key)) {
+			return -2;
+		}
+		pending.put(key, element);
+		return pending.size();
+	}
+
+	/**
+	 * 書き込み待ち要素数を取得.
+	 * @return int 書き込み待ち要素数が返却されます.
+	 */
+	protected synchronized int size() {
+		return pending.size();
+	}
+
+	/**
+	 * 書き込み待ちが無い場合にバッファを破棄.
+	 * @return boolean trueの場合破棄されました.
+	 */
+	protected synchronized boolean closeIfEmpty() {
+		if(pending.isEmpty() && flushing == null) {
+			closed = true;
+		}
+		return closed;
+	}
+
+	/**
+	 * 書き込み待ちを破棄してバッファを破棄.
+	 */
+	protected void discard() {
+		flushLock.lock();
+		try {
+			synchronized(this) {
+				pending.clear();
+				closed = true;
+			}
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	/**
+	 * 書き込み待ちを破棄してStorage要素を全て削除.
+	 * @param call 削除処理を設定します.
+	 */
+	protected void clear(Runnable call) {
+		flushLock.lock();
+		try {
+			synchronized(this) {
+				pending.clear();
+			}
+			call.run();
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	/**
+	 * 書き込み待ち要素をRDBMSに書き込む.
+	 * @param ds 書き込み先のデータソースを設定します.
+	 * @param near 反映先のNearCacheを設定します.
+	 *             nullの場合は反映しません.
+	 * @return boolean trueの場合書き込みが行われました.
+	 */
+	protected boolean flush(QuinaDataSource ds, JDBCStorageNearCache near) {
+		flushLock.lock();
+		try {
+			final HashMap<String, Element> target;
+			synchronized(this) {
+				if(pending.isEmpty()) {
+					return false;
+				}
+				target = pending;
+				flushing = target;
+				pending = new HashMap<String, Element>();
+			}
+			try {
+				IoStatement.execute(ds, (ios) -> {
+					// NearCacheを利用する場合.
+					if(near != null) {
+						// storageが削除されてる場合は書き込まない.
+						final JDBCStorageNearCache.Entry e =
+							near.get(ios, managerName);
+						if(e == null) {
+							return null;
+						}
+						// 対象要素をまとめて書き込む.
+						JDBCStorageUtil.writeElements(
+							ios, managerId, target);
+						// NearCacheに反映.
+						near.write(ios, e, false, target);
+						return null;
+					}
+					// storageが削除されてる場合は書き込まない.
+					if(!JDBCStorageUtil.isStorage(ios, managerName)) {
+						return null;
+					}
+					// 対象要素をまとめて書き込む.
+					JDBCStorageUtil.writeElements(
+						ios, managerId, target);
+					// アクセス時間を更新.
+					JDBCStorageUtil.updateStorage(ios, managerId);
+					return null;
+				});
+			} catch(RuntimeException e) {
+				// 書き込みに失敗した場合はNearCacheを無効化.
+				if(near != null) {
+					near.invalidate(managerName);
+				}
+				// 書き込みに失敗した場合は書き込み待ちに戻す.
+				// ただし失敗中に書き込まれた内容を優先し、
+				// 最大書き込み待ち要素数を超える分は破棄する.
+				int lost = 0;
+				synchronized(this) {
+					if(!closed) {
+						final Iterator<Map.Entry<String, Element>> it =
+							target.entrySet().iterator();
+						Map.Entry<String, Element> e2;
+						while(it.hasNext()) {
+							e2 = it.next();
+							if(pending.containsKey(e2.getKey())) {
+								continue;
+							} else if(pending.size() >= maxPending) {
+								lost ++;
+								continue;
+							}
+							pending.put(e2.getKey(), e2.getValue());
+						}
+					}
+				}
+				if(lost > 0) {
+					throw new QuinaException(
+						"Failed to write the jdbc storage and " + lost +
+						" pending elements were discarded (name: " +
+						managerName + ").", e);
+				}
+				throw e;
+			} finally {
+				synchronized(this) {
+					flushing = null;
+				}
+			}
+			return true;
+		} finally {
+			flushLock.unlock();
+		}
+	}
+}